@@ -0,0 +1,171 @@
+package ecosystem.benchmarks;
+
+import ecosystem.Ecosystem;
+import ecosystem.entities.*;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible ecosystems for the benchmarks. A fixture is generated once per
+ * parameter combination and then copied before every measured iteration, so each iteration
+ * starts from exactly the same state.
+ * <p>
+ * Loading this class turns logging off: the entities log every action through
+ * {@link ecosystem.utils.LogFormer}, and the file appender would otherwise dominate the timings.
+ */
+public class EcosystemFixtures {
+
+    static {
+        Configurator.setRootLevel(Level.OFF);
+    }
+
+    // Species used by the generator: name, food chain level and average lifespan in hours
+    private static final Object[][] HERBIVORES = {
+            {"Rabbit", 1, 78840}, {"Deer", 2, 175200}, {"Goat", 2, 131400}
+    };
+    private static final Object[][] OMNIVORES = {
+            {"Sparrow", 1, 26280}, {"Fox", 2, 35040}, {"Bear", 3, 175200}
+    };
+    private static final Object[][] CARNIVORES = {
+            {"Owl", 1, 87600}, {"Wolf", 2, 122640}, {"Tiger", 3, 87600}
+    };
+    private static final Object[][] PLANTS = {
+            {"Fern", 1, 15}, {"Grass", 1, 16}, {"Bush", 3, 13}, {"Blueberry", 2, 13}, {"Mushroom", 1, 14}
+    };
+
+    /**
+     * Generates an ecosystem with the given number of animals and twice as many plants.
+     *
+     * @param population The number of animals.
+     * @param mix The species mix of non-predators: "balanced", "grazers" or "omnivores".
+     * @param predatorRatio The share of carnivores among the animals.
+     * @param seed The seed of the generator.
+     * @return A new ecosystem.
+     */
+    public static Ecosystem generate(int population, String mix, double predatorRatio, long seed) {
+        Random random = new Random(seed);
+        double herbivoreShare = switch (mix) {
+            case "grazers" -> 0.8;
+            case "omnivores" -> 0.2;
+            default -> 0.5;
+        };
+
+        List<Animal> animals = new ArrayList<>(population);
+        for (int i = 0; i < population; i++) {
+            double roll = random.nextDouble();
+            Object[][] species;
+            if (roll < predatorRatio) {
+                species = CARNIVORES;
+            } else if (random.nextDouble() < herbivoreShare) {
+                species = HERBIVORES;
+            } else {
+                species = OMNIVORES;
+            }
+            Object[] row = species[random.nextInt(species.length)];
+            String name = (String) row[0];
+            int level = (int) row[1];
+            int lifeTime = (int) row[2];
+
+            // Energies on both sides of the hunger threshold, most animals old enough to reproduce
+            int energy = 40 + random.nextInt(140);
+            int age = 24 * random.nextInt(lifeTime / 48);
+            animals.add(createAnimal(species, name, energy, level, lifeTime, age));
+        }
+
+        List<Plant> plants = new ArrayList<>(population * 2);
+        for (int i = 0; i < population * 2; i++) {
+            Object[] row = PLANTS[random.nextInt(PLANTS.length)];
+            plants.add(new Plant((String) row[0], random.nextInt(18), (int) row[1], (int) row[2]));
+        }
+        return new Ecosystem(18, 40, 1000000, animals, plants);
+    }
+
+    /**
+     * Creates a deep copy of an ecosystem, so that a tick can be measured on a fresh state.
+     *
+     * @param ecosystem The ecosystem to copy.
+     * @return A new ecosystem with copies of all animals and plants.
+     */
+    public static Ecosystem copy(Ecosystem ecosystem) {
+        List<Animal> animals = new ArrayList<>(ecosystem.getAnimals().size());
+        for (Animal animal : ecosystem.getAnimals()) {
+            Animal copy;
+            if (animal instanceof Carnivore) {
+                copy = new Carnivore(animal.getName(), animal.getEnergy(), animal.getFoodChainLevel(),
+                        animal.getLifeTime(), animal.getCurrentLifeTime());
+            } else if (animal instanceof Omnivore) {
+                copy = new Omnivore(animal.getName(), animal.getEnergy(), animal.getFoodChainLevel(),
+                        animal.getLifeTime(), animal.getCurrentLifeTime());
+            } else {
+                copy = new Herbivore(animal.getName(), animal.getEnergy(), animal.getFoodChainLevel(),
+                        animal.getLifeTime(), animal.getCurrentLifeTime());
+            }
+            copy.setEaten(animal.isEaten());
+            animals.add(copy);
+        }
+        List<Plant> plants = new ArrayList<>(ecosystem.getPlants().size());
+        for (Plant plant : ecosystem.getPlants()) {
+            Plant copy = new Plant(plant.getName(), plant.getGrowthLevel(), plant.getWaterNeeds(), plant.getOptimalTemperature());
+            copy.setEaten(plant.isEaten());
+            plants.add(copy);
+        }
+        return new Ecosystem(ecosystem.getTemperature(), ecosystem.getHumidity(), ecosystem.getWaterAmount(), animals, plants);
+    }
+
+    /**
+     * Writes an ecosystem as a scenario file in the format accepted by
+     * {@link ecosystem.utils.FileManager#loadEcosystem}, one line per entity.
+     *
+     * @param ecosystem The ecosystem to write.
+     * @param path The scenario file to create.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void writeScenario(Ecosystem ecosystem, Path path) throws IOException {
+        String[] levels = {"", "primary", "secondary", "tertiary"};
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("Temperature: " + ecosystem.getTemperature());
+            writer.newLine();
+            writer.write("Humidity: " + ecosystem.getHumidity());
+            writer.newLine();
+            writer.write("Water amount: " + ecosystem.getWaterAmount());
+            writer.newLine();
+            writer.write("Animals:");
+            writer.newLine();
+            int number = 0;
+            for (Animal animal : ecosystem.getAnimals()) {
+                writer.write(++number + ". Name: " + animal.getName() +
+                        ", Species: " + animal.getClass().getSimpleName().toLowerCase() +
+                        ", Food chain level: " + levels[animal.getFoodChainLevel()] +
+                        ", Energy: " + animal.getEnergy() +
+                        ", Average lifespan: " + animal.getLifeTime() +
+                        " hours, Age: " + animal.getCurrentLifeTime() + " hours, Quantity: 1");
+                writer.newLine();
+            }
+            writer.write("plants:");
+            writer.newLine();
+            number = 0;
+            for (Plant plant : ecosystem.getPlants()) {
+                writer.write(++number + ". Name: " + plant.getName() +
+                        ", Growth level: " + plant.getGrowthLevel() +
+                        ", Water needs: " + plant.getWaterNeeds() +
+                        " per day, Optimal temperature: " + plant.getOptimalTemperature() +
+                        " degrees, Quantity: 1");
+                writer.newLine();
+            }
+        }
+    }
+
+    private static Animal createAnimal(Object[][] species, String name, int energy, int level, int lifeTime, int age) {
+        if (species == CARNIVORES) return new Carnivore(name, energy, level, lifeTime, age);
+        if (species == OMNIVORES) return new Omnivore(name, energy, level, lifeTime, age);
+        return new Herbivore(name, energy, level, lifeTime, age);
+    }
+}
@@ -0,0 +1,161 @@
+package ecosystem.benchmarks;
+
+import ecosystem.Ecosystem;
+import ecosystem.utils.FileManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures loading and saving of scenario files through {@link FileManager}. Scenario files of
+ * increasing size are generated in a temporary directory; the results are reported as megabytes
+ * and entities processed per second through auxiliary counters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileManagerBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int animals;
+
+    private Path directory;
+    private Path scenario;
+    private Path output;
+    private Ecosystem ecosystem;
+    private long scenarioBytes;
+    private long savedBytes;
+    private int entities;
+    private List<String> animalLines;
+    private List<String> plantLines;
+    private long animalLineBytes;
+    private long plantLineBytes;
+    private PrintStream originalOut;
+
+    /**
+     * Processed volume of the last invocations, reported by JMH as a rate per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Volume {
+        public double megabytes;
+        public long entities;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            entities = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void generateScenario() throws IOException {
+        // FileManager reports every load and save on the console
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        directory = Files.createTempDirectory("ecosystem-benchmark");
+        scenario = directory.resolve("scenario.txt");
+        output = directory.resolve("saved.txt");
+        EcosystemFixtures.writeScenario(EcosystemFixtures.generate(animals, "balanced", 0.2, 42), scenario);
+        scenarioBytes = Files.size(scenario);
+
+        ecosystem = FileManager.loadEcosystem(scenario.toString());
+        if (ecosystem == null) throw new IllegalStateException("The generated scenario cannot be loaded");
+        entities = ecosystem.getAnimals().size() + ecosystem.getPlants().size();
+        FileManager.saveEcosystem(ecosystem, output.toString());
+        savedBytes = Files.size(output);
+
+        // The extractors receive lower-cased lines, exactly as during loading
+        animalLines = new ArrayList<>();
+        plantLines = new ArrayList<>();
+        List<String> current = null;
+        for (String line : Files.readAllLines(scenario)) {
+            String lower = line.toLowerCase();
+            if (lower.equals("animals:")) {
+                current = animalLines;
+            } else if (lower.equals("plants:")) {
+                current = plantLines;
+            } else if (current != null) {
+                current.add(lower);
+            }
+        }
+        animalLineBytes = bytes(animalLines);
+        plantLineBytes = bytes(plantLines);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteScenario() throws IOException {
+        System.setOut(originalOut);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Ecosystem loadEcosystem(Volume volume) {
+        Ecosystem loaded = FileManager.loadEcosystem(scenario.toString());
+        volume.megabytes += scenarioBytes / 1e6;
+        volume.entities += entities;
+        return loaded;
+    }
+
+    @Benchmark
+    public void saveEcosystem(Volume volume) {
+        FileManager.saveEcosystem(ecosystem, output.toString());
+        volume.megabytes += savedBytes / 1e6;
+        volume.entities += entities;
+    }
+
+    @Benchmark
+    public void extractAnimal(Volume volume, Blackhole blackhole) {
+        int n = 0;
+        for (String line : animalLines) {
+            blackhole.consume(FileManager.extractAnimal(line, ++n));
+        }
+        volume.megabytes += animalLineBytes / 1e6;
+        volume.entities += animalLines.size();
+    }
+
+    @Benchmark
+    public void extractPlant(Volume volume, Blackhole blackhole) {
+        int n = 0;
+        for (String line : plantLines) {
+            blackhole.consume(FileManager.extractPlant(line, ++n));
+        }
+        volume.megabytes += plantLineBytes / 1e6;
+        volume.entities += plantLines.size();
+    }
+
+    /**
+     * The regular expression path shared by all numeric fields, measured on the energy field.
+     */
+    @Benchmark
+    public void extractIntData(Volume volume, Blackhole blackhole) {
+        for (String line : animalLines) {
+            blackhole.consume(FileManager.extractIntData(line, "energy:\\s*([^,]+)\\s*"));
+        }
+        volume.megabytes += animalLineBytes / 1e6;
+        volume.entities += animalLines.size();
+    }
+
+    private static long bytes(List<String> lines) {
+        long total = 0;
+        for (String line : lines) total += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        return total;
+    }
+}
@@ -0,0 +1,108 @@
+package ecosystem.benchmarks;
+
+import ecosystem.store.EntityStore;
+import ecosystem.store.RecordKernels;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the scalar and the vector kernels on the bulk passes of off-heap mode, over animal records
+ * laid out as in the entity store. The vector kernels need the "vector" profile:
+ *     mvn -P benchmarks,vector package
+ * Every pass leaves the records as valid as before, so the records are generated once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RecordKernelBenchmark {
+    private static final int RECORD_INTS = EntityStore.ANIMAL_RECORD_SIZE / 4;
+
+    @Param({"scalar", "vector"})
+    public String kernels;
+
+    @Param({"100000", "1000000"})
+    public int records;
+
+    @Param({"1", "12"})
+    public int types;
+
+    private RecordKernels implementation;
+    private ByteBuffer buffer;
+    private int[] satiated;
+    private int[] rest;
+    private int[] lowest;
+    private int[] highest;
+    private int[] counts;
+
+    @Setup(Level.Trial)
+    public void generateRecords() {
+        implementation = kernels.equals("vector") ? RecordKernels.vector() : RecordKernels.scalar();
+        if (implementation == null) throw new IllegalStateException("The vector kernels are not built, use -P vector.");
+        Random random = new Random(42);
+        buffer = ByteBuffer.allocateDirect(records * RECORD_INTS * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < records; i++) {
+            buffer.putInt(i * RECORD_INTS * 4, random.nextInt(types));
+            buffer.putInt((i * RECORD_INTS + EntityStore.ANIMAL_ENERGY_FIELD) * 4, random.nextInt(200));
+            buffer.putInt((i * RECORD_INTS + EntityStore.ANIMAL_AGE_FIELD) * 4, random.nextInt(5000));
+        }
+        satiated = new int[types];
+        rest = new int[types];
+        for (int type = 0; type < types; type++) {
+            satiated[type] = 105 + type % 2 * 5;
+            rest[type] = 0;
+        }
+        lowest = new int[types];
+        highest = new int[types];
+        Arrays.fill(highest, Integer.MAX_VALUE);
+        counts = new int[types];
+    }
+
+    /**
+     * Ageing of all animals by a day; the ages only grow, which does not change the other passes.
+     */
+    @Benchmark
+    public ByteBuffer addAges() {
+        implementation.add(buffer, 0, RECORD_INTS, records, EntityStore.ANIMAL_AGE_FIELD, 24);
+        return buffer;
+    }
+
+    /**
+     * Resting of the satiated animals, with a rest cost of 0 so that the records stay the same.
+     */
+    @Benchmark
+    public ByteBuffer restSatiated() {
+        implementation.addByType(buffer, 0, RECORD_INTS, records, EntityStore.ANIMAL_ENERGY_FIELD, satiated, rest);
+        return buffer;
+    }
+
+    @Benchmark
+    public int[] countByType() {
+        Arrays.fill(counts, 0);
+        implementation.countByType(buffer, 0, RECORD_INTS, records, counts);
+        return counts;
+    }
+
+    /**
+     * The search for starved animals on a day without any, which scans all records.
+     */
+    @Benchmark
+    public int findDead() {
+        return implementation.nextOutside(buffer, 0, RECORD_INTS, 0, records, EntityStore.ANIMAL_ENERGY_FIELD, lowest, highest);
+    }
+
+    /**
+     * The search for eaten animals on a day without any, which scans all records.
+     */
+    @Benchmark
+    public int findEaten() {
+        return implementation.nextEaten(buffer, 0, RECORD_INTS, 0, records);
+    }
+}
@@ -0,0 +1,123 @@
+package ecosystem.benchmarks;
+
+import ecosystem.Ecosystem;
+import ecosystem.Simulation;
+import ecosystem.entities.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the daily hot paths of the simulation on generated ecosystems. Every iteration starts
+ * from a fresh copy of the fixture and runs a batch of {@value #BATCH} consecutive calls, so the
+ * score is the time of one batch; the copy itself is not measured.
+ * <p>
+ * Outside spatial mode every hunt scans the whole population for prey, so the hunting paths grow
+ * quadratically with the population. Populations of a million animals do not finish in reasonable
+ * time and are left out of the default parameters.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = TickBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = TickBenchmark.BATCH)
+@Fork(1)
+public class TickBenchmark {
+    static final int BATCH = 10;
+
+    @Param({"1000", "10000", "100000"})
+    public int population;
+
+    @Param({"balanced", "grazers", "omnivores"})
+    public String mix;
+
+    @Param({"0.05", "0.2"})
+    public double predatorRatio;
+
+    private final Simulation simulation = new Simulation();
+    private Ecosystem fixture;
+    private Ecosystem ecosystem;
+    private List<Animal> hungryCarnivores;
+    private List<Animal> hungryGrazers;
+
+    @Setup(Level.Trial)
+    public void generateFixture() {
+        fixture = EcosystemFixtures.generate(population, mix, predatorRatio, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void copyFixture() {
+        ecosystem = EcosystemFixtures.copy(fixture);
+        hungryCarnivores = new ArrayList<>();
+        hungryGrazers = new ArrayList<>();
+        for (Animal animal : ecosystem.getAnimals()) {
+            if (animal.getEnergy() >= 100) continue;
+            if (animal instanceof Carnivore) hungryCarnivores.add(animal);
+            if (animal instanceof Herbivore) hungryGrazers.add(animal);
+        }
+    }
+
+    /**
+     * One full simulated day, as performed by {@link Simulation#simulate}.
+     */
+    @Benchmark
+    public Ecosystem simulatedDay() {
+        simulation.simulateDay(ecosystem);
+        return ecosystem;
+    }
+
+    @Benchmark
+    public Ecosystem actAllAnimals() {
+        ecosystem.actAllAnimals(ecosystem);
+        return ecosystem;
+    }
+
+    @Benchmark
+    public Ecosystem growAllPlants() {
+        ecosystem.growAllPlants(ecosystem);
+        return ecosystem;
+    }
+
+    /**
+     * The hunting path: every hungry carnivore acts once.
+     */
+    @Benchmark
+    public Ecosystem huntAnimals() {
+        for (Animal animal : hungryCarnivores) {
+            animal.act(ecosystem);
+        }
+        return ecosystem;
+    }
+
+    /**
+     * The grazing path: every hungry herbivore acts once.
+     */
+    @Benchmark
+    public Ecosystem eatPlant() {
+        for (Animal animal : hungryGrazers) {
+            animal.act(ecosystem);
+        }
+        return ecosystem;
+    }
+
+    @Benchmark
+    public void reproduce(Blackhole blackhole) {
+        for (Animal animal : ecosystem.getAnimals()) {
+            blackhole.consume(animal.reproduce(ecosystem));
+        }
+    }
+
+    /**
+     * The removal passes run by the simulation after growth and action.
+     */
+    @Benchmark
+    public Ecosystem removalPasses() {
+        simulation.removeMinusGrowthPlants(ecosystem);
+        simulation.removeDeadAnimals(ecosystem);
+        simulation.removeOldAnimals(ecosystem);
+        return ecosystem;
+    }
+}
@@ -0,0 +1,169 @@
+package ecosystem;
+
+import ecosystem.entities.Animal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calendar of the days on which animals become old enough to reproduce and on which they die of old age.
+ * Both days are known as soon as an animal is added, since its age grows by exactly 24 hours on every day it
+ * acts, so the animals are filed under these days in two timing wheels and every day only the animals filed
+ * under it are looked at. A wheel has {@value #SLOTS} slots, one per day; an animal filed further ahead waits
+ * in its slot and is passed over once per turn of the wheel.
+ * <p>
+ * An animal whose age was changed otherwise is checked again when its day comes and filed anew.
+ * The ecosystem keeps the calendar while it holds single entity objects, that is outside of cohort and off-heap mode.
+ */
+class AgeCalendar {
+    private static final int SLOTS = 256;
+
+    private final Map<Animal, Entry> entries = new IdentityHashMap<>();
+    private final List<List<Entry>> maturing = slots();
+    private final List<List<Entry>> dying = slots();
+    private final List<Animal> adults = new ArrayList<>();
+    private final List<Entry> expired = new ArrayList<>();
+    // The emptied list of the slot handled last, which takes the place of the next slot's list
+    private List<Entry> spare = new ArrayList<>();
+    // The number of days the animals have acted since the calendar was started
+    private long day;
+
+    private static final class Entry {
+        final Animal animal;
+        boolean live = true;
+        long matureDay;
+        long deathDay;
+        int adultIndex = -1;
+        boolean expired;
+
+        Entry(Animal animal) {
+            this.animal = animal;
+        }
+    }
+
+    private static List<List<Entry>> slots() {
+        List<List<Entry>> slots = new ArrayList<>(SLOTS);
+        for (int i = 0; i < SLOTS; i++) slots.add(new ArrayList<>());
+        return slots;
+    }
+
+    /**
+     * Files all animals anew.
+     *
+     * @param animals The animals of the ecosystem.
+     */
+    void rebuild(List<Animal> animals) {
+        entries.clear();
+        for (List<Entry> slot : maturing) slot.clear();
+        for (List<Entry> slot : dying) slot.clear();
+        adults.clear();
+        expired.clear();
+        for (Animal animal : animals) add(animal);
+    }
+
+    void add(Animal animal) {
+        Entry entry = new Entry(animal);
+        Entry previous = entries.put(animal, entry);
+        if (previous != null) drop(previous);
+        fileMaturity(entry);
+        fileDeath(entry);
+    }
+
+    void remove(Animal animal) {
+        Entry entry = entries.remove(animal);
+        if (entry != null) drop(entry);
+    }
+
+    private void drop(Entry entry) {
+        entry.live = false;
+        if (entry.adultIndex < 0) return;
+        // The last adult takes the place of the removed one
+        Animal last = adults.remove(adults.size() - 1);
+        if (last != entry.animal) {
+            adults.set(entry.adultIndex, last);
+            entries.get(last).adultIndex = entry.adultIndex;
+        }
+        entry.adultIndex = -1;
+    }
+
+    /**
+     * Returns the animals that are old enough to reproduce, in no particular order.
+     */
+    List<Animal> getAdults() {
+        return adults;
+    }
+
+    /**
+     * Moves the calendar to the next day, after all animals have acted.
+     */
+    void advance() {
+        day++;
+        int slot = (int) (day % SLOTS);
+
+        List<Entry> due = maturing.set(slot, spare);
+        for (Entry entry : due) {
+            if (!entry.live || entry.adultIndex >= 0) continue;
+            if (entry.matureDay != day) {
+                // Filed for a later turn of the wheel, or a stale copy from before the entry was filed anew
+                if (entry.matureDay > day && entry.matureDay % SLOTS == slot) maturing.get(slot).add(entry);
+                continue;
+            }
+            fileMaturity(entry);
+        }
+        due.clear();
+
+        due = dying.set(slot, due);
+        for (Entry entry : due) {
+            if (!entry.live || entry.expired) continue;
+            if (entry.deathDay != day) {
+                if (entry.deathDay > day && entry.deathDay % SLOTS == slot) dying.get(slot).add(entry);
+                continue;
+            }
+            fileDeath(entry);
+        }
+        due.clear();
+        spare = due;
+    }
+
+    /**
+     * Returns the animals that have outlived their lifetime and are still in the ecosystem.
+     */
+    List<Animal> getExpired() {
+        expired.removeIf(entry -> !entry.live);
+        List<Animal> animals = new ArrayList<>(expired.size());
+        for (Entry entry : expired) animals.add(entry.animal);
+        return animals;
+    }
+
+    /**
+     * Makes an animal an adult if it is old enough, otherwise files it under the day on which it will be.
+     */
+    private void fileMaturity(Entry entry) {
+        int age = entry.animal.getCurrentLifeTime();
+        if (age >= Animal.ADULT_AGE) {
+            entry.adultIndex = adults.size();
+            adults.add(entry.animal);
+            return;
+        }
+        entry.matureDay = day + (Animal.ADULT_AGE - age + 23) / 24;
+        maturing.get((int) (entry.matureDay % SLOTS)).add(entry);
+    }
+
+    /**
+     * Marks an animal as expired if it has outlived its lifetime, otherwise files it under the day after
+     * whose actions it will have.
+     */
+    private void fileDeath(Entry entry) {
+        int age = entry.animal.getCurrentLifeTime();
+        int lifeTime = entry.animal.getLifeTime();
+        if (age > lifeTime) {
+            entry.expired = true;
+            expired.add(entry);
+            return;
+        }
+        entry.deathDay = day + (lifeTime - age) / 24 + 1;
+        dying.get((int) (entry.deathDay % SLOTS)).add(entry);
+    }
+}
@@ -0,0 +1,82 @@
+package ecosystem;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs simulations on a dedicated thread, so the console can show the progress and cancel a run while it goes on.
+ * One run is active at a time. The progress is read from the snapshots the simulation publishes after every day,
+ * and a cancelled run stops at the end of the current day.
+ */
+public class BackgroundSimulation implements AutoCloseable {
+    private final Simulation simulation;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "ecosystem-simulation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<Integer> run;
+    private volatile boolean cancelled;
+
+    public BackgroundSimulation(Simulation simulation) {
+        this.simulation = simulation;
+    }
+
+    /**
+     * Starts a run. The ecosystem must not be touched by other threads until the run is over.
+     *
+     * @param ecosystem The ecosystem to be simulated.
+     * @param simulationTime The duration of the simulation, in hours.
+     */
+    public void start(Ecosystem ecosystem, int simulationTime) {
+        if (run != null && !run.isDone()) throw new IllegalStateException("A simulation is already running.");
+        cancelled = false;
+        run = executor.submit(() -> simulation.simulate(ecosystem, simulationTime, () -> cancelled));
+    }
+
+    /**
+     * Asks the current run to stop at the end of the day being simulated.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Returns the progress of the current or the last run, see {@link Simulation#getProgress}.
+     */
+    public SimulationProgress getProgress() {
+        return simulation.getProgress();
+    }
+
+    /**
+     * Waits for the current run to end, at most for the given time.
+     *
+     * @param timeout The longest time to wait, in milliseconds.
+     * @return The number of days simulated, or -1 if the run is not over yet.
+     * @throws InterruptedException if the waiting thread is interrupted.
+     * @throws IllegalStateException if the run failed; the exception of the run is the cause.
+     */
+    public int await(long timeout) throws InterruptedException {
+        if (run == null) throw new IllegalStateException("No simulation was started.");
+        try {
+            return run.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return -1;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The simulation failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    /**
+     * Cancels the current run and stops the thread once it is over.
+     */
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdown();
+    }
+}
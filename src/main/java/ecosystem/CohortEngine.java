@@ -0,0 +1,550 @@
+package ecosystem;
+
+import ecosystem.entities.*;
+import ecosystem.metrics.TickPhase;
+import ecosystem.metrics.TickProfiler;
+import ecosystem.utils.LogFormer;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Daily actions of an ecosystem in cohort mode, where one animal or plant object stands for
+ * {@code getQuantity()} identical individuals.
+ * <p>
+ * The random decisions that the entity classes make for every individual (reproduction, hunting,
+ * the choice between hunting and grazing, the number of seeds) are drawn here once per cohort as binomial
+ * counts, and water, plants and prey are handed out in the same order as in the individual mode.
+ * A cohort is split only when its members end up in different states, and cohorts with equal state
+ * are merged again at the end of every phase, so the work per day depends on the number of distinct
+ * states rather than on the number of individuals.
+ */
+class CohortEngine {
+    private static final int SMALL_SAMPLE = 32;
+
+    private final Ecosystem ecosystem;
+    private final Random random = new Random(new SecureRandom().nextLong());
+
+    // Split-off cohorts of animals that already acted during the current day
+    private final Set<Animal> acted = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    CohortEngine(Ecosystem ecosystem) {
+        this.ecosystem = ecosystem;
+    }
+
+    /**
+     * Cohort version of {@link Ecosystem#growAllPlants}: ripe cohorts leave seeds, then every cohort
+     * drinks and grows, and the members that found no water wilt.
+     */
+    void growAllPlants() {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        List<Plant> plants = ecosystem.getPlants();
+
+        long phaseStart = TickProfiler.start();
+        ecosystem.removePlantsIf(Plant::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        // Every ripe plant wilts and leaves seeds with the probabilities of Plant.seedProbability
+        phaseStart = TickProfiler.start();
+        List<Plant> seeds = new ArrayList<>();
+        int seedCount = 0;
+        for (Plant plant : plants) {
+            if (plant.getGrowthLevel() < Plant.SEED_GROWTH_LEVEL || plant.isEaten()) continue;
+            int parents = plant.getQuantity();
+            int count = seeds(parents);
+            plant.setEaten(true);
+            Plant seed = new Plant(plant.getName(), 0, plant.getWaterNeeds(), plant.getOptimalTemperature());
+            seed.setQuantity(count);
+            seeds.add(seed);
+            seedCount += count;
+            LogFormer.writeLogFile(parents + " " + plant.getName() + " wilt and leave " + count + " seeds.");
+        }
+        ecosystem.addPlants(seeds);
+        TickProfiler.stop(TickPhase.PLANT_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(0, seedCount);
+
+        phaseStart = TickProfiler.start();
+        int size = plants.size();
+        for (int i = 0; i < size; i++) {
+            Plant plant = plants.get(i);
+            if (plant.isEaten()) continue;
+
+            // Plants drink one after another while the water lasts
+            int count = plant.getQuantity();
+            int needs = plant.getWaterNeeds();
+            int watered = ecosystem.getWaterBudget().reserve(count, needs);
+
+            Plant dry = plant;
+            if (watered > 0 && watered < count) {
+                dry = splitPlant(plant, count - watered);
+                plants.add(dry);
+            }
+            if (watered > 0) {
+                int delta = Plant.getGrowthDelta(ecosystem.getTemperature(), plant.getOptimalTemperature());
+                plant.setGrowthLevel(plant.getGrowthLevel() + delta);
+                statistics.plantChanged(plant, delta);
+                LogFormer.writeLogFile(watered + " " + plant.getName() + " grow by " + delta + ".");
+            }
+            if (watered < count) {
+                dry.setGrowthLevel(dry.getGrowthLevel() - 1);
+                statistics.plantChanged(dry, -1);
+                LogFormer.writeLogFile((count - watered) + " " + plant.getName() + " wilt due to lack of water.");
+            }
+        }
+        TickProfiler.stop(TickPhase.PLANT_GROWTH, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        ecosystem.removePlantsIf(Plant::isEaten);
+        mergePlants();
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+    }
+
+    /**
+     * Cohort version of {@link Ecosystem#actAllAnimals}: reproduction, then drinking, resting,
+     * grazing and hunting of every cohort in list order.
+     */
+    void actAllAnimals() {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        List<Animal> animals = ecosystem.getAnimals();
+
+        long phaseStart = TickProfiler.start();
+        ecosystem.removeAnimalsIf(Animal::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        // Reproduction: the number of parents of a cohort is binomial, the newborns form one new cohort
+        phaseStart = TickProfiler.start();
+        List<Animal> newborns = new ArrayList<>();
+        int births = 0;
+        int size = animals.size();
+        for (int i = 0; i < size; i++) {
+            Animal animal = animals.get(i);
+            if (animal.isEaten() || animal.getEnergy() < Animal.FULL_ENERGY || animal.getCurrentLifeTime() < Animal.ADULT_AGE) continue;
+            if (statistics.getSpeciesCount(animal.getName()) < 2) continue;
+            int parents = binomial(animal.getQuantity(), 1 - reproduceChance(animal));
+            if (parents == 0) continue;
+            Animal cohort = animal;
+            if (parents < animal.getQuantity()) {
+                cohort = splitAnimal(animal, parents);
+                animals.add(cohort);
+            }
+            int cost = energyCost(cohort);
+            cohort.setEnergy(cohort.getEnergy() - cost);
+            statistics.animalChanged(cohort, -cost, 0);
+
+            Animal newborn = cohort.copy();
+            newborn.setEnergy(newbornEnergy(cohort));
+            newborn.setCurrentLifeTime(0);
+            newborns.add(newborn);
+            births += parents;
+        }
+        ecosystem.addAnimals(newborns);
+        TickProfiler.stop(TickPhase.ANIMAL_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(births, 0);
+
+        // Actions; cohorts split off while acting are appended to the list and skipped when reached
+        phaseStart = TickProfiler.start();
+        long uneatenPlants = 0;
+        for (Plant plant : ecosystem.getPlants()) {
+            if (!plant.isEaten()) uneatenPlants += plant.getQuantity();
+        }
+        long[] plants = {uneatenPlants, 0};
+        for (int i = 0; i < animals.size(); i++) {
+            Animal animal = animals.get(i);
+            if (acted.remove(animal)) continue;
+            act(animals, i, plants);
+        }
+        acted.clear();
+        eatPlants(plants[1]);
+        TickProfiler.stop(TickPhase.ANIMAL_ACTION, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        ecosystem.removeAnimalsIf(Animal::isEaten);
+        mergeAnimals();
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+    }
+
+    /**
+     * One day of actions of a cohort, as in the {@code act} methods of the animals.
+     *
+     * @param animals The animals of the ecosystem.
+     * @param index The index of the acting cohort.
+     * @param plants The number of uneaten plants and the number of plants eaten so far.
+     */
+    private void act(List<Animal> animals, int index, long[] plants) {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        Animal animal = animals.get(index);
+        statistics.animalRemoved(animal);
+        animal.setCurrentLifeTime(animal.getCurrentLifeTime() + 24);
+
+        // Animals drink one after another while the water lasts
+        int count = animal.getQuantity();
+        int needs = animal.getWaterNeeds();
+        int drinking = ecosystem.getWaterBudget().reserve(count, needs);
+        if (drinking < count) LogFormer.writeLogFile((count - drinking) + " " + animal.getName() + " cannot find water.");
+
+        // Outcomes as pairs of member count and energy
+        Outcomes outcomes = new Outcomes();
+        feed(animal, animals, index, drinking, animal.getEnergy(), plants, outcomes);
+        feed(animal, animals, index, count - drinking, animal.getEnergy() - thirstPenalty(animal), plants, outcomes);
+
+        // The cohort keeps the first outcome, the others split off
+        animal.setQuantity(outcomes.counts.get(0));
+        animal.setEnergy(outcomes.energies.get(0));
+        statistics.animalAdded(animal);
+        for (int k = 1; k < outcomes.counts.size(); k++) {
+            Animal part = animal.copy();
+            part.setQuantity(outcomes.counts.get(k));
+            part.setEnergy(outcomes.energies.get(k));
+            statistics.animalAdded(part);
+            animals.add(part);
+            acted.add(part);
+        }
+    }
+
+    /**
+     * Feeding of the members of a cohort that share the same energy after drinking.
+     */
+    private void feed(Animal animal, List<Animal> animals, int index, int count, int energy, long[] plants, Outcomes outcomes) {
+        if (count == 0) return;
+        if (energy >= Animal.FULL_ENERGY) {
+            outcomes.add(count, energy - Animal.REST_COST);
+            return;
+        }
+        LogFormer.writeLogFile(count + " " + animal.getName() + " explore the area in search of food.");
+        int hunters = switch (animal.getKind()) {
+            case CARNIVORE -> count;
+            case OMNIVORE -> binomial(count, SpeciesTraits.huntProbability(animal.getTraits()));
+            default -> 0;
+        };
+        int grazers = count - hunters;
+        if (grazers > 0) {
+            // Every grazer eats one uneaten plant while there are any
+            int fed = (int) Math.min(grazers, plants[0]);
+            plants[0] -= fed;
+            plants[1] += fed;
+            outcomes.add(fed, energy + plantEnergy(animal));
+            outcomes.add(grazers - fed, energy - noPlantPenalty(animal));
+        }
+        if (hunters > 0) hunt(animal, animals, index, hunters, energy, outcomes);
+    }
+
+    /**
+     * Hunting of a group of members of a cohort, as in the {@code huntAnimals} methods.
+     */
+    private void hunt(Animal predator, List<Animal> animals, int index, int hunters, int energy, Outcomes outcomes) {
+        boolean carnivore = predator.getKind() == AnimalKind.CARNIVORE;
+        int traits = predator.getTraits();
+        double success = SpeciesTraits.huntSuccess(traits);
+        int gain = SpeciesTraits.huntEnergyGain(traits);
+        int escapePenalty = SpeciesTraits.escapePenalty(traits);
+        int noPreyPenalty = SpeciesTraits.noPreyPenalty(traits);
+
+        // Prey: other species on the same or a lower food chain level
+        long available = 0, eligible = 0;
+        for (Animal prey : animals) {
+            if (!isPrey(predator, prey)) continue;
+            eligible += prey.getQuantity();
+            if (!prey.isEaten()) available += prey.getQuantity();
+        }
+        if (available == 0) {
+            outcomes.add(hunters, energy - noPreyPenalty);
+            return;
+        }
+
+        int successes = binomial(hunters, success);
+        int failures = hunters - successes;
+        int noPrey = 0;
+        if (carnivore && successes > available) {
+            // Carnivores only choose uneaten prey: once it is gone, the remaining hunters find nothing
+            int used = (int) Math.min(hunters, Math.round(available / success));
+            successes = (int) available;
+            failures = Math.max(0, used - successes);
+            noPrey = hunters - successes - failures;
+        }
+        outcomes.add(successes, energy + gain);
+        outcomes.add(failures, energy - escapePenalty);
+        outcomes.add(noPrey, energy - noPreyPenalty);
+
+        // Carnivores pick among the uneaten prey, omnivores among all eligible prey,
+        // so their strikes at already eaten animals change nothing
+        long pool = carnivore ? available : eligible;
+        int strikes = successes;
+        for (int j = 0; j < animals.size() && strikes > 0 && pool > 0; j++) {
+            Animal prey = animals.get(j);
+            if (!isPrey(predator, prey) || (carnivore && prey.isEaten())) continue;
+            int quantity = prey.getQuantity();
+            int hits = quantity >= pool ? strikes : binomial(strikes, (double) quantity / pool);
+            pool -= quantity;
+            strikes -= hits;
+            if (prey.isEaten() || hits == 0) continue;
+            hits = Math.min(hits, quantity);
+            LogFormer.writeLogFile(predator.getName() + " successfully hunts for " + hits + " " + prey.getName());
+            if (hits == quantity) {
+                prey.setEaten(true);
+            } else {
+                // Eaten members still act today if their cohort has not acted yet
+                Animal eaten = splitAnimal(prey, hits);
+                eaten.setEaten(true);
+                animals.add(eaten);
+                if (j <= index || acted.contains(prey)) acted.add(eaten);
+            }
+        }
+    }
+
+    /**
+     * Marks the plants eaten during the day. Every grazer chose a uniformly random uneaten plant,
+     * so the eaten plants are a uniformly random subset of the uneaten ones.
+     */
+    private void eatPlants(long eaten) {
+        List<Plant> plants = ecosystem.getPlants();
+        long pool = 0;
+        for (Plant plant : plants) {
+            if (!plant.isEaten()) pool += plant.getQuantity();
+        }
+        int size = plants.size();
+        for (int i = 0; i < size && eaten > 0 && pool > 0; i++) {
+            Plant plant = plants.get(i);
+            if (plant.isEaten()) continue;
+            int quantity = plant.getQuantity();
+            int count = (int) Math.min(quantity, quantity >= pool ? eaten : hypergeometric(eaten, quantity, pool));
+            pool -= quantity;
+            eaten -= count;
+            if (count == 0) continue;
+            if (count == quantity) {
+                plant.setEaten(true);
+            } else {
+                Plant part = splitPlant(plant, count);
+                part.setEaten(true);
+                plants.add(part);
+            }
+        }
+    }
+
+    /**
+     * Merges animal cohorts with equal state. The counters of the statistics do not change.
+     */
+    void mergeAnimals() {
+        Map<AnimalState, Animal> cohorts = new HashMap<>();
+        ecosystem.getAnimals().removeIf(animal -> {
+            Animal cohort = cohorts.putIfAbsent(new AnimalState(animal), animal);
+            if (cohort == null) return false;
+            cohort.setQuantity(cohort.getQuantity() + animal.getQuantity());
+            ecosystem.getStatistics().animalMerged(animal);
+            return true;
+        });
+    }
+
+    /**
+     * Merges plant cohorts with equal state. The counters of the statistics do not change.
+     */
+    void mergePlants() {
+        Map<PlantState, Plant> cohorts = new HashMap<>();
+        ecosystem.getPlants().removeIf(plant -> {
+            Plant cohort = cohorts.putIfAbsent(new PlantState(plant), plant);
+            if (cohort == null) return false;
+            cohort.setQuantity(cohort.getQuantity() + plant.getQuantity());
+            ecosystem.getStatistics().plantMerged(plant);
+            return true;
+        });
+    }
+
+    /**
+     * Moves members of a cohort into a new cohort with the same state. The counters of the statistics do not change.
+     */
+    private Animal splitAnimal(Animal animal, int count) {
+        Animal part = animal.copy();
+        part.setQuantity(count);
+        animal.setQuantity(animal.getQuantity() - count);
+        ecosystem.getStatistics().animalSplit(part);
+        return part;
+    }
+
+    private Plant splitPlant(Plant plant, int count) {
+        Plant part = plant.copy();
+        part.setQuantity(count);
+        plant.setQuantity(plant.getQuantity() - count);
+        ecosystem.getStatistics().plantSplit(part);
+        return part;
+    }
+
+    static boolean isPrey(Animal predator, Animal prey) {
+        return !Objects.equals(prey.getName(), predator.getName()) && prey.getFoodChainLevel() <= predator.getFoodChainLevel();
+    }
+
+    static double reproduceChance(Animal animal) {
+        return SpeciesTraits.reproduceChance(animal.getTraits());
+    }
+
+    static int energyCost(Animal animal) {
+        return SpeciesTraits.reproduceEnergyCost(animal.getTraits());
+    }
+
+    static int newbornEnergy(Animal animal) {
+        return SpeciesTraits.newbornEnergy(animal.getTraits());
+    }
+
+    static int thirstPenalty(Animal animal) {
+        return SpeciesTraits.thirstPenalty(animal.getTraits());
+    }
+
+    static int plantEnergy(Animal animal) {
+        return SpeciesTraits.plantEnergy(animal.getTraits());
+    }
+
+    static int noPlantPenalty(Animal animal) {
+        return SpeciesTraits.noPlantPenalty(animal.getTraits());
+    }
+
+    /**
+     * Draws the total number of seeds left by the given number of ripe plants, one binomial draw per possible
+     * number of seeds.
+     */
+    private int seeds(int parents) {
+        int count = 0;
+        double left = 1;
+        int most = Plant.MIN_SEEDS + Plant.SEED_DRAWS - 1;
+        for (int seeds = Plant.MIN_SEEDS; seeds <= most && parents > 0; seeds++) {
+            double probability = Plant.seedProbability(seeds);
+            int plants = seeds == most ? parents : binomial(parents, probability / left);
+            count += seeds * plants;
+            parents -= plants;
+            left -= probability;
+        }
+        return count;
+    }
+
+    /**
+     * Draws the number of successes among {@code n} trials with probability {@code p}.
+     * Small samples are drawn exactly, large ones with the Poisson or normal approximation.
+     */
+    int binomial(int n, double p) {
+        if (n <= 0 || p <= 0) return 0;
+        if (p >= 1) return n;
+        if (n <= SMALL_SAMPLE) {
+            int successes = 0;
+            for (int i = 0; i < n; i++) {
+                if (random.nextDouble() < p) successes++;
+            }
+            return successes;
+        }
+        double mean = n * p;
+        double variance = mean * (1 - p);
+        if (variance < 9) {
+            return p <= 0.5 ? Math.min(n, poisson(mean)) : n - Math.min(n, poisson(n * (1 - p)));
+        }
+        long successes = Math.round(mean + Math.sqrt(variance) * random.nextGaussian());
+        return (int) Math.max(0, Math.min(n, successes));
+    }
+
+    /**
+     * Draws how many of {@code draws} picks without replacement from {@code total} items hit a group of {@code size}.
+     */
+    private long hypergeometric(long draws, int size, long total) {
+        if (draws <= SMALL_SAMPLE) {
+            long hits = 0;
+            long remaining = size;
+            for (long i = 0; i < draws && remaining > 0; i++, total--) {
+                if (random.nextDouble() * total < remaining) {
+                    hits++;
+                    remaining--;
+                }
+            }
+            return hits;
+        }
+        double p = (double) size / total;
+        double mean = draws * p;
+        double variance = mean * (1 - p) * (total - draws) / Math.max(1, total - 1);
+        long hits = Math.round(mean + Math.sqrt(Math.max(0, variance)) * random.nextGaussian());
+        return Math.max(0, Math.min(Math.min(size, draws), hits));
+    }
+
+    private int poisson(double mean) {
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            count++;
+            product *= random.nextDouble();
+        }
+        return count;
+    }
+
+    /**
+     * Member counts and energies of the parts of an acting cohort.
+     */
+    private static class Outcomes {
+        final List<Integer> counts = new ArrayList<>(4);
+        final List<Integer> energies = new ArrayList<>(4);
+
+        void add(int count, int energy) {
+            if (count <= 0) return;
+            int existing = energies.indexOf(energy);
+            if (existing >= 0) {
+                counts.set(existing, counts.get(existing) + count);
+            } else {
+                counts.add(count);
+                energies.add(energy);
+            }
+        }
+    }
+
+    /**
+     * State of an animal cohort that must match for two cohorts to merge.
+     */
+    private static final class AnimalState {
+        final Animal animal;
+
+        AnimalState(Animal animal) {
+            this.animal = animal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof AnimalState)) return false;
+            Animal other = ((AnimalState) o).animal;
+            return animal.getClass() == other.getClass() && animal.getEnergy() == other.getEnergy()
+                    && animal.getCurrentLifeTime() == other.getCurrentLifeTime() && animal.getLifeTime() == other.getLifeTime()
+                    && animal.getFoodChainLevel() == other.getFoodChainLevel() && animal.isEaten() == other.isEaten()
+                    && animal.getName().equals(other.getName());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(animal.getName(), animal.getEnergy(), animal.getCurrentLifeTime(), animal.getLifeTime(),
+                    animal.getFoodChainLevel());
+        }
+    }
+
+    /**
+     * State of a plant cohort that must match for two cohorts to merge.
+     */
+    private static final class PlantState {
+        final Plant plant;
+
+        PlantState(Plant plant) {
+            this.plant = plant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PlantState)) return false;
+            Plant other = ((PlantState) o).plant;
+            return plant.getGrowthLevel() == other.getGrowthLevel() && plant.getWaterNeeds() == other.getWaterNeeds()
+                    && plant.getOptimalTemperature() == other.getOptimalTemperature() && plant.isEaten() == other.isEaten()
+                    && plant.getName().equals(other.getName());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(plant.getName(), plant.getGrowthLevel(), plant.getWaterNeeds(), plant.getOptimalTemperature());
+        }
+    }
+}
@@ -1,27 +1,79 @@
 package ecosystem;
 
 import ecosystem.entities.*;
+import ecosystem.metrics.TickPhase;
+import ecosystem.metrics.TickProfiler;
+import ecosystem.spatial.SpatialGrid;
+import ecosystem.store.EntityStore;
+import ecosystem.utils.LogFormer;
+
+import java.io.IOException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class Ecosystem {
+    // The limits of the climate
+    public static final int MIN_TEMPERATURE = -30;
+    public static final int MAX_TEMPERATURE = 38;
+    public static final int MAX_HUMIDITY = 100;
+    public static final int MAX_WATER = 1000000;
+    // The bounds of the random weather changes of callRain, callSunnyDay and callCloudyDay
+    public static final int TEMPERATURE_CHANGE = 2;
+    public static final int HUMIDITY_CHANGE = 3;
+    public static final int RAIN_WATER = 50000;
+    public static final int SUNNY_DAY_WATER = 50000;
+    public static final int CLOUDY_DAY_WATER = 20000;
+
     private final SecureRandom secureRandom = new SecureRandom();
 
     private List<Animal> animals;
     private List<Plant> plants;
     private int temperature;
     private int humidity;
-    private int waterAmount;
+    private final WaterBudget water;
+    private final PopulationStatistics statistics = new PopulationStatistics();
+    private final CohortEngine cohortEngine = new CohortEngine(this);
+    private boolean cohortMode;
+    private OrderedViews orderedViews;
+    private SpatialGrid grid;
+    private ParallelTick parallelTick;
+    private EntityStore store;
+    private OffHeapEngine offHeapEngine;
+    // Maturity and old age of single entities, null in cohort and off-heap mode
+    private AgeCalendar ageCalendar = new AgeCalendar();
+    // The number of resting animals of the current day that found no water, by species
+    private final Map<String, Integer> thirsty = new LinkedHashMap<>();
+    private final PlantClasses plantClasses = new PlantClasses();
+    // Dead entities for reuse, and the births of the current day
+    private final EntityPool pool = new EntityPool();
+    private final List<Animal> births = new ArrayList<>();
+    private final List<Plant> seeds = new ArrayList<>();
+    private final FastForward fastForward = new FastForward(this);
 
     public Ecosystem(int temperature, int humidity, int waterAmount, List<Animal> animals, List<Plant> plants) {
         this.animals = animals;
         this.plants = plants;
+        statistics.rebuildAnimals(animals);
+        statistics.rebuildPlants(plants);
+        ageCalendar.rebuild(animals);
         this.temperature = temperature;
         this.humidity = humidity;
-        this.waterAmount = waterAmount;
+        water = new WaterBudget(waterAmount);
     }
 
 
@@ -33,24 +85,530 @@ public class Ecosystem {
         return humidity;
     }
 
+    /**
+     * Returns the total amount of water; in spatial mode it is the sum over all cells.
+     */
     public int getWaterAmount() {
-        return waterAmount;
+        return (int) water.getAmount();
+    }
+
+    /**
+     * Returns the budget from which the entities drink. In spatial mode it follows the total of the cells.
+     */
+    public WaterBudget getWaterBudget() {
+        return water;
+    }
+
+    /**
+     * Returns the temperature of a cell: the weather temperature plus the offset of the cell in spatial mode.
+     *
+     * @param x The column of the cell, ignored outside of spatial mode.
+     * @param y The row of the cell, ignored outside of spatial mode.
+     * @return The temperature.
+     */
+    public int getTemperature(int x, int y) {
+        return grid == null ? temperature : temperature + grid.getTemperatureOffset(x, y);
+    }
+
+    /**
+     * Takes water for an animal or a plant if there is enough: from the whole ecosystem,
+     * or from the cell of the entity in spatial mode.
+     *
+     * @param x The column of the cell, ignored outside of spatial mode.
+     * @param y The row of the cell, ignored outside of spatial mode.
+     * @param amount The amount of water.
+     * @return true if the water was taken.
+     */
+    public boolean takeWater(int x, int y, int amount) {
+        ParallelTick.TileContext context = parallelTick == null ? null : ParallelTick.current();
+        if (context != null) {
+            // Workers only touch their own cells; the totals are updated when the tiles are merged
+            if (!grid.takeCellWater(x, y, amount)) return false;
+            context.waterTaken += amount;
+            return true;
+        }
+        if (grid != null) {
+            if (!grid.takeWater(x, y, amount)) return false;
+            water.consumed(amount);
+            return true;
+        }
+        return water.take(amount);
+    }
+
+    /**
+     * Returns the source of randomness for the decisions of the entities: the generator of the tile
+     * during a parallel tick, otherwise the generator of the ecosystem.
+     */
+    public Random getRandom() {
+        ParallelTick.TileContext context = parallelTick == null ? null : ParallelTick.current();
+        return context != null ? context.random : secureRandom;
     }
 
+    /**
+     * Chooses a random prey for a predator: an animal of another species on the same or a lower
+     * food chain level, anywhere in the ecosystem or, in spatial mode, in the cells around the predator.
+     *
+     * @param predator The hunting animal.
+     * @param uneatenOnly Whether already eaten animals are excluded from the choice.
+     * @return The chosen prey, or null if there is no uneaten prey.
+     */
+    public Animal findPrey(Animal predator, boolean uneatenOnly) {
+        if (grid != null) return grid.findPrey(predator, uneatenOnly, getRandom());
+
+        // Count the number of potential prey that can be hunted
+        long countCanBeHunted = animals.stream()
+                .filter(animal -> isPrey(predator, animal) && !animal.isEaten())
+                .count();
+        if (countCanBeHunted == 0) return null;
+
+        // Randomly select a target until it is valid
+        int animalNumber = secureRandom.nextInt(animals.size());
+        while (!isPrey(predator, animals.get(animalNumber)) || (uneatenOnly && animals.get(animalNumber).isEaten())) {
+            animalNumber = secureRandom.nextInt(animals.size());
+        }
+        return animals.get(animalNumber);
+    }
+
+    /**
+     * Chooses a random uneaten plant for a grazing animal, anywhere in the ecosystem or,
+     * in spatial mode, in the cells around the animal.
+     *
+     * @param grazer The grazing animal.
+     * @return The chosen plant, or null if there is none.
+     */
+    public Plant findPlant(Animal grazer) {
+        if (grid != null) return grid.findPlant(grazer, getRandom());
+
+        // Count the number of uneaten plants
+        long countCanBeEaten = plants.stream().filter(plant -> !plant.isEaten()).count();
+        if (countCanBeEaten == 0) return null;
+
+        // Randomly select a plant until it is not eaten
+        int plantNumber = secureRandom.nextInt(plants.size());
+        while (plants.get(plantNumber).isEaten()) {
+            plantNumber = secureRandom.nextInt(plants.size());
+        }
+        return plants.get(plantNumber);
+    }
+
+    private static boolean isPrey(Animal predator, Animal prey) {
+        return !Objects.equals(prey.getName(), predator.getName()) && prey.getFoodChainLevel() <= predator.getFoodChainLevel();
+    }
+
+    /**
+     * Returns the list of animals. In off-heap mode it is a new list of copies of the records,
+     * and changes to it do not affect the ecosystem.
+     */
     public List<Animal> getAnimals() {
-        return animals;
+        if (store == null) return animals;
+        List<Animal> copies = new ArrayList<>(store.getAnimalCount());
+        for (int i = 0; i < store.getAnimalCount(); i++) copies.add(store.toAnimal(i));
+        return copies;
+    }
+
+    /**
+     * Passes every animal to the action without copying. In off-heap mode the action gets the reused
+     * prototype of the type of each record, which must not be kept after the call.
+     */
+    public void forEachAnimal(Consumer<? super Animal> action) {
+        if (store == null) {
+            animals.forEach(action);
+            return;
+        }
+        for (int i = 0; i < store.getAnimalCount(); i++) action.accept(store.animalView(i));
+    }
+
+    /**
+     * Passes every plant to the action without copying, see {@link #forEachAnimal}.
+     */
+    public void forEachPlant(Consumer<? super Plant> action) {
+        if (store == null) {
+            plants.forEach(action);
+            return;
+        }
+        for (int i = 0; i < store.getPlantCount(); i++) action.accept(store.plantView(i));
     }
 
     public void setAnimals(List<Animal> animals) {
+        if (store != null) {
+            store.clearAnimals();
+            for (Animal animal : animals) store.addAnimal(animal);
+            offHeapEngine.rebuildStatistics();
+            return;
+        }
         this.animals = animals;
+        statistics.rebuildAnimals(animals);
+        if (ageCalendar != null) ageCalendar.rebuild(animals);
     }
 
+    /**
+     * Returns the list of plants. In off-heap mode it is a new list of copies of the records,
+     * and changes to it do not affect the ecosystem.
+     */
     public List<Plant> getPlants() {
-        return plants;
+        if (store == null) return plants;
+        List<Plant> copies = new ArrayList<>(store.getPlantCount());
+        for (int i = 0; i < store.getPlantCount(); i++) copies.add(store.toPlant(i));
+        return copies;
     }
 
     public void setPlants(List<Plant> plants) {
+        if (store != null) {
+            store.clearPlants();
+            for (Plant plant : plants) store.addPlant(plant);
+            offHeapEngine.rebuildStatistics();
+            return;
+        }
         this.plants = plants;
+        statistics.rebuildPlants(plants);
+    }
+
+    /**
+     * Returns the running population statistics. They stay correct as long as entities are added and removed
+     * through the methods of this class, or the lists are replaced with {@link #setAnimals} and {@link #setPlants}.
+     */
+    public PopulationStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the ordered views of the population. They are built on the first call and maintained
+     * incrementally afterwards, so sorted iteration, top-K and range queries need no sorting.
+     * They are not available in off-heap mode, which keeps no entity objects.
+     */
+    public OrderedViews getOrderedViews() {
+        if (store != null) throw new IllegalStateException("Ordered views are not available in off-heap mode.");
+        if (orderedViews == null) {
+            orderedViews = new OrderedViews();
+            statistics.attachViews(orderedViews, animals, plants);
+        }
+        return orderedViews;
+    }
+
+    public boolean isSpatialMode() {
+        return grid != null;
+    }
+
+    /**
+     * Returns the grid of the spatial mode, or null if the ecosystem is not spatial.
+     */
+    public SpatialGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Switches to spatial mode: the world becomes a grid of cells with their own water and temperature,
+     * animals hunt and graze only in the neighbouring cells and hungry animals wander to neighbouring cells.
+     * The water is spread evenly over the cells, and entities without a position inside the grid are placed
+     * at random. Cohort mode is switched off, since every entity needs its own position.
+     *
+     * @param width The number of columns.
+     * @param height The number of rows.
+     */
+    public void enableSpatialMode(int width, int height) {
+        enableSpatialMode(new SpatialGrid(width, height, getWaterAmount()));
+    }
+
+    /**
+     * Switches to spatial mode on a prepared grid, whose water replaces the water of the ecosystem.
+     *
+     * @param grid The grid.
+     */
+    public void enableSpatialMode(SpatialGrid grid) {
+        setCohortMode(false);
+        disableOffHeapMode();
+        disableParallelTicks();
+        this.grid = grid;
+        water.set(grid.getTotalWater());
+        for (Animal animal : animals) grid.place(animal, secureRandom);
+        for (Plant plant : plants) grid.place(plant, secureRandom);
+    }
+
+    /**
+     * Leaves spatial mode. The water of all cells is pooled again, the positions are kept.
+     */
+    public void disableSpatialMode() {
+        disableParallelTicks();
+        grid = null;
+    }
+
+    /**
+     * Runs the daily actions of the spatial mode on several threads, tile by tile.
+     *
+     * @param threads The number of worker threads.
+     * @param tileSize The width and height of a tile in cells, at least 2.
+     */
+    public void enableParallelTicks(int threads, int tileSize) {
+        if (grid == null) throw new IllegalStateException("Parallel ticks need the spatial mode.");
+        disableParallelTicks();
+        parallelTick = new ParallelTick(this, threads, tileSize, secureRandom.nextLong());
+    }
+
+    public void disableParallelTicks() {
+        if (parallelTick != null) parallelTick.shutdown();
+        parallelTick = null;
+    }
+
+    /**
+     * Returns the number of worker threads of the daily actions, 1 unless parallel ticks are enabled.
+     */
+    public int getParallelism() {
+        return parallelTick == null ? 1 : parallelTick.getThreads();
+    }
+
+    /**
+     * Returns the width and height of the tiles of the parallel ticks, or 0 unless they are enabled.
+     */
+    public int getParallelTileSize() {
+        return parallelTick == null ? 0 : parallelTick.getTileSize();
+    }
+
+    public boolean isCohortMode() {
+        return cohortMode;
+    }
+
+    /**
+     * Switches the cohort mode. In cohort mode one animal or plant object stands for
+     * {@link Animal#getQuantity()} identical individuals, and the daily actions work on whole cohorts,
+     * so large uniform populations cost as much as their number of distinct states.
+     * Switching it on merges identical entities, switching it off expands every cohort into single entities.
+     *
+     * @param cohortMode true to enable the cohort mode.
+     */
+    public void setCohortMode(boolean cohortMode) {
+        if (this.cohortMode == cohortMode) return;
+        if (cohortMode) {
+            disableSpatialMode();
+            disableOffHeapMode();
+        }
+        this.cohortMode = cohortMode;
+        ageCalendar = cohortMode ? null : new AgeCalendar();
+        if (cohortMode) {
+            cohortEngine.mergeAnimals();
+            cohortEngine.mergePlants();
+            return;
+        }
+        List<Animal> expandedAnimals = new ArrayList<>(statistics.getAnimalCount());
+        for (Animal animal : animals) {
+            int quantity = animal.getQuantity();
+            animal.setQuantity(1);
+            expandedAnimals.add(animal);
+            for (int i = 1; i < quantity; i++) expandedAnimals.add(animal.copy());
+        }
+        List<Plant> expandedPlants = new ArrayList<>(statistics.getPlantCount());
+        for (Plant plant : plants) {
+            int quantity = plant.getQuantity();
+            plant.setQuantity(1);
+            expandedPlants.add(plant);
+            for (int i = 1; i < quantity; i++) expandedPlants.add(plant.copy());
+        }
+        setAnimals(expandedAnimals);
+        setPlants(expandedPlants);
+    }
+
+    public boolean isOffHeapMode() {
+        return store != null;
+    }
+
+    /**
+     * Returns the store of the off-heap mode, or null outside of it.
+     */
+    public EntityStore getEntityStore() {
+        return store;
+    }
+
+    /**
+     * Switches to off-heap mode: the animals and plants become fixed-width records of the given store, outside
+     * of the garbage-collected heap, and the daily actions and removals work on the records directly.
+     * The entities of the ecosystem are appended to the records already in the store, one record per individual.
+     * Cohort mode and spatial mode are switched off, and the ordered views are no longer maintained.
+     *
+     * @param store The store of the records.
+     */
+    public void enableOffHeapMode(EntityStore store) {
+        if (this.store == store) return;
+        disableOffHeapMode();
+        setCohortMode(false);
+        disableSpatialMode();
+        for (Animal animal : animals) store.addAnimal(animal);
+        for (Plant plant : plants) store.addPlant(plant);
+        animals = new ArrayList<>();
+        plants = new ArrayList<>();
+        statistics.detachViews();
+        orderedViews = null;
+        ageCalendar = null;
+        this.store = store;
+        offHeapEngine = new OffHeapEngine(this, store);
+        offHeapEngine.rebuildStatistics();
+    }
+
+    /**
+     * Leaves off-heap mode: the records become entity objects again. The records stay in the store,
+     * which is not closed.
+     */
+    public void disableOffHeapMode() {
+        if (store == null) return;
+        List<Animal> storedAnimals = getAnimals();
+        List<Plant> storedPlants = getPlants();
+        store = null;
+        offHeapEngine = null;
+        animals = storedAnimals;
+        plants = storedPlants;
+        ageCalendar = new AgeCalendar();
+        ageCalendar.rebuild(animals);
+    }
+
+    /**
+     * Saves the state of a mapped off-heap store as its snapshot, see {@link EntityStore#snapshot}.
+     */
+    public void snapshot() throws IOException {
+        if (store == null) throw new IllegalStateException("The ecosystem is not in off-heap mode.");
+        store.snapshot(temperature, humidity, getWaterAmount());
+    }
+
+    /**
+     * Creates an ecosystem in off-heap mode from the snapshot of a mapped store.
+     *
+     * @param store A store opened with {@link EntityStore#open}.
+     * @return The ecosystem with the climate and the records of the snapshot.
+     */
+    public static Ecosystem restore(EntityStore store) {
+        Ecosystem ecosystem = new Ecosystem(store.getTemperature(), store.getHumidity(), store.getWaterAmount(),
+                new ArrayList<>(), new ArrayList<>());
+        ecosystem.enableOffHeapMode(store);
+        return ecosystem;
+    }
+
+    public void addAnimals(Collection<? extends Animal> newAnimals) {
+        if (store != null) {
+            for (Animal animal : newAnimals) {
+                store.addAnimal(animal);
+                statistics.animalAdded(animal);
+            }
+            return;
+        }
+        if (grid != null) for (Animal animal : newAnimals) grid.place(animal, secureRandom);
+        animals.addAll(newAnimals);
+        for (Animal animal : newAnimals) {
+            statistics.animalAdded(animal);
+            if (ageCalendar != null) ageCalendar.add(animal);
+        }
+    }
+
+    public void addPlants(Collection<? extends Plant> newPlants) {
+        if (store != null) {
+            for (Plant plant : newPlants) {
+                store.addPlant(plant);
+                statistics.plantAdded(plant);
+            }
+            return;
+        }
+        if (grid != null) for (Plant plant : newPlants) grid.place(plant, secureRandom);
+        plants.addAll(newPlants);
+        for (Plant plant : newPlants) statistics.plantAdded(plant);
+    }
+
+    /**
+     * Creates a newborn animal. Outside of cohort, off-heap and parallel mode it reuses an animal of the same
+     * kind that died in the daily removals, if there is one.
+     *
+     * @param kind The kind of the animal.
+     * @param name The name of the species.
+     * @param energy The energy of the newborn.
+     * @param foodChainLevel The food chain level of the species.
+     * @param lifeTime The lifetime of the species.
+     * @return The newborn, with age 0 and no position.
+     */
+    public Animal newAnimal(AnimalKind kind, String name, int energy, int foodChainLevel, int lifeTime) {
+        if (!isRecycling()) return EntityPool.newAnimal(kind, name, energy, foodChainLevel, lifeTime);
+        return pool.animal(kind, name, energy, foodChainLevel, lifeTime);
+    }
+
+    /**
+     * Creates a seed with growth level 0, reusing a plant that died in the daily removals where possible,
+     * see {@link #newAnimal}.
+     */
+    public Plant newPlant(String name, int waterNeeds, int optimalTemperature) {
+        if (!isRecycling()) return new Plant(name, 0, waterNeeds, optimalTemperature);
+        return pool.plant(name, waterNeeds, optimalTemperature);
+    }
+
+    /**
+     * Returns whether dead entities are reused: only when the ecosystem holds single entity objects that are
+     * born and removed by one thread.
+     */
+    private boolean isRecycling() {
+        return !cohortMode && store == null && parallelTick == null;
+    }
+
+    /**
+     * Removes the animals matching the filter and updates the statistics.
+     *
+     * @param filter The condition of removal.
+     * @return true if any animal was removed.
+     */
+    public boolean removeAnimalsIf(Predicate<? super Animal> filter) {
+        return removeAnimalsIf(filter, false);
+    }
+
+    /**
+     * Removes the dead animals of a daily pass; they are reused for newborns if possible.
+     */
+    private boolean removeDeadAnimalsIf(Predicate<? super Animal> filter) {
+        return removeAnimalsIf(filter, isRecycling());
+    }
+
+    private boolean removeAnimalsIf(Predicate<? super Animal> filter, boolean recycle) {
+        if (store != null) {
+            // Every record is tested through the reused prototype of its type
+            return store.removeAnimalsIf(i -> {
+                Animal animal = store.animalView(i);
+                if (!filter.test(animal)) return false;
+                statistics.animalRemoved(animal);
+                return true;
+            }) > 0;
+        }
+        return animals.removeIf(animal -> {
+            if (!filter.test(animal)) return false;
+            statistics.animalRemoved(animal);
+            if (ageCalendar != null) ageCalendar.remove(animal);
+            if (recycle) pool.recycle(animal);
+            return true;
+        });
+    }
+
+    /**
+     * Removes the plants matching the filter and updates the statistics.
+     *
+     * @param filter The condition of removal.
+     * @return true if any plant was removed.
+     */
+    public boolean removePlantsIf(Predicate<? super Plant> filter) {
+        return removePlantsIf(filter, false);
+    }
+
+    /**
+     * Removes the dead plants of a daily pass; they are reused for seeds if possible.
+     */
+    private boolean removeDeadPlantsIf(Predicate<? super Plant> filter) {
+        return removePlantsIf(filter, isRecycling());
+    }
+
+    private boolean removePlantsIf(Predicate<? super Plant> filter, boolean recycle) {
+        if (store != null) {
+            return store.removePlantsIf(i -> {
+                Plant plant = store.plantView(i);
+                if (!filter.test(plant)) return false;
+                statistics.plantRemoved(plant);
+                return true;
+            }) > 0;
+        }
+        return plants.removeIf(plant -> {
+            if (!filter.test(plant)) return false;
+            statistics.plantRemoved(plant);
+            if (recycle) pool.recycle(plant);
+            return true;
+        });
     }
 
     public void setTemperature(int temperature) {
@@ -61,36 +619,99 @@ public class Ecosystem {
         this.humidity = humidity;
     }
 
+    /**
+     * Sets the total amount of water. In spatial mode the difference is spread evenly over the cells.
+     */
     public void setWaterAmount(int waterAmount) {
-        this.waterAmount = waterAmount;
+        changeWater(waterAmount - getWaterAmount());
+    }
+
+    private void changeWater(int delta) {
+        if (grid == null) water.add(delta);
+        else water.set(grid.changeWater(delta));
     }
 
 
+    /**
+     * Replaces the animal list with the given animals sorted by lifetime. The animals of this ecosystem
+     * are taken in order from the maintained view instead of being sorted again. In off-heap mode
+     * the records of the store are sorted in place.
+     *
+     * @param animals The animals to sort.
+     */
     public void sortAnimalsByAge(List<Animal> animals) {
+        if (store != null) {
+            int[] ranks = typeRanks(store.getAnimalTypeCount(), type -> store.getAnimalPrototype(type).getLifeTime());
+            store.sortAnimals(i -> ranks[store.getAnimalType(i)], ranks.length);
+            return;
+        }
+        if (animals == this.animals) {
+            this.animals = getOrderedViews().getAnimalsByLifeTime().toSortedList();
+            return;
+        }
         this.animals = animals.stream()
                 .sorted(Comparator.comparingInt(Animal::getLifeTime))
                 .collect(Collectors.toList());
     }
 
     public void sortPlantsByWaterNeeds(List<Plant> plants) {
+        if (store != null) {
+            int[] ranks = typeRanks(store.getPlantTypeCount(), type -> store.getPlantPrototype(type).getWaterNeeds());
+            store.sortPlants(i -> ranks[store.getPlantType(i)], ranks.length);
+            return;
+        }
+        if (plants == this.plants) {
+            this.plants = getOrderedViews().getPlantsByWaterNeeds().toSortedList();
+            return;
+        }
         this.plants = plants.stream()
                 .sorted(Comparator.comparingInt(Plant::getWaterNeeds))
                 .collect(Collectors.toList());
     }
 
     public void sortPlantsByGrowthLevel(List<Plant> plants) {
+        if (store != null) {
+            int lowest = Integer.MAX_VALUE, highest = Integer.MIN_VALUE;
+            for (int i = 0; i < store.getPlantCount(); i++) {
+                lowest = Math.min(lowest, store.getPlantGrowthLevel(i));
+                highest = Math.max(highest, store.getPlantGrowthLevel(i));
+            }
+            int offset = lowest;
+            if (lowest <= highest) store.sortPlants(i -> store.getPlantGrowthLevel(i) - offset, highest - lowest + 1);
+            return;
+        }
+        if (plants == this.plants) {
+            this.plants = getOrderedViews().getPlantsByGrowthLevel().toSortedList();
+            return;
+        }
         this.plants = plants.stream()
                 .sorted(Comparator.comparingInt(Plant::getGrowthLevel))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Ranks the types of the store by a key, so that records can be sorted by the rank of their type.
+     *
+     * @param types The number of types.
+     * @param key The key of a type.
+     * @return The rank of every type; types with equal keys share a rank.
+     */
+    private static int[] typeRanks(int types, IntUnaryOperator key) {
+        int[] keys = new int[types];
+        for (int type = 0; type < types; type++) keys[type] = key.applyAsInt(type);
+        int[] distinct = Arrays.stream(keys).distinct().sorted().toArray();
+        int[] ranks = new int[types];
+        for (int type = 0; type < types; type++) ranks[type] = Arrays.binarySearch(distinct, keys[type]);
+        return ranks;
+    }
+
     /**
      * Method to simulate the effect of calling rain.
      * This method increases humidity and adds a random amount of water to the ecosystem.
      */
     public void callRain(){
-        humidity += (secureRandom.nextInt(3));
-        waterAmount += 50000 + (secureRandom.nextInt(50000));
+        humidity += (secureRandom.nextInt(HUMIDITY_CHANGE));
+        changeWater(RAIN_WATER + (secureRandom.nextInt(RAIN_WATER)));
         climateIndicatorsLimitation();
     }
 
@@ -99,8 +720,8 @@ public class Ecosystem {
      * This method increases temperature and reduces water amount by a random amount.
      */
     public void callSunnyDay(){
-        temperature += (secureRandom.nextInt(2));
-        waterAmount -= (secureRandom.nextInt(50000));
+        temperature += (secureRandom.nextInt(TEMPERATURE_CHANGE));
+        changeWater(-(secureRandom.nextInt(SUNNY_DAY_WATER)));
         climateIndicatorsLimitation();
     }
 
@@ -109,9 +730,9 @@ public class Ecosystem {
      * This method decreases temperature, reduces humidity, and increases water amount.
      */
     public void callCloudyDay(){
-        temperature -= (secureRandom.nextInt(2));
-        humidity -= (secureRandom.nextInt(3));
-        waterAmount += (secureRandom.nextInt(20000));
+        temperature -= (secureRandom.nextInt(TEMPERATURE_CHANGE));
+        humidity -= (secureRandom.nextInt(HUMIDITY_CHANGE));
+        changeWater(secureRandom.nextInt(CLOUDY_DAY_WATER));
         climateIndicatorsLimitation();
     }
 
@@ -120,12 +741,12 @@ public class Ecosystem {
      * This method restricts temperature, humidity, and water amount to specific ranges.
      */
     private void climateIndicatorsLimitation(){
-        temperature = Math.max(-30, temperature);
-        temperature = Math.min(38, temperature);
+        temperature = Math.max(MIN_TEMPERATURE, temperature);
+        temperature = Math.min(MAX_TEMPERATURE, temperature);
         humidity = Math.max(0, humidity);
-        humidity = Math.min(100, humidity);
-        waterAmount = Math.max(0, waterAmount);
-        waterAmount = Math.min(1000000, waterAmount);
+        humidity = Math.min(MAX_HUMIDITY, humidity);
+        int waterAmount = getWaterAmount();
+        changeWater(Math.min(MAX_WATER, Math.max(0, waterAmount)) - waterAmount);
     }
 
     /**
@@ -135,31 +756,180 @@ public class Ecosystem {
      * @param ecosystem The ecosystem where the animals live.
      */
     public void actAllAnimals(Ecosystem ecosystem){
-        // Create a list to store animals that are reproduced during this cycle
-        List<Animal> reproducedAnimals = new ArrayList<>();
+        if (cohortMode) {
+            cohortEngine.actAllAnimals();
+            return;
+        }
+        if (offHeapEngine != null) {
+            offHeapEngine.actAllAnimals();
+            return;
+        }
+        if (parallelTick != null) {
+            parallelTick.actAllAnimals();
+            ageCalendar.advance();
+            return;
+        }
 
         // Remove animals that have been eaten from the list of active animals
-        animals.removeIf(Animal::isEaten);
+        long phaseStart = TickProfiler.start();
+        removeDeadAnimalsIf(Animal::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
 
-        // Iterate through each animal to allow for reproduction and actions
-        for (Animal animal : getAnimals()){
+        // Only the animals that are old enough try to reproduce
+        phaseStart = TickProfiler.start();
+        for (Animal animal : ageCalendar.getAdults()){
 
             // Attempt to reproduce the animal; if successful, add the new animal to the reproduced list
+            int energy = animal.getEnergy();
             Animal reproducedAnimal = animal.reproduce(ecosystem);
             if (reproducedAnimal != null){
-                reproducedAnimals.add(reproducedAnimal);
+                statistics.animalChanged(animal, animal.getEnergy() - energy, 0);
+                // Newborns stay in the cell of the parent
+                reproducedAnimal.setPosition(animal.getX(), animal.getY());
+                births.add(reproducedAnimal);
             }
         }
         // Add all newly reproduced animals to the main list of animals in the ecosystem
-        animals.addAll(reproducedAnimals);
+        addAnimals(births);
+        TickProfiler.stop(TickPhase.ANIMAL_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(births.size(), 0);
+        births.clear();
 
         // Allow each animal to act within the ecosystem
-        for (Animal animal : animals){
-            animal.act(ecosystem);
+        phaseStart = TickProfiler.start();
+        if (grid != null) {
+            grid.indexAnimals(animals);
+            grid.indexPlants(plants);
+        }
+        if (grid == null) {
+            actOrRest(ecosystem);
+        } else {
+            for (Animal animal : animals) act(ecosystem, animal);
+        }
+
+        // Animals that are still hungry move on after everybody has acted, so the cell index stays valid
+        if (grid != null) {
+            for (Animal animal : animals) {
+                if (!animal.isEaten() && animal.getEnergy() < Animal.FULL_ENERGY) grid.migrate(animal, secureRandom);
+            }
         }
+        TickProfiler.stop(TickPhase.ANIMAL_ACTION, phaseStart);
 
         // Remove any animals that have been eaten after they have acted
-        animals.removeIf(Animal::isEaten);
+        phaseStart = TickProfiler.start();
+        removeDeadAnimalsIf(Animal::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+        ageCalendar.advance();
+    }
+
+    /**
+     * Lets the animals act in the order of the list. A satiated animal keeps full energy even if it finds no
+     * water, so it does not forage: it ages, drinks and rests, as in its {@code act} method, and this is done
+     * here without calling it. A run of satiated animals with the same row of species traits takes its water in
+     * one step. The water is still taken in the order of the list, so the animals that go without it are the
+     * same as when every animal acts by itself. The resting animals that find no water are logged once per
+     * species.
+     */
+    private void actOrRest(Ecosystem ecosystem) {
+        int size = animals.size();
+        int i = 0;
+        while (i < size) {
+            Animal animal = animals.get(i);
+            int traits = animal.getTraits();
+            if (!isSatiated(animal, traits)) {
+                act(ecosystem, animal);
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while (end < size && animals.get(end).getTraits() == traits && isSatiated(animals.get(end), traits)) end++;
+            int drinking = water.reserve(end - i, SpeciesTraits.waterNeeds(traits));
+            for (int j = i; j < end; j++) {
+                Animal resting = animals.get(j);
+                int energyDelta = -Animal.REST_COST;
+                if (j - i >= drinking) {
+                    thirsty.merge(resting.getName(), 1, Integer::sum);
+                    energyDelta -= SpeciesTraits.thirstPenalty(traits);
+                }
+                resting.setEnergy(resting.getEnergy() + energyDelta);
+                resting.setCurrentLifeTime(resting.getCurrentLifeTime() + 24);
+                statistics.animalChanged(resting, energyDelta, 24);
+            }
+            i = end;
+        }
+        for (Map.Entry<String, Integer> entry : thirsty.entrySet()) {
+            LogFormer.writeLogFile(entry.getValue() + " " + entry.getKey() + " cannot find water.");
+        }
+        thirsty.clear();
+    }
+
+    /**
+     * Returns whether an animal rests today: it keeps full energy even if it finds no water.
+     */
+    private static boolean isSatiated(Animal animal, int traits) {
+        return animal.getEnergy() - SpeciesTraits.thirstPenalty(traits) >= Animal.FULL_ENERGY;
+    }
+
+    private void act(Ecosystem ecosystem, Animal animal) {
+        int energy = animal.getEnergy();
+        int age = animal.getCurrentLifeTime();
+        animal.act(ecosystem);
+        statistics.animalChanged(animal, animal.getEnergy() - energy, animal.getCurrentLifeTime() - age);
+    }
+
+    /**
+     * Removes the animals that have starved, that is whose energy is negative.
+     *
+     * @return true if any animal was removed.
+     */
+    public boolean removeDeadAnimals() {
+        if (offHeapEngine != null) return offHeapEngine.removeDeadAnimals();
+        return removeDeadAnimalsIf(animal -> animal.getEnergy() < 0);
+    }
+
+    /**
+     * Removes the plants whose growth level is negative.
+     *
+     * @return true if any plant was removed.
+     */
+    public boolean removeMinusGrowthPlants() {
+        if (offHeapEngine != null) return offHeapEngine.removeMinusGrowthPlants();
+        return removeDeadPlantsIf(plant -> plant.getGrowthLevel() < 0);
+    }
+
+    /**
+     * Removes the animals that have outlived their lifetime. Outside of cohort and off-heap mode they are
+     * known from the age calendar, so the population is only scanned on days on which animals die of old age.
+     *
+     * @return true if any animal was removed.
+     */
+    public boolean removeOldAnimals() {
+        if (offHeapEngine != null) return offHeapEngine.removeOldAnimals();
+        if (ageCalendar == null) return removeDeadAnimalsIf(animal -> animal.getLifeTime() < animal.getCurrentLifeTime());
+        List<Animal> expired = ageCalendar.getExpired();
+        if (expired.isEmpty()) return false;
+        Set<Animal> dying = Collections.newSetFromMap(new IdentityHashMap<>());
+        dying.addAll(expired);
+        return removeDeadAnimalsIf(dying::contains);
+    }
+
+    /**
+     * Advances the ecosystem by several days at once while nothing happens but ageing, resting and growing:
+     * all animals are satiated and too young to reproduce or die, no plant comes to seed and the water lasts,
+     * see {@link FastForward}. The result is the same as that of simulating the days one by one, except that
+     * the actions of the entities are not logged. Only single entities outside of spatial mode are fast-forwarded.
+     *
+     * @param maxDays The most days to advance.
+     * @param weather Changes the weather at the end of every day advanced.
+     * @return The number of days advanced, 0 if the next day has to be simulated.
+     */
+    public int fastForward(int maxDays, Runnable weather) {
+        if (cohortMode || store != null || grid != null || maxDays <= 0) return 0;
+        // The next day would start with the same removal
+        removeDeadPlantsIf(Plant::isEaten);
+        int days = fastForward.advance(animals, plants, ageCalendar, maxDays, weather);
+        if (days > 0) LogFormer.writeLogFile("Nothing happens for " + days + " days: the animals rest and the plants grow.");
+        return days;
     }
 
     /**
@@ -169,28 +939,56 @@ public class Ecosystem {
      * @param ecosystem The ecosystem where the plants live.
      */
     public void growAllPlants(Ecosystem ecosystem){
-        List<Plant> newPlants = new ArrayList<>();
+        if (cohortMode) {
+            cohortEngine.growAllPlants();
+            return;
+        }
+        if (offHeapEngine != null) {
+            offHeapEngine.growAllPlants();
+            return;
+        }
+        if (parallelTick != null) {
+            parallelTick.growAllPlants();
+            return;
+        }
 
         // Remove plants that have been eaten from the list of active plants
-        plants.removeIf(Plant::isEaten);
+        long phaseStart = TickProfiler.start();
+        removeDeadPlantsIf(Plant::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
 
         // Iterate through each plant to check for reproduction
+        phaseStart = TickProfiler.start();
         for (Plant plant: plants){
 
-            // Attempt to reproduce the plant; if successful, add new plants to the list
-            List<Plant> reproducedPlants = plant.reproduce();
-            if(reproducedPlants != null){
-                newPlants.addAll(reproducedPlants);
+            // Attempt to reproduce the plant; if successful, the seeds are added to the list
+            int first = seeds.size();
+            if(plant.reproduce(this, secureRandom, seeds) && grid != null){
+                for (int i = first; i < seeds.size(); i++) grid.placeNear(seeds.get(i), plant, secureRandom);
             }
         }
 
         // Add all newly reproduced plants to the main list of plants in the ecosystem
-        plants.addAll(newPlants);
+        addPlants(seeds);
+        TickProfiler.stop(TickPhase.PLANT_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(0, seeds.size());
+        seeds.clear();
 
         // Allow each plant to grow according to the current ecosystem conditions
-        for (Plant plant: plants){
-            plant.grow(ecosystem);
+        phaseStart = TickProfiler.start();
+        if (grid == null) {
+            plantClasses.grow(plants, temperature, water, statistics);
+        } else {
+            for (Plant plant: plants){
+                int growthLevel = plant.getGrowthLevel();
+                plant.grow(ecosystem);
+                statistics.plantChanged(plant, plant.getGrowthLevel() - growthLevel);
+            }
         }
-        plants.removeIf(Plant::isEaten);
+        TickProfiler.stop(TickPhase.PLANT_GROWTH, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        removeDeadPlantsIf(Plant::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
     }
 }
@@ -1,14 +1,20 @@
 package ecosystem;
 
-import ecosystem.entities.Animal;
-import ecosystem.entities.Plant;
+import ecosystem.metrics.PopulationRecorder;
+import ecosystem.store.EntityStore;
 import ecosystem.utils.*;
 
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 
 public class EcosystemSimulator {
+    private static DeltaCheckpointLog checkpointLog;
+    private static PopulationRecorder populationRecorder;
+
     public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         Ecosystem ecosystem = null;
@@ -31,7 +37,7 @@ public class EcosystemSimulator {
                 case "2":
                     System.out.print("Enter the path to the simulation file: ");
                     filePath = scanner.next();
-                    ecosystem = FileManager.loadEcosystem(filePath);
+                    ecosystem = loadEcosystem(filePath);
                     if (ecosystem == null) {
                         System.out.println("Please correct the errors in the file and try load it again.");
                     } else {
@@ -58,7 +64,8 @@ public class EcosystemSimulator {
             System.out.println("5. Predict ecosystem development");
             System.out.println("6. Clear log file");
             System.out.println("7. Sort");
-            System.out.println("8. Exit");
+            System.out.println("8. Configure delta checkpoints and population history");
+            System.out.println("9. Exit");
             System.out.print("Please enter your choice: ");
             String choice = scanner.next();
             switch (choice){
@@ -100,7 +107,7 @@ public class EcosystemSimulator {
                         else if (choice.equals("2")) {
                             System.out.print("Enter the path to the simulation file: ");
                             String filePath = scanner.next();
-                            ecosystem = FileManager.loadEcosystem(filePath);
+                            ecosystem = loadEcosystem(filePath);
                             if (ecosystem == null) {
                                 System.out.println("Please correct the errors in the file or the file path and try loading again.");
                             } else {
@@ -145,8 +152,16 @@ public class EcosystemSimulator {
                             }
                         }
                     }
+                    // Back to this menu; leaving the sort menu used to fall through to Exit
+                    break;
 
-                case "8": return;
+                case "8":
+                    configureRecording(scanner);
+                    break;
+
+                case "9":
+                    if (populationRecorder != null) populationRecorder.close();
+                    return;
                 default: System.out.println("Please enter a valid option.");
             }
         }
@@ -161,6 +176,9 @@ public class EcosystemSimulator {
      */
     public static void workWithEcosystem(Ecosystem ecosystem, Scanner scanner){
         Simulation simulation = new Simulation();
+        if (checkpointLog != null) simulation.addListener(checkpointLog);
+        if (populationRecorder != null) simulation.addListener(populationRecorder);
+        BackgroundSimulation background = new BackgroundSimulation(simulation);
         while (true){
             System.out.println("Menu");
             System.out.println("1. Change temperature");
@@ -171,7 +189,10 @@ public class EcosystemSimulator {
             System.out.println("6. Conduct an action cycle for animals");
             System.out.println("7. Conduct a growth cycle for plants");
             System.out.println("8. Start the simulation");
-            System.out.println("9. Return to the previous menu");
+            System.out.println("9. Switch cohort mode (currently " + (ecosystem.isCohortMode() ? "on" : "off") + ")");
+            System.out.println("10. Switch spatial mode (currently " + (ecosystem.isSpatialMode() ? "on" : "off") + ")");
+            System.out.println("11. Switch off-heap mode (currently " + (ecosystem.isOffHeapMode() ? "on" : "off") + ")");
+            System.out.println("12. Return to the previous menu");
             System.out.print("Please enter your choice: ");
             String choice = scanner.next();
             switch(choice){
@@ -188,14 +209,10 @@ public class EcosystemSimulator {
                             "Enter new available water amount (from 0 to 1000000): ", 0, 1000000));
                     break;
                 case "4":
-                    List<Animal> createdAnimals = ecosystem.getAnimals();
-                    createdAnimals.addAll(ObjectsCreator.createAnimal(scanner));
-                    ecosystem.setAnimals(createdAnimals);
+                    ecosystem.addAnimals(ObjectsCreator.createAnimal(scanner));
                     break;
                 case "5":
-                    List<Plant> createdPlants = ecosystem.getPlants();
-                    createdPlants.addAll(ObjectsCreator.createPlant(scanner));
-                    ecosystem.setPlants(createdPlants);
+                    ecosystem.addPlants(ObjectsCreator.createPlant(scanner));
                     break;
                 case "6":
                     simulation.removeOldAnimals(ecosystem);
@@ -207,12 +224,180 @@ public class EcosystemSimulator {
                     break;
                 case "8":
                     int simulationTime = UserInput.getValidIntInput("Enter simulation time (integer number of hours from 0 to 10000):", 0, 10000);
-                    simulation.simulate(ecosystem, simulationTime);
+                    runSimulation(background, ecosystem, simulationTime);
+                    break;
+                case "9":
+                    ecosystem.setCohortMode(!ecosystem.isCohortMode());
+                    System.out.println("Cohort mode is " + (ecosystem.isCohortMode() ? "on" : "off")
+                            + ", " + (ecosystem.getAnimals().size() + ecosystem.getPlants().size()) + " records.");
+                    break;
+
+                case "10":
+                    if (ecosystem.isSpatialMode()) {
+                        ecosystem.disableSpatialMode();
+                        System.out.println("Spatial mode is off.");
+                    } else {
+                        int width = UserInput.getValidIntInput("Enter the width of the grid in cells (from 1 to 1000): ", 1, 1000);
+                        int height = UserInput.getValidIntInput("Enter the height of the grid in cells (from 1 to 1000): ", 1, 1000);
+                        ecosystem.enableSpatialMode(width, height);
+                        int threads = UserInput.getValidIntInput("Enter the number of worker threads (from 1 to 64): ", 1, 64);
+                        if (threads > 1) {
+                            // Enough tiles per checkerboard colour to keep all workers busy
+                            ecosystem.enableParallelTicks(threads, Math.max(2, Math.max(width, height) / (4 * threads)));
+                        }
+                        System.out.println("Spatial mode is on.");
+                    }
+                    break;
+
+                case "11":
+                    switchOffHeapMode(ecosystem, scanner);
                     break;
 
-                case "9": return;
+                case "12":
+                    background.close();
+                    return;
                 default: System.out.println("Please enter a valid option.");
             }
         }
     }
+
+    /**
+     * Runs a simulation on the background thread and prints its progress every second until it is over.
+     * Pressing Enter cancels the simulation at the end of the current day.
+     *
+     * @param background the executor of the simulation
+     * @param ecosystem  the Ecosystem object to simulate
+     * @param simulationTime the duration of the simulation, in hours
+     */
+    private static void runSimulation(BackgroundSimulation background, Ecosystem ecosystem, int simulationTime) {
+        background.start(ecosystem, simulationTime);
+        System.out.println("Press Enter to cancel the simulation.");
+        try {
+            int lastDay = -1;
+            while (background.await(1000) < 0) {
+                if (enterPressed()) background.cancel();
+                SimulationProgress progress = background.getProgress();
+                if (progress != null && progress.getDay() != lastDay) {
+                    System.out.println(progress);
+                    lastDay = progress.getDay();
+                }
+            }
+            System.out.println(background.getProgress());
+        } catch (InterruptedException e) {
+            background.cancel();
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns whether a line was entered on the console, and skips it.
+     */
+    private static boolean enterPressed() {
+        try {
+            if (System.in.available() == 0) return false;
+            while (System.in.available() > 0) System.in.read();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Moves the population of the ecosystem into an off-heap store, in direct memory or in memory-mapped files
+     * that are saved as a snapshot after every simulated day, or back into objects.
+     *
+     * @param ecosystem the Ecosystem object to work with
+     * @param scanner   the Scanner object for user input
+     */
+    private static void switchOffHeapMode(Ecosystem ecosystem, Scanner scanner) {
+        try {
+            if (ecosystem.isOffHeapMode()) {
+                EntityStore store = ecosystem.getEntityStore();
+                ecosystem.disableOffHeapMode();
+                store.close();
+                System.out.println("Off-heap mode is off.");
+                return;
+            }
+            System.out.println("Enter a name for the snapshot directory, or - to keep the records in memory only:");
+            String name = scanner.next();
+            int capacity = ecosystem.getStatistics().getAnimalCount() + ecosystem.getStatistics().getPlantCount();
+            EntityStore store = name.equals("-") ? EntityStore.allocateDirect(capacity, capacity)
+                    : EntityStore.create(Paths.get(System.getProperty("user.dir"), "savedEcosystems", name), capacity, capacity);
+            ecosystem.enableOffHeapMode(store);
+            if (store.isMapped()) ecosystem.snapshot();
+            System.out.println("Off-heap mode is on, " + store.getAnimalCount() + " animal and "
+                    + store.getPlantCount() + " plant records.");
+            if (checkpointLog != null) System.out.println(DeltaCheckpointLog.OFF_HEAP_MESSAGE);
+        } catch (IOException e) {
+            System.out.println("Error while switching off-heap mode: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads an ecosystem either from a text simulation file, from a delta checkpoint
+     * (a checkpoint directory or its base file) or from the snapshot directory of an off-heap store.
+     *
+     * @param filePath The path entered by the user.
+     * @return The loaded ecosystem, or null if it cannot be loaded.
+     */
+    private static Ecosystem loadEcosystem(String filePath) {
+        Path path = Paths.get(filePath);
+        if (Files.isDirectory(path) && EntityStore.isStore(path)) {
+            try {
+                return Ecosystem.restore(EntityStore.open(path));
+            } catch (IOException e) {
+                System.out.println("Error while opening the snapshot: " + e.getMessage());
+                return null;
+            }
+        }
+        if (Files.isDirectory(Paths.get(filePath)) || filePath.endsWith(DeltaCheckpointLog.BASE_FILE_NAME)) {
+            return DeltaCheckpointLog.restore(filePath);
+        }
+        return FileManager.loadEcosystem(filePath);
+    }
+
+    /**
+     * Enables or disables delta checkpoints and the population history,
+     * both of which are written after every simulated day.
+     *
+     * @param scanner the Scanner object for user input
+     */
+    private static void configureRecording(Scanner scanner) {
+        System.out.println("1. Enable delta checkpoints");
+        System.out.println("2. Disable delta checkpoints");
+        System.out.println("3. Start recording population history");
+        System.out.println("4. Stop recording population history");
+        String choice = scanner.next();
+        switch (choice) {
+            case "1" -> {
+                System.out.println("Enter a name for the checkpoint directory:");
+                String name = scanner.next();
+                int interval = UserInput.getValidIntInput(
+                        "Enter the number of days between full snapshots (from 1 to 1000): ", 1, 1000);
+                checkpointLog = new DeltaCheckpointLog(
+                        Paths.get(System.getProperty("user.dir"), "savedEcosystems", name).toString(), interval);
+                System.out.println("Delta checkpoints enabled.");
+            }
+            case "2" -> {
+                checkpointLog = null;
+                System.out.println("Delta checkpoints disabled.");
+            }
+            case "3" -> {
+                System.out.println("Enter a name for the population history files:");
+                String name = scanner.next();
+                if (populationRecorder != null) populationRecorder.close();
+                populationRecorder = new PopulationRecorder(
+                        Paths.get(System.getProperty("user.dir"), "savedEcosystems", name).toString());
+                System.out.println("Population history is written to " + populationRecorder.getSpeciesPath()
+                        + " and " + populationRecorder.getClimatePath());
+            }
+            case "4" -> {
+                if (populationRecorder != null) populationRecorder.close();
+                populationRecorder = null;
+                System.out.println("Population history recording stopped.");
+            }
+        }
+    }
 }
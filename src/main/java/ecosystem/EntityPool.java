@@ -0,0 +1,75 @@
+package ecosystem;
+
+import ecosystem.entities.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dead animals and plants kept for reuse as newborns and seeds. In a population whose births and deaths
+ * balance, the objects of the dead then become the newborns of the next days instead of garbage.
+ * Animals are kept per kind, since their class cannot change; each kind and the plants hold at most
+ * {@value #CAPACITY} objects. The pool is not thread-safe.
+ */
+class EntityPool {
+    private static final int CAPACITY = 1 << 16;
+
+    private final List<List<Animal>> animals = new ArrayList<>();
+    private final List<Plant> plants = new ArrayList<>();
+
+    EntityPool() {
+        for (int i = 0; i < AnimalKind.values().length; i++) animals.add(new ArrayList<>());
+    }
+
+    /**
+     * Returns a newborn animal, reusing a dead one of the same kind if there is one.
+     */
+    Animal animal(AnimalKind kind, String name, int energy, int foodChainLevel, int lifeTime) {
+        List<Animal> dead = animals.get(kind.ordinal());
+        if (dead.isEmpty()) return newAnimal(kind, name, energy, foodChainLevel, lifeTime);
+        Animal animal = dead.remove(dead.size() - 1);
+        animal.reset(name, energy, foodChainLevel, lifeTime, 0);
+        return animal;
+    }
+
+    /**
+     * Creates a newborn animal of the given kind.
+     */
+    static Animal newAnimal(AnimalKind kind, String name, int energy, int foodChainLevel, int lifeTime) {
+        return switch (kind) {
+            case CARNIVORE -> new Carnivore(name, energy, foodChainLevel, lifeTime, 0);
+            case OMNIVORE -> new Omnivore(name, energy, foodChainLevel, lifeTime, 0);
+            case HERBIVORE -> new Herbivore(name, energy, foodChainLevel, lifeTime, 0);
+        };
+    }
+
+    /**
+     * Returns a seed, reusing a dead plant if there is one.
+     */
+    Plant plant(String name, int waterNeeds, int optimalTemperature) {
+        if (plants.isEmpty()) return new Plant(name, 0, waterNeeds, optimalTemperature);
+        Plant plant = plants.remove(plants.size() - 1);
+        plant.reset(name, 0, waterNeeds, optimalTemperature);
+        return plant;
+    }
+
+    /**
+     * Keeps a dead animal for reuse. Nothing may refer to it anymore.
+     */
+    void recycle(Animal animal) {
+        List<Animal> dead = animals.get(animal.getKind().ordinal());
+        if (dead.size() < CAPACITY) dead.add(animal);
+    }
+
+    /**
+     * Keeps a dead plant for reuse. Nothing may refer to it anymore.
+     */
+    void recycle(Plant plant) {
+        if (plants.size() < CAPACITY) plants.add(plant);
+    }
+
+    void clear() {
+        for (List<Animal> dead : animals) dead.clear();
+        plants.clear();
+    }
+}
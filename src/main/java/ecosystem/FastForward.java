@@ -0,0 +1,118 @@
+package ecosystem;
+
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Advances a quiescent ecosystem by several days at once. A day is quiescent when every animal is satiated,
+ * so that it only ages, drinks and rests, no animal is an adult that may reproduce or outlives its lifetime,
+ * no plant comes to seed and the water lasts for everybody. On such days the entities change in closed form:
+ * an animal ages by 24 hours a day and loses the rest cost, and a plant grows by the sum of its growth at the
+ * temperatures of the days, which only depends on its optimal temperature.
+ * <p>
+ * The thresholds of the animals bound the stretch before it starts. The weather is still drawn day by day,
+ * since it decides the water and the temperature of the next day, and the stretch ends before the first day
+ * on which the water would run short or a plant would come to seed.
+ */
+class FastForward {
+    private static final int TEMPERATURES = Plant.MAX_OPTIMAL_TEMPERATURE - Plant.MIN_OPTIMAL_TEMPERATURE + 1;
+
+    private final Ecosystem ecosystem;
+    // The highest growth level of the plants of every optimal temperature, or -1 if there are none
+    private final int[] highestGrowth = new int[TEMPERATURES];
+    // The growth of the plants of every optimal temperature over the days of the stretch so far
+    private final int[] growth = new int[TEMPERATURES];
+
+    FastForward(Ecosystem ecosystem) {
+        this.ecosystem = ecosystem;
+    }
+
+    /**
+     * Advances the entities over the quiescent days ahead and records the changes in the statistics.
+     *
+     * @param animals The animals of the ecosystem, none of them eaten.
+     * @param plants The plants of the ecosystem, none of them eaten.
+     * @param calendar The age calendar of the animals.
+     * @param maxDays The most days to advance.
+     * @param weather Changes the weather at the end of a day.
+     * @return The number of days advanced, 0 if the next day has to be simulated.
+     */
+    int advance(List<Animal> animals, List<Plant> plants, AgeCalendar calendar, int maxDays, Runnable weather) {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        long demand = 0;
+        int days = maxDays;
+        for (Animal animal : animals) {
+            days = Math.min(days, quietDays(animal, statistics));
+            if (days <= 0) return 0;
+            demand += animal.getWaterNeeds();
+        }
+
+        Arrays.fill(highestGrowth, -1);
+        for (Plant plant : plants) {
+            int optimalTemperature = plant.getOptimalTemperature();
+            int growthLevel = plant.getGrowthLevel();
+            if (optimalTemperature < Plant.MIN_OPTIMAL_TEMPERATURE || optimalTemperature > Plant.MAX_OPTIMAL_TEMPERATURE
+                    || growthLevel < 0 || growthLevel >= Plant.SEED_GROWTH_LEVEL) return 0;
+            int t = optimalTemperature - Plant.MIN_OPTIMAL_TEMPERATURE;
+            highestGrowth[t] = Math.max(highestGrowth[t], growthLevel);
+            demand += plant.getWaterNeeds();
+        }
+
+        // Only the weather is simulated day by day, and the water of everybody is taken at once
+        WaterBudget water = ecosystem.getWaterBudget();
+        Arrays.fill(growth, 0);
+        int day = 0;
+        for (; day < days && !comesToSeed() && water.getAmount() >= demand; day++) {
+            water.add(-demand);
+            int[] deltas = Plant.getGrowthDeltas(ecosystem.getTemperature());
+            for (int t = 0; t < TEMPERATURES; t++) {
+                if (highestGrowth[t] >= 0) growth[t] += deltas[t];
+            }
+            weather.run();
+        }
+        if (day == 0) return 0;
+
+        for (Animal animal : animals) {
+            animal.setEnergy(animal.getEnergy() - Animal.REST_COST * day);
+            animal.setCurrentLifeTime(animal.getCurrentLifeTime() + 24 * day);
+            statistics.animalChanged(animal, -Animal.REST_COST * day, 24 * day);
+        }
+        for (Plant plant : plants) {
+            int delta = growth[plant.getOptimalTemperature() - Plant.MIN_OPTIMAL_TEMPERATURE];
+            plant.setGrowthLevel(plant.getGrowthLevel() + delta);
+            statistics.plantChanged(plant, delta);
+        }
+        // The calendar finds the ages of the last day, which are past every maturity filed on the days before
+        for (int i = 0; i < day; i++) calendar.advance();
+        return day;
+    }
+
+    /**
+     * Returns the number of days from now on which the animal only rests: it stays satiated, does not become
+     * an adult with a mate and does not outlive its lifetime.
+     */
+    private static int quietDays(Animal animal, PopulationStatistics statistics) {
+        int energy = animal.getEnergy();
+        int age = animal.getCurrentLifeTime();
+        if (animal.isEaten() || energy < Animal.FULL_ENERGY) return 0;
+        int days = (energy - Animal.FULL_ENERGY) / Animal.REST_COST + 1;
+        days = Math.min(days, (animal.getLifeTime() - age) / 24);
+        if (statistics.getSpeciesCount(animal.getName()) >= 2) {
+            days = Math.min(days, Math.max(0, Animal.ADULT_AGE - age + 23) / 24);
+        }
+        return days;
+    }
+
+    /**
+     * Returns whether a plant has reached the growth level of reproduction after the days so far.
+     */
+    private boolean comesToSeed() {
+        for (int t = 0; t < TEMPERATURES; t++) {
+            if (highestGrowth[t] >= 0 && highestGrowth[t] + growth[t] >= Plant.SEED_GROWTH_LEVEL) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,456 @@
+package ecosystem;
+
+import ecosystem.entities.*;
+import ecosystem.metrics.TickPhase;
+import ecosystem.metrics.TickProfiler;
+import ecosystem.store.EntityStore;
+import ecosystem.utils.LogFormer;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Daily actions of an ecosystem in off-heap mode, where the animals and plants are records of an
+ * {@link EntityStore} instead of objects. Every record makes the same decisions as the {@code act},
+ * {@code reproduce} and {@code grow} methods of the entity classes, in the same order; the rules that
+ * depend only on the type of an entity are looked up once per type and day.
+ * <p>
+ * The statistics are updated per type at the end of every pass, and the log gets one line per type
+ * and pass instead of one per entity. Ageing, resting, growing with enough water and finding the records to
+ * remove treat all records alike and run as bulk passes of the store.
+ */
+class OffHeapEngine {
+    // Water drawn from the budget at a time by the single thread of the engine
+    private static final int WATER_CHUNK = 4096;
+
+    private final Ecosystem ecosystem;
+    private final EntityStore store;
+    private final Random random = new Random(new SecureRandom().nextLong());
+
+    OffHeapEngine(Ecosystem ecosystem, EntityStore store) {
+        this.ecosystem = ecosystem;
+        this.store = store;
+    }
+
+    /**
+     * Recomputes the statistics of the ecosystem from the records.
+     */
+    void rebuildStatistics() {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        statistics.rebuildAnimals(null);
+        statistics.rebuildPlants(null);
+        int animalTypes = store.getAnimalTypeCount();
+        int[] counts = new int[animalTypes];
+        long[] energies = new long[animalTypes];
+        long[] ages = new long[animalTypes];
+        for (int i = 0; i < store.getAnimalCount(); i++) {
+            int type = store.getAnimalType(i);
+            counts[type]++;
+            energies[type] += store.getAnimalEnergy(i);
+            ages[type] += store.getAnimalAge(i);
+        }
+        for (int type = 0; type < animalTypes; type++) {
+            if (counts[type] > 0) statistics.animalsChanged(store.getAnimalPrototype(type), counts[type], energies[type], ages[type]);
+        }
+        int plantTypes = store.getPlantTypeCount();
+        counts = new int[plantTypes];
+        long[] growths = new long[plantTypes];
+        for (int i = 0; i < store.getPlantCount(); i++) {
+            int type = store.getPlantType(i);
+            counts[type]++;
+            growths[type] += store.getPlantGrowthLevel(i);
+        }
+        for (int type = 0; type < plantTypes; type++) {
+            if (counts[type] > 0) statistics.plantsChanged(store.getPlantPrototype(type), counts[type], growths[type]);
+        }
+    }
+
+    /**
+     * Off-heap version of {@link Ecosystem#growAllPlants}.
+     */
+    void growAllPlants() {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+
+        long phaseStart = TickProfiler.start();
+        removeEatenPlants();
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        // Ripe plants wilt and leave seeds, which are appended behind the plants of the day
+        phaseStart = TickProfiler.start();
+        int types = store.getPlantTypeCount();
+        int[] seeds = new int[types];
+        int size = store.getPlantCount();
+        int[] lowest = filled(types, Integer.MIN_VALUE);
+        int[] unripe = filled(types, Plant.SEED_GROWTH_LEVEL - 1);
+        for (int i = store.nextPlantOutside(0, size, EntityStore.PLANT_GROWTH_FIELD, lowest, unripe); i < size;
+             i = store.nextPlantOutside(i + 1, size, EntityStore.PLANT_GROWTH_FIELD, lowest, unripe)) {
+            store.setPlantEaten(i, true);
+            int type = store.getPlantType(i);
+            // The same draw as in Plant.reproduce, whose loop bound is drawn again in every iteration
+            for (int k = 0; k <= Plant.MIN_SEEDS - 1 + random.nextInt(Plant.SEED_DRAWS); k++) {
+                store.addPlant(type, 0);
+                seeds[type]++;
+            }
+        }
+        int seedCount = 0;
+        for (int type = 0; type < types; type++) {
+            if (seeds[type] == 0) continue;
+            statistics.plantsChanged(store.getPlantPrototype(type), seeds[type], 0);
+            seedCount += seeds[type];
+            LogFormer.writeLogFile(store.getPlantPrototype(type).getName() + " leaves " + seeds[type] + " seeds.");
+        }
+        TickProfiler.stop(TickPhase.PLANT_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(0, seedCount);
+
+        // Plants drink one after another while the water lasts
+        phaseStart = TickProfiler.start();
+        int[] needs = new int[types];
+        int[] deltas = new int[types];
+        for (int type = 0; type < types; type++) {
+            Plant prototype = store.getPlantPrototype(type);
+            needs[type] = prototype.getWaterNeeds();
+            deltas[type] = Plant.getGrowthDelta(ecosystem.getTemperature(), prototype.getOptimalTemperature());
+        }
+        int[] watered = new int[types];
+        int[] dry = new int[types];
+        size = store.getPlantCount();
+        int[] counts = new int[types];
+        store.countPlantsByType(counts);
+        long demand = 0;
+        for (int type = 0; type < types; type++) demand += (long) counts[type] * needs[type];
+        WaterBudget budget = ecosystem.getWaterBudget();
+        if (budget.getAmount() >= demand) {
+            // Every plant gets its water, so all plants of a type grow alike
+            budget.consumed(demand);
+            store.addToPlantsByType(EntityStore.PLANT_GROWTH_FIELD, lowest, deltas);
+            System.arraycopy(counts, 0, watered, 0, types);
+        } else {
+            try (WaterBudget.Lease water = budget.lease(WATER_CHUNK)) {
+                for (int i = 0; i < size; i++) {
+                    if (store.isPlantEaten(i)) continue;
+                    int type = store.getPlantType(i);
+                    if (water.take(needs[type])) {
+                        store.setPlantGrowthLevel(i, store.getPlantGrowthLevel(i) + deltas[type]);
+                        watered[type]++;
+                    } else {
+                        store.setPlantGrowthLevel(i, store.getPlantGrowthLevel(i) - 1);
+                        dry[type]++;
+                    }
+                }
+            }
+        }
+        for (int type = 0; type < types; type++) {
+            if (watered[type] == 0 && dry[type] == 0) continue;
+            Plant prototype = store.getPlantPrototype(type);
+            statistics.plantsChanged(prototype, 0, (long) watered[type] * deltas[type] - dry[type]);
+            if (watered[type] > 0) LogFormer.writeLogFile(watered[type] + " " + prototype.getName() + " grow by " + deltas[type] + ".");
+            if (dry[type] > 0) LogFormer.writeLogFile(dry[type] + " " + prototype.getName() + " wilt due to lack of water.");
+        }
+        TickProfiler.stop(TickPhase.PLANT_GROWTH, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        removeEatenPlants();
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+    }
+
+    /**
+     * Off-heap version of {@link Ecosystem#actAllAnimals}.
+     */
+    void actAllAnimals() {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+
+        long phaseStart = TickProfiler.start();
+        removeEatenAnimals();
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        int types = store.getAnimalTypeCount();
+        Rules rules = new Rules(types);
+        long[] energyDeltas = new long[types];
+        long[] ageDeltas = new long[types];
+
+        // Reproduction only looks at the species counts, which do not change until the pass is over
+        phaseStart = TickProfiler.start();
+        int[] births = new int[types];
+        int size = store.getAnimalCount();
+        int[] lowest = filled(types, Integer.MIN_VALUE);
+        int[] notFull = filled(types, Animal.FULL_ENERGY - 1);
+        for (int i = store.nextAnimalOutside(0, size, EntityStore.ANIMAL_ENERGY_FIELD, lowest, notFull); i < size;
+             i = store.nextAnimalOutside(i + 1, size, EntityStore.ANIMAL_ENERGY_FIELD, lowest, notFull)) {
+            int energy = store.getAnimalEnergy(i);
+            if (store.getAnimalAge(i) < Animal.ADULT_AGE) continue;
+            int type = store.getAnimalType(i);
+            if (random.nextDouble() <= rules.reproduceChance[type] || rules.speciesCount[type] < 2) continue;
+            store.setAnimalEnergy(i, energy - rules.energyCost[type]);
+            energyDeltas[type] -= rules.energyCost[type];
+            store.addAnimal(type, rules.newbornEnergy[type], 0);
+            births[type]++;
+        }
+        int birthCount = 0;
+        for (int type = 0; type < types; type++) {
+            if (births[type] == 0) continue;
+            statistics.animalsChanged(store.getAnimalPrototype(type), births[type], (long) births[type] * rules.newbornEnergy[type], 0);
+            birthCount += births[type];
+        }
+        TickProfiler.stop(TickPhase.ANIMAL_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(birthCount, 0);
+
+        // Actions
+        phaseStart = TickProfiler.start();
+        size = store.getAnimalCount();
+        int[] uneaten = new int[types];
+        store.countAnimalsByType(uneaten);
+        // Every animal ages by a day
+        store.addToAnimals(EntityStore.ANIMAL_AGE_FIELD, 24);
+        for (int type = 0; type < types; type++) ageDeltas[type] += 24L * uneaten[type];
+        long uneatenPlants = 0;
+        for (int i = 0; i < store.getPlantCount(); i++) {
+            if (!store.isPlantEaten(i)) uneatenPlants++;
+        }
+        int[] hunts = new int[types];
+        int[] kills = new int[types];
+
+        // Animals that stay full even without water rest; only the others forage one by one
+        int[] resting = new int[types];
+        int[] hungry = new int[size];
+        int hungryCount = 0;
+        for (int i = 0; i < size; i++) {
+            int type = store.getAnimalType(i);
+            if (store.getAnimalEnergy(i) - rules.thirstPenalty[type] >= Animal.FULL_ENERGY) resting[type]++;
+            else hungry[hungryCount++] = i;
+        }
+        try (WaterBudget.Lease water = ecosystem.getWaterBudget().lease(WATER_CHUNK)) {
+            int[] drinking = new int[types];
+            int[] satiated = new int[types];
+            boolean allDrink = true;
+            for (int type = 0; type < types; type++) {
+                if (resting[type] > 0) drinking[type] = water.reserve(resting[type], rules.waterNeeds[type]);
+                allDrink &= drinking[type] == resting[type];
+                satiated[type] = Animal.FULL_ENERGY + rules.thirstPenalty[type];
+            }
+            if (allDrink) {
+                store.addToAnimalsByType(EntityStore.ANIMAL_ENERGY_FIELD, satiated, filled(types, -Animal.REST_COST));
+                for (int type = 0; type < types; type++) energyDeltas[type] -= (long) Animal.REST_COST * resting[type];
+            } else {
+                for (int i = 0; i < size; i++) {
+                    int type = store.getAnimalType(i);
+                    int energy = store.getAnimalEnergy(i);
+                    if (energy < satiated[type]) continue;
+                    int delta = drinking[type]-- > 0 ? -Animal.REST_COST : -Animal.REST_COST - rules.thirstPenalty[type];
+                    store.setAnimalEnergy(i, energy + delta);
+                    energyDeltas[type] += delta;
+                }
+            }
+
+            for (int h = 0; h < hungryCount; h++) {
+                int i = hungry[h];
+                int type = store.getAnimalType(i);
+                int energy = store.getAnimalEnergy(i);
+                int startEnergy = energy;
+
+                if (!water.take(rules.waterNeeds[type])) energy -= rules.thirstPenalty[type];
+
+                if (energy >= Animal.FULL_ENERGY) {
+                    energy -= Animal.REST_COST;
+                } else if (!hunts(rules.huntProbability[type])) {
+                    // Graze on a random uneaten plant
+                    if (uneatenPlants == 0) {
+                        energy -= rules.noPlantPenalty[type];
+                    } else {
+                        int plant = random.nextInt(store.getPlantCount());
+                        while (store.isPlantEaten(plant)) plant = random.nextInt(store.getPlantCount());
+                        store.setPlantEaten(plant, true);
+                        uneatenPlants--;
+                        energy += rules.plantEnergy[type];
+                    }
+                } else {
+                    // Hunt another species on the same or a lower level; carnivores only choose uneaten prey
+                    hunts[type]++;
+                    long available = 0;
+                    for (int prey : rules.preyTypes[type]) available += uneaten[prey];
+                    if (available == 0) {
+                        energy -= rules.noPreyPenalty[type];
+                    } else {
+                        int prey = random.nextInt(size);
+                        while (!rules.isPrey[type][store.getAnimalType(prey)] || (rules.carnivore[type] && store.isAnimalEaten(prey))) {
+                            prey = random.nextInt(size);
+                        }
+                        if (random.nextDouble() < rules.huntSuccess[type]) {
+                            if (!store.isAnimalEaten(prey)) {
+                                store.setAnimalEaten(prey, true);
+                                uneaten[store.getAnimalType(prey)]--;
+                            }
+                            kills[type]++;
+                            energy += rules.energyGain[type];
+                        } else {
+                            energy -= rules.escapePenalty[type];
+                        }
+                    }
+                }
+                store.setAnimalEnergy(i, energy);
+                energyDeltas[type] += energy - startEnergy;
+            }
+        }
+        for (int type = 0; type < types; type++) {
+            Animal prototype = store.getAnimalPrototype(type);
+            if (energyDeltas[type] != 0 || ageDeltas[type] != 0) statistics.animalsChanged(prototype, 0, energyDeltas[type], ageDeltas[type]);
+            if (hunts[type] > 0) LogFormer.writeLogFile(prototype.getName() + " hunts " + hunts[type] + " times and kills " + kills[type] + " prey.");
+        }
+        TickProfiler.stop(TickPhase.ANIMAL_ACTION, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        removeEatenAnimals();
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+    }
+
+    /**
+     * Decides whether a hungry animal hunts: carnivores always do, herbivores never, and omnivores draw.
+     */
+    private boolean hunts(double huntProbability) {
+        if (huntProbability <= 0 || huntProbability >= 1) return huntProbability >= 1;
+        return random.nextDouble() <= huntProbability;
+    }
+
+    private void removeEatenAnimals() {
+        int types = store.getAnimalTypeCount();
+        int[] counts = new int[types];
+        long[] energies = new long[types];
+        long[] ages = new long[types];
+        int removed = store.removeEatenAnimals(i -> {
+            int type = store.getAnimalType(i);
+            counts[type]++;
+            energies[type] += store.getAnimalEnergy(i);
+            ages[type] += store.getAnimalAge(i);
+        });
+        if (removed == 0) return;
+        for (int type = 0; type < types; type++) {
+            if (counts[type] > 0) ecosystem.getStatistics().animalsChanged(store.getAnimalPrototype(type), -counts[type], -energies[type], -ages[type]);
+        }
+    }
+
+    private void removeEatenPlants() {
+        int types = store.getPlantTypeCount();
+        int[] counts = new int[types];
+        long[] growths = new long[types];
+        int removed = store.removeEatenPlants(i -> {
+            int type = store.getPlantType(i);
+            counts[type]++;
+            growths[type] += store.getPlantGrowthLevel(i);
+        });
+        if (removed == 0) return;
+        for (int type = 0; type < types; type++) {
+            if (counts[type] > 0) ecosystem.getStatistics().plantsChanged(store.getPlantPrototype(type), -counts[type], -growths[type]);
+        }
+    }
+
+    /**
+     * Off-heap version of removing the animals with negative energy.
+     */
+    boolean removeDeadAnimals() {
+        int types = store.getAnimalTypeCount();
+        return removeAnimalsOutside(EntityStore.ANIMAL_ENERGY_FIELD, new int[types], filled(types, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Off-heap version of {@link Ecosystem#removeOldAnimals}.
+     */
+    boolean removeOldAnimals() {
+        int types = store.getAnimalTypeCount();
+        int[] lifeTimes = new int[types];
+        for (int type = 0; type < types; type++) lifeTimes[type] = store.getAnimalPrototype(type).getLifeTime();
+        return removeAnimalsOutside(EntityStore.ANIMAL_AGE_FIELD, filled(types, Integer.MIN_VALUE), lifeTimes);
+    }
+
+    /**
+     * Off-heap version of removing the plants with negative growth.
+     */
+    boolean removeMinusGrowthPlants() {
+        int types = store.getPlantTypeCount();
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        return store.removePlantsOutside(EntityStore.PLANT_GROWTH_FIELD, new int[types], filled(types, Integer.MAX_VALUE),
+                i -> statistics.plantRemoved(store.plantView(i))) > 0;
+    }
+
+    private boolean removeAnimalsOutside(int field, int[] lowest, int[] highest) {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        return store.removeAnimalsOutside(field, lowest, highest, i -> statistics.animalRemoved(store.animalView(i))) > 0;
+    }
+
+    private static int[] filled(int length, int value) {
+        int[] values = new int[length];
+        Arrays.fill(values, value);
+        return values;
+    }
+
+    /**
+     * The rules of every animal type, as applied by the entity classes.
+     */
+    private final class Rules {
+        final int[] waterNeeds;
+        final int[] thirstPenalty;
+        final double[] reproduceChance;
+        final int[] energyCost;
+        final int[] newbornEnergy;
+        final int[] speciesCount;
+        final double[] huntProbability;
+        final int[] plantEnergy;
+        final int[] noPlantPenalty;
+        final boolean[] carnivore;
+        final double[] huntSuccess;
+        final int[] energyGain;
+        final int[] escapePenalty;
+        final int[] noPreyPenalty;
+        final boolean[][] isPrey;
+        final int[][] preyTypes;
+
+        Rules(int types) {
+            waterNeeds = new int[types];
+            thirstPenalty = new int[types];
+            reproduceChance = new double[types];
+            energyCost = new int[types];
+            newbornEnergy = new int[types];
+            speciesCount = new int[types];
+            huntProbability = new double[types];
+            plantEnergy = new int[types];
+            noPlantPenalty = new int[types];
+            carnivore = new boolean[types];
+            huntSuccess = new double[types];
+            energyGain = new int[types];
+            escapePenalty = new int[types];
+            noPreyPenalty = new int[types];
+            isPrey = new boolean[types][types];
+            preyTypes = new int[types][];
+            for (int type = 0; type < types; type++) {
+                Animal animal = store.getAnimalPrototype(type);
+                int traits = animal.getTraits();
+                waterNeeds[type] = SpeciesTraits.waterNeeds(traits);
+                thirstPenalty[type] = SpeciesTraits.thirstPenalty(traits);
+                reproduceChance[type] = SpeciesTraits.reproduceChance(traits);
+                energyCost[type] = SpeciesTraits.reproduceEnergyCost(traits);
+                newbornEnergy[type] = SpeciesTraits.newbornEnergy(traits);
+                speciesCount[type] = ecosystem.getStatistics().getSpeciesCount(animal.getName());
+                plantEnergy[type] = SpeciesTraits.plantEnergy(traits);
+                noPlantPenalty[type] = SpeciesTraits.noPlantPenalty(traits);
+                carnivore[type] = animal.getKind() == AnimalKind.CARNIVORE;
+                huntProbability[type] = switch (animal.getKind()) {
+                    case CARNIVORE -> 1;
+                    case OMNIVORE -> SpeciesTraits.huntProbability(traits);
+                    case HERBIVORE -> 0;
+                };
+                huntSuccess[type] = SpeciesTraits.huntSuccess(traits);
+                energyGain[type] = SpeciesTraits.huntEnergyGain(traits);
+                escapePenalty[type] = SpeciesTraits.escapePenalty(traits);
+                noPreyPenalty[type] = SpeciesTraits.noPreyPenalty(traits);
+                int preys = 0;
+                for (int other = 0; other < types; other++) {
+                    isPrey[type][other] = CohortEngine.isPrey(animal, store.getAnimalPrototype(other));
+                    if (isPrey[type][other]) preys++;
+                }
+                preyTypes[type] = new int[preys];
+                for (int other = 0, k = 0; other < types; other++) {
+                    if (isPrey[type][other]) preyTypes[type][k++] = other;
+                }
+            }
+        }
+    }
+}
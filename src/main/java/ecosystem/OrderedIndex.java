@@ -0,0 +1,229 @@
+package ecosystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bucketed index of entities by an integer key. Entities with the same key share one bucket, and the buckets
+ * are kept in key order, so sorted iteration, top-K and range queries cost O(number of distinct keys + result)
+ * instead of sorting a copy of the whole population. The keys of this simulation (lifetimes, water needs,
+ * growth levels) take few distinct values, which keeps the bucket map small.
+ * <p>
+ * Counts are weighted by the quantity of the entities, so a cohort counts as all the individuals it stands for.
+ * Entities with equal keys are returned in no particular order.
+ *
+ * @param <T> The type of the indexed entities.
+ */
+public class OrderedIndex<T> {
+    private final ToIntFunction<? super T> key;
+    private final ToIntFunction<? super T> quantity;
+    private final NavigableMap<Integer, Bucket<T>> buckets = new TreeMap<>();
+    private int entityCount;
+    private long count;
+
+    private static class Bucket<T> {
+        final Set<T> entities = Collections.newSetFromMap(new IdentityHashMap<>());
+        long count;
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param key The key of an entity. It must not change while the entity is indexed, except through {@link #move}.
+     * @param quantity The number of individuals an entity stands for.
+     */
+    public OrderedIndex(ToIntFunction<? super T> key, ToIntFunction<? super T> quantity) {
+        this.key = key;
+        this.quantity = quantity;
+    }
+
+    void clear() {
+        buckets.clear();
+        entityCount = 0;
+        count = 0;
+    }
+
+    void add(T entity) {
+        Bucket<T> bucket = buckets.computeIfAbsent(key.applyAsInt(entity), k -> new Bucket<>());
+        if (!bucket.entities.add(entity)) return;
+        int q = quantity.applyAsInt(entity);
+        bucket.count += q;
+        entityCount++;
+        count += q;
+    }
+
+    void remove(T entity) {
+        remove(entity, key.applyAsInt(entity));
+    }
+
+    /**
+     * Moves an entity whose key has changed to the bucket of its current key.
+     *
+     * @param entity The entity.
+     * @param oldKey The key under which it was indexed.
+     */
+    void move(T entity, int oldKey) {
+        if (oldKey == key.applyAsInt(entity)) return;
+        if (remove(entity, oldKey)) add(entity);
+    }
+
+    /**
+     * Adds an entity that took over part of the quantity of an indexed entity with the same key,
+     * so the counts stay the same.
+     */
+    void split(T part) {
+        Bucket<T> bucket = buckets.get(key.applyAsInt(part));
+        if (bucket != null && bucket.entities.add(part)) entityCount++;
+    }
+
+    /**
+     * Removes an entity whose quantity was merged into an indexed entity with the same key,
+     * so the counts stay the same.
+     */
+    void merged(T entity) {
+        Bucket<T> bucket = buckets.get(key.applyAsInt(entity));
+        if (bucket != null && bucket.entities.remove(entity)) entityCount--;
+    }
+
+    private boolean remove(T entity, int entityKey) {
+        Bucket<T> bucket = buckets.get(entityKey);
+        if (bucket == null || !bucket.entities.remove(entity)) return false;
+        int q = quantity.applyAsInt(entity);
+        bucket.count -= q;
+        entityCount--;
+        count -= q;
+        if (bucket.entities.isEmpty()) buckets.remove(entityKey);
+        return true;
+    }
+
+    /**
+     * Returns the number of indexed entity objects.
+     */
+    public int size() {
+        return entityCount;
+    }
+
+    /**
+     * Returns the number of individuals, counting every entity with its quantity.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the number of individuals with a key in the given range.
+     *
+     * @param from The lowest key, inclusive.
+     * @param to The highest key, inclusive.
+     * @return The number of individuals.
+     */
+    public long count(int from, int to) {
+        if (from > to) return 0;
+        long result = 0;
+        for (Bucket<T> bucket : buckets.subMap(from, true, to, true).values()) result += bucket.count;
+        return result;
+    }
+
+    /**
+     * Returns the lowest indexed key, or null if the index is empty.
+     */
+    public Integer lowestKey() {
+        return buckets.isEmpty() ? null : buckets.firstKey();
+    }
+
+    /**
+     * Returns the highest indexed key, or null if the index is empty.
+     */
+    public Integer highestKey() {
+        return buckets.isEmpty() ? null : buckets.lastKey();
+    }
+
+    /**
+     * Returns the entities in ascending order of their keys.
+     */
+    public Iterable<T> ascending() {
+        return () -> iterator(buckets.values());
+    }
+
+    /**
+     * Returns the entities in descending order of their keys.
+     */
+    public Iterable<T> descending() {
+        return () -> iterator(buckets.descendingMap().values());
+    }
+
+    /**
+     * Returns the entities with a key in the given range, in ascending order.
+     *
+     * @param from The lowest key, inclusive.
+     * @param to The highest key, inclusive.
+     * @return The entities in the range.
+     */
+    public List<T> range(int from, int to) {
+        List<T> result = new ArrayList<>();
+        if (from > to) return result;
+        for (Bucket<T> bucket : buckets.subMap(from, true, to, true).values()) result.addAll(bucket.entities);
+        return result;
+    }
+
+    /**
+     * Returns up to {@code k} entities with the highest keys, highest first.
+     */
+    public List<T> top(int k) {
+        return first(buckets.descendingMap(), k);
+    }
+
+    /**
+     * Returns up to {@code k} entities with the lowest keys, lowest first.
+     */
+    public List<T> bottom(int k) {
+        return first(buckets, k);
+    }
+
+    /**
+     * Copies all entities in ascending order of their keys into a new list.
+     */
+    public List<T> toSortedList() {
+        List<T> result = new ArrayList<>(entityCount);
+        for (Bucket<T> bucket : buckets.values()) result.addAll(bucket.entities);
+        return result;
+    }
+
+    private static <T> List<T> first(Map<Integer, Bucket<T>> buckets, int k) {
+        List<T> result = new ArrayList<>(Math.max(0, Math.min(k, 1024)));
+        for (Bucket<T> bucket : buckets.values()) {
+            for (T entity : bucket.entities) {
+                if (result.size() >= k) return result;
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    private static <T> Iterator<T> iterator(Iterable<Bucket<T>> buckets) {
+        Iterator<Bucket<T>> bucketIterator = buckets.iterator();
+        return new Iterator<>() {
+            private Iterator<T> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && bucketIterator.hasNext()) current = bucketIterator.next().entities.iterator();
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                hasNext();
+                return current.next();
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package ecosystem;
+
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+
+import java.util.List;
+
+/**
+ * Ordered views over the population of an ecosystem: animals by lifetime, plants by water needs and
+ * plants by growth level. The views are kept up to date by the {@link PopulationStatistics} of the ecosystem,
+ * so they can be queried at any time without sorting.
+ */
+public class OrderedViews {
+    private final OrderedIndex<Animal> animalsByLifeTime = new OrderedIndex<>(Animal::getLifeTime, Animal::getQuantity);
+    private final OrderedIndex<Plant> plantsByWaterNeeds = new OrderedIndex<>(Plant::getWaterNeeds, Plant::getQuantity);
+    private final OrderedIndex<Plant> plantsByGrowthLevel = new OrderedIndex<>(Plant::getGrowthLevel, Plant::getQuantity);
+
+    public OrderedIndex<Animal> getAnimalsByLifeTime() {
+        return animalsByLifeTime;
+    }
+
+    public OrderedIndex<Plant> getPlantsByWaterNeeds() {
+        return plantsByWaterNeeds;
+    }
+
+    public OrderedIndex<Plant> getPlantsByGrowthLevel() {
+        return plantsByGrowthLevel;
+    }
+
+    void rebuildAnimals(List<Animal> animals) {
+        animalsByLifeTime.clear();
+        if (animals != null) animals.forEach(animalsByLifeTime::add);
+    }
+
+    void rebuildPlants(List<Plant> plants) {
+        plantsByWaterNeeds.clear();
+        plantsByGrowthLevel.clear();
+        if (plants != null) plants.forEach(this::plantAdded);
+    }
+
+    void animalAdded(Animal animal) {
+        animalsByLifeTime.add(animal);
+    }
+
+    void animalRemoved(Animal animal) {
+        animalsByLifeTime.remove(animal);
+    }
+
+    void animalSplit(Animal part) {
+        animalsByLifeTime.split(part);
+    }
+
+    void animalMerged(Animal animal) {
+        animalsByLifeTime.merged(animal);
+    }
+
+    void plantAdded(Plant plant) {
+        plantsByWaterNeeds.add(plant);
+        plantsByGrowthLevel.add(plant);
+    }
+
+    void plantRemoved(Plant plant) {
+        plantsByWaterNeeds.remove(plant);
+        plantsByGrowthLevel.remove(plant);
+    }
+
+    void plantGrown(Plant plant, int oldGrowthLevel) {
+        plantsByGrowthLevel.move(plant, oldGrowthLevel);
+    }
+
+    void plantSplit(Plant part) {
+        plantsByWaterNeeds.split(part);
+        plantsByGrowthLevel.split(part);
+    }
+
+    void plantMerged(Plant plant) {
+        plantsByWaterNeeds.merged(plant);
+        plantsByGrowthLevel.merged(plant);
+    }
+}
@@ -0,0 +1,259 @@
+package ecosystem;
+
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+import ecosystem.metrics.TickPhase;
+import ecosystem.metrics.TickProfiler;
+import ecosystem.spatial.SpatialGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Multi-threaded daily actions of a spatial ecosystem. The grid is cut into square tiles, and every worker
+ * processes the entities of one tile with its own random generator and its own statistics, which are merged
+ * when all tiles are done.
+ * <p>
+ * Plants and reproduction only touch their own cell, so all tiles run at once. Animals also hunt and graze in
+ * the neighbouring cells, so their actions run in four rounds of a 2x2 checkerboard: in each round only tiles
+ * of one colour run, and tiles of the same colour are at least one tile apart, so no cell is touched by two
+ * workers at the same time. Migration is deferred until all rounds are done. Every tile draws from a generator
+ * seeded from the tick seed and the tile number, so the result does not depend on the number of threads.
+ */
+class ParallelTick {
+    private static final ThreadLocal<TileContext> CURRENT = new ThreadLocal<>();
+
+    private final Ecosystem ecosystem;
+    private final int tileSize;
+    private final int threads;
+    private final ExecutorService executor;
+    private final Random seeds;
+
+    /**
+     * State of the worker that processes one tile.
+     */
+    static final class TileContext {
+        final Random random;
+        final PopulationStatistics statistics = new PopulationStatistics();
+        final List<Animal> newborns = new ArrayList<>();
+        final List<Plant> seeds = new ArrayList<>();
+        int waterTaken;
+
+        TileContext(long seed) {
+            random = new Random(seed);
+        }
+    }
+
+    /**
+     * Returns the context of the tile processed by the current thread, or null outside of a parallel phase.
+     */
+    static TileContext current() {
+        return CURRENT.get();
+    }
+
+    ParallelTick(Ecosystem ecosystem, int threads, int tileSize, long seed) {
+        if (tileSize < 2) throw new IllegalArgumentException("Tiles must be at least 2 cells wide.");
+        this.ecosystem = ecosystem;
+        this.tileSize = tileSize;
+        this.threads = Math.max(1, threads);
+        this.seeds = new Random(seed);
+        this.executor = this.threads == 1 ? null : Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "ecosystem-tile");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    int getThreads() {
+        return threads;
+    }
+
+    int getTileSize() {
+        return tileSize;
+    }
+
+    void shutdown() {
+        if (executor != null) executor.shutdown();
+    }
+
+    void growAllPlants() {
+        SpatialGrid grid = ecosystem.getGrid();
+        List<Plant> plants = ecosystem.getPlants();
+
+        long phaseStart = TickProfiler.start();
+        ecosystem.removePlantsIf(Plant::isEaten);
+        grid.indexPlants(plants);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        // Ripe plants leave seeds in their own or a neighbouring cell
+        phaseStart = TickProfiler.start();
+        List<TileContext> contexts = runTiles(allTiles(grid), (tile, context) -> grid.forEachPlant(
+                tile[0], tile[1], tile[2], tile[3], plant -> {
+                    int first = context.seeds.size();
+                    if (!plant.reproduce(null, context.random, context.seeds)) return;
+                    for (int i = first; i < context.seeds.size(); i++) grid.placeNear(context.seeds.get(i), plant, context.random);
+                }));
+        int seedCount = 0;
+        for (TileContext context : contexts) {
+            ecosystem.addPlants(context.seeds);
+            seedCount += context.seeds.size();
+        }
+        TickProfiler.stop(TickPhase.PLANT_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(0, seedCount);
+
+        // The plants of a cell drink from it in index order
+        phaseStart = TickProfiler.start();
+        grid.indexPlants(plants);
+        contexts = runTiles(allTiles(grid), (tile, context) -> grid.forEachPlant(
+                tile[0], tile[1], tile[2], tile[3], plant -> {
+                    int growthLevel = plant.getGrowthLevel();
+                    plant.grow(ecosystem);
+                    context.statistics.plantChanged(plant, plant.getGrowthLevel() - growthLevel);
+                }));
+        merge(contexts);
+        ecosystem.getStatistics().refreshPlantViews(plants);
+        TickProfiler.stop(TickPhase.PLANT_GROWTH, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        ecosystem.removePlantsIf(Plant::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+    }
+
+    void actAllAnimals() {
+        SpatialGrid grid = ecosystem.getGrid();
+        List<Animal> animals = ecosystem.getAnimals();
+
+        long phaseStart = TickProfiler.start();
+        ecosystem.removeAnimalsIf(Animal::isEaten);
+        grid.indexAnimals(animals);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        // Reproduction only looks at the species counts, which do not change until the newborns are added
+        phaseStart = TickProfiler.start();
+        List<TileContext> contexts = runTiles(allTiles(grid), (tile, context) -> grid.forEachAnimal(
+                tile[0], tile[1], tile[2], tile[3], animal -> {
+                    int energy = animal.getEnergy();
+                    Animal newborn = animal.reproduce(ecosystem);
+                    if (newborn == null) return;
+                    context.statistics.animalChanged(animal, animal.getEnergy() - energy, 0);
+                    newborn.setPosition(animal.getX(), animal.getY());
+                    context.newborns.add(newborn);
+                }));
+        merge(contexts);
+        int births = 0;
+        for (TileContext context : contexts) {
+            ecosystem.addAnimals(context.newborns);
+            births += context.newborns.size();
+        }
+        TickProfiler.stop(TickPhase.ANIMAL_REPRODUCTION, phaseStart);
+        TickProfiler.countBirths(births, 0);
+
+        // Actions in four checkerboard rounds
+        phaseStart = TickProfiler.start();
+        grid.indexAnimals(animals);
+        grid.indexPlants(ecosystem.getPlants());
+        for (int color = 0; color < 4; color++) {
+            contexts = runTiles(colorTiles(grid, color), (tile, context) -> grid.forEachAnimal(
+                    tile[0], tile[1], tile[2], tile[3], animal -> {
+                        int energy = animal.getEnergy();
+                        int age = animal.getCurrentLifeTime();
+                        animal.act(ecosystem);
+                        context.statistics.animalChanged(animal, animal.getEnergy() - energy, animal.getCurrentLifeTime() - age);
+                    }));
+            merge(contexts);
+        }
+
+        // Hungry animals move on once everybody has acted
+        runTiles(allTiles(grid), (tile, context) -> grid.forEachAnimal(tile[0], tile[1], tile[2], tile[3], animal -> {
+            if (!animal.isEaten() && animal.getEnergy() < Animal.FULL_ENERGY) grid.migrate(animal, context.random);
+        }));
+        TickProfiler.stop(TickPhase.ANIMAL_ACTION, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        ecosystem.removeAnimalsIf(Animal::isEaten);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+    }
+
+    /**
+     * Adds the statistics changes and the water taken by the workers to the ecosystem.
+     */
+    private void merge(List<TileContext> contexts) {
+        int water = 0;
+        for (TileContext context : contexts) {
+            ecosystem.getStatistics().add(context.statistics);
+            water += context.waterTaken;
+        }
+        ecosystem.getGrid().waterTaken(water);
+        ecosystem.getWaterBudget().consumed(water);
+    }
+
+    /**
+     * Runs a task for every tile and waits for all of them.
+     *
+     * @param tiles The tiles as {x0, x1, y0, y1}.
+     * @param task The task for one tile.
+     * @return The contexts of the tiles, in the order of the tiles.
+     */
+    private List<TileContext> runTiles(List<int[]> tiles, TileTask task) {
+        List<TileContext> contexts = new ArrayList<>(tiles.size());
+        List<Callable<Void>> calls = new ArrayList<>(tiles.size());
+        for (int[] tile : tiles) {
+            TileContext context = new TileContext(seeds.nextLong());
+            contexts.add(context);
+            calls.add(() -> {
+                CURRENT.set(context);
+                try {
+                    task.run(tile, context);
+                } finally {
+                    CURRENT.remove();
+                }
+                return null;
+            });
+        }
+        try {
+            if (executor == null) {
+                for (Callable<Void> call : calls) call.call();
+            } else {
+                for (Future<Void> future : executor.invokeAll(calls)) future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The parallel tick was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A tile of the parallel tick failed.", e.getCause());
+        } catch (Exception e) {
+            throw new IllegalStateException("A tile of the parallel tick failed.", e);
+        }
+        return contexts;
+    }
+
+    private List<int[]> allTiles(SpatialGrid grid) {
+        List<int[]> tiles = new ArrayList<>();
+        for (int color = 0; color < 4; color++) tiles.addAll(colorTiles(grid, color));
+        return tiles;
+    }
+
+    /**
+     * Returns the tiles of one colour of the 2x2 checkerboard as {x0, x1, y0, y1}.
+     */
+    private List<int[]> colorTiles(SpatialGrid grid, int color) {
+        List<int[]> tiles = new ArrayList<>();
+        for (int ty = color / 2; ty * tileSize < grid.getHeight(); ty += 2) {
+            for (int tx = color % 2; tx * tileSize < grid.getWidth(); tx += 2) {
+                tiles.add(new int[]{tx * tileSize, Math.min(grid.getWidth(), (tx + 1) * tileSize) - 1,
+                        ty * tileSize, Math.min(grid.getHeight(), (ty + 1) * tileSize) - 1});
+            }
+        }
+        return tiles;
+    }
+
+    private interface TileTask {
+        void run(int[] tile, TileContext context);
+    }
+}
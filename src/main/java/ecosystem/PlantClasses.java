@@ -0,0 +1,76 @@
+package ecosystem;
+
+import ecosystem.entities.Plant;
+import ecosystem.utils.LogFormer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grows the plants of an ecosystem in classes of equal optimal temperature and water needs. All plants of a
+ * class grow alike on a day, so the growth of a class is looked up in a table made for the temperature of the
+ * day, and a run of plants of one class in the list takes its water from the budget in one step for as many
+ * of them as it lasts for. The runs take their water in the order of the list, so the plants that go without
+ * water are the same as when every plant drinks by itself.
+ * <p>
+ * Single plants are not logged; the plants that wilt are logged once per species and day.
+ */
+class PlantClasses {
+    // The number of plants of the current day that found no water, by species
+    private final Map<String, Integer> wilting = new LinkedHashMap<>();
+
+    /**
+     * Grows all plants that are not eaten and records the changes in the statistics.
+     *
+     * @param plants The plants of the ecosystem.
+     * @param temperature The temperature of the day.
+     * @param water The water of the ecosystem.
+     * @param statistics The statistics of the ecosystem.
+     */
+    void grow(List<Plant> plants, int temperature, WaterBudget water, PopulationStatistics statistics) {
+        int[] table = Plant.getGrowthDeltas(temperature);
+        int size = plants.size();
+        int i = 0;
+        while (i < size) {
+            Plant first = plants.get(i);
+            if (first.isEaten()) {
+                i++;
+                continue;
+            }
+            int optimalTemperature = first.getOptimalTemperature();
+            int needs = first.getWaterNeeds();
+            // Plants of a kind mostly come in a row; eaten plants within the row take no water
+            int end = i + 1;
+            int members = 1;
+            while (end < size) {
+                Plant plant = plants.get(end);
+                if (!plant.isEaten()) {
+                    if (plant.getOptimalTemperature() != optimalTemperature || plant.getWaterNeeds() != needs) break;
+                    members++;
+                }
+                end++;
+            }
+
+            int delta = optimalTemperature >= Plant.MIN_OPTIMAL_TEMPERATURE && optimalTemperature <= Plant.MAX_OPTIMAL_TEMPERATURE
+                    ? table[optimalTemperature - Plant.MIN_OPTIMAL_TEMPERATURE]
+                    : Plant.getGrowthDelta(temperature, optimalTemperature);
+            int watered = water.reserve(members, needs);
+            for (int j = i; j < end; j++) {
+                Plant plant = plants.get(j);
+                if (plant.isEaten()) continue;
+                int growthLevel = plant.getGrowthLevel();
+                boolean hasWater = watered-- > 0;
+                if (!hasWater) wilting.merge(plant.getName(), 1, Integer::sum);
+                plant.grow(hasWater, delta);
+                statistics.plantChanged(plant, plant.getGrowthLevel() - growthLevel);
+            }
+            i = end;
+        }
+
+        for (Map.Entry<String, Integer> entry : wilting.entrySet()) {
+            LogFormer.writeLogFile(entry.getValue() + " " + entry.getKey() + " wilting due to lack of water.");
+        }
+        wilting.clear();
+    }
+}
@@ -0,0 +1,407 @@
+package ecosystem;
+
+import ecosystem.entities.Animal;
+import ecosystem.entities.AnimalKind;
+import ecosystem.entities.Plant;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running statistics of the population of an ecosystem. The counters are updated by the {@link Ecosystem}
+ * whenever an entity is born, dies, is eaten and removed, or changes its energy, age or growth level,
+ * so every query is answered in constant time instead of scanning the population.
+ * When {@link OrderedViews} are attached, the same updates keep them in order.
+ */
+public class PopulationStatistics {
+    private static final AnimalKind[] KINDS = AnimalKind.values();
+
+    private final int[] kindCounts = new int[KINDS.length];
+    private final long[] kindEnergySums = new long[KINDS.length];
+    private final long[] kindAgeSums = new long[KINDS.length];
+    private final int[] levelCounts = new int[4];
+    private final Map<String, SpeciesStatistics> animalSpecies = new LinkedHashMap<>();
+    private final Map<String, SpeciesStatistics> plantSpecies = new LinkedHashMap<>();
+
+    private int animalCount;
+    private int plantCount;
+    private long energySum;
+    private long ageSum;
+    private long growthSum;
+    private OrderedViews views;
+
+    /**
+     * Counters of one species. For plants the energy sum holds the sum of growth levels.
+     */
+    public static class SpeciesStatistics {
+        private final String name;
+        private final String kind;
+        private int count;
+        private long energySum;
+        private long ageSum;
+
+        SpeciesStatistics(String name, String kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getEnergySum() {
+            return energySum;
+        }
+
+        public long getAgeSum() {
+            return ageSum;
+        }
+
+        public double getMeanEnergy() {
+            return count == 0 ? 0 : (double) energySum / count;
+        }
+
+        public double getMeanAge() {
+            return count == 0 ? 0 : (double) ageSum / count;
+        }
+    }
+
+    /**
+     * Attaches ordered views, which are rebuilt from the given entities and maintained from then on.
+     *
+     * @param views The views to maintain.
+     * @param animals The animals of the ecosystem.
+     * @param plants The plants of the ecosystem.
+     */
+    void attachViews(OrderedViews views, List<Animal> animals, List<Plant> plants) {
+        views.rebuildAnimals(animals);
+        views.rebuildPlants(plants);
+        this.views = views;
+    }
+
+    /**
+     * Stops maintaining the ordered views, for populations that are not kept as entity objects.
+     */
+    void detachViews() {
+        views = null;
+    }
+
+    /**
+     * Adds the counters of another statistics object, for example the changes collected by one worker
+     * of a parallel tick, to these counters.
+     *
+     * @param changes The counters to add.
+     */
+    void add(PopulationStatistics changes) {
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            kindCounts[kind] += changes.kindCounts[kind];
+            kindEnergySums[kind] += changes.kindEnergySums[kind];
+            kindAgeSums[kind] += changes.kindAgeSums[kind];
+        }
+        for (int level = 0; level < levelCounts.length; level++) levelCounts[level] += changes.levelCounts[level];
+        addSpecies(animalSpecies, changes.animalSpecies);
+        addSpecies(plantSpecies, changes.plantSpecies);
+        animalCount += changes.animalCount;
+        plantCount += changes.plantCount;
+        energySum += changes.energySum;
+        ageSum += changes.ageSum;
+        growthSum += changes.growthSum;
+    }
+
+    private static void addSpecies(Map<String, SpeciesStatistics> target, Map<String, SpeciesStatistics> changes) {
+        for (SpeciesStatistics change : changes.values()) {
+            SpeciesStatistics species = target.computeIfAbsent(change.name, name -> new SpeciesStatistics(name, change.kind));
+            species.count += change.count;
+            species.energySum += change.energySum;
+            species.ageSum += change.ageSum;
+        }
+    }
+
+    /**
+     * Rebuilds the plant views, if any are attached, after growth changes that were not reported one by one.
+     *
+     * @param plants The plants of the ecosystem.
+     */
+    void refreshPlantViews(List<Plant> plants) {
+        if (views != null) views.rebuildPlants(plants);
+    }
+
+    /**
+     * Recomputes all animal counters from scratch.
+     *
+     * @param animals The animals of the ecosystem.
+     */
+    public void rebuildAnimals(List<Animal> animals) {
+        Arrays.fill(kindCounts, 0);
+        Arrays.fill(kindEnergySums, 0);
+        Arrays.fill(kindAgeSums, 0);
+        Arrays.fill(levelCounts, 0);
+        for (SpeciesStatistics species : animalSpecies.values()) {
+            species.count = 0;
+            species.energySum = 0;
+            species.ageSum = 0;
+        }
+        animalCount = 0;
+        energySum = 0;
+        ageSum = 0;
+        if (views != null) views.rebuildAnimals(null);
+        if (animals == null) return;
+        for (Animal animal : animals) animalAdded(animal);
+    }
+
+    /**
+     * Recomputes all plant counters from scratch.
+     *
+     * @param plants The plants of the ecosystem.
+     */
+    public void rebuildPlants(List<Plant> plants) {
+        for (SpeciesStatistics species : plantSpecies.values()) {
+            species.count = 0;
+            species.energySum = 0;
+        }
+        plantCount = 0;
+        growthSum = 0;
+        if (views != null) views.rebuildPlants(null);
+        if (plants == null) return;
+        for (Plant plant : plants) plantAdded(plant);
+    }
+
+    public void animalAdded(Animal animal) {
+        addAnimal(animal, animal.getQuantity());
+        if (views != null) views.animalAdded(animal);
+    }
+
+    public void animalRemoved(Animal animal) {
+        addAnimal(animal, -animal.getQuantity());
+        if (views != null) views.animalRemoved(animal);
+    }
+
+    /**
+     * Records that a new cohort took over part of the quantity of an existing one with the same state.
+     * The counters do not change.
+     *
+     * @param part The new cohort.
+     */
+    public void animalSplit(Animal part) {
+        if (views != null) views.animalSplit(part);
+    }
+
+    /**
+     * Records that the quantity of a cohort was merged into another one with the same state.
+     * The counters do not change.
+     *
+     * @param animal The cohort that was merged away.
+     */
+    public void animalMerged(Animal animal) {
+        if (views != null) views.animalMerged(animal);
+    }
+
+    private void addAnimal(Animal animal, int quantity) {
+        animalsChanged(animal, quantity, (long) animal.getEnergy() * quantity, (long) animal.getCurrentLifeTime() * quantity);
+    }
+
+    /**
+     * Records the changes of many animals of one species at once, without touching the ordered views.
+     *
+     * @param animal Any animal of the species, for its name, kind and food chain level.
+     * @param countDelta The change of the number of animals.
+     * @param energyDelta The change of their energy sum.
+     * @param ageDelta The change of their age sum, in hours.
+     */
+    void animalsChanged(Animal animal, int countDelta, long energyDelta, long ageDelta) {
+        int kind = animal.getKind().ordinal();
+        kindCounts[kind] += countDelta;
+        kindEnergySums[kind] += energyDelta;
+        kindAgeSums[kind] += ageDelta;
+        levelCounts[levelIndex(animal.getFoodChainLevel())] += countDelta;
+        SpeciesStatistics species = animalSpecies(animal);
+        species.count += countDelta;
+        species.energySum += energyDelta;
+        species.ageSum += ageDelta;
+        animalCount += countDelta;
+        energySum += energyDelta;
+        ageSum += ageDelta;
+    }
+
+    /**
+     * Records a change of energy and age of an animal that stays in the ecosystem.
+     * The changes apply to every animal the object stands for.
+     *
+     * @param animal The changed animal.
+     * @param energyDelta The change of its energy.
+     * @param ageDelta The change of its age, in hours.
+     */
+    public void animalChanged(Animal animal, int energyDelta, int ageDelta) {
+        if (energyDelta == 0 && ageDelta == 0) return;
+        int kind = animal.getKind().ordinal();
+        long energy = (long) energyDelta * animal.getQuantity();
+        long age = (long) ageDelta * animal.getQuantity();
+        kindEnergySums[kind] += energy;
+        kindAgeSums[kind] += age;
+        SpeciesStatistics species = animalSpecies(animal);
+        species.energySum += energy;
+        species.ageSum += age;
+        energySum += energy;
+        ageSum += age;
+    }
+
+    public void plantAdded(Plant plant) {
+        addPlant(plant, plant.getQuantity());
+        if (views != null) views.plantAdded(plant);
+    }
+
+    public void plantRemoved(Plant plant) {
+        addPlant(plant, -plant.getQuantity());
+        if (views != null) views.plantRemoved(plant);
+    }
+
+    public void plantSplit(Plant part) {
+        if (views != null) views.plantSplit(part);
+    }
+
+    public void plantMerged(Plant plant) {
+        if (views != null) views.plantMerged(plant);
+    }
+
+    private void addPlant(Plant plant, int quantity) {
+        plantsChanged(plant, quantity, (long) plant.getGrowthLevel() * quantity);
+    }
+
+    /**
+     * Records the changes of many plants of one species at once, without touching the ordered views.
+     *
+     * @param plant Any plant of the species, for its name.
+     * @param countDelta The change of the number of plants.
+     * @param growthDelta The change of their growth level sum.
+     */
+    void plantsChanged(Plant plant, int countDelta, long growthDelta) {
+        SpeciesStatistics species = plantSpecies(plant);
+        species.count += countDelta;
+        species.energySum += growthDelta;
+        plantCount += countDelta;
+        growthSum += growthDelta;
+    }
+
+    /**
+     * Records a change of the growth level of a plant that stays in the ecosystem.
+     * The change applies to every plant the object stands for.
+     *
+     * @param plant The changed plant.
+     * @param growthDelta The change of its growth level.
+     */
+    public void plantChanged(Plant plant, int growthDelta) {
+        if (growthDelta == 0) return;
+        long growth = (long) growthDelta * plant.getQuantity();
+        plantSpecies(plant).energySum += growth;
+        growthSum += growth;
+        if (views != null) views.plantGrown(plant, plant.getGrowthLevel() - growthDelta);
+    }
+
+    public int getAnimalCount() {
+        return animalCount;
+    }
+
+    public int getPlantCount() {
+        return plantCount;
+    }
+
+    public int getKindCount(AnimalKind kind) {
+        return kindCounts[kind.ordinal()];
+    }
+
+    public double getKindMeanEnergy(AnimalKind kind) {
+        int count = kindCounts[kind.ordinal()];
+        return count == 0 ? 0 : (double) kindEnergySums[kind.ordinal()] / count;
+    }
+
+    public double getKindMeanAge(AnimalKind kind) {
+        int count = kindCounts[kind.ordinal()];
+        return count == 0 ? 0 : (double) kindAgeSums[kind.ordinal()] / count;
+    }
+
+    /**
+     * Returns the number of animals on a food chain level.
+     *
+     * @param foodChainLevel The food chain level, from 1 to 3.
+     * @return The number of animals on that level.
+     */
+    public int getLevelCount(int foodChainLevel) {
+        return levelCounts[levelIndex(foodChainLevel)];
+    }
+
+    /**
+     * Returns the number of animals with the given name.
+     *
+     * @param name The name of the species.
+     * @return The number of animals of that species.
+     */
+    public int getSpeciesCount(String name) {
+        SpeciesStatistics species = animalSpecies.get(name);
+        return species == null ? 0 : species.count;
+    }
+
+    public int getPlantSpeciesCount(String name) {
+        SpeciesStatistics species = plantSpecies.get(name);
+        return species == null ? 0 : species.count;
+    }
+
+    public double getMeanEnergy() {
+        return animalCount == 0 ? 0 : (double) energySum / animalCount;
+    }
+
+    public double getMeanAge() {
+        return animalCount == 0 ? 0 : (double) ageSum / animalCount;
+    }
+
+    public double getMeanGrowthLevel() {
+        return plantCount == 0 ? 0 : (double) growthSum / plantCount;
+    }
+
+    /**
+     * Returns the statistics of all animal species seen so far, including extinct ones, in order of appearance.
+     */
+    public Collection<SpeciesStatistics> getAnimalSpecies() {
+        return Collections.unmodifiableCollection(animalSpecies.values());
+    }
+
+    /**
+     * Returns the statistics of all plant species seen so far, including extinct ones, in order of appearance.
+     */
+    public Collection<SpeciesStatistics> getPlantSpecies() {
+        return Collections.unmodifiableCollection(plantSpecies.values());
+    }
+
+    private SpeciesStatistics animalSpecies(Animal animal) {
+        SpeciesStatistics species = animalSpecies.get(animal.getName());
+        if (species == null) {
+            species = new SpeciesStatistics(animal.getName(), animal.getKind().getDisplayName());
+            animalSpecies.put(animal.getName(), species);
+        }
+        return species;
+    }
+
+    private SpeciesStatistics plantSpecies(Plant plant) {
+        SpeciesStatistics species = plantSpecies.get(plant.getName());
+        if (species == null) {
+            species = new SpeciesStatistics(plant.getName(), "Plant");
+            plantSpecies.put(plant.getName(), species);
+        }
+        return species;
+    }
+
+    private static int levelIndex(int foodChainLevel) {
+        return foodChainLevel >= 1 && foodChainLevel <= 3 ? foodChainLevel : 0;
+    }
+}
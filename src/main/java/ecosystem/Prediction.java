@@ -1,66 +1,55 @@
 package ecosystem;
 
-import ecosystem.entities.*;
+import ecosystem.entities.AnimalKind;
+import ecosystem.projection.PopulationProjection;
+import ecosystem.projection.ProjectionResult;
 
 public class Prediction {
+    private static final int PREDICTION_DAYS = 30;
 
     /**
-     * Predicts the potential changes in populations of herbivores, omnivores, carnivores, and plants within the ecosystem.
+     * Predicts the potential changes in populations of herbivores, omnivores, carnivores, and plants within the ecosystem
+     * and prints the report of {@link #report}.
      *
      * @param ecosystem The ecosystem to analyze for population changes.
      */
     public static void predictPopulationChange(Ecosystem ecosystem) {
-        System.out.println("Population Change Predictions:");
-
-        // Initialize counters for each type of animal
-        int herbivoreCount = 0, omnivoreCount = 0, carnivoreCount = 0;
+        System.out.print(report(ecosystem));
+    }
 
-        // Get the current counts of plants and animals
-        int plantsCount = ecosystem.getPlants().size();
-        int animalsCount = ecosystem.getAnimals().size();
+    /**
+     * Predicts the potential changes in populations of herbivores, omnivores, carnivores, and plants within the ecosystem.
+     * The populations are projected {@value #PREDICTION_DAYS} days ahead with the {@link PopulationProjection},
+     * and a population is expected to change when its projected mean differs from the current count by more than 10%.
+     *
+     * @param ecosystem The ecosystem to analyze for population changes.
+     * @return The predictions followed by the projected populations, one per line.
+     */
+    public static String report(Ecosystem ecosystem) {
+        StringBuilder report = new StringBuilder("Population Change Predictions:").append(System.lineSeparator());
 
-        // Count the number of each type of animal in the ecosystem
-        for (Animal animal : ecosystem.getAnimals()){
-            switch (animal.getClass().getSimpleName()){
-                case "Omnivore":
-                    omnivoreCount++;
-                    break;
-                case "Herbivore":
-                    herbivoreCount++;
-                    break;
-                case "Carnivore":
-                    carnivoreCount++;
-                    break;
-            }
+        ProjectionResult projection = PopulationProjection.of(ecosystem).project(PREDICTION_DAYS);
+        for (AnimalKind kind : AnimalKind.values()) {
+            appendTrend(report, kind.getDisplayName().toLowerCase(), projection.getTotal(kind.getDisplayName()), projection);
         }
+        appendTrend(report, "plant", projection.getTotal("Plant"), projection);
 
-        // Predict changes in the herbivore population
-        if ((float) herbivoreCount / animalsCount > 0.5 && (herbivoreCount + omnivoreCount) > plantsCount){
-            System.out.println("The herbivore population is likely to increase.");
-        }else if ((float) herbivoreCount / animalsCount > 0.5 || (herbivoreCount + omnivoreCount) > plantsCount){
-            System.out.println("The herbivore population is likely to remain stable.");
-        }else System.out.println("The herbivore population is likely to decrease.");
-
-        // Predict changes in the omnivore population
-        if ((float) omnivoreCount / animalsCount > 0.25 && (herbivoreCount + omnivoreCount) > plantsCount){
-            System.out.println("The omnivore population is likely to increase.");
-        }else if ((float) omnivoreCount / animalsCount > 0.25 || (herbivoreCount + omnivoreCount) > plantsCount){
-            System.out.println("The omnivore population is likely to remain stable.");
-        }else System.out.println("The omnivore population is likely to decrease.");
-
-        // Predict changes in the carnivore population
-        if ((float) carnivoreCount / animalsCount > 0.25 && (float) carnivoreCount / animalsCount < 0.8){
-            System.out.println("The carnivore population is likely to increase.");
-        } else if ((float) carnivoreCount / animalsCount < 0.25) {
-            System.out.println("The carnivore population is likely to remain stable.");
-        }else System.out.println("The carnivore population is likely to decrease.");
-
-        // Predict changes in the plant population
-        if ((float) plantsCount / (herbivoreCount + omnivoreCount) > 2){
-            System.out.println("The plant population is likely to increase.");
-        } else if ((float) plantsCount / (herbivoreCount + omnivoreCount) < 2 && (float) plantsCount / (herbivoreCount + omnivoreCount) > 1) {
-            System.out.println("The plant population is likely to remain stable.");
-        }else System.out.println("The plant population is likely to decrease.");
+        report.append(String.format("Projected %d days in %d runs in %.1f ms:%n",
+                projection.getDays(), projection.getRuns(), projection.getElapsedMillis()));
+        report.append(projection.format(10));
+        return report.toString();
+    }
 
+    private static void appendTrend(StringBuilder report, String name, ProjectionResult.Series series, ProjectionResult projection) {
+        int days = projection.getDays();
+        double current = series.getMean(0);
+        double projected = series.getMean(days);
+        String trend;
+        if (projected > current * 1.1) trend = "increase";
+        else if (projected < current * 0.9) trend = "decrease";
+        else trend = "remain stable";
+        report.append(String.format("The %s population is likely to %s (now %.0f, in %d days %.0f, %.0f%% range %.0f-%.0f).%n",
+                name, trend, current, days, projected, projection.getConfidence() * 100,
+                series.getLower(days), series.getUpper(days)));
     }
 }
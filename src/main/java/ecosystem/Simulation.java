@@ -1,10 +1,73 @@
 package ecosystem;
 
+import java.io.IOException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import ecosystem.entities.*;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import ecosystem.metrics.TickPhase;
+import ecosystem.metrics.TickProfiler;
 
 public class Simulation {
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final List<SimulationListener> listeners = new ArrayList<>();
+    private boolean fastForward = Boolean.getBoolean("ecosystem.fastForward");
+    private boolean quiet;
+    // Published after every day of a run for other threads
+    private volatile SimulationProgress progress;
+
+    /**
+     * Switches the fast-forward over quiescent days, see {@link Ecosystem#fastForward}. It is off unless the
+     * system property ecosystem.fastForward is true, and it only applies while no listener is registered,
+     * since listeners expect to see every day.
+     *
+     * @param fastForward true to advance quiescent days at once.
+     */
+    public void setFastForward(boolean fastForward) {
+        this.fastForward = fastForward;
+    }
+
+    public boolean isFastForward() {
+        return fastForward;
+    }
+
+    /**
+     * Switches off the messages that {@link #simulate} prints on the console, for simulations driven by other
+     * programs.
+     *
+     * @param quiet true to print nothing.
+     */
+    public void setQuiet(boolean quiet) {
+        this.quiet = quiet;
+    }
+
+    /**
+     * Registers a listener that is notified after every simulated day.
+     *
+     * @param listener The listener to be notified.
+     */
+    public void addListener(SimulationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously added listener.
+     *
+     * @param listener The listener to be removed.
+     */
+    public void removeListener(SimulationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the progress of the current or the last run, or null if nothing was simulated yet. It may be
+     * called from any thread.
+     */
+    public SimulationProgress getProgress() {
+        return progress;
+    }
 
     /**
      * Method to simulate the ecosystem over a specified period.
@@ -15,41 +78,130 @@ public class Simulation {
      * @param simulationTime The duration of the simulation, in hours.
      */
     public void simulate(Ecosystem ecosystem, int simulationTime) {
-        SecureRandom secureRandom = new SecureRandom();
-        System.out.println("Starting simulation...");
-        System.out.println("Current temperature: " + ecosystem.getTemperature());
-        System.out.println("Current humidity: " + ecosystem.getHumidity());
-        System.out.println("Available water: " + ecosystem.getWaterAmount());
-        System.out.println("Please wait for the simulation to complete.");
-
-        // Loop through the specified simulation time
-        for(int i = 0; i <= simulationTime; i++){
-
-            // Every 24 hours, simulate actions and growth
-            if(i % 24 == 0){
-
-                ecosystem.growAllPlants(ecosystem);
-                removeMinusGrowthPlants(ecosystem);
-
-                ecosystem.actAllAnimals(ecosystem);
-                removeDeadAnimals(ecosystem);
-                removeOldAnimals(ecosystem);
-
-                // Randomly determine weather effects (rain, sunny day, or cloudy day)
-                switch(secureRandom.nextInt(3)){
-                    case 0:
-                        ecosystem.callRain();
-                        break;
-                    case 1:
-                        ecosystem.callSunnyDay();
-                        break;
-                    case 2:
-                        ecosystem.callCloudyDay();
-                        break;
+        simulate(ecosystem, simulationTime, () -> false);
+    }
+
+    /**
+     * Simulates the ecosystem over a specified period unless it is cancelled. Cancellation is checked between
+     * days, so a cancelled run leaves the ecosystem as it was at the end of the last simulated day.
+     *
+     * @param ecosystem The ecosystem to be simulated.
+     * @param simulationTime The duration of the simulation, in hours.
+     * @param cancelled Returns true once the run should stop.
+     * @return The number of days simulated.
+     */
+    public int simulate(Ecosystem ecosystem, int simulationTime, BooleanSupplier cancelled) {
+        if (!quiet) {
+            System.out.println("Starting simulation...");
+            System.out.println("Current temperature: " + ecosystem.getTemperature());
+            System.out.println("Current humidity: " + ecosystem.getHumidity());
+            System.out.println("Available water: " + ecosystem.getWaterAmount());
+            System.out.println("Please wait for the simulation to complete.");
+        }
+
+        // Every 24 hours of the specified simulation time, simulate actions and growth
+        int days = simulationTime / 24 + 1;
+        int day = 0;
+        long start = System.nanoTime();
+        long entityDays = 0;
+        boolean snapshotFailed = false;
+        publishProgress(ecosystem, day, days, entityDays, start, false);
+        while(day < days && !cancelled.getAsBoolean()){
+            int skipped = fastForward && listeners.isEmpty()
+                    ? ecosystem.fastForward(days - day, () -> changeWeather(ecosystem)) : 0;
+            if (skipped > 0) {
+                day += skipped;
+            } else {
+                simulateDay(ecosystem);
+
+                // Notify listeners that the day is over
+                for (SimulationListener listener : listeners) {
+                    listener.onDayCompleted(ecosystem, day);
                 }
+                day++;
             }
+            if (!snapshotFailed) snapshotFailed = !saveSnapshot(ecosystem);
+            PopulationStatistics statistics = ecosystem.getStatistics();
+            entityDays += (long) Math.max(1, skipped) * (statistics.getAnimalCount() + statistics.getPlantCount());
+            publishProgress(ecosystem, day, days, entityDays, start, day == days);
+        }
+        if (day < days) publishProgress(ecosystem, day, days, entityDays, start, true);
+        if (!quiet) System.out.println(day < days ? "Simulation cancelled after " + day + " days." : "Simulation completed.");
+        return day;
+    }
+
+    /**
+     * Saves the ecosystem as the next snapshot of its store if it is in off-heap mode with mapped files, so the
+     * directory always holds the state at the end of a whole day.
+     *
+     * @return false if the snapshot failed; the error is printed and the last snapshot stays intact.
+     */
+    private static boolean saveSnapshot(Ecosystem ecosystem) {
+        if (!ecosystem.isOffHeapMode() || !ecosystem.getEntityStore().isMapped()) return true;
+        try {
+            ecosystem.snapshot();
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error while saving the snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void publishProgress(Ecosystem ecosystem, int day, int days, long entityDays, long start, boolean finished) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (PopulationStatistics.SpeciesStatistics species : ecosystem.getStatistics().getAnimalSpecies()) {
+            if (species.getCount() > 0) counts.put(species.getName(), species.getCount());
+        }
+        for (PopulationStatistics.SpeciesStatistics species : ecosystem.getStatistics().getPlantSpecies()) {
+            if (species.getCount() > 0) counts.merge(species.getName(), species.getCount(), Integer::sum);
+        }
+        progress = new SimulationProgress(day, days, entityDays, System.nanoTime() - start, counts, finished);
+    }
+
+    /**
+     * Simulates a single day: plants grow, animals act, the dead are removed
+     * and the weather changes.
+     *
+     * @param ecosystem The ecosystem to be simulated.
+     */
+    public void simulateDay(Ecosystem ecosystem) {
+        TickProfiler.startTick();
+
+        ecosystem.growAllPlants(ecosystem);
+        long phaseStart = TickProfiler.start();
+        removeMinusGrowthPlants(ecosystem);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        ecosystem.actAllAnimals(ecosystem);
+        phaseStart = TickProfiler.start();
+        removeDeadAnimals(ecosystem);
+        removeOldAnimals(ecosystem);
+        TickProfiler.stop(TickPhase.COMPACTION, phaseStart);
+
+        phaseStart = TickProfiler.start();
+        changeWeather(ecosystem);
+        TickProfiler.stop(TickPhase.WEATHER, phaseStart);
+
+        TickProfiler.endTick(ecosystem.getStatistics().getAnimalCount(), ecosystem.getStatistics().getPlantCount());
+    }
+
+    /**
+     * Randomly determines the weather effects of the end of a day (rain, sunny day, or cloudy day).
+     *
+     * @param ecosystem The ecosystem whose weather changes.
+     */
+    private void changeWeather(Ecosystem ecosystem) {
+        switch(secureRandom.nextInt(3)){
+            case 0:
+                ecosystem.callRain();
+                break;
+            case 1:
+                ecosystem.callSunnyDay();
+                break;
+            case 2:
+                ecosystem.callCloudyDay();
+                break;
         }
-        System.out.println("Simulation completed.");
     }
 
     /**
@@ -58,9 +210,7 @@ public class Simulation {
      * @param ecosystem The ecosystem from which to remove dead animals.
      */
     public void removeDeadAnimals(Ecosystem ecosystem){
-        List<Animal> animals = ecosystem.getAnimals();
-        animals.removeIf(animal -> animal.getEnergy() < 0);
-        ecosystem.setAnimals(animals);
+        ecosystem.removeDeadAnimals();
     }
 
     /**
@@ -69,9 +219,7 @@ public class Simulation {
      * @param ecosystem The ecosystem from which to remove old animals.
      */
     public void removeOldAnimals(Ecosystem ecosystem){
-        List<Animal> animals = ecosystem.getAnimals();
-        animals.removeIf(animal -> animal.getLifeTime() < animal.getCurrentLifeTime());
-        ecosystem.setAnimals(animals);
+        ecosystem.removeOldAnimals();
     }
 
     /**
@@ -80,9 +228,7 @@ public class Simulation {
      * @param ecosystem The ecosystem from which to remove plants with negative growth.
      */
     public void removeMinusGrowthPlants(Ecosystem ecosystem){
-        List<Plant> plants = ecosystem.getPlants();
-        plants.removeIf(plant -> plant.getGrowthLevel() < 0);
-        ecosystem.setPlants(plants);
+        ecosystem.removeMinusGrowthPlants();
     }
 
 }
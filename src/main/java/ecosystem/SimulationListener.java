@@ -0,0 +1,13 @@
+package ecosystem;
+
+public interface SimulationListener {
+
+    /**
+     * Called by the simulation after every simulated day, once the plants have grown,
+     * the animals have acted, the dead have been removed and the weather has changed.
+     *
+     * @param ecosystem The ecosystem being simulated.
+     * @param day The number of the completed day within the current simulation run, starting at 0.
+     */
+    void onDayCompleted(Ecosystem ecosystem, int day);
+}
@@ -0,0 +1,79 @@
+package ecosystem;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The state of a simulation run after a simulated day. The simulation publishes a new snapshot after every
+ * day, so other threads can read the progress at any time without locking and without touching the ecosystem.
+ */
+public final class SimulationProgress {
+    private final int day;
+    private final int days;
+    private final long entityDays;
+    private final long elapsedNanos;
+    private final Map<String, Integer> speciesCounts;
+    private final boolean finished;
+
+    SimulationProgress(int day, int days, long entityDays, long elapsedNanos, Map<String, Integer> speciesCounts,
+                       boolean finished) {
+        this.day = day;
+        this.days = days;
+        this.entityDays = entityDays;
+        this.elapsedNanos = elapsedNanos;
+        this.speciesCounts = Collections.unmodifiableMap(speciesCounts);
+        this.finished = finished;
+    }
+
+    /**
+     * Returns the number of days simulated so far.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Returns the number of days of the whole run.
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * Returns the number of entities processed per second of the run, counting every entity once per day.
+     */
+    public double getEntitiesPerSecond() {
+        return elapsedNanos == 0 ? 0 : entityDays * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the number of living animals and plants of every species, in order of appearance.
+     */
+    public Map<String, Integer> getSpeciesCounts() {
+        return speciesCounts;
+    }
+
+    /**
+     * Returns whether the run is over, because all days were simulated or it was cancelled.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns the progress as one line, for example "Day 12/42, 1.5M entities/s, wolf 21, fern 6473".
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder("Day ").append(day).append('/').append(days).append(", ");
+        double rate = getEntitiesPerSecond();
+        if (rate >= 1e6) line.append(String.format("%.1fM", rate / 1e6));
+        else if (rate >= 1e3) line.append(String.format("%.1fk", rate / 1e3));
+        else line.append(String.format("%.0f", rate));
+        line.append(" entities/s");
+        for (Map.Entry<String, Integer> species : speciesCounts.entrySet()) {
+            line.append(", ").append(species.getKey()).append(' ').append(species.getValue());
+        }
+        return line.toString();
+    }
+}
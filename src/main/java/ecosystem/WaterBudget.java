@@ -0,0 +1,190 @@
+package ecosystem;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The shared water of an ecosystem. Water is taken with a compare-and-set on one counter, so entities may
+ * drink from several threads at once without a lock and without lost updates.
+ * <p>
+ * Batches of equal consumers reserve their water in one step with {@link #reserve}. A thread that takes
+ * water for many entities in a row opens a {@link Lease}: it draws water from the budget in chunks and hands
+ * it out without touching the shared counter, and when the lease is closed at the end of the phase the water
+ * it did not hand out goes back. While the lease is open, {@link #take} on its thread draws from the lease.
+ * The amount of the budget is exact whenever no lease is open; while leases are open the water they hold is
+ * not part of it.
+ */
+public final class WaterBudget {
+    private static final ThreadLocal<Lease> LEASE = new ThreadLocal<>();
+
+    private final AtomicLong available;
+    private final AtomicInteger openLeases = new AtomicInteger();
+
+    public WaterBudget(long amount) {
+        available = new AtomicLong(amount);
+    }
+
+    /**
+     * Returns the amount of water that is not held by open leases.
+     */
+    public long getAmount() {
+        return available.get();
+    }
+
+    /**
+     * Replaces the amount of water. It must not be called while leases are open.
+     */
+    public void set(long amount) {
+        available.set(amount);
+    }
+
+    /**
+     * Adds water, or removes it if the change is negative; the amount may become negative until it is limited.
+     */
+    public void add(long delta) {
+        available.addAndGet(delta);
+    }
+
+    /**
+     * Takes water if there is enough: from the lease of the current thread if it has one, otherwise from the
+     * shared amount.
+     *
+     * @param amount The amount of water.
+     * @return true if the water was taken.
+     */
+    public boolean take(int amount) {
+        if (openLeases.get() > 0) {
+            Lease lease = LEASE.get();
+            if (lease != null && lease.budget == this) return lease.take(amount);
+        }
+        return takeShared(amount);
+    }
+
+    private boolean takeShared(long amount) {
+        return draw(amount, amount) == amount;
+    }
+
+    /**
+     * Takes up to the wanted amount of water, but nothing if less than the minimum is left.
+     *
+     * @return The amount taken.
+     */
+    private long draw(long wanted, long minimum) {
+        while (true) {
+            long current = available.get();
+            long amount = Math.min(wanted, Math.max(0, current));
+            if (amount < minimum || amount == 0) return 0;
+            if (available.compareAndSet(current, current - amount)) return amount;
+        }
+    }
+
+    /**
+     * Reserves water for a batch of consumers that each need the same amount, as many of them as the water
+     * lasts for.
+     *
+     * @param consumers The number of consumers.
+     * @param needs The water needed by each of them.
+     * @return The number of consumers whose water was taken.
+     */
+    public int reserve(int consumers, int needs) {
+        if (needs <= 0 || consumers <= 0) return Math.max(0, consumers);
+        while (true) {
+            long current = available.get();
+            int granted = (int) Math.min(consumers, Math.max(0, current) / needs);
+            if (granted == 0) return 0;
+            if (available.compareAndSet(current, current - (long) granted * needs)) return granted;
+        }
+    }
+
+    /**
+     * Subtracts water that was already taken elsewhere, for example from the cells of a grid by parallel
+     * workers that report their consumption at the end of a phase.
+     */
+    public void consumed(long amount) {
+        available.addAndGet(-amount);
+    }
+
+    /**
+     * Opens a lease for the current thread, which then takes its water from the lease until it is closed.
+     *
+     * @param chunk The amount of water drawn from the budget at a time.
+     * @return The lease.
+     */
+    public Lease lease(int chunk) {
+        if (LEASE.get() != null) throw new IllegalStateException("The thread already holds a water lease.");
+        Lease lease = new Lease(this, Math.max(1, chunk));
+        LEASE.set(lease);
+        openLeases.incrementAndGet();
+        return lease;
+    }
+
+    /**
+     * A sub-budget of one thread. It is not thread-safe and must be closed by the thread that opened it.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final WaterBudget budget;
+        private final int chunk;
+        private long local;
+        private long taken;
+        private boolean closed;
+
+        private Lease(WaterBudget budget, int chunk) {
+            this.budget = budget;
+            this.chunk = chunk;
+        }
+
+        /**
+         * Takes water from the lease, drawing another chunk from the budget when the lease runs short.
+         * Water is refused only when the lease and the shared amount together do not have enough.
+         *
+         * @param amount The amount of water.
+         * @return true if the water was taken.
+         */
+        public boolean take(int amount) {
+            if (local < amount) {
+                local += budget.draw(Math.max(chunk, amount - local), amount - local);
+                if (local < amount) return false;
+            }
+            local -= amount;
+            taken += amount;
+            return true;
+        }
+
+        /**
+         * Takes water for as many of a batch of consumers as the lease and the budget allow.
+         *
+         * @param consumers The number of consumers.
+         * @param needs The water needed by each of them.
+         * @return The number of consumers whose water was taken.
+         */
+        public int reserve(int consumers, int needs) {
+            if (needs <= 0 || consumers <= 0) return Math.max(0, consumers);
+            long wanted = (long) consumers * needs;
+            if (local < wanted) local += budget.draw(Math.max(chunk, wanted - local), 0);
+            int granted = (int) Math.min(consumers, local / needs);
+            local -= (long) granted * needs;
+            taken += (long) granted * needs;
+            return granted;
+        }
+
+        /**
+         * Returns the water handed out by the lease so far.
+         */
+        public long getTaken() {
+            return taken;
+        }
+
+        /**
+         * Returns the water the lease did not hand out to the budget and ends the lease.
+         */
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            budget.available.addAndGet(local);
+            local = 0;
+            LEASE.remove();
+            budget.openLeases.decrementAndGet();
+        }
+    }
+}
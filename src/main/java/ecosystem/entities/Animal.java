@@ -3,13 +3,23 @@ package ecosystem.entities;
 import ecosystem.Ecosystem;
 
 public abstract class Animal {
-    private final String name;
+    public static final int REST_COST = 5;
+    // Animals with at least this energy rest instead of eating and may reproduce
+    public static final int FULL_ENERGY = 100;
+    // Animals reproduce from this age on, in hours
+    public static final int ADULT_AGE = 1000;
+
+    private String name;
     protected int energy;
     protected int foodChainLevel;
     protected int lifeTime;
     protected int currentLifeTime;
     protected boolean isEaten;
-    protected int waterNeeds;
+    // Index of the parameters of the species, or of its kind and level, in SpeciesTraits
+    protected int traits;
+    protected int quantity = 1;
+    protected int x = -1;
+    protected int y = -1;
 
     public Animal(String name, int energy, int foodChainLevel, int lifeTime, int currentLifeTime) {
         this.name = name;
@@ -18,6 +28,24 @@ public abstract class Animal {
         this.lifeTime = lifeTime;
         this.currentLifeTime = currentLifeTime;
         isEaten = false;
+        traits = SpeciesTraits.index(getKind(), name, foodChainLevel);
+    }
+
+    /**
+     * Makes a dead animal a newborn of another species of the same kind, so that its object can be reused.
+     * It must no longer be referred to as the animal it was.
+     */
+    public void reset(String name, int energy, int foodChainLevel, int lifeTime, int currentLifeTime) {
+        this.name = name;
+        this.energy = energy;
+        this.foodChainLevel = foodChainLevel;
+        this.lifeTime = lifeTime;
+        this.currentLifeTime = currentLifeTime;
+        isEaten = false;
+        traits = SpeciesTraits.index(getKind(), name, foodChainLevel);
+        quantity = 1;
+        x = -1;
+        y = -1;
     }
 
     public String getName() {
@@ -28,6 +56,10 @@ public abstract class Animal {
         return energy;
     }
 
+    public void setEnergy(int energy) {
+        this.energy = energy;
+    }
+
     public int getFoodChainLevel() {
         return foodChainLevel;
     }
@@ -44,6 +76,18 @@ public abstract class Animal {
         this.currentLifeTime = currentLifeTime;
     }
 
+    public int getWaterNeeds() {
+        return SpeciesTraits.waterNeeds(traits);
+    }
+
+    /**
+     * Returns the index of the parameters of the species of the animal, or of its kind and food chain level, in
+     * {@link SpeciesTraits}.
+     */
+    public int getTraits() {
+        return traits;
+    }
+
     public boolean isEaten() {
         return isEaten;
     }
@@ -52,6 +96,51 @@ public abstract class Animal {
         isEaten = eaten;
     }
 
+    /**
+     * Returns the number of identical animals this object stands for. It is 1 unless the ecosystem
+     * is in cohort mode.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * Returns the column of the cell of the animal in spatial mode, or -1 if it has no position.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the row of the cell of the animal in spatial mode, or -1 if it has no position.
+     */
+    public int getY() {
+        return y;
+    }
+
+    public void setPosition(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Creates an animal of the same class with the same state, quantity and position.
+     *
+     * @return The copy.
+     */
+    public abstract Animal copy();
+
+    /**
+     * Returns the diet of the animal.
+     *
+     * @return The kind of the animal.
+     */
+    public abstract AnimalKind getKind();
+
     /**
      * Determines the logic of animal behavior
      *
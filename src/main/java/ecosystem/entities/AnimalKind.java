@@ -0,0 +1,20 @@
+package ecosystem.entities;
+
+/**
+ * The diet of an animal, which determines how it searches for food.
+ */
+public enum AnimalKind {
+    HERBIVORE("Herbivore"),
+    OMNIVORE("Omnivore"),
+    CARNIVORE("Carnivore");
+
+    private final String displayName;
+
+    AnimalKind(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
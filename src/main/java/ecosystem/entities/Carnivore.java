@@ -3,20 +3,25 @@ package ecosystem.entities;
 import ecosystem.Ecosystem;
 import ecosystem.utils.LogFormer;
 
-import java.security.SecureRandom;
-import java.util.List;
-import java.util.Objects;
+import java.util.Random;
 
 public class Carnivore extends Animal {
-
     public Carnivore(String name, int energy, int foodChainLevel, int lifeTime, int currentLifeTime) {
         super(name, energy, foodChainLevel, lifeTime, currentLifeTime);
-        this.waterNeeds = switch (foodChainLevel){
-            case 1 -> 5;
-            case 2 -> 7;
-            case 3 -> 9;
-            default -> 0; // This should never happen
-        };
+    }
+
+    @Override
+    public AnimalKind getKind() {
+        return AnimalKind.CARNIVORE;
+    }
+
+    @Override
+    public Animal copy() {
+        Animal copy = new Carnivore(getName(), energy, foodChainLevel, lifeTime, currentLifeTime);
+        copy.isEaten = isEaten;
+        copy.quantity = quantity;
+        copy.setPosition(x, y);
+        return copy;
     }
 
     /**
@@ -30,15 +35,15 @@ public class Carnivore extends Animal {
     public void act(Ecosystem ecosystem) {
         setCurrentLifeTime(getCurrentLifeTime() + 24);
 
-        if(ecosystem.getWaterAmount() < waterNeeds){
+        if(!ecosystem.takeWater(x, y, getWaterNeeds())){
             LogFormer.writeLogFile(getName() + " cannot find water.");
-            energy -= 5;
-        }else ecosystem.setWaterAmount(ecosystem.getWaterAmount() - waterNeeds);
+            energy -= SpeciesTraits.thirstPenalty(traits);
+        }
 
-        if(energy < 100){
+        if(energy < FULL_ENERGY){
             LogFormer.writeLogFile(getName() + " explores the area in search of food.");
             huntAnimals(ecosystem);
-        }else energy -= 5;
+        }else energy -= REST_COST;
     }
 
 
@@ -48,39 +53,27 @@ public class Carnivore extends Animal {
      * @param ecosystem The ecosystem containing animals to hunt.
      */
     private void huntAnimals(Ecosystem ecosystem) {
-        final SecureRandom secureRandom = new SecureRandom();
+        final Random random = ecosystem.getRandom();
 
-        // Count the number of potential prey that can be hunted
-        long countCanBeHunted = ecosystem.getAnimals().stream()
-                .filter(animal -> !Objects.equals(animal.getName(), getName()) && animal.getFoodChainLevel() <= foodChainLevel && !animal.isEaten())
-                .count();
+        // Randomly select a target for hunting (not self, within food chain level, and not already eaten)
+        Animal prey = ecosystem.findPrey(this, true);
 
         // If no prey is available, log a message and reduce energy
-        if (countCanBeHunted == 0) {
+        if (prey == null) {
             LogFormer.writeLogFile("The hunt was unsuccessful (no prey available).");
-            energy -= 20;
+            energy -= SpeciesTraits.noPreyPenalty(traits);
             return;
         }
 
-        // Randomly select a target for hunting
-        int animalNumber = secureRandom.nextInt(ecosystem.getAnimals().size());
-
-        // Ensure the selected target is valid (not self, within food chain level, and not already eaten)
-        while (Objects.equals(ecosystem.getAnimals().get(animalNumber).getName(), getName()) ||
-                ecosystem.getAnimals().get(animalNumber).getFoodChainLevel() > foodChainLevel ||
-                ecosystem.getAnimals().get(animalNumber).isEaten) {
-            animalNumber = secureRandom.nextInt(ecosystem.getAnimals().size());
-        }
-
         // Attempt to hunt the selected target, and log the result
-        int energyGain = getEnergyGain(foodChainLevel);
-        if (secureRandom.nextDouble() > 0.2) { // 80% success rate for hunting
-            LogFormer.writeLogFile(getName() + " successfully hunts for " + ecosystem.getAnimals().get(animalNumber).getName());
-            ecosystem.getAnimals().get(animalNumber).setEaten(true);
+        int energyGain = SpeciesTraits.huntEnergyGain(traits);
+        if (random.nextDouble() < SpeciesTraits.huntSuccess(traits)) {
+            LogFormer.writeLogFile(getName() + " successfully hunts for " + prey.getName());
+            prey.setEaten(true);
             energy += energyGain;
         } else {
             LogFormer.writeLogFile("The hunt was unsuccessful (the prey escaped).");
-            energy -= 10;
+            energy -= SpeciesTraits.escapePenalty(traits);
         }
 
     }
@@ -94,71 +87,24 @@ public class Carnivore extends Animal {
      * @return A new Animal instance of the same species if reproduction is successful; otherwise, null.
      */
     public Animal reproduce(Ecosystem ecosystem) {
-        final SecureRandom secureRandom = new SecureRandom();
-        List<Animal> animals = ecosystem.getAnimals();
+        final Random random = ecosystem.getRandom();
 
         // Check if the animal has enough energy, has lived long enough, is not eaten,
         // and meets the chance of reproducing based on food chain level
-        if (energy >= 100 && currentLifeTime >= 1000 && !isEaten && secureRandom.nextDouble() > getReproduceChance(foodChainLevel)) {
+        if (energy >= FULL_ENERGY && currentLifeTime >= ADULT_AGE && !isEaten && random.nextDouble() > SpeciesTraits.reproduceChance(traits)) {
 
             // Count the number of existing animals of the same species
-            long countSameSpecies = animals.stream()
-                    .filter(animal -> Objects.equals(animal.getName(), getName()))
-                    .count();
+            int countSameSpecies = ecosystem.getStatistics().getSpeciesCount(getName());
 
             // If there are at least two of the same species, proceed to reproduce
             if (countSameSpecies >= 2) {
-                int energyCost = getEnergyCost(getFoodChainLevel());
+                int energyCost = SpeciesTraits.reproduceEnergyCost(traits);
 
                 energy -= energyCost;
-                return new Carnivore(getName(), 60, getFoodChainLevel(), getLifeTime(), 0);
+                return ecosystem.newAnimal(getKind(), getName(), SpeciesTraits.newbornEnergy(traits), getFoodChainLevel(), getLifeTime());
             }
         }
         return null;
     }
 
-    /**
-     * Returns the chance of reproduction based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, determining its reproductive success rate.
-     * @return A double value representing the chance of reproduction as a percentage.
-     */
-    private double getReproduceChance(int foodChainLevel){
-        return switch (foodChainLevel){
-            case 1 -> 0.85;
-            case 2 -> 0.9;
-            case 3 -> 0.95;
-            default -> 0; // No chance for invalid levels
-        };
-    }
-
-    /**
-     * Calculates the energy cost required for reproduction based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, which determines the energy cost for reproduction.
-     * @return An integer representing the energy cost for reproduction.
-     */
-    private int getEnergyCost(int foodChainLevel) {
-        return switch (foodChainLevel){
-            case 1 -> 40;
-            case 2 -> 55;
-            case 3 -> 60;
-            default -> 0; // No chance for invalid levels
-        };
-    }
-
-    /**
-     * Calculates the energy gain obtained from hunting based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, which determines the energy gain from food.
-     * @return An integer representing the energy gain from food consumption.
-     */
-    private int getEnergyGain(int foodChainLevel) {
-        return switch (foodChainLevel) {
-            case 1 -> 45;
-            case 2, 3 -> 50;
-            default -> 0; // No chance for invalid levels
-        };
-    }
-
 }
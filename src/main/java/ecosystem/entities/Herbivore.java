@@ -3,20 +3,25 @@ package ecosystem.entities;
 import ecosystem.Ecosystem;
 import ecosystem.utils.LogFormer;
 
-import java.security.SecureRandom;
-import java.util.List;
-import java.util.Objects;
+import java.util.Random;
 
 public class Herbivore extends Animal {
-    private final SecureRandom secureRandom = new SecureRandom();
-
     public Herbivore(String name, int energy, int foodChainLevel, int lifeTime, int currentLifeTime) {
         super(name, energy, foodChainLevel, lifeTime, currentLifeTime);
-        this.waterNeeds = switch (foodChainLevel){
-            case 1 -> 4;
-            case 2, 3 -> 5;
-            default -> 0; // This should never happen
-        };
+    }
+
+    @Override
+    public AnimalKind getKind() {
+        return AnimalKind.HERBIVORE;
+    }
+
+    @Override
+    public Animal copy() {
+        Animal copy = new Herbivore(getName(), energy, foodChainLevel, lifeTime, currentLifeTime);
+        copy.isEaten = isEaten;
+        copy.quantity = quantity;
+        copy.setPosition(x, y);
+        return copy;
     }
 
     /**
@@ -30,15 +35,15 @@ public class Herbivore extends Animal {
     public void act(Ecosystem ecosystem) {
         setCurrentLifeTime(getCurrentLifeTime() + 24);
 
-        if(ecosystem.getWaterAmount() < waterNeeds){
+        if(!ecosystem.takeWater(x, y, getWaterNeeds())){
             LogFormer.writeLogFile(getName() + " cannot find water.");
-            energy -= 5;
-        }else ecosystem.setWaterAmount(ecosystem.getWaterAmount() - waterNeeds);
+            energy -= SpeciesTraits.thirstPenalty(traits);
+        }
 
-        if(energy < 100){
+        if(energy < FULL_ENERGY){
             LogFormer.writeLogFile(getName() + " explores the area in search of food.");
             eatPlant(ecosystem);
-        }else energy -= 5;
+        }else energy -= REST_COST;
 
     }
 
@@ -49,33 +54,18 @@ public class Herbivore extends Animal {
      */
     private void eatPlant(Ecosystem ecosystem) {
 
-        // Check if there are any available plants
-        if (ecosystem.getPlants().isEmpty()) {
-            LogFormer.writeLogFile(getName() + " cannot find plants for food.");
-            energy -= 5;
-            return;
-        }
-
-        // Count the number of uneaten plants
-        long countCanBeEaten = ecosystem.getPlants().stream().filter(plant -> !plant.isEaten()).count();
-        if(countCanBeEaten == 0) {
+        // Randomly select an uneaten plant within reach
+        Plant plant = ecosystem.findPlant(this);
+        if (plant == null) {
             LogFormer.writeLogFile(getName() + " cannot find plants for food.");
-            energy -= 5;
+            energy -= SpeciesTraits.noPlantPenalty(traits);
             return;
         }
 
-        // Randomly select a plant to eat
-        int plantNumber = secureRandom.nextInt(ecosystem.getPlants().size());
-
-        // Ensure the selected plant is valid (not already eaten)
-        while (ecosystem.getPlants().get(plantNumber).isEaten()){
-            plantNumber = secureRandom.nextInt(ecosystem.getPlants().size());
-        }
-
         // Log the plant being eaten and update its state
-        LogFormer.writeLogFile(getName() + " feeds on the plant " + ecosystem.getPlants().get(plantNumber).getName());
-        ecosystem.getPlants().get(plantNumber).setEaten(true);
-        energy += 65;
+        LogFormer.writeLogFile(getName() + " feeds on the plant " + plant.getName());
+        plant.setEaten(true);
+        energy += SpeciesTraits.plantEnergy(traits);
     }
 
     /**
@@ -87,56 +77,23 @@ public class Herbivore extends Animal {
      * @return A new Animal instance of the same species if reproduction is successful; otherwise, null.
      */
     public Animal reproduce(Ecosystem ecosystem) {
-        final SecureRandom secureRandom = new SecureRandom();
-        List<Animal> animals = ecosystem.getAnimals();
+        final Random random = ecosystem.getRandom();
 
         // Check if the animal has enough energy, has lived long enough, is not eaten,
         // and meets the chance of reproducing based on food chain level
-        if (energy >= 100 && currentLifeTime >= 1000 && secureRandom.nextDouble() > getReproduceChance(foodChainLevel)) {
+        if (energy >= FULL_ENERGY && currentLifeTime >= ADULT_AGE && random.nextDouble() > SpeciesTraits.reproduceChance(traits)) {
 
             // Count the number of existing animals of the same species
-            long countSameSpecies = animals.stream()
-                    .filter(animal -> Objects.equals(animal.getName(), getName()))
-                    .count();
+            int countSameSpecies = ecosystem.getStatistics().getSpeciesCount(getName());
 
             // If there are at least two of the same species, proceed to reproduce
             if (countSameSpecies >= 2) {
-                int energyCost = getEnergyCost(getFoodChainLevel());
+                int energyCost = SpeciesTraits.reproduceEnergyCost(traits);
                 energy -= energyCost;
-                return new Herbivore(getName(), 70, getFoodChainLevel(), getLifeTime(), 0);
+                return ecosystem.newAnimal(getKind(), getName(), SpeciesTraits.newbornEnergy(traits), getFoodChainLevel(), getLifeTime());
             }
         }
         return null;
     }
 
-    /**
-     * Returns the chance of reproduction based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, determining its reproductive success rate.
-     * @return A double value representing the chance of reproduction as a percentage.
-     */
-    private double getReproduceChance(int foodChainLevel){
-        return switch (foodChainLevel){
-            case 1 -> 0.4;
-            case 2 -> 0.45;
-            case 3 -> 0.55;
-            default -> 0; // No chance for invalid levels
-        };
-    }
-
-    /**
-     * Calculates the energy cost required for reproduction based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, which determines the energy cost for reproduction.
-     * @return An integer representing the energy cost for reproduction.
-     */
-    private int getEnergyCost(int foodChainLevel) {
-        return switch (foodChainLevel) {
-            case 1 -> 10;
-            case 2 -> 30;
-            case 3 -> 40;
-            default -> 0; // No chance for invalid levels
-        };
-    }
-
 }
\ No newline at end of file
@@ -3,19 +3,25 @@ package ecosystem.entities;
 import ecosystem.Ecosystem;
 import ecosystem.utils.LogFormer;
 
-import java.security.SecureRandom;
-import java.util.List;
-import java.util.Objects;
+import java.util.Random;
 
 public class Omnivore extends Animal {
-
     public Omnivore(String name, int energy, int foodChainLevel, int lifeTime, int currentLifeTime) {
         super(name, energy, foodChainLevel, lifeTime, currentLifeTime);
-        this.waterNeeds = switch (foodChainLevel){
-            case 1,2 -> 4;
-            case 3 -> 6;
-            default -> 0; // This should never happen
-        };
+    }
+
+    @Override
+    public AnimalKind getKind() {
+        return AnimalKind.OMNIVORE;
+    }
+
+    @Override
+    public Animal copy() {
+        Animal copy = new Omnivore(getName(), energy, foodChainLevel, lifeTime, currentLifeTime);
+        copy.isEaten = isEaten;
+        copy.quantity = quantity;
+        copy.setPosition(x, y);
+        return copy;
     }
 
     /**
@@ -27,29 +33,24 @@ public class Omnivore extends Animal {
      */
     @Override
     public void act(Ecosystem ecosystem) {
-        SecureRandom secureRandom = new SecureRandom();
+        final Random random = ecosystem.getRandom();
 
         setCurrentLifeTime(getCurrentLifeTime() + 24);
 
-        if(ecosystem.getWaterAmount() < waterNeeds){
+        if(!ecosystem.takeWater(x, y, getWaterNeeds())){
             LogFormer.writeLogFile(getName() + " cannot find water.");
-            energy -= 10;
-        }else ecosystem.setWaterAmount(ecosystem.getWaterAmount() - waterNeeds);
-
-        double probability = switch (foodChainLevel) {
-            case 1 -> 0.3;
-            case 2 -> 0.25;
-            case 3 -> 0.2   ;
-            default -> 0.5; // Default case for safety
-        };
-        if(energy < 100){
+            energy -= SpeciesTraits.thirstPenalty(traits);
+        }
+
+        double probability = SpeciesTraits.huntProbability(traits);
+        if(energy < FULL_ENERGY){
             LogFormer.writeLogFile(getName() + " explores the area in search of food.");
-            if (secureRandom.nextDouble() > probability) {
+            if (random.nextDouble() > probability) {
                 eatPlant(ecosystem);
             } else {
                 huntAnimals(ecosystem);
             }
-        }else energy -= 5;
+        }else energy -= REST_COST;
 
 
 
@@ -61,38 +62,27 @@ public class Omnivore extends Animal {
      * @param ecosystem The ecosystem containing animals to hunt.
      */
     private void huntAnimals(Ecosystem ecosystem) {
-        SecureRandom secureRandom = new SecureRandom();
-        // Count the number of potential prey that can be hunted
-        long countCanBeHunted = ecosystem.getAnimals().stream()
-                .filter(animal -> !Objects.equals(animal.getName(), getName()) && animal.getFoodChainLevel() <= foodChainLevel && !animal.isEaten())
-                .count();
+        final Random random = ecosystem.getRandom();
+        // Randomly select a target for hunting (not self, within food chain level)
+        Animal prey = ecosystem.findPrey(this, false);
 
         // If no prey is available, log a message and reduce energy
-        if (countCanBeHunted == 0) {
+        if (prey == null) {
             LogFormer.writeLogFile("The hunt was unsuccessful (no prey available).");
-            energy -= 15;
+            energy -= SpeciesTraits.noPreyPenalty(traits);
             return;
         }
 
-        // Randomly select a target for hunting
-        int animalNumber = secureRandom.nextInt(ecosystem.getAnimals().size());
-
-        // Ensure the selected target is valid (not self, within food chain level, and not already eaten)
-        while (Objects.equals(ecosystem.getAnimals().get(animalNumber).getName(), getName()) ||
-                ecosystem.getAnimals().get(animalNumber).getFoodChainLevel() > foodChainLevel) {
-            animalNumber = secureRandom.nextInt(ecosystem.getAnimals().size());
-        }
-
         // Attempt to hunt the selected target, and log the result
-        int energyGain = getEnergyGain(foodChainLevel);
-        if (secureRandom.nextDouble() > 0.2) { // 80% success rate for hunting
-            LogFormer.writeLogFile(getName() + " successfully hunts for " + ecosystem.getAnimals().get(animalNumber).getName());
-            ecosystem.getAnimals().get(animalNumber).setEaten(true);
+        int energyGain = SpeciesTraits.huntEnergyGain(traits);
+        if (random.nextDouble() < SpeciesTraits.huntSuccess(traits)) {
+            LogFormer.writeLogFile(getName() + " successfully hunts for " + prey.getName());
+            prey.setEaten(true);
             energy += energyGain;
 
         } else {
             LogFormer.writeLogFile("The hunt was unsuccessful (the prey escaped).");
-            energy -= 10;
+            energy -= SpeciesTraits.escapePenalty(traits);
         }
     }
 
@@ -103,35 +93,18 @@ public class Omnivore extends Animal {
      * @param ecosystem The ecosystem from which plants can be eaten, providing access to available plants.
      */
     private void eatPlant(Ecosystem ecosystem) {
-        SecureRandom secureRandom = new SecureRandom();
-
-        // Check if there are any available plants
-        if (ecosystem.getPlants().isEmpty()) {
+        // Randomly select an uneaten plant within reach
+        Plant plant = ecosystem.findPlant(this);
+        if (plant == null) {
             LogFormer.writeLogFile(getName() + " cannot find plants for food.");
-            energy -= 10; // Уменьшаем энергию при отсутствии растений
+            energy -= SpeciesTraits.noPlantPenalty(traits); // Уменьшаем энергию при отсутствии растений
             return;
         }
 
-        // Count the number of uneaten plants
-        long countCanBeEaten = ecosystem.getPlants().stream().filter(plant -> !plant.isEaten()).count();
-        if(countCanBeEaten == 0) {
-            LogFormer.writeLogFile(getName() + " cannot find plants for food.");
-            energy -= 10; // Уменьшаем энергию при отсутствии растений
-            return;
-        }
-
-        // Randomly select a plant to eat
-        int plantNumber = secureRandom.nextInt(ecosystem.getPlants().size());
-
-        // Ensure the selected plant is valid (not already eaten)
-        while (ecosystem.getPlants().get(plantNumber).isEaten()){
-            plantNumber = secureRandom.nextInt(ecosystem.getPlants().size());
-        }
-
         // Log the plant being eaten and update its state
-        LogFormer.writeLogFile(getName() + " feeds on the plant " + ecosystem.getPlants().get(plantNumber).getName());
-        ecosystem.getPlants().get(plantNumber).setEaten(true);
-        energy += 50;
+        LogFormer.writeLogFile(getName() + " feeds on the plant " + plant.getName());
+        plant.setEaten(true);
+        energy += SpeciesTraits.plantEnergy(traits);
     }
 
     /**
@@ -143,70 +116,23 @@ public class Omnivore extends Animal {
      * @return A new Animal instance of the same species if reproduction is successful; otherwise, null.
      */
     public Animal reproduce(Ecosystem ecosystem) {
-        final SecureRandom secureRandom = new SecureRandom();
-        List<Animal> animals = ecosystem.getAnimals();
+        final Random random = ecosystem.getRandom();
 
         // Check if the animal has enough energy, has lived long enough, is not eaten,
         // and meets the chance of reproducing based on food chain level
-        if(energy >= 100 && currentLifeTime >= 1000  && secureRandom.nextDouble() > getReproduceChance(foodChainLevel)){
+        if(energy >= FULL_ENERGY && currentLifeTime >= ADULT_AGE  && random.nextDouble() > SpeciesTraits.reproduceChance(traits)){
 
             // Count the number of existing animals of the same species
-            long countSameSpecies = animals.stream()
-                    .filter(animal -> Objects.equals(animal.getName(), getName()))
-                    .count();
+            int countSameSpecies = ecosystem.getStatistics().getSpeciesCount(getName());
 
             // If there are at least two of the same species, proceed to reproduce
             if (countSameSpecies >= 2) {
-                int energyCost = getEnergyCost(getFoodChainLevel());
+                int energyCost = SpeciesTraits.reproduceEnergyCost(traits);
                 energy -= energyCost; // Уменьшаем энергию на 40
-                return new Omnivore(getName(), 60, getFoodChainLevel(), getLifeTime(), 0);
+                return ecosystem.newAnimal(getKind(), getName(), SpeciesTraits.newbornEnergy(traits), getFoodChainLevel(), getLifeTime());
             }
         }
         return null;
     }
 
-    /**
-     * Returns the chance of reproduction based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, determining its reproductive success rate.
-     * @return A double value representing the chance of reproduction as a percentage.
-     */
-    private double getReproduceChance(int foodChainLevel){
-        return switch (foodChainLevel){
-            case 1 -> 0.6;
-            case 2 -> 0.8;
-            case 3 -> 0.9;
-            default -> 0; // No chance for invalid levels
-        };
-    }
-
-    /**
-     * Calculates the energy cost required for reproduction based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, which determines the energy cost for reproduction.
-     * @return An integer representing the energy cost for reproduction.
-     */
-    private int getEnergyCost(int foodChainLevel) {
-        return switch (foodChainLevel) {
-            case 1 -> 50;
-            case 2 -> 55;
-            case 3 -> 60;
-            default -> 0; // No chance for invalid levels
-        };
-    }
-
-    /**
-     * Calculates the energy gain obtained from hunting based on the food chain level of the animal.
-     *
-     * @param foodChainLevel The food chain level of the animal, which determines the energy gain from food.
-     * @return An integer representing the energy gain from food consumption.
-     */
-    private int getEnergyGain(int foodChainLevel) {
-        return switch (foodChainLevel) {
-            case 1 -> 35;
-            case 2, 3 -> 45;
-            default -> 0;
-        };
-    }
-
 }
\ No newline at end of file
@@ -6,13 +6,25 @@ import ecosystem.utils.LogFormer;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 public class Plant {
-    private final String name;
+    public static final int SEED_GROWTH_LEVEL = 18;
+    // A ripe plant leaves at least MIN_SEEDS seeds and at most SEED_DRAWS - 1 more, see seedProbability
+    public static final int MIN_SEEDS = 2;
+    public static final int SEED_DRAWS = 3;
+    // The range of optimal temperatures accepted in ecosystem files
+    public static final int MIN_OPTIMAL_TEMPERATURE = -30;
+    public static final int MAX_OPTIMAL_TEMPERATURE = 38;
+
+    private String name;
     private int growthLevel;
-    private final int waterNeeds;
-    private final int optimalTemperature;
+    private int waterNeeds;
+    private int optimalTemperature;
     private boolean isEaten = false;
+    private int quantity = 1;
+    private int x = -1;
+    private int y = -1;
 
     public Plant(String name, int growthLevel, int waterNeeds, int optimalTemperature) {
         this.name = name;
@@ -21,6 +33,21 @@ public class Plant {
         this.optimalTemperature = optimalTemperature;
     }
 
+    /**
+     * Makes a dead plant a seed of another species, so that its object can be reused.
+     * It must no longer be referred to as the plant it was.
+     */
+    public void reset(String name, int growthLevel, int waterNeeds, int optimalTemperature) {
+        this.name = name;
+        this.growthLevel = growthLevel;
+        this.waterNeeds = waterNeeds;
+        this.optimalTemperature = optimalTemperature;
+        isEaten = false;
+        quantity = 1;
+        x = -1;
+        y = -1;
+    }
+
     public String getName() {
         return name;
     }
@@ -29,6 +56,10 @@ public class Plant {
         return growthLevel;
     }
 
+    public void setGrowthLevel(int growthLevel) {
+        this.growthLevel = growthLevel;
+    }
+
     public int getWaterNeeds() {
         return waterNeeds;
     }
@@ -45,6 +76,50 @@ public class Plant {
         isEaten = eaten;
     }
 
+    /**
+     * Returns the number of identical plants this object stands for. It is 1 unless the ecosystem
+     * is in cohort mode.
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    /**
+     * Returns the column of the cell of the plant in spatial mode, or -1 if it has no position.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the row of the cell of the plant in spatial mode, or -1 if it has no position.
+     */
+    public int getY() {
+        return y;
+    }
+
+    public void setPosition(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Creates a plant with the same state, quantity and position.
+     *
+     * @return The copy.
+     */
+    public Plant copy() {
+        Plant copy = new Plant(name, growthLevel, waterNeeds, optimalTemperature);
+        copy.isEaten = isEaten;
+        copy.quantity = quantity;
+        copy.setPosition(x, y);
+        return copy;
+    }
+
     /**
      * Simulates the growth process of the plant within the ecosystem based on environmental conditions.
      * The method checks if the plant has been eaten, assesses the available water and temperature conditions,
@@ -58,27 +133,63 @@ public class Plant {
         LogFormer.writeLogFile(name + " attempts to grow...");
 
         // Check if there is enough water available for growth
-        if (ecosystem.getWaterAmount() >= waterNeeds) {
-            if (Math.abs(ecosystem.getTemperature() - optimalTemperature) <= 5) {
+        boolean watered = ecosystem.takeWater(x, y, waterNeeds);
+        int delta = watered ? getGrowthDelta(ecosystem.getTemperature(x, y), optimalTemperature) : 0;
+        grow(watered, delta);
+        if (watered) {
+            switch (delta) {
                 // Favorable conditions - the plant grows faster
-                ecosystem.setWaterAmount(ecosystem.getWaterAmount() - waterNeeds);
-                growthLevel += 2;
-                LogFormer.writeLogFile(name + " grows faster due to favorable conditions.");
-            } else if (Math.abs(ecosystem.getTemperature() - optimalTemperature) <= 10) {
+                case 2 -> LogFormer.writeLogFile(name + " grows faster due to favorable conditions.");
                 // Conditions are not ideal, but the plant can still grow
-                ecosystem.setWaterAmount(ecosystem.getWaterAmount() - waterNeeds);
-                growthLevel += 1;
-                LogFormer.writeLogFile(name + " grows slower due to temperature.");
-            } else {
+                case 1 -> LogFormer.writeLogFile(name + " grows slower due to temperature.");
                 // Temperature is too unfavorable - the plant does not grow
-                ecosystem.setWaterAmount(ecosystem.getWaterAmount() - waterNeeds);
-                LogFormer.writeLogFile(name + " does not grow due to unfavorable temperature.");
+                default -> LogFormer.writeLogFile(name + " does not grow due to unfavorable temperature.");
             }
         } else {
-            growthLevel -= 1;
             LogFormer.writeLogFile(name + "wilting due to lack of water.");
         }
+    }
 
+    /**
+     * Applies the growth of a day for which the water and the temperature were already looked at, for example
+     * once for a whole class of equal plants. Unlike {@link #grow(Ecosystem)} it logs nothing, so plants grown
+     * in bulk are logged by the caller.
+     *
+     * @param watered Whether the plant got its water.
+     * @param delta The growth at the temperature of the day, as returned by {@link #getGrowthDelta}.
+     */
+    public void grow(boolean watered, int delta) {
+        if(isEaten) return;
+
+        if (watered) growthLevel += delta;
+        else growthLevel -= 1;
+    }
+
+    /**
+     * Returns how much a watered plant grows in a day at the given temperature.
+     *
+     * @param temperature The temperature of the ecosystem.
+     * @param optimalTemperature The optimal temperature of the plant.
+     * @return 2 within 5 degrees of the optimum, 1 within 10 degrees, otherwise 0.
+     */
+    public static int getGrowthDelta(int temperature, int optimalTemperature) {
+        int difference = Math.abs(temperature - optimalTemperature);
+        if (difference <= 5) return 2;
+        return difference <= 10 ? 1 : 0;
+    }
+
+    /**
+     * Returns the growth of watered plants at the given temperature for every optimal temperature from
+     * {@value #MIN_OPTIMAL_TEMPERATURE} to {@value #MAX_OPTIMAL_TEMPERATURE}, so that the plants of a day
+     * look it up instead of comparing temperatures.
+     *
+     * @param temperature The temperature of the ecosystem.
+     * @return The growth for optimal temperature t at index t - {@value #MIN_OPTIMAL_TEMPERATURE}.
+     */
+    public static int[] getGrowthDeltas(int temperature) {
+        int[] deltas = new int[MAX_OPTIMAL_TEMPERATURE - MIN_OPTIMAL_TEMPERATURE + 1];
+        for (int i = 0; i < deltas.length; i++) deltas[i] = getGrowthDelta(temperature, MIN_OPTIMAL_TEMPERATURE + i);
+        return deltas;
     }
 
     /**
@@ -88,19 +199,60 @@ public class Plant {
      * @return A list of new plants created from reproduction, or null if the reproduction conditions are not met.
      */
     public List<Plant> reproduce()  {
+        return reproduce(new SecureRandom());
+    }
+
+    /**
+     * Simulates the reproduction process of the plant with the given source of randomness.
+     *
+     * @param random The source of randomness for the number of seeds.
+     * @return A list of new plants created from reproduction, or null if the reproduction conditions are not met.
+     */
+    public List<Plant> reproduce(Random random) {
+        List<Plant> newPlants = new ArrayList<>();
+        return reproduce(null, random, newPlants) ? newPlants : null;
+    }
+
+    /**
+     * Simulates the reproduction process of the plant, adding the seeds to a list kept by the caller.
+     *
+     * @param ecosystem The ecosystem that creates the seeds, possibly from dead plants; null to create new objects.
+     * @param random The source of randomness for the number of seeds.
+     * @param seeds The list the seeds are added to.
+     * @return true if the plant reproduced.
+     */
+    public boolean reproduce(Ecosystem ecosystem, Random random, List<Plant> seeds) {
 
         // Check if the plant can reproduce (growth level requirement and not eaten)
-        if(growthLevel >= 18 && !isEaten()){
-            SecureRandom secureRandom = new SecureRandom();
+        if(growthLevel >= SEED_GROWTH_LEVEL && !isEaten()){
             setEaten(true);
-            List<Plant> newPlants = new ArrayList<>();
             LogFormer.writeLogFile("The plant wilts and leaves seeds.");
 
-            // Generate a random number of new plants (1 to 3)
-            for(int i = 0; i <= 1 + secureRandom.nextInt(3); i++){
-                newPlants.add(new Plant(getName(), 0, getWaterNeeds(), getOptimalTemperature()));
+            // Generate a random number of new plants, the bound of the loop is drawn again before every seed
+            for(int i = 0; i <= MIN_SEEDS - 1 + random.nextInt(SEED_DRAWS); i++){
+                seeds.add(ecosystem != null ? ecosystem.newPlant(getName(), getWaterNeeds(), getOptimalTemperature())
+                        : new Plant(getName(), 0, getWaterNeeds(), getOptimalTemperature()));
             }
-            return newPlants;
-        }else return null;
+            return true;
+        }else return false;
+    }
+
+    /**
+     * Returns the probability that a ripe plant leaves the given number of seeds. Since {@link #reproduce}
+     * draws the bound of its loop again before every seed, each seed beyond the minimum is less likely
+     * than the one before.
+     *
+     * @param seeds The number of seeds.
+     * @return The probability, 0 for numbers of seeds a plant never leaves.
+     */
+    public static double seedProbability(int seeds) {
+        if (seeds < MIN_SEEDS || seeds >= MIN_SEEDS + SEED_DRAWS) return 0;
+        double probability = 1;
+        for (int i = MIN_SEEDS; i <= seeds; i++) {
+            // The seed with index i follows if the draw is at least i - MIN_SEEDS + 1
+            double follows = (double) (SEED_DRAWS - (i - MIN_SEEDS + 1)) / SEED_DRAWS;
+            probability *= i < seeds ? follows : 1 - follows;
+        }
+        return probability;
     }
 }
@@ -0,0 +1,391 @@
+package ecosystem.entities;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The parameters of animal behaviour, kept in flat arrays indexed by rows: one row for every kind and food chain
+ * level, see {@link #index(AnimalKind, int)}, followed by the rows of the species that have traits of their own,
+ * see {@link #index(AnimalKind, String, int)}. Every animal resolves its row once, so the daily rules are plain
+ * array lookups.
+ * <p>
+ * The built-in values can be changed with a file of lines {@code <kind>.<trait> = <value>}, where the value is
+ * either one number for all levels or one number per level separated by commas. A line
+ * {@code <kind>.<species>.<trait> = <value>} gives the animals of one species a trait of their own; the traits
+ * a species does not set are those of its kind. For example:
+ * <pre>
+ * carnivore.reproduceChance = 0.85, 0.9, 0.95
+ * omnivore.newbornEnergy = 60
+ * carnivore.tiger.huntSuccess = 0.9
+ * </pre>
+ * Lines starting with # are comments. The file given with -Decosystem.species=&lt;file&gt; is loaded at startup.
+ * <p>
+ * A table is never changed: loading builds a new one and replaces the current table at once, so the simulations
+ * of other threads see either the old or the new values. The rows of a table are kept by the tables loaded after
+ * it, so the row an animal resolved stays valid.
+ */
+public final class SpeciesTraits {
+    public static final int LEVELS = 3;
+
+    private static final AnimalKind[] KINDS = AnimalKind.values();
+    // The number of rows of the kinds, one per kind and level
+    private static final int KIND_ROWS = KINDS.length * LEVELS;
+
+    /**
+     * The traits, in the order of the columns of {@link #values}. Probabilities are numbers from 0 to 1, all
+     * other traits whole numbers of at least 0.
+     */
+    private enum Trait {
+        WATER_NEEDS("waterNeeds", false),
+        THIRST_PENALTY("thirstPenalty", false),
+        REPRODUCE_CHANCE("reproduceChance", true),
+        REPRODUCE_ENERGY_COST("reproduceEnergyCost", false),
+        NEWBORN_ENERGY("newbornEnergy", false),
+        HUNT_PROBABILITY("huntProbability", true),
+        HUNT_SUCCESS("huntSuccess", true),
+        HUNT_ENERGY_GAIN("huntEnergyGain", false),
+        ESCAPE_PENALTY("escapePenalty", false),
+        NO_PREY_PENALTY("noPreyPenalty", false),
+        PLANT_ENERGY("plantEnergy", false),
+        NO_PLANT_PENALTY("noPlantPenalty", false);
+
+        private final String key;
+        private final boolean probability;
+
+        Trait(String key, boolean probability) {
+            this.key = key;
+            this.probability = probability;
+        }
+    }
+
+    private static final String DEFAULTS = String.join("\n",
+            "carnivore.waterNeeds = 5, 7, 9",
+            "carnivore.thirstPenalty = 5",
+            "carnivore.reproduceChance = 0.85, 0.9, 0.95",
+            "carnivore.reproduceEnergyCost = 40, 55, 60",
+            "carnivore.newbornEnergy = 60",
+            "carnivore.huntSuccess = 0.8",
+            "carnivore.huntEnergyGain = 45, 50, 50",
+            "carnivore.escapePenalty = 10",
+            "carnivore.noPreyPenalty = 20",
+            "herbivore.waterNeeds = 4, 5, 5",
+            "herbivore.thirstPenalty = 5",
+            "herbivore.reproduceChance = 0.4, 0.45, 0.55",
+            "herbivore.reproduceEnergyCost = 10, 30, 40",
+            "herbivore.newbornEnergy = 70",
+            "herbivore.plantEnergy = 65",
+            "herbivore.noPlantPenalty = 5",
+            "omnivore.waterNeeds = 4, 4, 6",
+            "omnivore.thirstPenalty = 10",
+            "omnivore.reproduceChance = 0.6, 0.8, 0.9",
+            "omnivore.reproduceEnergyCost = 50, 55, 60",
+            "omnivore.newbornEnergy = 60",
+            "omnivore.huntProbability = 0.3, 0.25, 0.2",
+            "omnivore.huntSuccess = 0.8",
+            "omnivore.huntEnergyGain = 35, 45, 45",
+            "omnivore.escapePenalty = 10",
+            "omnivore.noPreyPenalty = 15",
+            "omnivore.plantEnergy = 50",
+            "omnivore.noPlantPenalty = 10");
+
+    private static volatile SpeciesTraits current;
+
+    // The values as loaded, by trait and row; the row of a species holds NaN for the traits of its kind
+    private final double[][] values;
+    // The row of the kind and level of every row
+    private final int[] kindRows;
+    // The first of the LEVELS rows of every species with traits of its own, by kind and name
+    private final Map<String, Integer> speciesRows;
+
+    // The amount of water drunk per day and the energy lost when there is none
+    private final int[] waterNeeds;
+    private final int[] thirstPenalty;
+    // An adult reproduces when a random number exceeds the chance
+    private final double[] reproduceChance;
+    private final int[] reproduceEnergyCost;
+    private final int[] newbornEnergy;
+    // The probability that a hungry omnivore hunts instead of grazing; carnivores always hunt, herbivores never
+    private final double[] huntProbability;
+    private final double[] huntSuccess;
+    private final int[] huntEnergyGain;
+    private final int[] escapePenalty;
+    private final int[] noPreyPenalty;
+    private final int[] plantEnergy;
+    private final int[] noPlantPenalty;
+
+    static {
+        try {
+            load(new StringReader(DEFAULTS));
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        String file = System.getProperty("ecosystem.species");
+        if (file != null) {
+            try {
+                load(Paths.get(file));
+            } catch (NoSuchFileException e) {
+                System.out.println("Species traits cannot be loaded: " + file + " does not exist.");
+            } catch (IOException e) {
+                System.out.println("Species traits cannot be loaded from " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private SpeciesTraits(double[][] values, int[] kindRows, Map<String, Integer> speciesRows) {
+        this.values = values;
+        this.kindRows = kindRows;
+        this.speciesRows = Map.copyOf(speciesRows);
+        waterNeeds = ints(Trait.WATER_NEEDS);
+        thirstPenalty = ints(Trait.THIRST_PENALTY);
+        reproduceChance = doubles(Trait.REPRODUCE_CHANCE);
+        reproduceEnergyCost = ints(Trait.REPRODUCE_ENERGY_COST);
+        newbornEnergy = ints(Trait.NEWBORN_ENERGY);
+        huntProbability = doubles(Trait.HUNT_PROBABILITY);
+        huntSuccess = doubles(Trait.HUNT_SUCCESS);
+        huntEnergyGain = ints(Trait.HUNT_ENERGY_GAIN);
+        escapePenalty = ints(Trait.ESCAPE_PENALTY);
+        noPreyPenalty = ints(Trait.NO_PREY_PENALTY);
+        plantEnergy = ints(Trait.PLANT_ENERGY);
+        noPlantPenalty = ints(Trait.NO_PLANT_PENALTY);
+    }
+
+    /**
+     * Returns the values of a trait for every row, with the values of the kind for the traits a species does
+     * not set.
+     */
+    private double[] doubles(Trait trait) {
+        double[] column = values[trait.ordinal()];
+        double[] result = new double[column.length];
+        for (int row = 0; row < column.length; row++) {
+            result[row] = Double.isNaN(column[row]) ? column[kindRows[row]] : column[row];
+        }
+        return result;
+    }
+
+    private int[] ints(Trait trait) {
+        double[] column = doubles(trait);
+        int[] result = new int[column.length];
+        // The values were checked to be whole numbers when they were loaded
+        for (int row = 0; row < column.length; row++) result[row] = (int) column[row];
+        return result;
+    }
+
+    /**
+     * Returns the row of the parameters of a kind and food chain level.
+     *
+     * @param kind The kind of the animal.
+     * @param foodChainLevel The food chain level, from 1 to {@link #LEVELS}.
+     * @return The index into the parameter arrays.
+     */
+    public static int index(AnimalKind kind, int foodChainLevel) {
+        if (foodChainLevel < 1 || foodChainLevel > LEVELS) {
+            throw new IllegalArgumentException("Invalid food chain level " + foodChainLevel + ".");
+        }
+        return kind.ordinal() * LEVELS + foodChainLevel - 1;
+    }
+
+    /**
+     * Returns the row of the parameters of a species: its own row if it has traits of its own, otherwise the row
+     * of its kind and food chain level.
+     *
+     * @param kind The kind of the animal.
+     * @param species The name of the species.
+     * @param foodChainLevel The food chain level, from 1 to {@link #LEVELS}.
+     * @return The index into the parameter arrays.
+     */
+    public static int index(AnimalKind kind, String species, int foodChainLevel) {
+        int row = index(kind, foodChainLevel);
+        Integer first = species == null ? null : current.speciesRows.get(speciesKey(kind, species));
+        return first == null ? row : first + foodChainLevel - 1;
+    }
+
+    /**
+     * Returns the number of rows, which is more than every index returned so far.
+     */
+    public static int size() {
+        return current.values[0].length;
+    }
+
+    public static int waterNeeds(int index) {
+        return current.waterNeeds[index];
+    }
+
+    public static int thirstPenalty(int index) {
+        return current.thirstPenalty[index];
+    }
+
+    public static double reproduceChance(int index) {
+        return current.reproduceChance[index];
+    }
+
+    public static int reproduceEnergyCost(int index) {
+        return current.reproduceEnergyCost[index];
+    }
+
+    public static int newbornEnergy(int index) {
+        return current.newbornEnergy[index];
+    }
+
+    public static double huntProbability(int index) {
+        return current.huntProbability[index];
+    }
+
+    public static double huntSuccess(int index) {
+        return current.huntSuccess[index];
+    }
+
+    public static int huntEnergyGain(int index) {
+        return current.huntEnergyGain[index];
+    }
+
+    public static int escapePenalty(int index) {
+        return current.escapePenalty[index];
+    }
+
+    public static int noPreyPenalty(int index) {
+        return current.noPreyPenalty[index];
+    }
+
+    public static int plantEnergy(int index) {
+        return current.plantEnergy[index];
+    }
+
+    public static int noPlantPenalty(int index) {
+        return current.noPlantPenalty[index];
+    }
+
+    /**
+     * Loads parameters from a file. Parameters missing in the file keep their values.
+     * Animals resolve their row when they are created, so the traits of a species that had none before apply
+     * to the animals created afterwards.
+     *
+     * @param file The parameter file.
+     * @throws IOException If the file cannot be read or contains an invalid line; no parameter is changed then.
+     */
+    public static void load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            load(reader);
+        }
+    }
+
+    /**
+     * Loads parameters in the format of a parameter file.
+     *
+     * @param reader The parameters.
+     * @throws IOException If they cannot be read or contain an invalid line; no parameter is changed then.
+     */
+    public static synchronized void load(Reader reader) throws IOException {
+        // Work on copies, so that an invalid line changes nothing
+        SpeciesTraits table = current;
+        double[][] values = new double[Trait.values().length][];
+        int[] kindRows;
+        Map<String, Integer> speciesRows = new HashMap<>();
+        if (table == null) {
+            // Traits that do not apply to a kind, like the plant energy of carnivores, stay 0
+            for (int trait = 0; trait < values.length; trait++) values[trait] = new double[KIND_ROWS];
+            kindRows = new int[KIND_ROWS];
+            for (int row = 0; row < KIND_ROWS; row++) kindRows[row] = row;
+        } else {
+            for (int trait = 0; trait < values.length; trait++) values[trait] = table.values[trait].clone();
+            kindRows = table.kindRows;
+            speciesRows.putAll(table.speciesRows);
+        }
+
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int number = 0;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            int equals = line.indexOf('=');
+            String[] key = equals < 0 ? new String[0] : line.substring(0, equals).split("\\.", -1);
+            if (key.length != 2 && key.length != 3) {
+                throw invalid(number, "expected <kind>.<trait> = <value> or <kind>.<species>.<trait> = <value>");
+            }
+            AnimalKind kind = parseKind(key[0].trim(), number);
+            Trait trait = parseTrait(key[key.length - 1].trim(), number);
+            int first = kind.ordinal() * LEVELS;
+            if (key.length == 3) {
+                String species = key[1].trim();
+                if (species.isEmpty()) throw invalid(number, "the name of the species is missing");
+                Integer rows = speciesRows.get(speciesKey(kind, species));
+                if (rows == null) {
+                    // New rows for the species, which take every trait it does not set from its kind
+                    rows = kindRows.length;
+                    kindRows = Arrays.copyOf(kindRows, rows + LEVELS);
+                    for (int level = 0; level < LEVELS; level++) kindRows[rows + level] = first + level;
+                    for (int column = 0; column < values.length; column++) {
+                        values[column] = Arrays.copyOf(values[column], rows + LEVELS);
+                        Arrays.fill(values[column], rows, rows + LEVELS, Double.NaN);
+                    }
+                    speciesRows.put(speciesKey(kind, species), rows);
+                }
+                first = rows;
+            }
+            String[] parts = line.substring(equals + 1).split(",");
+            if (parts.length != 1 && parts.length != LEVELS) {
+                throw invalid(number, "expected one value or " + LEVELS + " values");
+            }
+            for (int level = 0; level < LEVELS; level++) {
+                values[trait.ordinal()][first + level] = parseValue(trait, parts[parts.length == 1 ? 0 : level].trim(), number);
+            }
+        }
+        current = new SpeciesTraits(values, kindRows, speciesRows);
+    }
+
+    private static double parseValue(Trait trait, String text, int number) throws IOException {
+        if (trait.probability) {
+            double value;
+            try {
+                value = Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                throw invalid(number, "\"" + text + "\" is not a number");
+            }
+            if (!(value >= 0 && value <= 1)) throw invalid(number, trait.key + " must be from 0 to 1");
+            return value;
+        }
+        int value;
+        try {
+            value = Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw invalid(number, "\"" + text + "\" is not a whole number");
+        }
+        if (value < 0) throw invalid(number, trait.key + " must not be negative");
+        return value;
+    }
+
+    private static Trait parseTrait(String name, int number) throws IOException {
+        for (Trait trait : Trait.values()) {
+            if (trait.key.equals(name)) return trait;
+        }
+        throw invalid(number, "unknown trait " + name);
+    }
+
+    private static AnimalKind parseKind(String name, int number) throws IOException {
+        for (AnimalKind kind : KINDS) {
+            if (kind.name().equals(name.toUpperCase(Locale.ROOT))) return kind;
+        }
+        throw invalid(number, "unknown kind " + name);
+    }
+
+    private static String speciesKey(AnimalKind kind, String species) {
+        // The names of animals are read in lower case from simulation files
+        return kind.name() + "." + species.toLowerCase(Locale.ROOT);
+    }
+
+    private static IOException invalid(int number, String reason) {
+        return new IOException("Invalid species trait in line " + number + ": " + reason + ".");
+    }
+}
@@ -0,0 +1,252 @@
+package ecosystem.metrics;
+
+import ecosystem.Ecosystem;
+import ecosystem.SimulationListener;
+import ecosystem.PopulationStatistics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records the population history of an ecosystem at the end of every simulated day.
+ * Per-species counts, energy and age sums (growth sums for plants) are read from the running
+ * {@link PopulationStatistics} of the ecosystem, so a day costs one step per species, not per entity.
+ * They are buffered together with the climate in primitive column arrays and written at the end of every day,
+ * with one flush per file, to two CSV files: {@code <prefix>-species.csv} with one row per species and day,
+ * and {@code <prefix>-climate.csv} with one row per day. The files stay open while the recorder records, so a
+ * day costs no more than two writes, and a run that is killed loses at most the day in progress.
+ */
+public class PopulationRecorder implements SimulationListener {
+    private static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private final Path speciesPath;
+    private final Path climatePath;
+    private final int batchSize;
+
+    // Species dictionary: kind -> name -> id
+    private final Map<String, Map<String, Integer>> speciesIds = new HashMap<>();
+    private final List<String> speciesKinds = new ArrayList<>();
+    private final List<String> speciesNames = new ArrayList<>();
+
+    // Buffered species rows, one column per array
+    private final int[] rowDay;
+    private final int[] rowSpecies;
+    private final int[] rowCount;
+    private final long[] rowEnergySum;
+    private final long[] rowAgeSum;
+    private int rows;
+
+    // Buffered climate rows
+    private final int[] climateDay;
+    private final int[] climateTemperature;
+    private final int[] climateHumidity;
+    private final int[] climateWater;
+    private int climateRows;
+
+    // Per-day accumulators indexed by species id
+    private int[] dayCount = new int[16];
+    private long[] dayEnergySum = new long[16];
+    private long[] dayAgeSum = new long[16];
+
+    private int day;
+    private boolean headersWritten;
+    private BufferedWriter speciesWriter;
+    private BufferedWriter climateWriter;
+
+    /**
+     * Creates a recorder writing to {@code <prefix>-species.csv} and {@code <prefix>-climate.csv}.
+     *
+     * @param prefix The path prefix of the output files.
+     */
+    public PopulationRecorder(String prefix) {
+        this(prefix, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a recorder that also writes within a day after the given number of buffered species rows.
+     *
+     * @param prefix The path prefix of the output files.
+     * @param batchSize The number of rows buffered before they are written.
+     */
+    public PopulationRecorder(String prefix, int batchSize) {
+        this.speciesPath = Paths.get(prefix + "-species.csv");
+        this.climatePath = Paths.get(prefix + "-climate.csv");
+        this.batchSize = Math.max(16, batchSize);
+        rowDay = new int[this.batchSize];
+        rowSpecies = new int[this.batchSize];
+        rowCount = new int[this.batchSize];
+        rowEnergySum = new long[this.batchSize];
+        rowAgeSum = new long[this.batchSize];
+        climateDay = new int[this.batchSize];
+        climateTemperature = new int[this.batchSize];
+        climateHumidity = new int[this.batchSize];
+        climateWater = new int[this.batchSize];
+    }
+
+    public Path getSpeciesPath() {
+        return speciesPath;
+    }
+
+    public Path getClimatePath() {
+        return climatePath;
+    }
+
+    @Override
+    public void onDayCompleted(Ecosystem ecosystem, int day) {
+        record(ecosystem);
+    }
+
+    /**
+     * Captures the current populations and climate as the next day of the history.
+     *
+     * @param ecosystem The ecosystem to record.
+     */
+    public void record(Ecosystem ecosystem) {
+        Arrays.fill(dayCount, 0);
+        Arrays.fill(dayEnergySum, 0);
+        Arrays.fill(dayAgeSum, 0);
+
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        for (PopulationStatistics.SpeciesStatistics species : statistics.getAnimalSpecies()) {
+            int id = speciesId(species.getKind(), species.getName());
+            dayCount[id] = species.getCount();
+            dayEnergySum[id] = species.getEnergySum();
+            dayAgeSum[id] = species.getAgeSum();
+        }
+        for (PopulationStatistics.SpeciesStatistics species : statistics.getPlantSpecies()) {
+            int id = speciesId(species.getKind(), species.getName());
+            dayCount[id] = species.getCount();
+            dayEnergySum[id] = species.getEnergySum();
+        }
+
+        // Species that died out are still recorded, with a count of zero
+        for (int id = 0; id < speciesNames.size(); id++) {
+            if (rows == batchSize) flush();
+            rowDay[rows] = day;
+            rowSpecies[rows] = id;
+            rowCount[rows] = dayCount[id];
+            rowEnergySum[rows] = dayEnergySum[id];
+            rowAgeSum[rows] = dayAgeSum[id];
+            rows++;
+        }
+
+        if (climateRows == batchSize) flush();
+        climateDay[climateRows] = day;
+        climateTemperature[climateRows] = ecosystem.getTemperature();
+        climateHumidity[climateRows] = ecosystem.getHumidity();
+        climateWater[climateRows] = ecosystem.getWaterAmount();
+        climateRows++;
+        day++;
+        flush();
+    }
+
+    /**
+     * Writes all buffered rows to the output files and flushes them.
+     */
+    public void flush() {
+        try {
+            if (speciesWriter == null) {
+                if (!headersWritten) {
+                    Files.write(speciesPath, "day,kind,species,count,mean_energy,mean_age,mean_growth\n".getBytes());
+                    Files.write(climatePath, "day,temperature,humidity,water\n".getBytes());
+                    headersWritten = true;
+                }
+                speciesWriter = Files.newBufferedWriter(speciesPath, StandardOpenOption.APPEND);
+                climateWriter = Files.newBufferedWriter(climatePath, StandardOpenOption.APPEND);
+            }
+            StringBuilder line = new StringBuilder(64);
+            for (int i = 0; i < rows; i++) {
+                int id = rowSpecies[i];
+                int count = rowCount[i];
+                line.setLength(0);
+                line.append(rowDay[i]).append(',');
+                appendField(line, speciesKinds.get(id)).append(',');
+                appendField(line, speciesNames.get(id)).append(',').append(count).append(',');
+                // Plants have a growth level instead of energy and age
+                if (speciesKinds.get(id).equals("Plant")) {
+                    line.append(",,");
+                    appendMean(line, rowEnergySum[i], count);
+                } else {
+                    appendMean(line, rowEnergySum[i], count).append(',');
+                    appendMean(line, rowAgeSum[i], count).append(',');
+                }
+                line.append('\n');
+                speciesWriter.append(line);
+            }
+            for (int i = 0; i < climateRows; i++) {
+                climateWriter.write(climateDay[i] + "," + climateTemperature[i] + "," + climateHumidity[i] + "," + climateWater[i]);
+                climateWriter.newLine();
+            }
+            speciesWriter.flush();
+            climateWriter.flush();
+        } catch (IOException e) {
+            System.out.println("Error while writing population history: " + e.getMessage());
+        }
+        rows = 0;
+        climateRows = 0;
+    }
+
+    /**
+     * Writes the remaining rows and closes the files. The recorder can keep recording afterwards.
+     */
+    public void close() {
+        flush();
+        try {
+            if (speciesWriter != null) speciesWriter.close();
+            if (climateWriter != null) climateWriter.close();
+        } catch (IOException e) {
+            System.out.println("Error while writing population history: " + e.getMessage());
+        }
+        speciesWriter = null;
+        climateWriter = null;
+    }
+
+    /**
+     * Appends a text field, quoted as in RFC 4180 if it contains a comma, a quote or a line break.
+     */
+    private static StringBuilder appendField(StringBuilder line, String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+            return line.append(field);
+        }
+        return line.append('"').append(field.replace("\"", "\"\"")).append('"');
+    }
+
+    private static StringBuilder appendMean(StringBuilder line, long sum, int count) {
+        if (count == 0) return line;
+        long scaled = Math.round(sum * 100.0 / count);
+        if (scaled < 0) {
+            line.append('-');
+            scaled = -scaled;
+        }
+        line.append(scaled / 100).append('.');
+        long fraction = scaled % 100;
+        if (fraction < 10) line.append('0');
+        return line.append(fraction);
+    }
+
+    private int speciesId(String kind, String name) {
+        Map<String, Integer> ids = speciesIds.computeIfAbsent(kind, k -> new HashMap<>());
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = speciesNames.size();
+            ids.put(name, id);
+            speciesKinds.add(kind);
+            speciesNames.add(name);
+            if (id >= dayCount.length) {
+                dayCount = Arrays.copyOf(dayCount, dayCount.length * 2);
+                dayEnergySum = Arrays.copyOf(dayEnergySum, dayEnergySum.length * 2);
+                dayAgeSum = Arrays.copyOf(dayAgeSum, dayAgeSum.length * 2);
+            }
+        }
+        return id;
+    }
+}
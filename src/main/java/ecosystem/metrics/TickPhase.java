@@ -0,0 +1,13 @@
+package ecosystem.metrics;
+
+/**
+ * Phases of a simulated day that are timed by the {@link TickProfiler}.
+ */
+public enum TickPhase {
+    PLANT_REPRODUCTION,
+    PLANT_GROWTH,
+    ANIMAL_REPRODUCTION,
+    ANIMAL_ACTION,
+    COMPACTION,
+    WEATHER
+}
@@ -0,0 +1,317 @@
+package ecosystem.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Low-overhead profiler of simulated days. Every phase of a day is timed with {@link System#nanoTime()}
+ * into a lock-free histogram, and entity counts and allocated bytes are recorded per day.
+ * When the profiler is disabled, {@link #start()} returns 0 and {@link #stop} returns immediately,
+ * so instrumented code pays only for one field read.
+ * <p>
+ * The profiler is enabled with {@code -Decosystem.profiler=true} or through JMX, and writes a periodic
+ * CSV dump when {@code -Decosystem.profiler.csv=<file>} is given.
+ */
+public class TickProfiler implements TickProfilerMBean {
+    private static final TickPhase[] PHASES = TickPhase.values();
+    private static final TickProfiler INSTANCE = new TickProfiler();
+
+    private static volatile boolean enabled;
+
+    private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+    private final LatencyHistogram ticks = new LatencyHistogram();
+    private final AtomicLong animalCount = new AtomicLong();
+    private final AtomicLong plantCount = new AtomicLong();
+    private final LongAdder animalBirths = new LongAdder();
+    private final LongAdder plantBirths = new LongAdder();
+    private final AtomicLong lastTickAllocatedBytes = new AtomicLong();
+    private final LongAdder totalAllocatedBytes = new LongAdder();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    // Start of the current day, per simulating thread
+    private final ThreadLocal<long[]> tickStart = ThreadLocal.withInitial(() -> new long[2]);
+
+    private ScheduledExecutorService csvExecutor;
+    private ScheduledFuture<?> csvTask;
+
+    static {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(INSTANCE, new ObjectName("ecosystem:type=TickProfiler"));
+        } catch (JMException | SecurityException e) {
+            System.out.println("Tick profiler is not available through JMX: " + e.getMessage());
+        }
+        enabled = Boolean.getBoolean("ecosystem.profiler");
+        String csv = System.getProperty("ecosystem.profiler.csv");
+        if (csv != null) {
+            enabled = true;
+            INSTANCE.startCsvDump(csv, Integer.getInteger("ecosystem.profiler.period", 10));
+        }
+    }
+
+    private TickProfiler() {
+        for (int i = 0; i < PHASES.length; i++) phases[i] = new LatencyHistogram();
+    }
+
+    public static TickProfiler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Marks the beginning of a phase.
+     *
+     * @return The start time in nanoseconds, or 0 if the profiler is disabled.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the duration of a phase started with {@link #start()}.
+     *
+     * @param phase The finished phase.
+     * @param start The value returned by {@link #start()}.
+     */
+    public static void stop(TickPhase phase, long start) {
+        if (start == 0) return;
+        INSTANCE.phases[phase.ordinal()].record(System.nanoTime() - start);
+    }
+
+    /**
+     * Marks the beginning of a simulated day.
+     */
+    public static void startTick() {
+        if (!enabled) return;
+        long[] state = INSTANCE.tickStart.get();
+        state[0] = System.nanoTime();
+        state[1] = INSTANCE.allocatedBytes();
+    }
+
+    /**
+     * Marks the end of a simulated day and records the entity counts after it.
+     *
+     * @param animals The number of animals at the end of the day.
+     * @param plants The number of plants at the end of the day.
+     */
+    public static void endTick(int animals, int plants) {
+        if (!enabled) return;
+        long[] state = INSTANCE.tickStart.get();
+        if (state[0] == 0) return;
+        INSTANCE.ticks.record(System.nanoTime() - state[0]);
+        long allocated = INSTANCE.allocatedBytes();
+        if (allocated >= 0 && state[1] >= 0) {
+            INSTANCE.lastTickAllocatedBytes.set(allocated - state[1]);
+            INSTANCE.totalAllocatedBytes.add(allocated - state[1]);
+        }
+        INSTANCE.animalCount.set(animals);
+        INSTANCE.plantCount.set(plants);
+        state[0] = 0;
+    }
+
+    /**
+     * Counts newborn animals and new plants.
+     *
+     * @param animals The number of animals born.
+     * @param plants The number of plants sprouted from seeds.
+     */
+    public static void countBirths(int animals, int plants) {
+        if (!enabled) return;
+        if (animals > 0) INSTANCE.animalBirths.add(animals);
+        if (plants > 0) INSTANCE.plantBirths.add(plants);
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 if the JVM cannot measure it.
+     */
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    public LatencyHistogram getPhaseHistogram(TickPhase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        TickProfiler.enabled = enabled;
+    }
+
+    @Override
+    public long getTicks() {
+        return ticks.getCount();
+    }
+
+    @Override
+    public long getAnimalCount() {
+        return animalCount.get();
+    }
+
+    @Override
+    public long getPlantCount() {
+        return plantCount.get();
+    }
+
+    @Override
+    public long getAnimalBirths() {
+        return animalBirths.sum();
+    }
+
+    @Override
+    public long getPlantBirths() {
+        return plantBirths.sum();
+    }
+
+    @Override
+    public long getLastTickAllocatedBytes() {
+        return lastTickAllocatedBytes.get();
+    }
+
+    @Override
+    public double getMeanTickAllocatedBytes() {
+        long n = ticks.getCount();
+        return n == 0 ? 0 : (double) totalAllocatedBytes.sum() / n;
+    }
+
+    @Override
+    public double getMeanTickMillis() {
+        return ticks.getMeanNanos() / 1e6;
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        String[] names = new String[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) names[i] = PHASES[i].name();
+        return names;
+    }
+
+    @Override
+    public long[] getPhaseCounts() {
+        long[] values = new long[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) values[i] = phases[i].getCount();
+        return values;
+    }
+
+    @Override
+    public double[] getPhaseMeanMillis() {
+        double[] values = new double[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) values[i] = phases[i].getMeanNanos() / 1e6;
+        return values;
+    }
+
+    @Override
+    public long[] getPhaseP99Nanos() {
+        long[] values = new long[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) values[i] = phases[i].getPercentileNanos(99);
+        return values;
+    }
+
+    @Override
+    public long[] getPhaseMaxNanos() {
+        long[] values = new long[PHASES.length];
+        for (int i = 0; i < PHASES.length; i++) values[i] = phases[i].getMaxNanos();
+        return values;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Days: %d, mean day: %.3f ms, animals: %d, plants: %d, allocated per day: %.0f bytes%n",
+                getTicks(), getMeanTickMillis(), getAnimalCount(), getPlantCount(), getMeanTickAllocatedBytes()));
+        for (int i = 0; i < PHASES.length; i++) {
+            LatencyHistogram histogram = phases[i];
+            report.append(String.format("%-20s count: %d, mean: %.3f ms, p50: %d ns, p99: %d ns, max: %d ns%n",
+                    PHASES[i], histogram.getCount(), histogram.getMeanNanos() / 1e6,
+                    histogram.getPercentileNanos(50), histogram.getPercentileNanos(99), histogram.getMaxNanos()));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : phases) histogram.reset();
+        ticks.reset();
+        animalBirths.reset();
+        plantBirths.reset();
+        totalAllocatedBytes.reset();
+        lastTickAllocatedBytes.set(0);
+    }
+
+    /**
+     * Starts appending one CSV row per phase to the given file every {@code periodSeconds} seconds.
+     *
+     * @param filePath The CSV file.
+     * @param periodSeconds The period between two dumps.
+     */
+    @Override
+    public synchronized void startCsvDump(String filePath, int periodSeconds) {
+        stopCsvDump();
+        if (csvExecutor == null) {
+            csvExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tick-profiler-csv");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Path path = Paths.get(filePath);
+        int period = Math.max(1, periodSeconds);
+        csvTask = csvExecutor.scheduleAtFixedRate(() -> dumpCsv(path), period, period, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void stopCsvDump() {
+        if (csvTask != null) {
+            csvTask.cancel(false);
+            csvTask = null;
+        }
+    }
+
+    /**
+     * Appends the current values to a CSV file, writing the header if the file is new.
+     *
+     * @param path The CSV file.
+     */
+    public void dumpCsv(Path path) {
+        boolean header = !Files.exists(path);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (header) {
+                writer.write("timestamp,phase,count,total_ns,mean_ns,p50_ns,p99_ns,max_ns,days,animals,plants,animal_births,plant_births,allocated_bytes_per_day");
+                writer.newLine();
+            }
+            long timestamp = System.currentTimeMillis();
+            for (int i = 0; i < PHASES.length; i++) {
+                LatencyHistogram histogram = phases[i];
+                writer.write(timestamp + "," + PHASES[i] + "," + histogram.getCount() + "," + histogram.getTotalNanos() + ","
+                        + Math.round(histogram.getMeanNanos()) + "," + histogram.getPercentileNanos(50) + ","
+                        + histogram.getPercentileNanos(99) + "," + histogram.getMaxNanos() + ","
+                        + getTicks() + "," + getAnimalCount() + "," + getPlantCount() + ","
+                        + getAnimalBirths() + "," + getPlantBirths() + "," + Math.round(getMeanTickAllocatedBytes()));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.out.println("Error while writing profiler data: " + e.getMessage());
+        }
+    }
+}
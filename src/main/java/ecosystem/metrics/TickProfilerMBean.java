@@ -0,0 +1,45 @@
+package ecosystem.metrics;
+
+/**
+ * JMX view of the {@link TickProfiler}, registered as {@code ecosystem:type=TickProfiler}.
+ */
+public interface TickProfilerMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getTicks();
+
+    long getAnimalCount();
+
+    long getPlantCount();
+
+    long getAnimalBirths();
+
+    long getPlantBirths();
+
+    long getLastTickAllocatedBytes();
+
+    double getMeanTickAllocatedBytes();
+
+    double getMeanTickMillis();
+
+    String[] getPhaseNames();
+
+    long[] getPhaseCounts();
+
+    double[] getPhaseMeanMillis();
+
+    long[] getPhaseP99Nanos();
+
+    long[] getPhaseMaxNanos();
+
+    String getReport();
+
+    void reset();
+
+    void startCsvDump(String filePath, int periodSeconds);
+
+    void stopCsvDump();
+}
@@ -0,0 +1,694 @@
+package ecosystem.projection;
+
+import ecosystem.Ecosystem;
+import ecosystem.entities.*;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Mean-field forward projection of the populations of an ecosystem.
+ * <p>
+ * Instead of simulating individuals, every group of animals of the same species and food chain level is
+ * described by energy histograms (juveniles and adults, in steps of 5 energy) and by schedules of the days
+ * on which its members mature and die of old age; every plant class is described by a histogram of growth
+ * levels. A projected day applies the rules of {@link Plant}, {@link Herbivore}, {@link Omnivore} and
+ * {@link Carnivore} to these counts: seeding and growth with the water budget, reproduction, drinking,
+ * hunting and grazing with the expected success rates, starvation and old age, and then a random weather
+ * change as in the {@link ecosystem.Simulation}.
+ * <p>
+ * The confidence band comes from running the projection several times with different weather and with
+ * Gaussian noise on births, seeds and kills. The cost of a projected day does not depend on the number
+ * of entities, so a snapshot taken once can be projected many times in milliseconds.
+ */
+public class PopulationProjection {
+    public static final int DEFAULT_RUNS = 64;
+    public static final double DEFAULT_CONFIDENCE = 0.9;
+
+    private static final int ENERGY_MIN = -60;
+    private static final int ENERGY_MAX = 400;
+    private static final int ENERGY_STEP = 5;
+    private static final int BINS = (ENERGY_MAX - ENERGY_MIN) / ENERGY_STEP + 1;
+    private static final int ZERO_BIN = bin(0);
+    private static final int FULL_BIN = bin(Animal.FULL_ENERGY);
+
+    private static final int MATURATION_DAYS = (Animal.ADULT_AGE + 23) / 24;
+    private static final int JUVENILE = 0;
+    private static final int ADULT = 1;
+
+    private static final int SEED_GROWTH = Plant.SEED_GROWTH_LEVEL;
+    private static final int GROWTH_LEVELS = SEED_GROWTH + 2;
+    // The number of seeds of a ripe plant, 26/9 on average with a variance of 44/81
+    private static final double MEAN_SEEDS = seedMoment(1, 0);
+    private static final double SEEDS_VARIANCE = seedMoment(2, MEAN_SEEDS);
+
+    private static final double EPSILON = 1e-9;
+
+    private final AnimalGroup[] animalGroups;
+    private final PlantGroup[] plantGroups;
+    private final List<String> seriesKinds = new ArrayList<>();
+    private final List<String> seriesNames = new ArrayList<>();
+    private final int[] kindSeries = new int[AnimalKind.values().length];
+    private final int plantSeries;
+    private final int temperature;
+    private final int humidity;
+    private final int waterAmount;
+
+    /**
+     * Animals of one species and food chain level, with the rules of their kind.
+     */
+    private static class AnimalGroup {
+        final String name;
+        final AnimalKind kind;
+        final int level;
+        final int waterNeeds;
+        final double reproduceChance;
+        // The energy changes are in units of energy, not bins, see move
+        final int energyCost;
+        final int newbornBin;
+        final int thirstPenalty;
+        final double huntShare;
+        final double huntSuccess;
+        final int huntGain;
+        final int escapePenalty;
+        final int noPreyPenalty;
+        final int plantGain;
+        final int noPlantPenalty;
+
+        final double[] juvenile = new double[BINS];
+        final double[] adult = new double[BINS];
+        // Counts indexed by the day of maturation or death
+        double[] maturation = new double[64];
+        double[] juvenileDeaths = new double[64];
+        double[] adultDeaths = new double[64];
+        long lifeTimeSum;
+        int count;
+
+        int series;
+        int[] prey;
+        int lifeDays;
+
+        AnimalGroup(String name, AnimalKind kind, int level) {
+            this.name = name;
+            this.kind = kind;
+            this.level = level;
+            int traits = SpeciesTraits.index(kind, name, level);
+            waterNeeds = SpeciesTraits.waterNeeds(traits);
+            reproduceChance = SpeciesTraits.reproduceChance(traits);
+            energyCost = SpeciesTraits.reproduceEnergyCost(traits);
+            newbornBin = bin(SpeciesTraits.newbornEnergy(traits));
+            thirstPenalty = SpeciesTraits.thirstPenalty(traits);
+            huntShare = switch (kind) {
+                case CARNIVORE -> 1;
+                case OMNIVORE -> SpeciesTraits.huntProbability(traits);
+                case HERBIVORE -> 0;
+            };
+            huntSuccess = SpeciesTraits.huntSuccess(traits);
+            huntGain = SpeciesTraits.huntEnergyGain(traits);
+            escapePenalty = SpeciesTraits.escapePenalty(traits);
+            noPreyPenalty = SpeciesTraits.noPreyPenalty(traits);
+            plantGain = SpeciesTraits.plantEnergy(traits);
+            noPlantPenalty = SpeciesTraits.noPlantPenalty(traits);
+        }
+
+        void add(Animal animal) {
+            int age = animal.getCurrentLifeTime();
+            int lifeTime = animal.getLifeTime();
+            int quantity = animal.getQuantity();
+            lifeTimeSum += (long) lifeTime * quantity;
+            count += quantity;
+
+            // An animal dies at the end of the first day after which its age exceeds its lifetime
+            int deathDay = age > lifeTime ? 1 : (lifeTime - age) / 24 + 1;
+            if (age >= Animal.ADULT_AGE) {
+                adult[bin(animal.getEnergy())] += quantity;
+                adultDeaths = count(adultDeaths, deathDay, quantity);
+            } else {
+                // Reproduction checks the age before the animal acts, so it can reproduce from this day on
+                int matureDay = (Animal.ADULT_AGE - age + 23) / 24 + 1;
+                juvenile[bin(animal.getEnergy())] += quantity;
+                if (deathDay < matureDay) juvenileDeaths = count(juvenileDeaths, deathDay, quantity);
+                else maturation = count(maturation, matureDay, quantity);
+            }
+        }
+
+        private static double[] count(double[] schedule, int day, int quantity) {
+            if (day >= schedule.length) schedule = Arrays.copyOf(schedule, Math.max(day + 1, schedule.length * 2));
+            schedule[day] += quantity;
+            return schedule;
+        }
+    }
+
+    /**
+     * Plants of one species with the same water needs and optimal temperature.
+     */
+    private static class PlantGroup {
+        final String name;
+        final int waterNeeds;
+        final int optimalTemperature;
+        final double[] growth = new double[GROWTH_LEVELS];
+        int series;
+
+        PlantGroup(String name, int waterNeeds, int optimalTemperature) {
+            this.name = name;
+            this.waterNeeds = waterNeeds;
+            this.optimalTemperature = optimalTemperature;
+        }
+    }
+
+    /**
+     * Mutable state of one projection run. It is allocated once per projection and reset for every run.
+     */
+    private class Run {
+        final double[][][] animals = new double[animalGroups.length][2][BINS];
+        final double[][] scales = new double[animalGroups.length][2];
+        final double[][] maturation;
+        final double[][][] deaths;
+        final double[][] plants = new double[plantGroups.length][GROWTH_LEVELS];
+        final double[] totals = new double[animalGroups.length];
+        final double[] speciesTotals;
+        final double[] hungry = new double[animalGroups.length];
+        final double[] kills = new double[animalGroups.length];
+        final boolean[] hasPrey = new boolean[animalGroups.length];
+        final double[] scratch = new double[Math.max(BINS, GROWTH_LEVELS)];
+        double water;
+        int temperature;
+        int humidity;
+
+        Run(int days) {
+            maturation = new double[animalGroups.length][days + 2];
+            deaths = new double[animalGroups.length][2][days + 2];
+            speciesTotals = new double[seriesNames.size()];
+        }
+
+        void reset() {
+            for (int i = 0; i < animalGroups.length; i++) {
+                AnimalGroup group = animalGroups[i];
+                System.arraycopy(group.juvenile, 0, animals[i][JUVENILE], 0, BINS);
+                System.arraycopy(group.adult, 0, animals[i][ADULT], 0, BINS);
+                scales[i][JUVENILE] = 1;
+                scales[i][ADULT] = 1;
+                copySchedule(group.maturation, maturation[i]);
+                copySchedule(group.juvenileDeaths, deaths[i][JUVENILE]);
+                copySchedule(group.adultDeaths, deaths[i][ADULT]);
+            }
+            for (int p = 0; p < plantGroups.length; p++) {
+                System.arraycopy(plantGroups[p].growth, 0, plants[p], 0, GROWTH_LEVELS);
+            }
+            water = waterAmount;
+            temperature = PopulationProjection.this.temperature;
+            humidity = PopulationProjection.this.humidity;
+        }
+
+        private void copySchedule(double[] schedule, double[] target) {
+            int length = Math.min(schedule.length, target.length);
+            System.arraycopy(schedule, 0, target, 0, length);
+            Arrays.fill(target, length, target.length, 0);
+        }
+    }
+
+    private PopulationProjection(Ecosystem ecosystem) {
+        temperature = ecosystem.getTemperature();
+        humidity = ecosystem.getHumidity();
+        waterAmount = ecosystem.getWaterAmount();
+
+        // Groups by name, then by kind and food chain level
+        Map<String, AnimalGroup[]> animalsByName = new HashMap<>();
+        List<AnimalGroup> animals = new ArrayList<>();
+        ecosystem.forEachAnimal(animal -> {
+            if (animal.isEaten()) return;
+            AnimalGroup[] byLevel = animalsByName.computeIfAbsent(animal.getName(), k -> new AnimalGroup[AnimalKind.values().length * 4]);
+            int index = animal.getKind().ordinal() * 4 + Math.max(0, Math.min(3, animal.getFoodChainLevel()));
+            AnimalGroup group = byLevel[index];
+            if (group == null) {
+                group = new AnimalGroup(animal.getName(), animal.getKind(), animal.getFoodChainLevel());
+                byLevel[index] = group;
+                animals.add(group);
+            }
+            group.add(animal);
+        });
+        Map<String, List<PlantGroup>> plantsByName = new HashMap<>();
+        List<PlantGroup> plants = new ArrayList<>();
+        ecosystem.forEachPlant(plant -> {
+            if (plant.isEaten()) return;
+            List<PlantGroup> classes = plantsByName.computeIfAbsent(plant.getName(), k -> new ArrayList<>(1));
+            PlantGroup group = null;
+            for (PlantGroup candidate : classes) {
+                if (candidate.waterNeeds == plant.getWaterNeeds() && candidate.optimalTemperature == plant.getOptimalTemperature()) {
+                    group = candidate;
+                    break;
+                }
+            }
+            if (group == null) {
+                group = new PlantGroup(plant.getName(), plant.getWaterNeeds(), plant.getOptimalTemperature());
+                classes.add(group);
+                plants.add(group);
+            }
+            group.growth[Math.max(0, Math.min(GROWTH_LEVELS - 1, plant.getGrowthLevel()))] += plant.getQuantity();
+        });
+        animalGroups = animals.toArray(new AnimalGroup[0]);
+        plantGroups = plants.toArray(new PlantGroup[0]);
+
+        // Totals first, then one series per species
+        for (AnimalKind kind : AnimalKind.values()) {
+            kindSeries[kind.ordinal()] = series(ProjectionResult.TOTAL, kind.getDisplayName());
+        }
+        plantSeries = series(ProjectionResult.TOTAL, "Plant");
+        for (AnimalGroup group : animalGroups) {
+            group.series = series(group.kind.getDisplayName(), group.name);
+            group.lifeDays = (int) (group.lifeTimeSum / group.count / 24);
+        }
+        for (PlantGroup group : plantGroups) {
+            group.series = series("Plant", group.name);
+        }
+
+        // A predator hunts other species on the same or a lower food chain level
+        for (AnimalGroup predator : animalGroups) {
+            int[] prey = new int[animalGroups.length];
+            int count = 0;
+            if (predator.huntShare > 0) {
+                for (int j = 0; j < animalGroups.length; j++) {
+                    if (!animalGroups[j].name.equals(predator.name) && animalGroups[j].level <= predator.level) prey[count++] = j;
+                }
+            }
+            predator.prey = Arrays.copyOf(prey, count);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the populations and climate of an ecosystem. The snapshot does not change when the
+     * ecosystem is simulated further, and can be projected any number of times.
+     *
+     * @param ecosystem The ecosystem to project.
+     * @return The projection of the ecosystem.
+     */
+    public static PopulationProjection of(Ecosystem ecosystem) {
+        return new PopulationProjection(ecosystem);
+    }
+
+    /**
+     * Projects the populations with the default number of runs and confidence.
+     *
+     * @param days The number of days to project.
+     * @return The projected trajectories.
+     */
+    public ProjectionResult project(int days) {
+        return project(days, DEFAULT_RUNS, DEFAULT_CONFIDENCE, new SecureRandom().nextLong());
+    }
+
+    /**
+     * Projects the populations.
+     *
+     * @param days The number of days to project.
+     * @param runs The number of runs with different weather and noise.
+     * @param confidence The share of runs that falls into the confidence band, e.g. 0.9.
+     * @param seed The seed of the random weather and noise.
+     * @return The projected trajectories.
+     */
+    public ProjectionResult project(int days, int runs, double confidence, long seed) {
+        if (days < 0) throw new IllegalArgumentException("The number of days cannot be negative");
+        if (runs < 1) throw new IllegalArgumentException("At least one run is required");
+        if (confidence <= 0 || confidence >= 1) throw new IllegalArgumentException("The confidence must be between 0 and 1");
+
+        long start = System.nanoTime();
+        Random random = new Random(seed);
+        int seriesCount = seriesNames.size();
+        double[][][] values = new double[seriesCount][days + 1][runs];
+        Run run = new Run(days);
+
+        for (int r = 0; r < runs; r++) {
+            run.reset();
+            record(run, values, 0, r);
+            for (int day = 1; day <= days; day++) {
+                growPlants(run, random);
+                actAnimals(run, day, random);
+                changeWeather(run, random);
+                record(run, values, day, r);
+            }
+        }
+
+        int lowerIndex = (int) Math.floor((1 - confidence) / 2 * (runs - 1));
+        int upperIndex = (int) Math.ceil((1 + confidence) / 2 * (runs - 1));
+        List<ProjectionResult.Series> series = new ArrayList<>(seriesCount);
+        for (int s = 0; s < seriesCount; s++) {
+            double[] mean = new double[days + 1];
+            double[] lower = new double[days + 1];
+            double[] upper = new double[days + 1];
+            for (int day = 0; day <= days; day++) {
+                double[] samples = values[s][day];
+                double sum = 0;
+                for (double sample : samples) sum += sample;
+                mean[day] = sum / runs;
+                Arrays.sort(samples);
+                lower[day] = samples[lowerIndex];
+                upper[day] = samples[upperIndex];
+            }
+            series.add(new ProjectionResult.Series(seriesKinds.get(s), seriesNames.get(s), mean, lower, upper));
+        }
+        return new ProjectionResult(days, runs, confidence, System.nanoTime() - start, series);
+    }
+
+    /**
+     * Seeding and growth of plants, as in {@link Ecosystem#growAllPlants} and {@link Plant#grow}.
+     */
+    private void growPlants(Run run, Random random) {
+        double demand = 0;
+        for (int p = 0; p < plantGroups.length; p++) {
+            double[] growth = run.plants[p];
+            double parents = 0;
+            for (int level = SEED_GROWTH; level < GROWTH_LEVELS; level++) {
+                parents += growth[level];
+                growth[level] = 0;
+            }
+            if (parents > 0) growth[0] += noisy(parents * MEAN_SEEDS, parents * SEEDS_VARIANCE, random);
+            demand += sum(growth, GROWTH_LEVELS) * plantGroups[p].waterNeeds;
+        }
+
+        // Plants drink as long as there is water; the rest wilts
+        double watered = demand <= 0 ? 1 : Math.min(1, run.water / demand);
+        run.water -= watered * demand;
+        double[] next = run.scratch;
+        for (int p = 0; p < plantGroups.length; p++) {
+            int delta = Plant.getGrowthDelta(run.temperature, plantGroups[p].optimalTemperature);
+            double[] growth = run.plants[p];
+            Arrays.fill(next, 0, GROWTH_LEVELS, 0);
+            for (int level = 0; level < GROWTH_LEVELS; level++) {
+                double count = growth[level];
+                if (count == 0) continue;
+                next[Math.min(GROWTH_LEVELS - 1, level + delta)] += count * watered;
+                // Plants wilting below zero growth are removed
+                if (level > 0) next[level - 1] += count * (1 - watered);
+            }
+            System.arraycopy(next, 0, growth, 0, GROWTH_LEVELS);
+        }
+    }
+
+    /**
+     * Maturation, reproduction, drinking, feeding and deaths of animals, as in {@link Ecosystem#actAllAnimals},
+     * the {@code act} and {@code reproduce} methods of the animals and the removal passes of the simulation.
+     */
+    private void actAnimals(Run run, int day, Random random) {
+        int groups = animalGroups.length;
+
+        // Juveniles old enough to reproduce become adults
+        for (int i = 0; i < groups; i++) {
+            double matured = run.maturation[i][day] * run.scales[i][JUVENILE];
+            if (matured <= 0) continue;
+            double[] juvenile = run.animals[i][JUVENILE];
+            double juvenileTotal = sum(juvenile, BINS);
+            if (juvenileTotal <= EPSILON) continue;
+            double share = Math.min(1, matured / juvenileTotal);
+            double[] adult = run.animals[i][ADULT];
+            for (int b = 0; b < BINS; b++) {
+                double moved = juvenile[b] * share;
+                juvenile[b] -= moved;
+                adult[b] += moved;
+            }
+            if (run.scales[i][ADULT] <= EPSILON) run.scales[i][ADULT] = 1;
+            schedule(run.deaths[i][ADULT], day + Math.max(1, animalGroups[i].lifeDays - MATURATION_DAYS),
+                    share * juvenileTotal / run.scales[i][ADULT]);
+        }
+
+        Arrays.fill(run.speciesTotals, 0);
+        for (int i = 0; i < groups; i++) {
+            run.totals[i] = sum(run.animals[i][JUVENILE], BINS) + sum(run.animals[i][ADULT], BINS);
+            run.speciesTotals[animalGroups[i].series] += run.totals[i];
+        }
+
+        // Reproduction of well-fed adults of species with at least two members
+        for (int i = 0; i < groups; i++) {
+            AnimalGroup group = animalGroups[i];
+            if (run.speciesTotals[group.series] < 2) continue;
+            double probability = 1 - group.reproduceChance;
+            double[] adult = run.animals[i][ADULT];
+            double births = 0;
+            for (int b = FULL_BIN; b < BINS; b++) {
+                double parents = adult[b] * probability;
+                if (parents == 0) continue;
+                adult[b] -= parents;
+                move(adult, b, -group.energyCost, parents);
+                births += parents;
+            }
+            births = noisy(births, births * group.reproduceChance, random);
+            if (births <= 0) continue;
+            run.animals[i][JUVENILE][group.newbornBin] += births;
+            if (run.scales[i][JUVENILE] <= EPSILON) run.scales[i][JUVENILE] = 1;
+            double raw = births / run.scales[i][JUVENILE];
+            if (group.lifeDays < MATURATION_DAYS) schedule(run.deaths[i][JUVENILE], day + group.lifeDays, raw);
+            else schedule(run.maturation[i], day + MATURATION_DAYS, raw);
+            run.totals[i] += births;
+        }
+
+        // Drinking: animals that find no water lose energy
+        double demand = 0;
+        for (int i = 0; i < groups; i++) demand += run.totals[i] * animalGroups[i].waterNeeds;
+        double drinking = demand <= 0 ? 1 : Math.min(1, run.water / demand);
+        run.water -= drinking * demand;
+        if (drinking < 1) {
+            for (int i = 0; i < groups; i++) {
+                shiftDown(run.animals[i][JUVENILE], animalGroups[i].thirstPenalty, 1 - drinking);
+                shiftDown(run.animals[i][ADULT], animalGroups[i].thirstPenalty, 1 - drinking);
+            }
+        }
+
+        // Hungry animals look for plants or prey
+        double plantDemand = 0;
+        for (int i = 0; i < groups; i++) {
+            run.hungry[i] = sum(run.animals[i][JUVENILE], FULL_BIN) + sum(run.animals[i][ADULT], FULL_BIN);
+            AnimalGroup group = animalGroups[i];
+            if (group.kind != AnimalKind.CARNIVORE) plantDemand += run.hungry[i] * (1 - group.huntShare);
+        }
+        double plantTotal = 0;
+        for (int p = 0; p < plantGroups.length; p++) plantTotal += sum(run.plants[p], GROWTH_LEVELS);
+        double grazing = plantDemand <= 0 ? 0 : Math.min(1, plantTotal / plantDemand);
+        if (plantTotal > EPSILON && grazing > 0) {
+            double eaten = Math.min(1, grazing * plantDemand / plantTotal);
+            for (int p = 0; p < plantGroups.length; p++) {
+                double[] growth = run.plants[p];
+                for (int level = 0; level < GROWTH_LEVELS; level++) growth[level] *= 1 - eaten;
+            }
+        }
+
+        Arrays.fill(run.kills, 0);
+        for (int i = 0; i < groups; i++) {
+            AnimalGroup predator = animalGroups[i];
+            double hunters = run.hungry[i] * predator.huntShare;
+            double pool = 0;
+            for (int j : predator.prey) pool += run.totals[j];
+            run.hasPrey[i] = pool > EPSILON;
+            if (hunters <= 0 || pool <= EPSILON) continue;
+            for (int j : predator.prey) run.kills[j] += predator.huntSuccess * hunters * run.totals[j] / pool;
+        }
+
+        for (int i = 0; i < groups; i++) {
+            feed(run, animalGroups[i], run.animals[i][JUVENILE], grazing, run.hasPrey[i]);
+            feed(run, animalGroups[i], run.animals[i][ADULT], grazing, run.hasPrey[i]);
+        }
+
+        // Deaths: prey, starvation and old age
+        for (int i = 0; i < groups; i++) {
+            if (run.kills[i] > 0 && run.totals[i] > EPSILON) {
+                double share = Math.min(1, noisy(run.kills[i], run.kills[i], random) / run.totals[i]);
+                kill(run, i, JUVENILE, share, day);
+                kill(run, i, ADULT, share, day);
+            }
+            for (int stage = JUVENILE; stage <= ADULT; stage++) {
+                starve(run, i, stage, day);
+
+                double[] energy = run.animals[i][stage];
+                double old = run.deaths[i][stage][day] * run.scales[i][stage];
+                double total = sum(energy, BINS);
+                if (old > 0 && total > EPSILON) {
+                    double share = Math.min(1, old / total);
+                    // Scheduled deaths leave the survival scale of the other cohorts unchanged
+                    for (int b = 0; b < BINS; b++) energy[b] *= 1 - share;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the energy changes of one day of acting to an energy histogram.
+     */
+    private static void feed(Run run, AnimalGroup group, double[] energy, double grazing, boolean hasPrey) {
+        double[] next = run.scratch;
+        Arrays.fill(next, 0, BINS, 0);
+        double plantShare = group.kind == AnimalKind.CARNIVORE ? 0 : 1 - group.huntShare;
+        for (int b = 0; b < BINS; b++) {
+            double count = energy[b];
+            if (count == 0) continue;
+            if (b >= FULL_BIN) {
+                move(next, b, -Animal.REST_COST, count);
+                continue;
+            }
+            double grazers = count * plantShare;
+            if (grazers > 0) {
+                move(next, b, group.plantGain, grazers * grazing);
+                move(next, b, -group.noPlantPenalty, grazers * (1 - grazing));
+            }
+            double hunters = count * group.huntShare;
+            if (hunters > 0) {
+                if (hasPrey) {
+                    move(next, b, group.huntGain, hunters * group.huntSuccess);
+                    move(next, b, -group.escapePenalty, hunters * (1 - group.huntSuccess));
+                } else {
+                    move(next, b, -group.noPreyPenalty, hunters);
+                }
+            }
+        }
+        System.arraycopy(next, 0, energy, 0, BINS);
+    }
+
+    /**
+     * Removes a share of every energy bin of a stage of a group.
+     */
+    private static void kill(Run run, int group, int stage, double share, int day) {
+        double[] energy = run.animals[group][stage];
+        for (int b = 0; b < BINS; b++) energy[b] *= 1 - share;
+        removed(run, group, stage, share, day);
+    }
+
+    /**
+     * Removes the animals of a stage of a group whose energy dropped below zero.
+     */
+    private static void starve(Run run, int group, int stage, int day) {
+        double[] energy = run.animals[group][stage];
+        double starved = sum(energy, ZERO_BIN);
+        if (starved <= 0) return;
+        double total = sum(energy, BINS);
+        Arrays.fill(energy, 0, ZERO_BIN, 0);
+        removed(run, group, stage, starved / total, day);
+    }
+
+    /**
+     * Lowers the survival scale of the scheduled cohorts of a stage after a share of it was removed.
+     */
+    private static void removed(Run run, int group, int stage, double share, int day) {
+        run.scales[group][stage] *= 1 - Math.min(1, share);
+        if (sum(run.animals[group][stage], BINS) <= EPSILON) {
+            // The stage died out: forget its scheduled cohorts so that newborns start with a fresh scale
+            Arrays.fill(run.animals[group][stage], 0);
+            run.scales[group][stage] = 1;
+            int from = Math.min(day + 1, run.deaths[group][stage].length);
+            Arrays.fill(run.deaths[group][stage], from, run.deaths[group][stage].length, 0);
+            if (stage == JUVENILE) Arrays.fill(run.maturation[group], from, run.maturation[group].length, 0);
+        }
+    }
+
+    /**
+     * Weather change of a simulated day, as in {@link Ecosystem#callRain}, {@link Ecosystem#callSunnyDay}
+     * and {@link Ecosystem#callCloudyDay}.
+     */
+    private static void changeWeather(Run run, Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                run.humidity += random.nextInt(Ecosystem.HUMIDITY_CHANGE);
+                run.water += Ecosystem.RAIN_WATER + random.nextInt(Ecosystem.RAIN_WATER);
+                break;
+            case 1:
+                run.temperature += random.nextInt(Ecosystem.TEMPERATURE_CHANGE);
+                run.water -= random.nextInt(Ecosystem.SUNNY_DAY_WATER);
+                break;
+            case 2:
+                run.temperature -= random.nextInt(Ecosystem.TEMPERATURE_CHANGE);
+                run.humidity -= random.nextInt(Ecosystem.HUMIDITY_CHANGE);
+                run.water += random.nextInt(Ecosystem.CLOUDY_DAY_WATER);
+                break;
+        }
+        run.temperature = Math.max(Ecosystem.MIN_TEMPERATURE, Math.min(Ecosystem.MAX_TEMPERATURE, run.temperature));
+        run.humidity = Math.max(0, Math.min(Ecosystem.MAX_HUMIDITY, run.humidity));
+        run.water = Math.max(0, Math.min(Ecosystem.MAX_WATER, run.water));
+    }
+
+    private void record(Run run, double[][][] values, int day, int r) {
+        for (int s = 0; s < values.length; s++) values[s][day][r] = 0;
+        for (int i = 0; i < animalGroups.length; i++) {
+            AnimalGroup group = animalGroups[i];
+            double count = sum(run.animals[i][JUVENILE], BINS) + sum(run.animals[i][ADULT], BINS);
+            values[group.series][day][r] += count;
+            values[kindSeries[group.kind.ordinal()]][day][r] += count;
+        }
+        for (int p = 0; p < plantGroups.length; p++) {
+            double count = sum(run.plants[p], GROWTH_LEVELS);
+            values[plantGroups[p].series][day][r] += count;
+            values[plantSeries][day][r] += count;
+        }
+    }
+
+    private int series(String kind, String name) {
+        for (int s = 0; s < seriesNames.size(); s++) {
+            if (seriesKinds.get(s).equals(kind) && seriesNames.get(s).equals(name)) return s;
+        }
+        seriesKinds.add(kind);
+        seriesNames.add(name);
+        return seriesNames.size() - 1;
+    }
+
+    private static void schedule(double[] schedule, int day, double count) {
+        if (day < schedule.length) schedule[day] += count;
+    }
+
+    /**
+     * Moves a share of every energy bin down by the given energy.
+     */
+    private static void shiftDown(double[] energy, int penalty, double share) {
+        if (penalty == 0 || share <= 0) return;
+        // Ascending order: mass moved down is never moved twice
+        for (int b = 0; b < BINS; b++) {
+            double moved = energy[b] * share;
+            if (moved == 0) continue;
+            energy[b] -= moved;
+            move(energy, b, -penalty, moved);
+        }
+    }
+
+    /**
+     * Adds a count to the energy histogram at the energy of bin b changed by the given amount. A change that is
+     * not a multiple of the bin width is split between the two bins around it by distance, so the mean energy
+     * moves by the exact amount.
+     */
+    private static void move(double[] energy, int b, int change, double count) {
+        int bins = Math.floorDiv(change, ENERGY_STEP);
+        double upper = (double) Math.floorMod(change, ENERGY_STEP) / ENERGY_STEP;
+        energy[clamp(b + bins)] += count * (1 - upper);
+        if (upper > 0) energy[clamp(b + bins + 1)] += count * upper;
+    }
+
+    private static double noisy(double mean, double variance, Random random) {
+        if (mean <= 0) return 0;
+        return Math.max(0, mean + Math.sqrt(Math.max(0, variance)) * random.nextGaussian());
+    }
+
+    private static double sum(double[] values, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) sum += values[i];
+        return sum;
+    }
+
+    /**
+     * Returns a moment of the number of seeds of a ripe plant, from {@link Plant#seedProbability}.
+     *
+     * @param power 1 for the mean, 2 for the variance.
+     * @param center The value the moment is taken about.
+     */
+    private static double seedMoment(int power, double center) {
+        double moment = 0;
+        for (int seeds = Plant.MIN_SEEDS; seeds < Plant.MIN_SEEDS + Plant.SEED_DRAWS; seeds++) {
+            moment += Plant.seedProbability(seeds) * Math.pow(seeds - center, power);
+        }
+        return moment;
+    }
+
+    private static int bin(int energy) {
+        return clamp(Math.round((float) (energy - ENERGY_MIN) / ENERGY_STEP));
+    }
+
+    private static int clamp(int bin) {
+        return Math.max(0, Math.min(BINS - 1, bin));
+    }
+}
@@ -0,0 +1,140 @@
+package ecosystem.projection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Projected population trajectories produced by {@link PopulationProjection}.
+ * Every series holds, for each day from 0 (the current state) to the horizon, the mean over all runs
+ * and the lower and upper bounds of the confidence band.
+ */
+public class ProjectionResult {
+    /** Kind of the series that sum a whole kind of animals or all plants. */
+    public static final String TOTAL = "Total";
+
+    private final int days;
+    private final int runs;
+    private final double confidence;
+    private final long elapsedNanos;
+    private final List<Series> series;
+
+    /**
+     * One projected trajectory.
+     */
+    public static class Series {
+        private final String kind;
+        private final String name;
+        private final double[] mean;
+        private final double[] lower;
+        private final double[] upper;
+
+        Series(String kind, String name, double[] mean, double[] lower, double[] upper) {
+            this.kind = kind;
+            this.name = name;
+            this.mean = mean;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        /**
+         * Returns the kind of the species ("Herbivore", "Omnivore", "Carnivore" or "Plant"),
+         * or {@link ProjectionResult#TOTAL} for the sum of a kind.
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public double getMean(int day) {
+            return mean[day];
+        }
+
+        public double getLower(int day) {
+            return lower[day];
+        }
+
+        public double getUpper(int day) {
+            return upper[day];
+        }
+    }
+
+    ProjectionResult(int days, int runs, double confidence, long elapsedNanos, List<Series> series) {
+        this.days = days;
+        this.runs = runs;
+        this.confidence = confidence;
+        this.elapsedNanos = elapsedNanos;
+        this.series = new ArrayList<>(series);
+    }
+
+    public int getDays() {
+        return days;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1e6;
+    }
+
+    public List<Series> getSeries() {
+        return Collections.unmodifiableList(series);
+    }
+
+    /**
+     * Finds a series by kind and name.
+     *
+     * @param kind The kind of the series, or {@link #TOTAL}.
+     * @param name The species name, or the kind name for totals.
+     * @return The series, or null if there is none.
+     */
+    public Series getSeries(String kind, String name) {
+        for (Series s : series) {
+            if (s.kind.equals(kind) && s.name.equals(name)) return s;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the projected total of a kind of animals, or of all plants for "Plant".
+     *
+     * @param kind "Herbivore", "Omnivore", "Carnivore" or "Plant".
+     * @return The series of the total.
+     */
+    public Series getTotal(String kind) {
+        return getSeries(TOTAL, kind);
+    }
+
+    /**
+     * Formats the trajectories as a table with one row per series and one column per {@code step} days.
+     *
+     * @param step The number of days between two columns.
+     * @return The formatted table.
+     */
+    public String format(int step) {
+        step = Math.max(1, step);
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-10s %-12s", "Kind", "Name"));
+        for (int day = 0; day <= days; day += step) {
+            table.append(String.format(" %20s", "day " + day));
+        }
+        table.append(System.lineSeparator());
+        for (Series s : series) {
+            table.append(String.format("%-10s %-12s", s.kind, s.name));
+            for (int day = 0; day <= days; day += step) {
+                table.append(String.format(" %20s", String.format("%.0f [%.0f-%.0f]", s.mean[day], s.lower[day], s.upper[day])));
+            }
+            table.append(System.lineSeparator());
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package ecosystem.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed ring of frames that one producer broadcasts to any number of readers without locks. Publishing
+ * overwrites the oldest frame and never waits for the readers; every reader follows the ring with its own
+ * {@link Cursor}, and a reader that falls more than the capacity behind skips the overwritten frames and counts
+ * them as dropped. Frames are immutable, so they are shared by all readers.
+ */
+class BroadcastRing {
+    private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final AtomicReferenceArray<Frame> slots;
+    private final int mask;
+    // The sequence of the next frame; frames below it are published
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicInteger readers = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * A published frame and its place in the sequence of all frames.
+     */
+    static final class Frame {
+        final long sequence;
+        final byte[] data;
+
+        private Frame(long sequence, byte[] data) {
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The position of one reader in the ring. A cursor is used by one thread.
+     */
+    final class Cursor implements AutoCloseable {
+        private long next;
+        private long dropped;
+
+        private Cursor(long next) {
+            this.next = next;
+            readers.incrementAndGet();
+        }
+
+        /**
+         * Returns the next frame, waiting for it at most for the given time. Frames that were overwritten before
+         * they were read are skipped and counted as dropped.
+         *
+         * @param timeout The longest time to wait, in nanoseconds.
+         * @return The frame, or null if none was published in time.
+         */
+        Frame poll(long timeout) {
+            long deadline = System.nanoTime() + timeout;
+            while (true) {
+                if (next < published.get()) {
+                    // A frame is stored before its sequence is published, so the slot holds this frame or a newer one
+                    Frame frame = slots.get((int) next & mask);
+                    if (frame.sequence == next) {
+                        next++;
+                        return frame;
+                    }
+                    // Overwritten before it was read: go on with the oldest frame still in the ring
+                    skip(frame.sequence - slots.length() + 1 - next);
+                    continue;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return null;
+                LockSupport.parkNanos(Math.min(remaining, POLL_INTERVAL));
+            }
+        }
+
+        /**
+         * Returns the number of frames this reader lost because it fell behind.
+         */
+        long getDropped() {
+            return dropped;
+        }
+
+        private void skip(long frames) {
+            dropped += frames;
+            BroadcastRing.this.dropped.add(frames);
+            next += frames;
+        }
+
+        @Override
+        public void close() {
+            readers.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param capacity The number of frames kept for lagging readers, rounded up to a power of two.
+     */
+    BroadcastRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Publishes a frame to all readers. Only one thread may publish at a time.
+     */
+    void publish(byte[] data) {
+        long sequence = published.get();
+        slots.set((int) sequence & mask, new Frame(sequence, data));
+        published.set(sequence + 1);
+    }
+
+    /**
+     * Returns a cursor that reads the frames published from now on, or from the given sequence if those frames
+     * are still in the ring.
+     *
+     * @param from The sequence of the first frame to read, or -1 for the next frame to be published.
+     */
+    Cursor subscribe(long from) {
+        long next = published.get();
+        if (from >= 0 && from < next) next = Math.max(from, next - slots.length());
+        return new Cursor(next);
+    }
+
+    int getReaderCount() {
+        return readers.get();
+    }
+
+    /**
+     * Returns the number of frames lost by all readers together.
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+}
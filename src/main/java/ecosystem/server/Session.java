@@ -0,0 +1,306 @@
+package ecosystem.server;
+
+import ecosystem.Ecosystem;
+import ecosystem.PopulationStatistics;
+import ecosystem.Simulation;
+import ecosystem.entities.Animal;
+import ecosystem.entities.AnimalKind;
+import ecosystem.entities.Plant;
+import ecosystem.spatial.SpatialGrid;
+import ecosystem.store.EntityStore;
+import ecosystem.utils.DeltaCheckpointLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An ecosystem of the simulation service with its own simulation. Requests to one session are served one at a
+ * time under its lock, requests to different sessions run in parallel. An idle session can be spilled: its
+ * ecosystem is written to a compressed snapshot file and dropped from memory until it is used again.
+ * <p>
+ * The snapshot is the base format of {@link DeltaCheckpointLog}, which keeps every field of every entity, followed
+ * by what the base does not hold: the modes of the ecosystem, the positions of the entities and the water of the
+ * cells of the spatial grid. A session comes back from its snapshot as it was spilled.
+ */
+class Session {
+    // Rough heap sizes of the objects of a session, for the memory budget of the session cache
+    private static final long SESSION_BYTES = 16 * 1024;
+    private static final long ANIMAL_BYTES = 96;
+    private static final long PLANT_BYTES = 80;
+    // The modes of a spilled ecosystem
+    private static final int COHORT_MODE = 1;
+    private static final int SPATIAL_MODE = 2;
+    private static final int OFF_HEAP_MODE = 4;
+    private static final int PARALLEL_TICKS = 8;
+    private static final int FEED_CAPACITY = 1024;
+
+    private final String id;
+    private Ecosystem ecosystem;
+    private Path spillFile;
+    private long size;
+    private final Simulation simulation = new Simulation();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final BroadcastRing feed = new BroadcastRing(FEED_CAPACITY);
+    private int day;
+
+    Session(String id, Ecosystem ecosystem) {
+        this.id = id;
+        this.ecosystem = ecosystem;
+        simulation.setQuiet(true);
+        simulation.addListener((simulated, dayOfRun) -> feed.publish(summary(simulated, day + dayOfRun + 1)));
+        size = estimateSize();
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the ecosystem, or null while the session is spilled. It may only be used while the lock is held.
+     */
+    Ecosystem getEcosystem() {
+        return ecosystem;
+    }
+
+    ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Returns the feed of the daily summaries. It is read without the lock.
+     */
+    BroadcastRing getFeed() {
+        return feed;
+    }
+
+    /**
+     * Returns the size of the session in memory as estimated when it was last used, or 0 while it is spilled.
+     */
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Estimates the size of the session in memory from the number of entities. The lock must be held.
+     * A cohort is one object whatever its quantity, but in off-heap mode every individual is a record of its own.
+     */
+    long estimateSize() {
+        if (ecosystem == null) return 0;
+        if (ecosystem.isOffHeapMode()) {
+            PopulationStatistics statistics = ecosystem.getStatistics();
+            return SESSION_BYTES + (long) statistics.getAnimalCount() * EntityStore.ANIMAL_RECORD_SIZE
+                    + (long) statistics.getPlantCount() * EntityStore.PLANT_RECORD_SIZE;
+        }
+        return SESSION_BYTES + ecosystem.getAnimals().size() * ANIMAL_BYTES + ecosystem.getPlants().size() * PLANT_BYTES;
+    }
+
+    /**
+     * Updates the estimated size after the session was used. The lock must be held.
+     *
+     * @return The change of the size.
+     */
+    long resize() {
+        long previous = size;
+        size = estimateSize();
+        return size - previous;
+    }
+
+    /**
+     * Writes the ecosystem to the given file, compressed, and drops it from memory. The lock must be held.
+     *
+     * @param file The snapshot file.
+     * @throws IOException if the file cannot be written; the session then stays in memory.
+     */
+    void spill(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))))) {
+            write(ecosystem, out);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        // Without the ecosystem nothing uses the threads or the records any more
+        ecosystem.disableParallelTicks();
+        if (ecosystem.isOffHeapMode()) ecosystem.getEntityStore().close();
+        spillFile = file;
+        ecosystem = null;
+        size = 0;
+    }
+
+    /**
+     * Reads the ecosystem back from its snapshot file if the session is spilled. The lock must be held.
+     *
+     * @return Whether the ecosystem was read.
+     * @throws IOException if the snapshot file cannot be read; the session then stays spilled.
+     */
+    boolean rehydrate() throws IOException {
+        if (ecosystem != null) return false;
+        Ecosystem loaded;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(spillFile))))) {
+            loaded = read(in);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The snapshot " + spillFile + " has errors.", e);
+        }
+        ecosystem = loaded;
+        Files.delete(spillFile);
+        spillFile = null;
+        size = estimateSize();
+        return true;
+    }
+
+    private static void write(Ecosystem ecosystem, DataOutputStream out) throws IOException {
+        DeltaCheckpointLog.writeSnapshot(ecosystem, out);
+        int modes = (ecosystem.isCohortMode() ? COHORT_MODE : 0) | (ecosystem.isSpatialMode() ? SPATIAL_MODE : 0)
+                | (ecosystem.isOffHeapMode() ? OFF_HEAP_MODE : 0) | (ecosystem.getParallelism() > 1 ? PARALLEL_TICKS : 0);
+        out.writeInt(modes);
+        for (Animal animal : ecosystem.getAnimals()) {
+            out.writeInt(animal.getX());
+            out.writeInt(animal.getY());
+        }
+        for (Plant plant : ecosystem.getPlants()) {
+            out.writeInt(plant.getX());
+            out.writeInt(plant.getY());
+        }
+        if (ecosystem.isSpatialMode()) {
+            SpatialGrid grid = ecosystem.getGrid();
+            out.writeInt(grid.getWidth());
+            out.writeInt(grid.getHeight());
+            out.writeInt(grid.getWaterCursor());
+            for (int water : grid.getCellWater()) out.writeInt(water);
+        }
+        if (ecosystem.getParallelism() > 1) {
+            out.writeInt(ecosystem.getParallelism());
+            out.writeInt(ecosystem.getParallelTileSize());
+        }
+        if (ecosystem.isOffHeapMode()) {
+            EntityStore store = ecosystem.getEntityStore();
+            out.writeUTF(store.isMapped() ? store.getDirectory().toString() : "");
+        }
+    }
+
+    private static Ecosystem read(DataInputStream in) throws IOException {
+        Ecosystem ecosystem = DeltaCheckpointLog.readSnapshot(in);
+        int modes = in.readInt();
+        for (Animal animal : ecosystem.getAnimals()) animal.setPosition(in.readInt(), in.readInt());
+        for (Plant plant : ecosystem.getPlants()) plant.setPosition(in.readInt(), in.readInt());
+        // The cohorts were merged when the session was spilled, so switching cohort mode on keeps them as they are
+        if ((modes & COHORT_MODE) != 0) ecosystem.setCohortMode(true);
+        if ((modes & SPATIAL_MODE) != 0) {
+            SpatialGrid grid = new SpatialGrid(in.readInt(), in.readInt(), 0);
+            int waterCursor = in.readInt();
+            int[] water = new int[grid.getWidth() * grid.getHeight()];
+            for (int i = 0; i < water.length; i++) water[i] = in.readInt();
+            grid.setCellWater(water, waterCursor);
+            ecosystem.enableSpatialMode(grid);
+        }
+        if ((modes & PARALLEL_TICKS) != 0) ecosystem.enableParallelTicks(in.readInt(), in.readInt());
+        if ((modes & OFF_HEAP_MODE) != 0) {
+            String directory = in.readUTF();
+            int animals = ecosystem.getAnimals().size();
+            int plants = ecosystem.getPlants().size();
+            ecosystem.enableOffHeapMode(directory.isEmpty() ? EntityStore.allocateDirect(animals, plants)
+                    : EntityStore.create(Paths.get(directory), animals, plants));
+            if (!directory.isEmpty()) ecosystem.snapshot();
+        }
+        return ecosystem;
+    }
+
+    /**
+     * Deletes the snapshot file of a spilled session. The lock must be held.
+     */
+    void discard() throws IOException {
+        if (spillFile != null) Files.deleteIfExists(spillFile);
+        spillFile = null;
+        ecosystem = null;
+        size = 0;
+    }
+
+    /**
+     * Simulates the given number of days. The lock must be held.
+     *
+     * @param days The number of days, at least 1.
+     */
+    void step(int days) {
+        // A simulation time of n hours covers n / 24 + 1 days
+        simulation.simulate(ecosystem, (days - 1) * 24);
+        day += days;
+    }
+
+    /**
+     * Returns the day, the climate and the counts of the animals by kind and of every species, one per line in
+     * the format of the ecosystem files. The lock must be held.
+     */
+    String describe() {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        StringBuilder text = new StringBuilder();
+        line(text, "Session", id);
+        line(text, "Day", day);
+        line(text, "Temperature", ecosystem.getTemperature());
+        line(text, "Humidity", ecosystem.getHumidity());
+        line(text, "Water amount", ecosystem.getWaterAmount());
+        line(text, "Animals", statistics.getAnimalCount());
+        for (AnimalKind kind : AnimalKind.values()) line(text, kind.getDisplayName(), statistics.getKindCount(kind));
+        line(text, "Plants", statistics.getPlantCount());
+        line(text, "Feed subscribers", feed.getReaderCount());
+        line(text, "Feed dropped frames", feed.getDroppedCount());
+        text.append("Species:\n");
+        for (PopulationStatistics.SpeciesStatistics species : statistics.getAnimalSpecies()) {
+            if (species.getCount() > 0) line(text, species.getName(), species.getCount());
+        }
+        for (PopulationStatistics.SpeciesStatistics species : statistics.getPlantSpecies()) {
+            if (species.getCount() > 0) line(text, species.getName(), species.getCount());
+        }
+        return text.toString();
+    }
+
+    /**
+     * Returns the summary of a day as the event and the data lines of a Server-Sent Events frame, the data being
+     * one line of JSON, for example
+     * {"day":3,"temperature":21,"humidity":48,"water":350000,"species":{"wolf":21,"fern":6473}}.
+     */
+    private static byte[] summary(Ecosystem ecosystem, int day) {
+        PopulationStatistics statistics = ecosystem.getStatistics();
+        StringBuilder json = new StringBuilder("{\"day\":").append(day)
+                .append(",\"temperature\":").append(ecosystem.getTemperature())
+                .append(",\"humidity\":").append(ecosystem.getHumidity())
+                .append(",\"water\":").append(ecosystem.getWaterAmount())
+                .append(",\"species\":{");
+        int start = json.length();
+        counts(json, start, statistics.getAnimalSpecies());
+        counts(json, start, statistics.getPlantSpecies());
+        json.append("}}");
+        return ("event: day\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void counts(StringBuilder json, int start, Collection<PopulationStatistics.SpeciesStatistics> species) {
+        for (PopulationStatistics.SpeciesStatistics one : species) {
+            if (one.getCount() == 0) continue;
+            if (json.length() > start) json.append(',');
+            quoted(json, one.getName()).append(':').append(one.getCount());
+        }
+    }
+
+    private static StringBuilder quoted(StringBuilder json, String text) {
+        json.append('"');
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') json.append('\\').append(c);
+            else if (c < ' ') json.append(String.format("\\u%04x", (int) c));
+            else json.append(c);
+        }
+        return json.append('"');
+    }
+
+    private static void line(StringBuilder text, String name, Object value) {
+        text.append(name).append(": ").append(value).append('\n');
+    }
+}
@@ -0,0 +1,192 @@
+package ecosystem.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The sessions of the simulation service under a memory budget. The sessions held in memory are kept in order of
+ * last use with their estimated sizes; when their total exceeds the budget, the least recently used idle sessions
+ * are spilled to compressed snapshot files until it fits again. A spilled session is read back on its next use, so
+ * hot sessions stay in memory while cold ones only take disk space. Sessions in use are never spilled, so a single
+ * session larger than the budget stays in memory while it is used.
+ */
+class SessionCache {
+    private static final String SNAPSHOT_SUFFIX = ".bin.gz";
+
+    private final long budget;
+    private final Path directory;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Guarded by this: the sessions in memory, least recently used first, and the sum of their sizes
+    private final LinkedHashMap<Session, Boolean> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes;
+    private long spills;
+    private long rehydrations;
+
+    /**
+     * @param budget The memory for the sessions, in bytes.
+     * @param directory The directory of the snapshot files; it is created if needed.
+     */
+    SessionCache(long budget, Path directory) throws IOException {
+        this.budget = budget;
+        this.directory = Files.createDirectories(directory);
+    }
+
+    Session get(String id) {
+        return sessions.get(id);
+    }
+
+    Set<String> ids() {
+        return sessions.keySet();
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Adds a new session in memory and spills others if the budget is exceeded.
+     */
+    void add(Session session) {
+        sessions.put(session.getId(), session);
+        synchronized (this) {
+            resident.put(session, Boolean.TRUE);
+            residentBytes += session.getSize();
+        }
+        trim();
+    }
+
+    /**
+     * Prepares a session for a request: reads it back if it is spilled and marks it as the most recently used.
+     * The lock of the session must be held.
+     *
+     * @return Whether the session can be used; false if it was removed meanwhile.
+     * @throws UncheckedIOException if the snapshot of the session cannot be read.
+     */
+    boolean acquire(Session session) {
+        if (sessions.get(session.getId()) != session) return false;
+        try {
+            session.rehydrate();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (this) {
+            if (resident.put(session, Boolean.TRUE) == null) {
+                residentBytes += session.getSize();
+                rehydrations++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Updates the size of a session after a request, while the lock of the session is still held. The budget is
+     * enforced with {@link #trim} once the lock is released.
+     */
+    void release(Session session) {
+        long change = session.resize();
+        synchronized (this) {
+            if (resident.containsKey(session)) residentBytes += change;
+        }
+    }
+
+    /**
+     * Ends a session and deletes its snapshot file.
+     *
+     * @return Whether the session existed.
+     */
+    boolean remove(String id) throws IOException {
+        Session session = sessions.remove(id);
+        if (session == null) return false;
+        session.getLock().lock();
+        try {
+            synchronized (this) {
+                if (resident.remove(session) != null) residentBytes -= session.getSize();
+            }
+            session.discard();
+        } finally {
+            session.getLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Spills the least recently used idle sessions until the sessions in memory fit into the budget.
+     */
+    void trim() {
+        Session victim;
+        while ((victim = nextVictim()) != null) {
+            try {
+                // A request that arrives meanwhile waits for the lock and reads the snapshot back
+                victim.spill(directory.resolve(victim.getId() + SNAPSHOT_SUFFIX));
+                synchronized (this) {
+                    spills++;
+                }
+            } catch (IOException e) {
+                System.out.println("Session " + victim.getId() + " cannot be spilled: " + e.getMessage());
+                synchronized (this) {
+                    resident.put(victim, Boolean.TRUE);
+                    residentBytes += victim.getSize();
+                }
+                return;
+            } finally {
+                victim.getLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used session that is not in use from the sessions in memory, if the budget is
+     * exceeded, and returns it locked.
+     */
+    private synchronized Session nextVictim() {
+        if (residentBytes <= budget) return null;
+        Iterator<Session> iterator = resident.keySet().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            if (session.getLock().isHeldByCurrentThread() || !session.getLock().tryLock()) continue;
+            if (!sessions.containsKey(session.getId())) {
+                // Removed meanwhile, remove() takes it out of memory
+                session.getLock().unlock();
+                continue;
+            }
+            iterator.remove();
+            residentBytes -= session.getSize();
+            return session;
+        }
+        return null;
+    }
+
+    /**
+     * Ends all sessions and deletes their snapshot files.
+     */
+    void clear() {
+        Collection<String> ids = sessions.keySet();
+        for (String id : ids) {
+            try {
+                remove(id);
+            } catch (IOException e) {
+                System.out.println("Session " + id + " cannot be deleted: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the state of the cache as "Key: value" lines.
+     */
+    synchronized String describe() {
+        return "Sessions: " + sessions.size() + "\n"
+                + "Resident: " + resident.size() + "\n"
+                + "Resident bytes: " + residentBytes + "\n"
+                + "Budget bytes: " + budget + "\n"
+                + "Spills: " + spills + "\n"
+                + "Rehydrations: " + rehydrations + "\n";
+    }
+}
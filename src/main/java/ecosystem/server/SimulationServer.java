@@ -0,0 +1,336 @@
+package ecosystem.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ecosystem.Ecosystem;
+import ecosystem.Prediction;
+import ecosystem.utils.FileManager;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local HTTP service that runs simulations for other programs. Every session holds its own ecosystem,
+ * and every request is served on its own thread: a virtual thread where the JDK has them, otherwise a
+ * pooled platform thread. Requests and responses are plain text; ecosystems are exchanged in the format of
+ * the ecosystem files.
+ * <ul>
+ * <li>{@code POST /sessions} with an ecosystem as the body, or {@code POST /sessions?file=<name>} to load a file
+ * below the directory of the service, creates a session and returns its id.</li>
+ * <li>{@code GET /sessions} lists the ids of the sessions.</li>
+ * <li>{@code GET /sessions/<id>} returns the day, the climate and the population counts.</li>
+ * <li>{@code POST /sessions/<id>/step?days=<n>} simulates n days and returns the counts.</li>
+ * <li>{@code GET /sessions/<id>/prediction} returns the population prediction.</li>
+ * <li>{@code GET /sessions/<id>/snapshot} returns the ecosystem as a file.</li>
+ * <li>{@code GET /sessions/<id>/feed} streams a summary of every simulated day as Server-Sent Events.</li>
+ * <li>{@code DELETE /sessions/<id>} ends the session.</li>
+ * </ul>
+ * Usage: {@code SimulationServer [port] [directory]}. The service only listens on the loopback address.
+ * <p>
+ * The sessions share a memory budget, {@code -Decosystem.sessionMemory} in megabytes (256 by default). Beyond it
+ * the least recently used sessions are spilled to snapshot files in {@code -Decosystem.sessionDirectory} (a
+ * temporary directory by default) and read back when they are used again, see {@link SessionCache}.
+ */
+public class SimulationServer {
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_STEP_DAYS = 100000;
+    private static final int DEFAULT_SESSION_MEMORY = 256;
+    private static final long FEED_POLL = TimeUnit.SECONDS.toNanos(1);
+    private static final long FEED_KEEP_ALIVE = TimeUnit.SECONDS.toNanos(15);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Path directory;
+    private final SessionCache sessions;
+    private volatile boolean stopped;
+
+    /**
+     * Thrown by the request handling to answer with an error status.
+     */
+    private static final class HttpError extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Creates the service with the memory budget and the snapshot directory of the system properties.
+     *
+     * @param port The port, or 0 for any free port.
+     * @param directory The directory from which ecosystem files are loaded.
+     */
+    public SimulationServer(int port, Path directory) throws IOException {
+        this(port, directory, Integer.getInteger("ecosystem.sessionMemory", DEFAULT_SESSION_MEMORY) * 1024L * 1024L,
+                System.getProperty("ecosystem.sessionDirectory") != null
+                        ? Paths.get(System.getProperty("ecosystem.sessionDirectory"))
+                        : Files.createTempDirectory("ecosystem-sessions"));
+    }
+
+    /**
+     * Creates the service; it accepts requests once it is started.
+     *
+     * @param port The port, or 0 for any free port.
+     * @param directory The directory from which ecosystem files are loaded.
+     * @param sessionMemory The memory for the ecosystems of the sessions, in bytes.
+     * @param sessionDirectory The directory for the snapshots of spilled sessions.
+     */
+    public SimulationServer(int port, Path directory, long sessionMemory, Path sessionDirectory) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        sessions = new SessionCache(sessionMemory, sessionDirectory);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/sessions", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path directory = Paths.get(args.length > 1 ? args[1] : System.getProperty("user.dir"));
+        SimulationServer server = new SimulationServer(port, directory);
+        server.start();
+        System.out.println("Simulation service listening on http://localhost:" + server.getPort() + "/sessions");
+    }
+
+    /**
+     * Returns an executor that starts a virtual thread per task (Java 21 and later), or else a cached pool of
+     * platform threads. The virtual threads are looked up at run time, since the code is compiled for older JDKs.
+     */
+    static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the given time for the running ones and ends all sessions.
+     *
+     * @param delay The longest time to wait, in seconds.
+     */
+    public void stop(int delay) {
+        stopped = true;
+        server.stop(delay);
+        executor.shutdown();
+        sessions.clear();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of sessions, how many of them are in memory with their estimated size, the budget,
+     * and how often sessions were spilled and read back, as "Key: value" lines.
+     */
+    public String getSessionMemoryReport() {
+        return sessions.describe();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            route(exchange);
+        } catch (HttpError e) {
+            if (!isCommitted(exchange)) respond(exchange, e.status, e.getMessage() + "\n");
+        } catch (RuntimeException e) {
+            // Once a snapshot or a feed has begun, closing the exchange is all that is left to cut the response short
+            if (!isCommitted(exchange)) respond(exchange, 500, "Error: " + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns whether the status and the headers of the response were already sent.
+     */
+    private static boolean isCommitted(HttpExchange exchange) {
+        return exchange.getResponseCode() != -1;
+    }
+
+    private void route(HttpExchange exchange) throws IOException, HttpError {
+        // The path is /sessions, /sessions/<id> or /sessions/<id>/<action>
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        String method = exchange.getRequestMethod();
+        if (path.length > 4 || (path.length > 1 && !path[1].equals("sessions"))) {
+            throw new HttpError(404, "Unknown resource.");
+        }
+        if (path.length <= 2) {
+            switch (method) {
+                case "GET" -> respond(exchange, 200, String.join("\n", sessions.ids()) + (sessions.size() == 0 ? "" : "\n"));
+                case "POST" -> create(exchange);
+                default -> throw new HttpError(405, "Use GET or POST.");
+            }
+            return;
+        }
+        Session session = sessions.get(path[2]);
+        if (session == null) throw new HttpError(404, "Unknown session " + path[2] + ".");
+        String action = path.length == 4 ? path[3] : "";
+        if (action.isEmpty() && method.equals("DELETE")) {
+            sessions.remove(session.getId());
+            respond(exchange, 204, "");
+            return;
+        }
+        if (action.equals("feed") && method.equals("GET")) {
+            // The feed is read without the lock, so it never holds up the simulation of the session
+            streamFeed(exchange, session);
+            return;
+        }
+        session.getLock().lock();
+        try {
+            if (!sessions.acquire(session)) throw new HttpError(404, "Unknown session " + path[2] + ".");
+            switch (action + " " + method) {
+                case " GET" -> respond(exchange, 200, session.describe());
+                case "step POST" -> {
+                    session.step(intParameter(exchange, "days", 1, MAX_STEP_DAYS));
+                    respond(exchange, 200, session.describe());
+                }
+                case "prediction GET" -> respond(exchange, 200, Prediction.report(session.getEcosystem()));
+                case "snapshot GET" -> sendSnapshot(exchange, session);
+                default -> throw new HttpError(404, "Unknown request " + method + " " + exchange.getRequestURI().getPath() + ".");
+            }
+        } finally {
+            sessions.release(session);
+            session.getLock().unlock();
+        }
+        sessions.trim();
+    }
+
+    /**
+     * Creates a session from the ecosystem in the body of the request, or from the file named by the file parameter.
+     */
+    private void create(HttpExchange exchange) throws IOException, HttpError {
+        String file = parameters(exchange).get("file");
+        Ecosystem ecosystem;
+        if (file != null) {
+            Path path = directory.resolve(file).normalize();
+            if (!path.startsWith(directory) || !Files.isRegularFile(path)) {
+                throw new HttpError(404, "No ecosystem file " + file + ".");
+            }
+            ecosystem = FileManager.loadEcosystem(path.toString());
+        } else {
+            ecosystem = FileManager.loadEcosystem(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+        }
+        if (ecosystem == null) throw new HttpError(400, "The ecosystem has errors.");
+        Session session = new Session(UUID.randomUUID().toString(), ecosystem);
+        sessions.add(session);
+        exchange.getResponseHeaders().set("Location", "/sessions/" + session.getId());
+        respond(exchange, 201, session.getId() + "\n");
+    }
+
+    private static void sendSnapshot(HttpExchange exchange, Session session) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + session.getId() + ".txt\"");
+        // The length is not known in advance, so the ecosystem is sent in chunks as it is written
+        exchange.sendResponseHeaders(200, 0);
+        Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+        FileManager.saveEcosystem(session.getEcosystem(), writer);
+        writer.flush();
+    }
+
+    /**
+     * Streams the daily summaries of a session until the session ends, the service stops or the client goes away.
+     * A client that falls behind the ring of the feed loses the oldest summaries; it receives a dropped event with
+     * the number of summaries lost so far. A client that reconnects with a Last-Event-ID header resumes after that
+     * summary if it is still in the ring.
+     */
+    private void streamFeed(HttpExchange exchange, Session session) throws IOException {
+        long from = -1;
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        if (lastEventId != null) {
+            try {
+                from = Long.parseLong(lastEventId.trim()) + 1;
+            } catch (NumberFormatException e) {
+                // Starts with the next summary
+            }
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try (BroadcastRing.Cursor cursor = session.getFeed().subscribe(from)) {
+            long reported = 0;
+            long lastWrite = System.nanoTime();
+            while (!stopped && sessions.get(session.getId()) == session) {
+                BroadcastRing.Frame frame = cursor.poll(FEED_POLL);
+                if (cursor.getDropped() > reported) {
+                    reported = cursor.getDropped();
+                    out.write(("event: dropped\ndata: " + reported + "\n\n").getBytes(StandardCharsets.UTF_8));
+                }
+                if (frame == null && System.nanoTime() - lastWrite < FEED_KEEP_ALIVE) continue;
+                if (frame == null) out.write(": keep-alive\n\n".getBytes(StandardCharsets.UTF_8));
+                // Everything that is already published goes out with one flush
+                for (; frame != null; frame = cursor.poll(0)) {
+                    out.write(("id: " + frame.sequence + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.write(frame.data);
+                }
+                out.flush();
+                lastWrite = System.nanoTime();
+            }
+        } catch (IOException e) {
+            // The client went away
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length == 0) return;
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals < 0) continue;
+            parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(HttpExchange exchange, String name, int min, int max) throws HttpError {
+        String value = parameters(exchange).get(name);
+        try {
+            int number = value == null ? min : Integer.parseInt(value);
+            if (number >= min && number <= max) return number;
+        } catch (NumberFormatException e) {
+            // Answered below
+        }
+        throw new HttpError(400, "The parameter " + name + " must be an integer from " + min + " to " + max + ".");
+    }
+}
@@ -0,0 +1,119 @@
+package ecosystem.shard;
+
+import ecosystem.Ecosystem;
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+import ecosystem.utils.FileManager;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads a scenario file in the format of {@link FileManager#loadEcosystem(String)} one line at a time, so a
+ * shard keeps only the entities of its own rows instead of loading the whole world first. The climate is read
+ * when the reader is opened; the animals and plants are handed out one individual at a time by
+ * {@link #forEach}, and only the entities of the current line are held meanwhile.
+ */
+class ScenarioReader implements Closeable {
+    private final BufferedReader reader;
+    private final int temperature;
+    private final int humidity;
+    private final int waterAmount;
+
+    /**
+     * Opens a scenario file and reads its climate.
+     *
+     * @throws IOException if the file cannot be read or its climate is invalid.
+     */
+    ScenarioReader(Path file) throws IOException {
+        reader = Files.newBufferedReader(file);
+        try {
+            temperature = FileManager.extractTemperature(readLine());
+            if (temperature < Ecosystem.MIN_TEMPERATURE || temperature > Ecosystem.MAX_TEMPERATURE) throw new IOException("Error in temperature format");
+            humidity = FileManager.extractHumidity(readLine());
+            if (humidity < 0 || humidity > Ecosystem.MAX_HUMIDITY) throw new IOException("Error in humidity format");
+            waterAmount = FileManager.extractWaterAmount(readLine());
+            if (waterAmount < 0 || waterAmount > Ecosystem.MAX_WATER) throw new IOException("Error in water amount format");
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    int getTemperature() {
+        return temperature;
+    }
+
+    int getHumidity() {
+        return humidity;
+    }
+
+    int getWaterAmount() {
+        return waterAmount;
+    }
+
+    /**
+     * Hands out the animals and plants of the scenario in the order of the file. A line with a quantity gives
+     * that many single entities, and so does a cohort of a file saved in cohort mode.
+     *
+     * @throws IOException if the file cannot be read or has invalid lines; the errors are printed like when the
+     *                     file is loaded as a whole.
+     */
+    void forEach(Consumer<Animal> animals, Consumer<Plant> plants) throws IOException {
+        String section = readLine().toLowerCase();
+        if (!section.equals("animals:") && !section.equals("plants:")) throw new IOException("The scenario has no list of animals or plants.");
+        int number = 0;
+        int errors = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String text = line.toLowerCase();
+            if (text.equals("animals:") || text.equals("plants:")) {
+                section = text;
+                number = 0;
+                continue;
+            }
+            number++;
+            if (section.equals("animals:")) {
+                List<Animal> parsed = FileManager.extractAnimal(text, number);
+                if (parsed == null) errors++;
+                else for (Animal animal : parsed) forEachMember(animal, animals);
+            } else {
+                List<Plant> parsed = FileManager.extractPlant(text, number);
+                if (parsed == null) errors++;
+                else for (Plant plant : parsed) forEachMember(plant, plants);
+            }
+        }
+        if (errors > 0) throw new IOException("The scenario has " + errors + " invalid lines.");
+    }
+
+    private static void forEachMember(Animal cohort, Consumer<Animal> action) {
+        int quantity = cohort.getQuantity();
+        cohort.setQuantity(1);
+        for (int i = 1; i < quantity; i++) action.accept(cohort.copy());
+        action.accept(cohort);
+    }
+
+    private static void forEachMember(Plant cohort, Consumer<Plant> action) {
+        int quantity = cohort.getQuantity();
+        cohort.setQuantity(1);
+        for (int i = 1; i < quantity; i++) action.accept(cohort.copy());
+        action.accept(cohort);
+    }
+
+    private String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line == null) throw new EOFException("The scenario ends before the list of animals or plants.");
+        return line;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
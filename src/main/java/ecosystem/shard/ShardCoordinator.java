@@ -0,0 +1,216 @@
+package ecosystem.shard;
+
+import ecosystem.Ecosystem;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coordinator of a sharded simulation. The world is a spatial grid cut into horizontal bands of rows, and every
+ * band is simulated by a {@link ShardWorker} in its own process. The coordinator keeps the shards in step:
+ * it starts every day, relays the data the shards exchange with their neighbours, collects the statistics
+ * and owns the weather, whose water change is shared out between the bands by their number of cells.
+ * <p>
+ * Usage: {@code ShardCoordinator <port> <shards> <width> <height> <days> [seed]}. The coordinator waits until
+ * all shards are connected; shards are numbered from the top in the order in which they connect.
+ */
+public class ShardCoordinator {
+    private final int width;
+    private final int height;
+    private final long seed;
+    private final List<Connection> shards = new ArrayList<>();
+    private final SecureRandom secureRandom = new SecureRandom();
+    private Ecosystem climate;
+    // The totals of the last simulated day
+    private long animalCount;
+    private long plantCount;
+
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        int rowStart;
+        int rowEnd;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+    }
+
+    public ShardCoordinator(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("Usage: ShardCoordinator <port> <shards> <width> <height> <days> [seed]");
+            return;
+        }
+        int shardCount = Integer.parseInt(args[1]);
+        int width = Integer.parseInt(args[2]);
+        int height = Integer.parseInt(args[3]);
+        if (shardCount < 1 || width < 1 || height < shardCount) {
+            System.out.println("Every shard needs at least one row of the grid.");
+            return;
+        }
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : new SecureRandom().nextLong();
+        ShardCoordinator coordinator = new ShardCoordinator(width, height, seed);
+        try (ServerSocket server = new ServerSocket(Integer.parseInt(args[0]))) {
+            coordinator.accept(server, shardCount);
+        }
+        try {
+            coordinator.run(Integer.parseInt(args[4]));
+        } finally {
+            coordinator.close();
+        }
+    }
+
+    /**
+     * Waits for the shards, hands every shard its band of rows and its share of the water.
+     *
+     * @param server The listening socket.
+     * @param shardCount The number of shards.
+     */
+    public void accept(ServerSocket server, int shardCount) throws IOException {
+        System.out.println("Waiting for " + shardCount + " shards on port " + server.getLocalPort() + "...");
+        int temperature = 0, humidity = 0, water = 0;
+        for (int i = 0; i < shardCount; i++) {
+            Connection shard = new Connection(server.accept());
+            shards.add(shard);
+            ShardProtocol.expect(shard.in, ShardProtocol.HELLO);
+            // All shards load the same scenario, the climate of the first one is used
+            int shardTemperature = shard.in.readInt(), shardHumidity = shard.in.readInt(), shardWater = shard.in.readInt();
+            if (i == 0) {
+                temperature = shardTemperature;
+                humidity = shardHumidity;
+                water = shardWater;
+            }
+            System.out.println("Shard " + i + " connected from " + shard.socket.getRemoteSocketAddress() + ".");
+        }
+        climate = new Ecosystem(temperature, humidity, water, new ArrayList<>(), new ArrayList<>());
+        int[] shares = share(water);
+        for (int i = 0; i < shardCount; i++) {
+            Connection shard = shards.get(i);
+            shard.rowStart = i * height / shardCount;
+            shard.rowEnd = (i + 1) * height / shardCount;
+            shard.out.writeByte(ShardProtocol.CONFIG);
+            shard.out.writeInt(i);
+            shard.out.writeInt(shardCount);
+            shard.out.writeInt(width);
+            shard.out.writeInt(height);
+            shard.out.writeInt(shard.rowStart);
+            shard.out.writeInt(shard.rowEnd);
+            shard.out.writeLong(seed);
+            shard.out.writeInt(shares[i]);
+            shard.out.flush();
+        }
+    }
+
+    /**
+     * Runs the simulation for the given number of days and prints the totals of every day.
+     *
+     * @param days The number of days.
+     */
+    public void run(int days) throws IOException {
+        int[] waterChanges = new int[shards.size()];
+        for (int day = 1; day <= days; day++) {
+            for (int i = 0; i < shards.size(); i++) {
+                DataOutputStream out = shards.get(i).out;
+                out.writeByte(ShardProtocol.DAY);
+                out.writeInt(day);
+                out.writeInt(climate.getTemperature());
+                out.writeInt(climate.getHumidity());
+                out.writeInt(waterChanges[i]);
+                out.flush();
+            }
+            for (int round = 0; round < ShardProtocol.EXCHANGE_ROUNDS; round++) relay();
+
+            long animals = 0, herbivores = 0, omnivores = 0, carnivores = 0, plants = 0;
+            int water = 0;
+            for (Connection shard : shards) {
+                ShardProtocol.expect(shard.in, ShardProtocol.STATS);
+                animals += shard.in.readInt();
+                herbivores += shard.in.readInt();
+                omnivores += shard.in.readInt();
+                carnivores += shard.in.readInt();
+                plants += shard.in.readInt();
+                water += shard.in.readInt();
+            }
+            animalCount = animals;
+            plantCount = plants;
+            System.out.println("Day " + day + ": animals " + animals + " (herbivores " + herbivores
+                    + ", omnivores " + omnivores + ", carnivores " + carnivores + "), plants " + plants
+                    + ", water " + water + ", temperature " + climate.getTemperature()
+                    + ", humidity " + climate.getHumidity());
+
+            // The weather of the whole world, the water change is shared out between the bands
+            climate.setWaterAmount(water);
+            switch (secureRandom.nextInt(3)) {
+                case 0 -> climate.callRain();
+                case 1 -> climate.callSunnyDay();
+                default -> climate.callCloudyDay();
+            }
+            waterChanges = share(climate.getWaterAmount() - water);
+        }
+    }
+
+    /**
+     * Relays one exchange: every shard receives what its upper neighbour sent down and what its lower
+     * neighbour sent up.
+     */
+    private void relay() throws IOException {
+        byte[][][] sent = new byte[shards.size()][][];
+        for (int i = 0; i < shards.size(); i++) sent[i] = ShardProtocol.readExchange(shards.get(i).in);
+        byte[] none = new byte[0];
+        for (int i = 0; i < shards.size(); i++) {
+            byte[] fromUp = i > 0 ? sent[i - 1][1] : none;
+            byte[] fromDown = i < shards.size() - 1 ? sent[i + 1][0] : none;
+            ShardProtocol.writeExchange(shards.get(i).out, fromUp, fromDown);
+        }
+    }
+
+    /**
+     * Splits an amount of water between the shards in proportion to their number of rows.
+     */
+    private int[] share(int amount) {
+        int[] shares = new int[shards.size()];
+        for (int i = 0; i < shares.length; i++) {
+            int rowStart = i * height / shares.length, rowEnd = (i + 1) * height / shares.length;
+            shares[i] = (int) ((long) amount * rowEnd / height - (long) amount * rowStart / height);
+        }
+        return shares;
+    }
+
+    /**
+     * Returns the number of animals in all shards at the end of the last simulated day.
+     */
+    public long getAnimalCount() {
+        return animalCount;
+    }
+
+    /**
+     * Returns the number of plants in all shards at the end of the last simulated day.
+     */
+    public long getPlantCount() {
+        return plantCount;
+    }
+
+    public void close() throws IOException {
+        for (Connection shard : shards) {
+            try {
+                shard.out.writeByte(ShardProtocol.END);
+                shard.out.flush();
+            } finally {
+                shard.socket.close();
+            }
+        }
+    }
+}
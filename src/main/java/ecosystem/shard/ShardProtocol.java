@@ -0,0 +1,135 @@
+package ecosystem.shard;
+
+import ecosystem.entities.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Messages between the coordinator and the shards of a sharded simulation. Every message starts with its type;
+ * all numbers are written with {@link DataOutputStream}, entities carry global grid coordinates.
+ * <pre>
+ * shard       -> coordinator  HELLO    temperature, humidity, water amount of the loaded scenario
+ * coordinator -> shard        CONFIG   index, shards, width, height, first row, end row, seed, water of the band
+ * coordinator -> shard        DAY      day, temperature, humidity, water change of the band
+ * both ways                   EXCHANGE data for the upper neighbour, data for the lower neighbour
+ * shard       -> coordinator  STATS    animals, herbivores, omnivores, carnivores, plants, water
+ * coordinator -> shard        END
+ * </pre>
+ * A day has {@link #EXCHANGE_ROUNDS} exchanges. In each of them every shard sends one EXCHANGE, and after all
+ * of them have arrived the coordinator answers every shard with what its neighbours sent to it.
+ */
+final class ShardProtocol {
+    static final int HELLO = 1;
+    static final int CONFIG = 2;
+    static final int DAY = 3;
+    static final int EXCHANGE = 4;
+    static final int STATS = 5;
+    static final int END = 6;
+
+    // Border animals, then the animals eaten by the neighbours, then migrants and seeds
+    static final int EXCHANGE_ROUNDS = 3;
+
+    private ShardProtocol() {
+    }
+
+    static void expect(DataInputStream in, int type) throws IOException {
+        int actual = in.readByte();
+        if (actual != type) throw new IOException("Unexpected message " + actual + ", expected " + type + ".");
+    }
+
+    static void writeExchange(DataOutputStream out, byte[] toUp, byte[] toDown) throws IOException {
+        out.writeByte(EXCHANGE);
+        writeBytes(out, toUp);
+        writeBytes(out, toDown);
+        out.flush();
+    }
+
+    /**
+     * Reads an EXCHANGE message.
+     *
+     * @return The data for (or from) the upper and the lower neighbour.
+     */
+    static byte[][] readExchange(DataInputStream in) throws IOException {
+        expect(in, EXCHANGE);
+        return new byte[][]{readBytes(in), readBytes(in)};
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Encodes animals with the given row offset, which turns local rows into global rows.
+     */
+    static void writeAnimals(DataOutputStream out, List<Animal> animals, int rowOffset) throws IOException {
+        out.writeInt(animals.size());
+        for (Animal animal : animals) {
+            out.writeByte(animal.getKind().ordinal());
+            out.writeUTF(animal.getName());
+            out.writeByte(animal.getFoodChainLevel());
+            out.writeInt(animal.getLifeTime());
+            out.writeInt(animal.getEnergy());
+            out.writeInt(animal.getCurrentLifeTime());
+            out.writeInt(animal.getX());
+            out.writeInt(animal.getY() + rowOffset);
+        }
+    }
+
+    /**
+     * Decodes animals with the given row offset, which turns global rows into local rows.
+     */
+    static List<Animal> readAnimals(DataInputStream in, int rowOffset) throws IOException {
+        int count = in.readInt();
+        List<Animal> animals = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AnimalKind kind = AnimalKind.values()[in.readByte()];
+            String name = in.readUTF();
+            int level = in.readByte();
+            int lifeTime = in.readInt();
+            int energy = in.readInt();
+            int age = in.readInt();
+            Animal animal = switch (kind) {
+                case CARNIVORE -> new Carnivore(name, energy, level, lifeTime, age);
+                case OMNIVORE -> new Omnivore(name, energy, level, lifeTime, age);
+                default -> new Herbivore(name, energy, level, lifeTime, age);
+            };
+            int x = in.readInt();
+            animal.setPosition(x, in.readInt() + rowOffset);
+            animals.add(animal);
+        }
+        return animals;
+    }
+
+    static void writePlants(DataOutputStream out, List<Plant> plants, int rowOffset) throws IOException {
+        out.writeInt(plants.size());
+        for (Plant plant : plants) {
+            out.writeUTF(plant.getName());
+            out.writeInt(plant.getGrowthLevel());
+            out.writeInt(plant.getWaterNeeds());
+            out.writeInt(plant.getOptimalTemperature());
+            out.writeInt(plant.getX());
+            out.writeInt(plant.getY() + rowOffset);
+        }
+    }
+
+    static List<Plant> readPlants(DataInputStream in, int rowOffset) throws IOException {
+        int count = in.readInt();
+        List<Plant> plants = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Plant plant = new Plant(in.readUTF(), in.readInt(), in.readInt(), in.readInt());
+            int x = in.readInt();
+            plant.setPosition(x, in.readInt() + rowOffset);
+            plants.add(plant);
+        }
+        return plants;
+    }
+}
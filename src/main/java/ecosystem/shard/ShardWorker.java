@@ -0,0 +1,275 @@
+package ecosystem.shard;
+
+import ecosystem.Ecosystem;
+import ecosystem.Simulation;
+import ecosystem.entities.*;
+import ecosystem.spatial.SpatialGrid;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * One shard of a sharded simulation: a spatial ecosystem of a band of rows, driven day by day by the
+ * {@link ShardCoordinator}. Next to every neighbouring band the grid of the shard has a halo row:
+ * <ul>
+ *     <li>before the animals act, the animals of the border rows are sent to the neighbours, which put copies
+ *     of them into their halo rows where they can be hunted;</li>
+ *     <li>after the animals have acted, the copies eaten by predators of this shard are reported back, and the
+ *     owners remove them unless they already died in their own band;</li>
+ *     <li>animals that wandered and seeds that fell into a halo row are handed over to the neighbour.</li>
+ * </ul>
+ * Grazing does not cross the border, since plants are never copied into the halo.
+ * <p>
+ * Usage: {@code ShardWorker <host> <port> <scenario file>}. Every shard reads the whole scenario line by line and
+ * places all entities with the seed of the coordinator, so the shards agree on the positions; each keeps only the
+ * entities of its own rows.
+ */
+public class ShardWorker {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final Simulation simulation = new Simulation();
+    private Ecosystem ecosystem;
+    private SpatialGrid grid;
+    private boolean hasUp;
+    private boolean hasDown;
+
+    // The animals sent to the neighbours today, in the order of the kill reports
+    private List<Animal> sentUp = new ArrayList<>();
+    private List<Animal> sentDown = new ArrayList<>();
+    // Copies of the border animals of the neighbours
+    private List<Animal> ghostsUp = new ArrayList<>();
+    private List<Animal> ghostsDown = new ArrayList<>();
+    private final List<Plant> seedsUp = new ArrayList<>();
+    private final List<Plant> seedsDown = new ArrayList<>();
+
+    public ShardWorker(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.out.println("Usage: ShardWorker <host> <port> <scenario file>");
+            return;
+        }
+        ScenarioReader reader;
+        try {
+            reader = new ScenarioReader(Paths.get(args[2]));
+        } catch (IOException e) {
+            System.out.println("The scenario cannot be read: " + e.getMessage());
+            return;
+        }
+        try (ScenarioReader scenario = reader) {
+            ShardWorker worker = new ShardWorker(args[0], Integer.parseInt(args[1]));
+            try {
+                worker.run(scenario);
+            } finally {
+                worker.socket.close();
+            }
+        }
+    }
+
+    /**
+     * Joins the coordinator with the given scenario and simulates days until the coordinator ends the run.
+     *
+     * @param scenarioFile The scenario file of the whole world.
+     */
+    public void run(Path scenarioFile) throws IOException {
+        try (ScenarioReader scenario = new ScenarioReader(scenarioFile)) {
+            run(scenario);
+        }
+    }
+
+    private void run(ScenarioReader scenario) throws IOException {
+        out.writeByte(ShardProtocol.HELLO);
+        out.writeInt(scenario.getTemperature());
+        out.writeInt(scenario.getHumidity());
+        out.writeInt(scenario.getWaterAmount());
+        out.flush();
+
+        ShardProtocol.expect(in, ShardProtocol.CONFIG);
+        int index = in.readInt();
+        int shards = in.readInt();
+        int width = in.readInt();
+        int height = in.readInt();
+        int rowStart = in.readInt();
+        int rowEnd = in.readInt();
+        long seed = in.readLong();
+        int water = in.readInt();
+        grid = SpatialGrid.region(width, height, rowStart, rowEnd, water);
+        hasUp = index > 0;
+        hasDown = index < shards - 1;
+
+        List<Animal> animals = new ArrayList<>();
+        List<Plant> plants = new ArrayList<>();
+        readBand(scenario, grid, height, seed, animals, plants);
+        ecosystem = new Ecosystem(scenario.getTemperature(), scenario.getHumidity(), water, animals, plants);
+        ecosystem.enableSpatialMode(grid);
+        System.out.println("Shard " + index + " owns rows " + rowStart + " to " + (rowEnd - 1) + " with "
+                + animals.size() + " animals and " + plants.size() + " plants.");
+
+        while (true) {
+            int type = in.readByte();
+            if (type == ShardProtocol.END) return;
+            if (type != ShardProtocol.DAY) throw new IOException("Unexpected message " + type + ".");
+            in.readInt();
+            ecosystem.setTemperature(in.readInt());
+            ecosystem.setHumidity(in.readInt());
+            ecosystem.setWaterAmount(ecosystem.getWaterAmount() + in.readInt());
+            simulateDay();
+        }
+    }
+
+    /**
+     * Reads the entities of a scenario and keeps those placed into the own rows of a band. Every shard draws the
+     * positions of all entities in the order of the file with the same seed, so every entity is kept by exactly
+     * one shard.
+     *
+     * @param grid The grid of the band.
+     * @param height The number of rows of the world.
+     * @param seed The seed of the positions, the same for all shards.
+     * @param animals The list the animals of the band are added to.
+     * @param plants The list the plants of the band are added to.
+     */
+    static void readBand(ScenarioReader scenario, SpatialGrid grid, int height, long seed, List<Animal> animals, List<Plant> plants)
+            throws IOException {
+        Random random = new Random(seed);
+        int width = grid.getWidth();
+        scenario.forEach(animal -> {
+            int x = random.nextInt(width), y = grid.toLocalRow(random.nextInt(height));
+            if (y < grid.getOwnTop() || y >= grid.getOwnBottom()) return;
+            animal.setPosition(x, y);
+            animals.add(animal);
+        }, plant -> {
+            int x = random.nextInt(width), y = grid.toLocalRow(random.nextInt(height));
+            if (y < grid.getOwnTop() || y >= grid.getOwnBottom()) return;
+            plant.setPosition(x, y);
+            plants.add(plant);
+        });
+    }
+
+    private void simulateDay() throws IOException {
+        // Plants grow; seeds that fell into a halo row belong to the neighbour
+        ecosystem.growAllPlants(ecosystem);
+        for (Plant plant : ecosystem.getPlants()) {
+            if (plant.isEaten()) continue;
+            if (plant.getY() < grid.getOwnTop()) seedsUp.add(plant);
+            else if (plant.getY() >= grid.getOwnBottom()) seedsDown.add(plant);
+        }
+        ecosystem.removePlantsIf(plant -> plant.getY() < grid.getOwnTop() || plant.getY() >= grid.getOwnBottom());
+        // A seed cannot drink in the halo, so it starts over in the band of the neighbour
+        for (Plant seed : seedsUp) seed.setGrowthLevel(0);
+        for (Plant seed : seedsDown) seed.setGrowthLevel(0);
+        simulation.removeMinusGrowthPlants(ecosystem);
+
+        // Exchange the border animals, which can be hunted across the border
+        sentUp = hasUp ? animalsInRow(grid.getOwnTop()) : new ArrayList<>();
+        sentDown = hasDown ? animalsInRow(grid.getOwnBottom() - 1) : new ArrayList<>();
+        DataInputStream[] received = exchange(
+                stream -> ShardProtocol.writeAnimals(stream, sentUp, grid.toGlobalRow(0)),
+                stream -> ShardProtocol.writeAnimals(stream, sentDown, grid.toGlobalRow(0)));
+        ghostsUp = received[0] == null ? new ArrayList<>() : ShardProtocol.readAnimals(received[0], -grid.toGlobalRow(0));
+        ghostsDown = received[1] == null ? new ArrayList<>() : ShardProtocol.readAnimals(received[1], -grid.toGlobalRow(0));
+        List<Animal> ghosts = new ArrayList<>(ghostsUp);
+        ghosts.addAll(ghostsDown);
+        grid.setGhosts(ghosts);
+
+        ecosystem.actAllAnimals(ecosystem);
+        simulation.removeDeadAnimals(ecosystem);
+        simulation.removeOldAnimals(ecosystem);
+        grid.setGhosts(new ArrayList<>());
+
+        // Report the neighbours' animals eaten here; an animal that already died in its own band stays dead
+        received = exchange(stream -> writeKills(stream, ghostsUp), stream -> writeKills(stream, ghostsDown));
+        applyKills(received[0], sentUp);
+        applyKills(received[1], sentDown);
+        ecosystem.removeAnimalsIf(Animal::isEaten);
+
+        // Hand over the animals and seeds in the halo rows
+        List<Animal> migrantsUp = new ArrayList<>(), migrantsDown = new ArrayList<>();
+        for (Animal animal : ecosystem.getAnimals()) {
+            if (animal.getY() < grid.getOwnTop()) migrantsUp.add(animal);
+            else if (animal.getY() >= grid.getOwnBottom()) migrantsDown.add(animal);
+        }
+        ecosystem.removeAnimalsIf(animal -> animal.getY() < grid.getOwnTop() || animal.getY() >= grid.getOwnBottom());
+        received = exchange(stream -> {
+            ShardProtocol.writeAnimals(stream, migrantsUp, grid.toGlobalRow(0));
+            ShardProtocol.writePlants(stream, seedsUp, grid.toGlobalRow(0));
+        }, stream -> {
+            ShardProtocol.writeAnimals(stream, migrantsDown, grid.toGlobalRow(0));
+            ShardProtocol.writePlants(stream, seedsDown, grid.toGlobalRow(0));
+        });
+        seedsUp.clear();
+        seedsDown.clear();
+        for (DataInputStream stream : received) {
+            if (stream == null) continue;
+            ecosystem.addAnimals(ShardProtocol.readAnimals(stream, -grid.toGlobalRow(0)));
+            ecosystem.addPlants(ShardProtocol.readPlants(stream, -grid.toGlobalRow(0)));
+        }
+
+        out.writeByte(ShardProtocol.STATS);
+        out.writeInt(ecosystem.getStatistics().getAnimalCount());
+        out.writeInt(ecosystem.getStatistics().getKindCount(AnimalKind.HERBIVORE));
+        out.writeInt(ecosystem.getStatistics().getKindCount(AnimalKind.OMNIVORE));
+        out.writeInt(ecosystem.getStatistics().getKindCount(AnimalKind.CARNIVORE));
+        out.writeInt(ecosystem.getStatistics().getPlantCount());
+        out.writeInt(ecosystem.getWaterAmount());
+        out.flush();
+    }
+
+    private List<Animal> animalsInRow(int y) {
+        List<Animal> animals = new ArrayList<>();
+        for (Animal animal : ecosystem.getAnimals()) {
+            if (animal.getY() == y) animals.add(animal);
+        }
+        return animals;
+    }
+
+    private static void writeKills(DataOutputStream stream, List<Animal> ghosts) throws IOException {
+        int kills = 0;
+        for (Animal ghost : ghosts) if (ghost.isEaten()) kills++;
+        stream.writeInt(kills);
+        for (int i = 0; i < ghosts.size(); i++) if (ghosts.get(i).isEaten()) stream.writeInt(i);
+    }
+
+    private static void applyKills(DataInputStream stream, List<Animal> sent) throws IOException {
+        if (stream == null) return;
+        int kills = stream.readInt();
+        for (int i = 0; i < kills; i++) sent.get(stream.readInt()).setEaten(true);
+    }
+
+    /**
+     * Sends data to both neighbours through the coordinator and returns what they sent.
+     *
+     * @return The data from the upper and from the lower neighbour, null where there is no neighbour.
+     */
+    private DataInputStream[] exchange(Part toUp, Part toDown) throws IOException {
+        ShardProtocol.writeExchange(out, encode(toUp), encode(toDown));
+        byte[][] received = ShardProtocol.readExchange(in);
+        return new DataInputStream[]{decode(received[0]), decode(received[1])};
+    }
+
+    private static byte[] encode(Part part) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream stream = new DataOutputStream(bytes)) {
+            part.write(stream);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream decode(byte[] bytes) {
+        return bytes.length == 0 ? null : new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private interface Part {
+        void write(DataOutputStream stream) throws IOException;
+    }
+}
@@ -0,0 +1,406 @@
+package ecosystem.spatial;
+
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Uniform grid of cells for the spatial mode of an ecosystem. Every cell has its own water supply and
+ * a fixed temperature offset from the weather of the ecosystem (the rows run from a cold to a warm edge).
+ * <p>
+ * Animals and plants are indexed by cell in flat arrays that are rebuilt with a counting sort before
+ * the animals act, so hunting and grazing only look at the entities in the 3x3 block of cells around
+ * the animal and the work per animal depends on the local density instead of the size of the world.
+ */
+public class SpatialGrid {
+    /** Difference between the temperatures of the first and the last row, in degrees. */
+    public static final int TEMPERATURE_SPREAD = 10;
+
+    private final int width;
+    private final int height;
+    // Global row of the first row, and the rows owned by this grid; the others are halo rows of a region
+    private final int firstRow;
+    private final int ownTop;
+    private final int ownBottom;
+    private final int[] water;
+    private final int[] temperatureOffsets;
+    private int totalWater;
+    private int waterCursor;
+
+    // Entities sorted by cell; the entities of cell c are at [starts[c], starts[c + 1])
+    private final int[] animalStarts;
+    private Animal[] animalsByCell = new Animal[0];
+    private final int[] plantStarts;
+    private Plant[] plantsByCell = new Plant[0];
+    // Read-only copies of animals of neighbouring regions, which can be hunted but do not act
+    private final int[] ghostStarts;
+    private Animal[] ghostsByCell = new Animal[0];
+
+    /**
+     * Creates a grid and spreads the water evenly over its cells.
+     *
+     * @param width The number of columns.
+     * @param height The number of rows.
+     * @param waterAmount The total amount of water.
+     */
+    public SpatialGrid(int width, int height, int waterAmount) {
+        this(width, height, 0, height, 0, height, waterAmount);
+    }
+
+    private SpatialGrid(int width, int height, int firstRow, int worldHeight, int ownTop, int ownBottom, int waterAmount) {
+        if (width < 1 || height < 1) throw new IllegalArgumentException("The grid must have at least one cell.");
+        this.width = width;
+        this.height = height;
+        this.firstRow = firstRow;
+        this.ownTop = ownTop;
+        this.ownBottom = ownBottom;
+        int cells = width * height;
+        water = new int[cells];
+        temperatureOffsets = new int[cells];
+        animalStarts = new int[cells + 1];
+        plantStarts = new int[cells + 1];
+        ghostStarts = new int[cells + 1];
+        for (int y = 0; y < height; y++) {
+            int row = firstRow + y;
+            int offset = worldHeight == 1 ? 0 : (int) Math.round((row / (double) (worldHeight - 1) - 0.5) * TEMPERATURE_SPREAD);
+            Arrays.fill(temperatureOffsets, y * width, (y + 1) * width, offset);
+        }
+        changeWater(waterAmount);
+    }
+
+    /**
+     * Creates the grid of a horizontal band of a larger world, as owned by one shard of a sharded simulation.
+     * Next to every neighbouring band the grid has one halo row, which holds no water and where entities only
+     * stay until they are handed over to the neighbour.
+     *
+     * @param width The number of columns of the world.
+     * @param worldHeight The number of rows of the world.
+     * @param rowStart The first row of the band, inclusive.
+     * @param rowEnd The last row of the band, exclusive.
+     * @param waterAmount The water of the band.
+     * @return The grid of the band in local coordinates.
+     */
+    public static SpatialGrid region(int width, int worldHeight, int rowStart, int rowEnd, int waterAmount) {
+        int haloTop = rowStart > 0 ? 1 : 0;
+        int haloBottom = rowEnd < worldHeight ? 1 : 0;
+        return new SpatialGrid(width, rowEnd - rowStart + haloTop + haloBottom, rowStart - haloTop, worldHeight,
+                haloTop, haloTop + rowEnd - rowStart, waterAmount);
+    }
+
+    /**
+     * Returns the global row of a local row.
+     */
+    public int toGlobalRow(int y) {
+        return firstRow + y;
+    }
+
+    /**
+     * Returns the local row of a global row.
+     */
+    public int toLocalRow(int row) {
+        return row - firstRow;
+    }
+
+    /**
+     * Returns the first local row owned by this grid; rows above it are a halo.
+     */
+    public int getOwnTop() {
+        return ownTop;
+    }
+
+    /**
+     * Returns the local row after the last row owned by this grid; rows from it on are a halo.
+     */
+    public int getOwnBottom() {
+        return ownBottom;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    public int getTemperatureOffset(int x, int y) {
+        return temperatureOffsets[y * width + x];
+    }
+
+    public int getWater(int x, int y) {
+        return water[y * width + x];
+    }
+
+    public int getTotalWater() {
+        return totalWater;
+    }
+
+    /**
+     * Returns a copy of the water of every cell, row by row.
+     */
+    public int[] getCellWater() {
+        return water.clone();
+    }
+
+    /**
+     * Returns the first cell of the next remainder of {@link #changeWater}.
+     */
+    public int getWaterCursor() {
+        return waterCursor;
+    }
+
+    /**
+     * Restores the water of every cell and the cursor of {@link #changeWater}, as saved from a grid of the same
+     * size with {@link #getCellWater} and {@link #getWaterCursor}.
+     *
+     * @param water The water of every cell, row by row.
+     * @param waterCursor The first cell of the next remainder.
+     */
+    public void setCellWater(int[] water, int waterCursor) {
+        if (water.length != this.water.length) throw new IllegalArgumentException("The grid has " + this.water.length + " cells.");
+        System.arraycopy(water, 0, this.water, 0, water.length);
+        totalWater = 0;
+        for (int cellWater : water) totalWater += cellWater;
+        this.waterCursor = waterCursor;
+    }
+
+    /**
+     * Takes water from a cell if it has enough.
+     *
+     * @param x The column of the cell.
+     * @param y The row of the cell.
+     * @param amount The amount of water.
+     * @return true if the water was taken.
+     */
+    public boolean takeWater(int x, int y, int amount) {
+        int cell = y * width + x;
+        if (water[cell] < amount) return false;
+        water[cell] -= amount;
+        totalWater -= amount;
+        return true;
+    }
+
+    /**
+     * Takes water from a cell if it has enough, without updating the total. Workers that process
+     * disjoint cells in parallel use this and report the water they took with {@link #waterTaken}.
+     *
+     * @param x The column of the cell.
+     * @param y The row of the cell.
+     * @param amount The amount of water.
+     * @return true if the water was taken.
+     */
+    public boolean takeCellWater(int x, int y, int amount) {
+        int cell = y * width + x;
+        if (water[cell] < amount) return false;
+        water[cell] -= amount;
+        return true;
+    }
+
+    /**
+     * Subtracts water taken with {@link #takeCellWater} from the total.
+     */
+    public void waterTaken(int amount) {
+        totalWater -= amount;
+    }
+
+    /**
+     * Adds or removes water evenly over all cells. A cell never goes below zero, so less water
+     * than requested may be removed.
+     *
+     * @param delta The change of the total amount of water.
+     * @return The new total amount of water.
+     */
+    public int changeWater(int delta) {
+        int first = ownTop * width;
+        int cells = (ownBottom - ownTop) * width;
+        int share = delta / cells;
+        int remainder = Math.abs(delta % cells);
+        int step = Integer.signum(delta);
+        for (int i = 0; i < cells; i++) {
+            int cell = first + (waterCursor + i) % cells;
+            int change = share + (i < remainder ? step : 0);
+            int updated = Math.max(0, water[cell] + change);
+            totalWater += updated - water[cell];
+            water[cell] = updated;
+        }
+        // The remainder goes to different cells every time
+        waterCursor = (waterCursor + remainder) % cells;
+        return totalWater;
+    }
+
+    /**
+     * Moves an animal or a plant to a random owned cell if it has no position inside the grid.
+     */
+    public void place(Animal animal, Random random) {
+        if (!contains(animal.getX(), animal.getY())) animal.setPosition(random.nextInt(width), ownTop + random.nextInt(ownBottom - ownTop));
+    }
+
+    public void place(Plant plant, Random random) {
+        if (!contains(plant.getX(), plant.getY())) plant.setPosition(random.nextInt(width), ownTop + random.nextInt(ownBottom - ownTop));
+    }
+
+    /**
+     * Puts a seed into the cell of its parent or into one of the neighbouring cells.
+     */
+    public void placeNear(Plant seed, Plant parent, Random random) {
+        seed.setPosition(clampX(parent.getX() + random.nextInt(3) - 1), clampY(parent.getY() + random.nextInt(3) - 1));
+    }
+
+    /**
+     * Moves an animal to a random neighbouring cell. Animals at the edge may stay where they are.
+     */
+    public void migrate(Animal animal, Random random) {
+        animal.setPosition(clampX(animal.getX() + random.nextInt(3) - 1), clampY(animal.getY() + random.nextInt(3) - 1));
+    }
+
+    /**
+     * Rebuilds the cell index of the animals.
+     *
+     * @param animals The animals of the ecosystem; all of them must have a position inside the grid.
+     */
+    public void indexAnimals(List<Animal> animals) {
+        animalsByCell = index(animals, animalStarts, new Animal[animals.size()], animal -> animal.getY() * width + animal.getX());
+    }
+
+    /**
+     * Rebuilds the cell index of the plants.
+     *
+     * @param plants The plants of the ecosystem; all of them must have a position inside the grid.
+     */
+    public void indexPlants(List<Plant> plants) {
+        plantsByCell = index(plants, plantStarts, new Plant[plants.size()], plant -> plant.getY() * width + plant.getX());
+    }
+
+    /**
+     * Sets the animals of the halo rows. They can be chosen as prey like the indexed animals, but they are
+     * not part of the ecosystem, so they never act; a hunter only marks them eaten.
+     *
+     * @param ghosts Copies of the animals next to the border, with positions in the halo rows.
+     */
+    public void setGhosts(List<Animal> ghosts) {
+        ghostsByCell = index(ghosts, ghostStarts, new Animal[ghosts.size()], animal -> animal.getY() * width + animal.getX());
+    }
+
+    private static <T> T[] index(List<T> entities, int[] starts, T[] sorted, ToIntFunction<T> cellOf) {
+        Arrays.fill(starts, 0);
+        for (T entity : entities) starts[cellOf.applyAsInt(entity) + 1]++;
+        for (int cell = 1; cell < starts.length; cell++) starts[cell] += starts[cell - 1];
+        int[] next = Arrays.copyOf(starts, starts.length - 1);
+        for (T entity : entities) sorted[next[cellOf.applyAsInt(entity)]++] = entity;
+        return sorted;
+    }
+
+    /**
+     * Applies an action to the indexed animals of a rectangle of cells, cell by cell in row order.
+     *
+     * @param x0 The first column, inclusive.
+     * @param x1 The last column, inclusive.
+     * @param y0 The first row, inclusive.
+     * @param y1 The last row, inclusive.
+     * @param action The action.
+     */
+    public void forEachAnimal(int x0, int x1, int y0, int y1, Consumer<Animal> action) {
+        for (int y = y0; y <= y1; y++) {
+            for (int i = animalStarts[y * width + x0]; i < animalStarts[y * width + x1 + 1]; i++) action.accept(animalsByCell[i]);
+        }
+    }
+
+    /**
+     * Applies an action to the indexed plants of a rectangle of cells, cell by cell in row order.
+     */
+    public void forEachPlant(int x0, int x1, int y0, int y1, Consumer<Plant> action) {
+        for (int y = y0; y <= y1; y++) {
+            for (int i = plantStarts[y * width + x0]; i < plantStarts[y * width + x1 + 1]; i++) action.accept(plantsByCell[i]);
+        }
+    }
+
+    /**
+     * Chooses a random prey in the 3x3 block of cells around a predator: an animal of another species
+     * on the same or a lower food chain level. As in the global mode, there must be at least one
+     * uneaten candidate.
+     *
+     * @param predator The hunting animal.
+     * @param uneatenOnly Whether already eaten animals are excluded from the choice.
+     * @param random The source of randomness.
+     * @return The chosen prey, or null if no uneaten prey is nearby.
+     */
+    public Animal findPrey(Animal predator, boolean uneatenOnly, Random random) {
+        int x0 = clampX(predator.getX() - 1), x1 = clampX(predator.getX() + 1);
+        int y0 = clampY(predator.getY() - 1), y1 = clampY(predator.getY() + 1);
+        int uneaten = 0, candidates = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int[] starts = pass == 0 ? animalStarts : ghostStarts;
+            Animal[] byCell = pass == 0 ? animalsByCell : ghostsByCell;
+            for (int y = y0; y <= y1; y++) {
+                for (int i = starts[y * width + x0]; i < starts[y * width + x1 + 1]; i++) {
+                    Animal animal = byCell[i];
+                    if (!isPrey(predator, animal)) continue;
+                    if (!animal.isEaten()) uneaten++;
+                    if (!uneatenOnly || !animal.isEaten()) candidates++;
+                }
+            }
+        }
+        if (uneaten == 0) return null;
+        int chosen = random.nextInt(candidates);
+        for (int pass = 0; pass < 2; pass++) {
+            int[] starts = pass == 0 ? animalStarts : ghostStarts;
+            Animal[] byCell = pass == 0 ? animalsByCell : ghostsByCell;
+            for (int y = y0; y <= y1; y++) {
+                for (int i = starts[y * width + x0]; i < starts[y * width + x1 + 1]; i++) {
+                    Animal animal = byCell[i];
+                    if (!isPrey(predator, animal) || (uneatenOnly && animal.isEaten())) continue;
+                    if (chosen-- == 0) return animal;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Chooses a random uneaten plant in the 3x3 block of cells around an animal.
+     *
+     * @param grazer The grazing animal.
+     * @param random The source of randomness.
+     * @return The chosen plant, or null if no uneaten plant is nearby.
+     */
+    public Plant findPlant(Animal grazer, Random random) {
+        int x0 = clampX(grazer.getX() - 1), x1 = clampX(grazer.getX() + 1);
+        int y0 = clampY(grazer.getY() - 1), y1 = clampY(grazer.getY() + 1);
+        int candidates = 0;
+        for (int y = y0; y <= y1; y++) {
+            for (int i = plantStarts[y * width + x0]; i < plantStarts[y * width + x1 + 1]; i++) {
+                if (!plantsByCell[i].isEaten()) candidates++;
+            }
+        }
+        if (candidates == 0) return null;
+        int chosen = random.nextInt(candidates);
+        for (int y = y0; y <= y1; y++) {
+            for (int i = plantStarts[y * width + x0]; i < plantStarts[y * width + x1 + 1]; i++) {
+                if (!plantsByCell[i].isEaten() && chosen-- == 0) return plantsByCell[i];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPrey(Animal predator, Animal prey) {
+        return !Objects.equals(prey.getName(), predator.getName()) && prey.getFoodChainLevel() <= predator.getFoodChainLevel();
+    }
+
+    private int clampX(int x) {
+        return Math.max(0, Math.min(width - 1, x));
+    }
+
+    private int clampY(int y) {
+        return Math.max(0, Math.min(height - 1, y));
+    }
+}
@@ -0,0 +1,805 @@
+package ecosystem.store;
+
+import ecosystem.entities.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Off-heap storage of animals and plants as fixed-width records, outside of the garbage-collected heap.
+ * What all entities of a kind share (name, diet, food chain level, lifetime, water needs, optimal temperature)
+ * is kept once per type; a record only holds the type and the changing state:
+ * <pre>
+ * animal, 12 bytes: type (highest bit: eaten), energy, age in hours
+ * plant,   8 bytes: type (highest bit: eaten), growth level
+ * </pre>
+ * The records live either in direct memory ({@link #allocateDirect}) or in memory-mapped files
+ * ({@link #create}, {@link #open}). The mapped files are changed in place during a day, so they are not a
+ * snapshot themselves: {@link #snapshot} copies the records into one of two alternating sets of snapshot files,
+ * the one the last snapshot does not use, and then commits the snapshot by replacing the small snapshot file
+ * with the type table, the climate and the record counts. A crash before the commit leaves the last snapshot
+ * intact. {@link #open} copies the records of the last snapshot back into the mapped files without parsing them.
+ * Each kind of record is held in one buffer, so a store holds at most about 178 million animals
+ * and 268 million plants.
+ * <p>
+ * The passes that treat every record alike, such as ageing all animals or finding the records to remove,
+ * run through {@link RecordKernels}, with the Vector API where it is available.
+ */
+public class EntityStore implements Closeable {
+    public static final int ANIMAL_RECORD_SIZE = 12;
+    public static final int PLANT_RECORD_SIZE = 8;
+
+    public static final String ANIMALS_FILE_NAME = "animals.rec";
+    public static final String PLANTS_FILE_NAME = "plants.rec";
+    public static final String SNAPSHOT_FILE_NAME = "snapshot.dat";
+    // The records of the snapshots, by the parity of their generation
+    private static final String ANIMAL_SNAPSHOT_FILE_NAME = "animals.%d.rec";
+    private static final String PLANT_SNAPSHOT_FILE_NAME = "plants.%d.rec";
+
+    // Fields of the records for the bulk passes, as int positions within a record
+    public static final int ANIMAL_ENERGY_FIELD = 1;
+    public static final int ANIMAL_AGE_FIELD = 2;
+    public static final int PLANT_GROWTH_FIELD = 1;
+
+    private static final int MAGIC = 0x45435253; // "ECRS"
+    private static final int VERSION = 2;
+    // Magic, version, record count, record size
+    private static final int HEADER_SIZE = 16;
+    private static final int EATEN = 0x80000000;
+
+    private static final int ENERGY = 4;
+    private static final int AGE = 8;
+    private static final int GROWTH_LEVEL = 4;
+
+    private static final RecordKernels KERNELS = RecordKernels.preferred();
+
+    private final Path directory;
+    private final Records animals;
+    private final Records plants;
+
+    // Types; the prototype of a type is reused to show records as entities
+    private final List<Animal> animalTypes = new ArrayList<>();
+    private final List<Plant> plantTypes = new ArrayList<>();
+    private final Map<String, Integer> animalTypeIds = new HashMap<>();
+    private final Map<String, Integer> plantTypeIds = new HashMap<>();
+
+    // The number of snapshots taken so far, and the climate of the last one
+    private long generation;
+    private int temperature;
+    private int humidity;
+    private int waterAmount;
+
+    /**
+     * Records of one kind in a buffer that starts with a header.
+     */
+    private static final class Records {
+        final int recordSize;
+        final FileChannel channel;
+        ByteBuffer buffer;
+        int size;
+
+        Records(int recordSize, int capacity, FileChannel channel) throws IOException {
+            this.recordSize = recordSize;
+            this.channel = channel;
+            buffer = allocate(Math.max(1, capacity));
+        }
+
+        private ByteBuffer allocate(int capacity) throws IOException {
+            long bytes = HEADER_SIZE + (long) capacity * recordSize;
+            ByteBuffer allocated = channel == null ? ByteBuffer.allocateDirect((int) bytes)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            return allocated.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int offset(int index) {
+            return HEADER_SIZE + index * recordSize;
+        }
+
+        int capacity() {
+            return (buffer.capacity() - HEADER_SIZE) / recordSize;
+        }
+
+        /**
+         * Makes room for one more record and returns its offset.
+         */
+        int append() {
+            if (size == capacity()) {
+                int limit = (Integer.MAX_VALUE - HEADER_SIZE) / recordSize;
+                if (size == limit) throw new IllegalStateException("The entity store is full.");
+                grow((int) Math.min(limit, Math.max(1024L, 2L * size)));
+            }
+            return offset(size++);
+        }
+
+        private void grow(int capacity) {
+            try {
+                ByteBuffer grown = allocate(capacity);
+                // A larger mapping of the same file already holds the records
+                if (channel == null) copy(buffer, 0, grown, 0, offset(size));
+                buffer = grown;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot grow the entity store.", e);
+            }
+        }
+
+        void readHeader(int expectedRecordSize, int expectedSize) throws IOException {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(12) != expectedRecordSize) {
+                throw new IOException("Not an entity store file of version " + VERSION + ".");
+            }
+            size = buffer.getInt(8);
+            if (size != expectedSize || size > capacity()) throw new IOException("The records do not match the snapshot.");
+        }
+
+        void writeHeader() {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, size);
+            buffer.putInt(12, recordSize);
+        }
+
+        /**
+         * Removes the records matching the test, keeping the order of the others. Records are tested in order,
+         * before any of them is moved.
+         */
+        int removeIf(IntPredicate test) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (test.test(i)) continue;
+                if (kept != i) {
+                    for (int field = 0; field < recordSize; field += 4) {
+                        buffer.putInt(offset(kept) + field, buffer.getInt(offset(i) + field));
+                    }
+                }
+                kept++;
+            }
+            int removed = size - kept;
+            size = kept;
+            return removed;
+        }
+
+        /**
+         * Removes the records found one after another, keeping the order of the others. The records between two
+         * found ones are moved as one block.
+         *
+         * @param next The index of the next record to remove from the given index on, or {@code size} if none.
+         * @param removed Called with every found record before it is overwritten.
+         */
+        int removeFound(IntUnaryOperator next, IntConsumer removed) {
+            int kept = 0;
+            int from = 0;
+            while (from < size) {
+                int found = next.applyAsInt(from);
+                if (found > from) {
+                    if (kept != from) copy(buffer, offset(from), buffer, offset(kept), (found - from) * recordSize);
+                    kept += found - from;
+                }
+                if (found >= size) break;
+                removed.accept(found);
+                from = found + 1;
+            }
+            int removedCount = size - kept;
+            size = kept;
+            return removedCount;
+        }
+
+        /**
+         * Stable counting sort of the records by a rank from 0 to {@code ranks - 1}.
+         */
+        void sort(IntUnaryOperator rank, int ranks) {
+            int[] starts = new int[ranks + 1];
+            for (int i = 0; i < size; i++) starts[rank.applyAsInt(i) + 1]++;
+            for (int r = 0; r < ranks; r++) starts[r + 1] += starts[r];
+            ByteBuffer sorted = ByteBuffer.allocateDirect(size * recordSize).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < size; i++) {
+                int to = starts[rank.applyAsInt(i)]++ * recordSize;
+                for (int field = 0; field < recordSize; field += 4) sorted.putInt(to + field, buffer.getInt(offset(i) + field));
+            }
+            copy(sorted, 0, buffer, HEADER_SIZE, size * recordSize);
+        }
+
+        /**
+         * Writes the header and the records to a file and forces them to the disk.
+         */
+        void writeTo(Path file) throws IOException {
+            writeHeader();
+            ByteBuffer used = buffer.duplicate();
+            used.position(0).limit(offset(size));
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (used.hasRemaining()) out.write(used);
+                out.force(false);
+            }
+        }
+
+        private static void copy(ByteBuffer source, int from, ByteBuffer target, int to, int length) {
+            ByteBuffer slice = source.duplicate();
+            slice.position(from).limit(from + length);
+            ByteBuffer destination = target.duplicate();
+            destination.position(to);
+            destination.put(slice);
+        }
+    }
+
+    /**
+     * Returns the name of the kernels used for the bulk passes, such as "scalar" or "vector (256 bits)".
+     */
+    public static String getKernelName() {
+        return KERNELS.getName();
+    }
+
+    private EntityStore(Path directory, Records animals, Records plants) {
+        this.directory = directory;
+        this.animals = animals;
+        this.plants = plants;
+    }
+
+    /**
+     * Creates an empty store in direct memory.
+     *
+     * @param animalCapacity The number of animal records to reserve; the store grows when needed.
+     * @param plantCapacity The number of plant records to reserve.
+     * @return The store.
+     */
+    public static EntityStore allocateDirect(int animalCapacity, int plantCapacity) {
+        try {
+            return new EntityStore(null, new Records(ANIMAL_RECORD_SIZE, animalCapacity, null),
+                    new Records(PLANT_RECORD_SIZE, plantCapacity, null));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates an empty store in memory-mapped files in the given directory, replacing any previous store there.
+     *
+     * @param directory The directory of the store files.
+     * @param animalCapacity The number of animal records to reserve; the files grow when needed.
+     * @param plantCapacity The number of plant records to reserve.
+     * @return The store.
+     */
+    public static EntityStore create(Path directory, int animalCapacity, int plantCapacity) throws IOException {
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE_NAME));
+        for (int slot = 0; slot < 2; slot++) {
+            Files.deleteIfExists(snapshotFile(directory, ANIMAL_SNAPSHOT_FILE_NAME, slot));
+            Files.deleteIfExists(snapshotFile(directory, PLANT_SNAPSHOT_FILE_NAME, slot));
+        }
+        FileChannel animalChannel = openChannel(directory.resolve(ANIMALS_FILE_NAME), true);
+        FileChannel plantChannel = openChannel(directory.resolve(PLANTS_FILE_NAME), true);
+        return new EntityStore(directory, new Records(ANIMAL_RECORD_SIZE, animalCapacity, animalChannel),
+                new Records(PLANT_RECORD_SIZE, plantCapacity, plantChannel));
+    }
+
+    /**
+     * Opens the last snapshot of a mapped store. The records of the snapshot are copied into the mapped files,
+     * not parsed.
+     *
+     * @param directory The directory of the store files.
+     * @return The store, with the records and the climate of the snapshot.
+     * @throws IOException if there is no snapshot, or if it is damaged.
+     */
+    public static EntityStore open(Path directory) throws IOException {
+        if (!isStore(directory)) throw new FileNotFoundException("No entity store snapshot in " + directory + ".");
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(SNAPSHOT_FILE_NAME))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("Unknown snapshot version.");
+            long generation = in.readLong();
+            int temperature = in.readInt();
+            int humidity = in.readInt();
+            int waterAmount = in.readInt();
+            int animalCount = in.readInt();
+            int plantCount = in.readInt();
+
+            int slot = (int) (generation % 2);
+            Path animalFile = directory.resolve(ANIMALS_FILE_NAME);
+            Path plantFile = directory.resolve(PLANTS_FILE_NAME);
+            Files.copy(snapshotFile(directory, ANIMAL_SNAPSHOT_FILE_NAME, slot), animalFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.copy(snapshotFile(directory, PLANT_SNAPSHOT_FILE_NAME, slot), plantFile, StandardCopyOption.REPLACE_EXISTING);
+            FileChannel animalChannel = openChannel(animalFile, false);
+            FileChannel plantChannel = openChannel(plantFile, false);
+            EntityStore store = new EntityStore(directory,
+                    new Records(ANIMAL_RECORD_SIZE, recordCapacity(animalChannel, ANIMAL_RECORD_SIZE), animalChannel),
+                    new Records(PLANT_RECORD_SIZE, recordCapacity(plantChannel, PLANT_RECORD_SIZE), plantChannel));
+            try {
+                store.generation = generation;
+                store.temperature = temperature;
+                store.humidity = humidity;
+                store.waterAmount = waterAmount;
+                int animalTypeCount = in.readInt();
+                for (int i = 0; i < animalTypeCount; i++) {
+                    int kind = in.readByte();
+                    if (kind < 0 || kind >= AnimalKind.values().length) throw new IOException("Unknown kind of animal " + kind + ".");
+                    String name = in.readUTF();
+                    int level = in.readByte();
+                    store.addAnimalType(AnimalKind.values()[kind], name, level, in.readInt());
+                }
+                int plantTypeCount = in.readInt();
+                for (int i = 0; i < plantTypeCount; i++) {
+                    store.addPlantType(in.readUTF(), in.readInt(), in.readInt());
+                }
+                store.animals.readHeader(ANIMAL_RECORD_SIZE, animalCount);
+                store.plants.readHeader(PLANT_RECORD_SIZE, plantCount);
+                store.checkTypes();
+                return store;
+            } catch (IOException e) {
+                store.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the directory holds a snapshot of a mapped store.
+     */
+    public static boolean isStore(Path directory) {
+        return Files.isRegularFile(directory.resolve(SNAPSHOT_FILE_NAME));
+    }
+
+    private static Path snapshotFile(Path directory, String pattern, int slot) {
+        return directory.resolve(String.format(pattern, slot));
+    }
+
+    /**
+     * Checks that every record refers to a type of the table.
+     */
+    private void checkTypes() throws IOException {
+        for (int i = 0; i < animals.size; i++) {
+            if (getAnimalType(i) >= animalTypes.size()) throw new IOException("Animal record " + i + " has an unknown type.");
+        }
+        for (int i = 0; i < plants.size; i++) {
+            if (getPlantType(i) >= plantTypes.size()) throw new IOException("Plant record " + i + " has an unknown type.");
+        }
+    }
+
+    private static FileChannel openChannel(Path path, boolean truncate) throws IOException {
+        return truncate
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static int recordCapacity(FileChannel channel, int recordSize) throws IOException {
+        return (int) Math.max(0, (channel.size() - HEADER_SIZE) / recordSize);
+    }
+
+    /**
+     * Returns the directory of a mapped store, or null if the store is in direct memory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public boolean isMapped() {
+        return directory != null;
+    }
+
+    /**
+     * Saves the current state as the next snapshot of a mapped store. The records are written to the snapshot
+     * files the last snapshot does not use, and the snapshot file that names them is replaced last, so a crash
+     * at any point leaves either the last or the new snapshot.
+     *
+     * @param temperature The temperature of the ecosystem.
+     * @param humidity The humidity of the ecosystem.
+     * @param waterAmount The water amount of the ecosystem.
+     */
+    public void snapshot(int temperature, int humidity, int waterAmount) throws IOException {
+        if (directory == null) throw new IllegalStateException("Only a mapped store can be saved as a snapshot.");
+        long next = generation + 1;
+        int slot = (int) (next % 2);
+        animals.writeTo(snapshotFile(directory, ANIMAL_SNAPSHOT_FILE_NAME, slot));
+        plants.writeTo(snapshotFile(directory, PLANT_SNAPSHOT_FILE_NAME, slot));
+
+        Path temporary = directory.resolve(SNAPSHOT_FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(next);
+            out.writeInt(temperature);
+            out.writeInt(humidity);
+            out.writeInt(waterAmount);
+            out.writeInt(animals.size);
+            out.writeInt(plants.size);
+            out.writeInt(animalTypes.size());
+            for (Animal type : animalTypes) {
+                out.writeByte(type.getKind().ordinal());
+                out.writeUTF(type.getName());
+                out.writeByte(type.getFoodChainLevel());
+                out.writeInt(type.getLifeTime());
+            }
+            out.writeInt(plantTypes.size());
+            for (Plant type : plantTypes) {
+                out.writeUTF(type.getName());
+                out.writeInt(type.getWaterNeeds());
+                out.writeInt(type.getOptimalTemperature());
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE_NAME), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            // Not every file system can force a directory; the rename is then as durable as it gets
+        }
+        generation = next;
+        this.temperature = temperature;
+        this.humidity = humidity;
+        this.waterAmount = waterAmount;
+    }
+
+    /**
+     * Returns the number of snapshots of this store so far, 0 if none was taken yet.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getTemperature() {
+        return temperature;
+    }
+
+    public int getHumidity() {
+        return humidity;
+    }
+
+    public int getWaterAmount() {
+        return waterAmount;
+    }
+
+    // Types
+
+    /**
+     * Returns the type of an animal, adding it if it is new.
+     */
+    public int animalType(Animal animal) {
+        Integer type = animalTypeIds.get(animalTypeKey(animal.getKind(), animal.getName(), animal.getFoodChainLevel(), animal.getLifeTime()));
+        return type != null ? type : addAnimalType(animal.getKind(), animal.getName(), animal.getFoodChainLevel(), animal.getLifeTime());
+    }
+
+    /**
+     * Returns the type of a plant, adding it if it is new.
+     */
+    public int plantType(Plant plant) {
+        Integer type = plantTypeIds.get(plantTypeKey(plant.getName(), plant.getWaterNeeds(), plant.getOptimalTemperature()));
+        return type != null ? type : addPlantType(plant.getName(), plant.getWaterNeeds(), plant.getOptimalTemperature());
+    }
+
+    private int addAnimalType(AnimalKind kind, String name, int level, int lifeTime) {
+        Animal prototype = switch (kind) {
+            case CARNIVORE -> new Carnivore(name, 0, level, lifeTime, 0);
+            case OMNIVORE -> new Omnivore(name, 0, level, lifeTime, 0);
+            case HERBIVORE -> new Herbivore(name, 0, level, lifeTime, 0);
+        };
+        animalTypes.add(prototype);
+        animalTypeIds.put(animalTypeKey(kind, name, level, lifeTime), animalTypes.size() - 1);
+        return animalTypes.size() - 1;
+    }
+
+    private int addPlantType(String name, int waterNeeds, int optimalTemperature) {
+        plantTypes.add(new Plant(name, 0, waterNeeds, optimalTemperature));
+        plantTypeIds.put(plantTypeKey(name, waterNeeds, optimalTemperature), plantTypes.size() - 1);
+        return plantTypes.size() - 1;
+    }
+
+    private static String animalTypeKey(AnimalKind kind, String name, int level, int lifeTime) {
+        return kind.ordinal() + "/" + level + "/" + lifeTime + "/" + name;
+    }
+
+    private static String plantTypeKey(String name, int waterNeeds, int optimalTemperature) {
+        return waterNeeds + "/" + optimalTemperature + "/" + name;
+    }
+
+    public int getAnimalTypeCount() {
+        return animalTypes.size();
+    }
+
+    public int getPlantTypeCount() {
+        return plantTypes.size();
+    }
+
+    /**
+     * Returns the prototype of an animal type. Its energy, age and eaten flag are those of the record
+     * last shown by {@link #animalView}; it must not be kept or added to an ecosystem.
+     */
+    public Animal getAnimalPrototype(int type) {
+        return animalTypes.get(type);
+    }
+
+    /**
+     * Returns the prototype of a plant type, see {@link #getAnimalPrototype}.
+     */
+    public Plant getPlantPrototype(int type) {
+        return plantTypes.get(type);
+    }
+
+    // Animal records
+
+    public int getAnimalCount() {
+        return animals.size;
+    }
+
+    /**
+     * Appends an animal record.
+     *
+     * @return The index of the record.
+     */
+    public int addAnimal(int type, int energy, int age) {
+        int offset = animals.append();
+        animals.buffer.putInt(offset, type);
+        animals.buffer.putInt(offset + ENERGY, energy);
+        animals.buffer.putInt(offset + AGE, age);
+        return animals.size - 1;
+    }
+
+    /**
+     * Appends a record for every individual an animal stands for.
+     */
+    public void addAnimal(Animal animal) {
+        int type = animalType(animal);
+        for (int i = 0; i < animal.getQuantity(); i++) {
+            int index = addAnimal(type, animal.getEnergy(), animal.getCurrentLifeTime());
+            if (animal.isEaten()) setAnimalEaten(index, true);
+        }
+    }
+
+    public int getAnimalType(int index) {
+        return animals.buffer.getInt(animals.offset(index)) & ~EATEN;
+    }
+
+    public boolean isAnimalEaten(int index) {
+        return animals.buffer.getInt(animals.offset(index)) < 0;
+    }
+
+    public void setAnimalEaten(int index, boolean eaten) {
+        int offset = animals.offset(index);
+        int type = animals.buffer.getInt(offset) & ~EATEN;
+        animals.buffer.putInt(offset, eaten ? type | EATEN : type);
+    }
+
+    public int getAnimalEnergy(int index) {
+        return animals.buffer.getInt(animals.offset(index) + ENERGY);
+    }
+
+    public void setAnimalEnergy(int index, int energy) {
+        animals.buffer.putInt(animals.offset(index) + ENERGY, energy);
+    }
+
+    public int getAnimalAge(int index) {
+        return animals.buffer.getInt(animals.offset(index) + AGE);
+    }
+
+    public void setAnimalAge(int index, int age) {
+        animals.buffer.putInt(animals.offset(index) + AGE, age);
+    }
+
+    /**
+     * Shows an animal record through the prototype of its type, without creating an object.
+     * The returned animal is only valid until the next view of the same type.
+     */
+    public Animal animalView(int index) {
+        Animal view = animalTypes.get(getAnimalType(index));
+        view.setEnergy(getAnimalEnergy(index));
+        view.setCurrentLifeTime(getAnimalAge(index));
+        view.setEaten(isAnimalEaten(index));
+        return view;
+    }
+
+    /**
+     * Creates an animal object with the state of a record.
+     */
+    public Animal toAnimal(int index) {
+        return animalView(index).copy();
+    }
+
+    /**
+     * Removes the animal records matching the test, keeping the order of the others.
+     *
+     * @param test The test of a record index; records are tested in order before any of them is moved.
+     * @return The number of removed records.
+     */
+    public int removeAnimalsIf(IntPredicate test) {
+        return animals.removeIf(test);
+    }
+
+    /**
+     * Sorts the animal records by a rank, keeping the order of records with equal rank.
+     *
+     * @param rank The rank of a record index, from 0 to {@code ranks - 1}.
+     * @param ranks The number of ranks.
+     */
+    public void sortAnimals(IntUnaryOperator rank, int ranks) {
+        animals.sort(rank, ranks);
+    }
+
+    public void clearAnimals() {
+        animals.size = 0;
+    }
+
+    /**
+     * Adds a value to a field of every animal record.
+     */
+    public void addToAnimals(int field, int value) {
+        KERNELS.add(animals.buffer, HEADER_SIZE, ANIMAL_RECORD_SIZE / 4, animals.size, field, value);
+    }
+
+    /**
+     * Adds {@code delta[type]} to a field of every uneaten animal record whose field is at least {@code atLeast[type]}.
+     */
+    public void addToAnimalsByType(int field, int[] atLeast, int[] delta) {
+        KERNELS.addByType(animals.buffer, HEADER_SIZE, ANIMAL_RECORD_SIZE / 4, animals.size, field, atLeast, delta);
+    }
+
+    /**
+     * Adds the number of uneaten animal records of every type to {@code counts[type]}.
+     */
+    public void countAnimalsByType(int[] counts) {
+        KERNELS.countByType(animals.buffer, HEADER_SIZE, ANIMAL_RECORD_SIZE / 4, animals.size, counts);
+    }
+
+    /**
+     * Returns the first uneaten animal record from {@code from} to before {@code to} whose field is outside
+     * {@code lowest[type]} to {@code highest[type]}, or {@code to} if there is none.
+     */
+    public int nextAnimalOutside(int from, int to, int field, int[] lowest, int[] highest) {
+        return KERNELS.nextOutside(animals.buffer, HEADER_SIZE, ANIMAL_RECORD_SIZE / 4, from, Math.min(to, animals.size), field, lowest, highest);
+    }
+
+    /**
+     * Removes the uneaten animal records whose field is outside {@code lowest[type]} to {@code highest[type]},
+     * keeping the order of the others.
+     *
+     * @param removed Called with the index of every removed record before it is overwritten.
+     * @return The number of removed records.
+     */
+    public int removeAnimalsOutside(int field, int[] lowest, int[] highest, IntConsumer removed) {
+        return animals.removeFound(from -> nextAnimalOutside(from, animals.size, field, lowest, highest), removed);
+    }
+
+    /**
+     * Removes the eaten animal records, keeping the order of the others.
+     *
+     * @param removed Called with the index of every removed record before it is overwritten.
+     * @return The number of removed records.
+     */
+    public int removeEatenAnimals(IntConsumer removed) {
+        return animals.removeFound(from -> KERNELS.nextEaten(animals.buffer, HEADER_SIZE, ANIMAL_RECORD_SIZE / 4, from, animals.size), removed);
+    }
+
+    // Plant records
+
+    public int getPlantCount() {
+        return plants.size;
+    }
+
+    /**
+     * Appends a plant record.
+     *
+     * @return The index of the record.
+     */
+    public int addPlant(int type, int growthLevel) {
+        int offset = plants.append();
+        plants.buffer.putInt(offset, type);
+        plants.buffer.putInt(offset + GROWTH_LEVEL, growthLevel);
+        return plants.size - 1;
+    }
+
+    /**
+     * Appends a record for every individual a plant stands for.
+     */
+    public void addPlant(Plant plant) {
+        int type = plantType(plant);
+        for (int i = 0; i < plant.getQuantity(); i++) {
+            int index = addPlant(type, plant.getGrowthLevel());
+            if (plant.isEaten()) setPlantEaten(index, true);
+        }
+    }
+
+    public int getPlantType(int index) {
+        return plants.buffer.getInt(plants.offset(index)) & ~EATEN;
+    }
+
+    public boolean isPlantEaten(int index) {
+        return plants.buffer.getInt(plants.offset(index)) < 0;
+    }
+
+    public void setPlantEaten(int index, boolean eaten) {
+        int offset = plants.offset(index);
+        int type = plants.buffer.getInt(offset) & ~EATEN;
+        plants.buffer.putInt(offset, eaten ? type | EATEN : type);
+    }
+
+    public int getPlantGrowthLevel(int index) {
+        return plants.buffer.getInt(plants.offset(index) + GROWTH_LEVEL);
+    }
+
+    public void setPlantGrowthLevel(int index, int growthLevel) {
+        plants.buffer.putInt(plants.offset(index) + GROWTH_LEVEL, growthLevel);
+    }
+
+    /**
+     * Shows a plant record through the prototype of its type, see {@link #animalView}.
+     */
+    public Plant plantView(int index) {
+        Plant view = plantTypes.get(getPlantType(index));
+        view.setGrowthLevel(getPlantGrowthLevel(index));
+        view.setEaten(isPlantEaten(index));
+        return view;
+    }
+
+    public Plant toPlant(int index) {
+        return plantView(index).copy();
+    }
+
+    public int removePlantsIf(IntPredicate test) {
+        return plants.removeIf(test);
+    }
+
+    public void sortPlants(IntUnaryOperator rank, int ranks) {
+        plants.sort(rank, ranks);
+    }
+
+    public void clearPlants() {
+        plants.size = 0;
+    }
+
+    /**
+     * Adds {@code delta[type]} to a field of every uneaten plant record whose field is at least {@code atLeast[type]}.
+     */
+    public void addToPlantsByType(int field, int[] atLeast, int[] delta) {
+        KERNELS.addByType(plants.buffer, HEADER_SIZE, PLANT_RECORD_SIZE / 4, plants.size, field, atLeast, delta);
+    }
+
+    /**
+     * Adds the number of uneaten plant records of every type to {@code counts[type]}.
+     */
+    public void countPlantsByType(int[] counts) {
+        KERNELS.countByType(plants.buffer, HEADER_SIZE, PLANT_RECORD_SIZE / 4, plants.size, counts);
+    }
+
+    /**
+     * Returns the first uneaten plant record in a range whose field is out of its bounds, see {@link #nextAnimalOutside}.
+     */
+    public int nextPlantOutside(int from, int to, int field, int[] lowest, int[] highest) {
+        return KERNELS.nextOutside(plants.buffer, HEADER_SIZE, PLANT_RECORD_SIZE / 4, from, Math.min(to, plants.size), field, lowest, highest);
+    }
+
+    /**
+     * Removes the uneaten plant records whose field is out of its bounds, see {@link #removeAnimalsOutside}.
+     */
+    public int removePlantsOutside(int field, int[] lowest, int[] highest, IntConsumer removed) {
+        return plants.removeFound(from -> nextPlantOutside(from, plants.size, field, lowest, highest), removed);
+    }
+
+    /**
+     * Removes the eaten plant records, see {@link #removeEatenAnimals}.
+     */
+    public int removeEatenPlants(IntConsumer removed) {
+        return plants.removeFound(from -> KERNELS.nextEaten(plants.buffer, HEADER_SIZE, PLANT_RECORD_SIZE / 4, from, plants.size), removed);
+    }
+
+    /**
+     * Closes the files of a mapped store. The state since the last {@link #snapshot} is not saved.
+     */
+    @Override
+    public void close() throws IOException {
+        if (animals.channel != null) animals.channel.close();
+        if (plants.channel != null) plants.channel.close();
+    }
+}
@@ -0,0 +1,76 @@
+package ecosystem.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The uniform passes over the records of an {@link EntityStore}: adding to a field of every record or of the
+ * records of a type above a threshold, counting records by type, and finding the next record to remove.
+ * <p>
+ * Records are {@code recordInts} little-endian ints starting at byte {@code start} of the buffer; the first
+ * int is the type, with the highest bit set for eaten records, and fields are numbered by their int position.
+ * Arrays indexed by type must cover all types of the records.
+ * <p>
+ * {@link #preferred()} uses the Java Vector API when the vector kernels were compiled in (Maven profile
+ * "vector") and the jdk.incubator.vector module is present at run time; otherwise, or with
+ * -Decosystem.vector=false, it uses plain loops.
+ */
+public interface RecordKernels {
+
+    /**
+     * Returns the kernels with plain loops.
+     */
+    static RecordKernels scalar() {
+        return ScalarKernels.INSTANCE;
+    }
+
+    /**
+     * Returns the kernels using the Vector API, or null if they are not available.
+     */
+    static RecordKernels vector() {
+        try {
+            return (RecordKernels) Class.forName("ecosystem.store.VectorKernels").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Not compiled in, or the module is missing
+            return null;
+        }
+    }
+
+    /**
+     * Returns the vector kernels if available and not disabled, otherwise the scalar ones.
+     */
+    static RecordKernels preferred() {
+        RecordKernels vector = Boolean.parseBoolean(System.getProperty("ecosystem.vector", "true")) ? vector() : null;
+        return vector != null ? vector : scalar();
+    }
+
+    /**
+     * Returns a short name of the implementation, such as "scalar" or "vector (256 bits)".
+     */
+    String getName();
+
+    /**
+     * Adds a value to a field of every record, eaten or not.
+     */
+    void add(ByteBuffer records, int start, int recordInts, int count, int field, int value);
+
+    /**
+     * Adds {@code delta[type]} to a field of every uneaten record whose field is at least {@code atLeast[type]}.
+     */
+    void addByType(ByteBuffer records, int start, int recordInts, int count, int field, int[] atLeast, int[] delta);
+
+    /**
+     * Adds the number of uneaten records of every type to {@code counts[type]}.
+     */
+    void countByType(ByteBuffer records, int start, int recordInts, int count, int[] counts);
+
+    /**
+     * Returns the index of the first uneaten record from {@code from} on whose field is below {@code lowest[type]}
+     * or above {@code highest[type]}, or {@code count} if there is none.
+     */
+    int nextOutside(ByteBuffer records, int start, int recordInts, int from, int count, int field, int[] lowest, int[] highest);
+
+    /**
+     * Returns the index of the first eaten record from {@code from} on, or {@code count} if there is none.
+     */
+    int nextEaten(ByteBuffer records, int start, int recordInts, int from, int count);
+}
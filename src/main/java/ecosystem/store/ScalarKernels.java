@@ -0,0 +1,68 @@
+package ecosystem.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The record kernels as plain loops. The vector kernels use them for the records behind their last full vector.
+ */
+final class ScalarKernels implements RecordKernels {
+    static final ScalarKernels INSTANCE = new ScalarKernels();
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public void add(ByteBuffer records, int start, int recordInts, int count, int field, int value) {
+        int recordSize = recordInts * 4;
+        int end = start + count * recordSize;
+        for (int offset = start + field * 4; offset < end; offset += recordSize) {
+            records.putInt(offset, records.getInt(offset) + value);
+        }
+    }
+
+    @Override
+    public void addByType(ByteBuffer records, int start, int recordInts, int count, int field, int[] atLeast, int[] delta) {
+        int recordSize = recordInts * 4;
+        int end = start + count * recordSize;
+        for (int offset = start; offset < end; offset += recordSize) {
+            int type = records.getInt(offset);
+            if (type < 0) continue;
+            int value = records.getInt(offset + field * 4);
+            if (value >= atLeast[type]) records.putInt(offset + field * 4, value + delta[type]);
+        }
+    }
+
+    @Override
+    public void countByType(ByteBuffer records, int start, int recordInts, int count, int[] counts) {
+        int recordSize = recordInts * 4;
+        int end = start + count * recordSize;
+        for (int offset = start; offset < end; offset += recordSize) {
+            int type = records.getInt(offset);
+            if (type >= 0) counts[type]++;
+        }
+    }
+
+    @Override
+    public int nextOutside(ByteBuffer records, int start, int recordInts, int from, int count, int field, int[] lowest, int[] highest) {
+        int recordSize = recordInts * 4;
+        for (int i = from; i < count; i++) {
+            int offset = start + i * recordSize;
+            int type = records.getInt(offset);
+            if (type < 0) continue;
+            int value = records.getInt(offset + field * 4);
+            if (value < lowest[type] || value > highest[type]) return i;
+        }
+        return count;
+    }
+
+    @Override
+    public int nextEaten(ByteBuffer records, int start, int recordInts, int from, int count) {
+        int recordSize = recordInts * 4;
+        for (int i = from; i < count; i++) {
+            if (records.getInt(start + i * recordSize) < 0) return i;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,804 @@
+package ecosystem.utils;
+
+import ecosystem.Ecosystem;
+import ecosystem.SimulationListener;
+import ecosystem.entities.*;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * Delta-log persistence for ecosystems. A checkpoint directory holds a base snapshot
+ * ({@code ecosystem.base}) and an append-only log of per-day change records ({@code ecosystem.delta}).
+ * Each change record contains only births, deaths, changed fields and the climate, so the amount
+ * written per checkpoint is proportional to the churn of the population rather than to its size.
+ * Every {@code compactionInterval} checkpoints the deltas are folded into a new base snapshot.
+ * <p>
+ * Entities are tracked by identity, so ecosystems in off-heap mode, whose entities are new copies of the records
+ * every time they are read, cannot be checkpointed; a mapped entity store saves its own snapshots instead.
+ */
+public class DeltaCheckpointLog implements SimulationListener {
+    public static final String BASE_FILE_NAME = "ecosystem.base";
+    public static final String DELTA_FILE_NAME = "ecosystem.delta";
+    public static final String OFF_HEAP_MESSAGE =
+            "Delta checkpoints are not written in off-heap mode; use a snapshot directory for the records instead.";
+
+    private static final int MAGIC = 0x45434f44; // "ECOD"
+    private static final int VERSION = 2;
+    // Version 1 files have no cohort quantities, every entity stands for one individual
+    private static final int VERSION_WITHOUT_QUANTITY = 1;
+
+    // Entity kinds as stored in the files
+    private static final int HERBIVORE = 0;
+    private static final int CARNIVORE = 1;
+    private static final int OMNIVORE = 2;
+
+    // Bits of the field mask of an animal or plant change record
+    private static final int ENERGY_CHANGED = 1;
+    private static final int AGE_CHANGED = 2;
+    private static final int GROWTH_CHANGED = 1;
+    private static final int EATEN_CHANGED = 4;
+    private static final int QUANTITY_CHANGED = 8;
+
+    private final Path basePath;
+    private final Path deltaPath;
+    private final int compactionInterval;
+
+    private final Map<Animal, TrackedAnimal> trackedAnimals = new IdentityHashMap<>();
+    private final Map<Plant, TrackedPlant> trackedPlants = new IdentityHashMap<>();
+    private final Map<String, Integer> nameIndexes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private int namesWritten;
+
+    private Ecosystem trackedEcosystem;
+    private int nextId;
+    private int epoch;
+    private long sequence;
+    private int checkpointsSinceBase;
+
+    /**
+     * Creates a delta log in the given directory.
+     *
+     * @param directory The directory where the base snapshot and the delta log are stored.
+     * @param compactionInterval The number of checkpoints after which the deltas are folded into a new base.
+     */
+    public DeltaCheckpointLog(String directory, int compactionInterval) {
+        this.basePath = Paths.get(directory, BASE_FILE_NAME);
+        this.deltaPath = Paths.get(directory, DELTA_FILE_NAME);
+        this.compactionInterval = Math.max(1, compactionInterval);
+    }
+
+    public Path getBasePath() {
+        return basePath;
+    }
+
+    public Path getDeltaPath() {
+        return deltaPath;
+    }
+
+    @Override
+    public void onDayCompleted(Ecosystem ecosystem, int day) {
+        if (ecosystem.isOffHeapMode()) {
+            if (day == 0) System.out.println(OFF_HEAP_MESSAGE);
+            return;
+        }
+        checkpoint(ecosystem);
+    }
+
+    /**
+     * Records the current state of the ecosystem. The first checkpoint of an ecosystem writes a base snapshot,
+     * later checkpoints append a change record to the delta log, and every {@code compactionInterval}
+     * checkpoints the log is compacted into a new base.
+     *
+     * @param ecosystem The ecosystem to checkpoint, not in off-heap mode.
+     */
+    public void checkpoint(Ecosystem ecosystem) {
+        if (ecosystem.isOffHeapMode()) throw new IllegalStateException(OFF_HEAP_MESSAGE);
+        try {
+            if (ecosystem != trackedEcosystem) {
+                // A different ecosystem starts a new history
+                trackedAnimals.clear();
+                trackedPlants.clear();
+                trackedEcosystem = ecosystem;
+                sequence++;
+                compact(ecosystem);
+            } else if (checkpointsSinceBase + 1 >= compactionInterval) {
+                sequence++;
+                compact(ecosystem);
+            } else {
+                sequence++;
+                appendDelta(ecosystem);
+            }
+        } catch (IOException e) {
+            System.out.println("Error while writing checkpoint: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Folds the current state into a new base snapshot and truncates the delta log.
+     * The base is written to a temporary file first and then atomically moved into place.
+     *
+     * @param ecosystem The ecosystem to snapshot.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void compact(Ecosystem ecosystem) throws IOException {
+        if (basePath.getParent() != null) {
+            Files.createDirectories(basePath.getParent());
+        }
+        epoch++;
+        Path tmp = basePath.resolveSibling(BASE_FILE_NAME + ".tmp");
+        // In off-heap mode every call returns new copies, so the ids are looked up in the same lists that are written
+        List<Animal> animals = ecosystem.getAnimals();
+        List<Plant> plants = ecosystem.getPlants();
+        int position = 0;
+        for (Animal animal : animals) {
+            TrackedAnimal tracked = trackedAnimals.get(animal);
+            if (tracked == null || !tracked.sameIdentity(animal)) {
+                tracked = new TrackedAnimal(nextId++, animal);
+                trackedAnimals.put(animal, tracked);
+            }
+            tracked.update(animal);
+            tracked.seenEpoch = epoch;
+            tracked.position = position++;
+        }
+        position = 0;
+        for (Plant plant : plants) {
+            TrackedPlant tracked = trackedPlants.get(plant);
+            if (tracked == null || !tracked.sameIdentity(plant)) {
+                tracked = new TrackedPlant(nextId++, plant);
+                trackedPlants.put(plant, tracked);
+            }
+            tracked.update(plant);
+            tracked.seenEpoch = epoch;
+            tracked.position = position++;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            writeBase(out, sequence, ecosystem, animals, plants, names, nameIndexes,
+                    animal -> trackedAnimals.get(animal).id, plant -> trackedPlants.get(plant).id);
+            namesWritten = names.size();
+        }
+        Files.move(tmp, basePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Forget entities that no longer exist and start a new delta log
+        trackedAnimals.values().removeIf(tracked -> tracked.seenEpoch != epoch);
+        trackedPlants.values().removeIf(tracked -> tracked.seenEpoch != epoch);
+        Files.write(deltaPath, new byte[0]);
+        checkpointsSinceBase = 0;
+    }
+
+    /**
+     * Appends one change record describing the difference between the tracked state and the current ecosystem.
+     *
+     * @param ecosystem The ecosystem to checkpoint.
+     * @throws IOException If the record cannot be written.
+     */
+    private void appendDelta(Ecosystem ecosystem) throws IOException {
+        epoch++;
+        ByteArrayOutputStream births = new ByteArrayOutputStream();
+        ByteArrayOutputStream changes = new ByteArrayOutputStream();
+        int birthCount = 0, changeCount = 0, deathCount = 0;
+
+        // Ages of surviving animals usually advance by the same step, so it is stored once per record
+        int ageStep = commonAgeStep(ecosystem.getAnimals());
+
+        // On restore the survivors keep their order and the births follow them, so an entity is only logged as a
+        // survivor while the list is still in the order of the last checkpoint and no birth has come before it
+        int position = 0;
+        int lastPosition = -1;
+        boolean born = false;
+        for (Animal animal : ecosystem.getAnimals()) {
+            TrackedAnimal tracked = trackedAnimals.get(animal);
+            if (tracked == null || !tracked.sameIdentity(animal) || born || tracked.position < lastPosition) {
+                if (tracked != null) {
+                    // The object was reused for another animal or moved, the old one is gone
+                    writeVarInt(changes, tracked.id);
+                    changes.write(-1);
+                    changeCount++;
+                }
+                born = true;
+                tracked = new TrackedAnimal(nextId++, animal);
+                trackedAnimals.put(animal, tracked);
+                tracked.update(animal);
+                tracked.seenEpoch = epoch;
+                tracked.position = position++;
+                births.write(0); // animal
+                writeVarInt(births, tracked.id);
+                births.write(tracked.kind);
+                writeVarInt(births, tracked.nameIndex);
+                births.write(tracked.foodChainLevel);
+                writeVarInt(births, tracked.lifeTime);
+                writeZigZag(births, tracked.energy);
+                writeVarInt(births, tracked.age);
+                births.write(tracked.eaten ? 1 : 0);
+                writeVarInt(births, tracked.quantity);
+                birthCount++;
+                continue;
+            }
+            tracked.seenEpoch = epoch;
+            lastPosition = tracked.position;
+            tracked.position = position++;
+            int mask = 0;
+            if (animal.getEnergy() != tracked.energy) mask |= ENERGY_CHANGED;
+            if (animal.getCurrentLifeTime() - tracked.age != ageStep) mask |= AGE_CHANGED;
+            if (animal.isEaten() != tracked.eaten) mask |= EATEN_CHANGED;
+            if (animal.getQuantity() != tracked.quantity) mask |= QUANTITY_CHANGED;
+            if (mask != 0) {
+                writeVarInt(changes, tracked.id);
+                changes.write(mask);
+                if ((mask & ENERGY_CHANGED) != 0) writeZigZag(changes, animal.getEnergy() - tracked.energy);
+                if ((mask & AGE_CHANGED) != 0) writeZigZag(changes, animal.getCurrentLifeTime() - tracked.age - ageStep);
+                if ((mask & QUANTITY_CHANGED) != 0) writeZigZag(changes, animal.getQuantity() - tracked.quantity);
+                changeCount++;
+            }
+            tracked.update(animal);
+        }
+
+        position = 0;
+        lastPosition = -1;
+        born = false;
+        for (Plant plant : ecosystem.getPlants()) {
+            TrackedPlant tracked = trackedPlants.get(plant);
+            if (tracked == null || !tracked.sameIdentity(plant) || born || tracked.position < lastPosition) {
+                if (tracked != null) {
+                    writeVarInt(changes, tracked.id);
+                    changes.write(-1);
+                    changeCount++;
+                }
+                born = true;
+                tracked = new TrackedPlant(nextId++, plant);
+                trackedPlants.put(plant, tracked);
+                tracked.update(plant);
+                tracked.seenEpoch = epoch;
+                tracked.position = position++;
+                births.write(1); // plant
+                writeVarInt(births, tracked.id);
+                writeVarInt(births, tracked.nameIndex);
+                writeVarInt(births, tracked.waterNeeds);
+                writeZigZag(births, tracked.optimalTemperature);
+                writeZigZag(births, tracked.growthLevel);
+                births.write(tracked.eaten ? 1 : 0);
+                writeVarInt(births, tracked.quantity);
+                birthCount++;
+                continue;
+            }
+            tracked.seenEpoch = epoch;
+            lastPosition = tracked.position;
+            tracked.position = position++;
+            int mask = 0;
+            if (plant.getGrowthLevel() != tracked.growthLevel) mask |= GROWTH_CHANGED;
+            if (plant.isEaten() != tracked.eaten) mask |= EATEN_CHANGED;
+            if (plant.getQuantity() != tracked.quantity) mask |= QUANTITY_CHANGED;
+            if (mask != 0) {
+                writeVarInt(changes, tracked.id);
+                changes.write(mask);
+                if ((mask & GROWTH_CHANGED) != 0) writeZigZag(changes, plant.getGrowthLevel() - tracked.growthLevel);
+                if ((mask & QUANTITY_CHANGED) != 0) writeZigZag(changes, plant.getQuantity() - tracked.quantity);
+                changeCount++;
+            }
+            tracked.update(plant);
+        }
+
+        // Everything that was not seen during this pass has died
+        ByteArrayOutputStream deaths = new ByteArrayOutputStream();
+        for (Iterator<TrackedAnimal> iterator = trackedAnimals.values().iterator(); iterator.hasNext(); ) {
+            TrackedAnimal tracked = iterator.next();
+            if (tracked.seenEpoch != epoch) {
+                writeVarInt(deaths, tracked.id);
+                deathCount++;
+                iterator.remove();
+            }
+        }
+        for (Iterator<TrackedPlant> iterator = trackedPlants.values().iterator(); iterator.hasNext(); ) {
+            TrackedPlant tracked = iterator.next();
+            if (tracked.seenEpoch != epoch) {
+                writeVarInt(deaths, tracked.id);
+                deathCount++;
+                iterator.remove();
+            }
+        }
+
+        // Assemble the record: header, new names, births, deaths and field changes
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        writeVarLong(record, sequence);
+        writeZigZag(record, ecosystem.getTemperature());
+        writeVarInt(record, ecosystem.getHumidity());
+        writeVarInt(record, ecosystem.getWaterAmount());
+        writeZigZag(record, ageStep);
+        writeVarInt(record, names.size() - namesWritten);
+        for (int i = namesWritten; i < names.size(); i++) {
+            byte[] bytes = names.get(i).getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            writeVarInt(record, bytes.length);
+            record.write(bytes);
+        }
+        namesWritten = names.size();
+        writeVarInt(record, birthCount);
+        births.writeTo(record);
+        writeVarInt(record, deathCount);
+        deaths.writeTo(record);
+        writeVarInt(record, changeCount);
+        changes.writeTo(record);
+
+        // Each record is length-prefixed, so a torn write at the tail is detected on replay
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(deltaPath.toFile(), true)))) {
+            out.writeInt(record.size());
+            record.writeTo(out);
+        }
+        checkpointsSinceBase++;
+    }
+
+    /**
+     * Restores an ecosystem from a checkpoint directory by loading the base snapshot
+     * and replaying all complete change records of the delta log onto it.
+     * If any restored entity stands for several individuals, the ecosystem is switched to cohort mode.
+     *
+     * @param directory The checkpoint directory, or the path of its base file.
+     * @return The restored ecosystem, or null if the checkpoint cannot be read.
+     */
+    public static Ecosystem restore(String directory) {
+        Path path = Paths.get(directory);
+        Path base = Files.isDirectory(path) ? path.resolve(BASE_FILE_NAME) : path;
+        Path delta = base.resolveSibling(DELTA_FILE_NAME);
+
+        Map<Integer, Animal> animals = new LinkedHashMap<>();
+        Map<Integer, Plant> plants = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
+        int temperature, humidity, waterAmount, version;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(base)))) {
+            int[] header = readBase(in, animals, plants, names);
+            if (header == null) {
+                System.out.println("Error: the checkpoint file has an unknown format.");
+                return null;
+            }
+            version = header[0];
+            temperature = header[1];
+            humidity = header[2];
+            waterAmount = header[3];
+        } catch (IOException | IndexOutOfBoundsException e) {
+            System.out.println("Error: the checkpoint base file is damaged.");
+            return null;
+        }
+
+        if (Files.exists(delta)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(delta)))) {
+                long remaining = Files.size(delta);
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    remaining -= Integer.BYTES;
+                    if (length < 0) throw new IOException("Negative record length " + length);
+                    // Incomplete record at the end of the log
+                    if (length > remaining) break;
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    remaining -= length;
+                    int[] climate = replayRecord(new ByteArrayInputStream(bytes), animals, plants, names, version);
+                    temperature = climate[0];
+                    humidity = climate[1];
+                    waterAmount = climate[2];
+                }
+            } catch (IOException | IndexOutOfBoundsException e) {
+                System.out.println("Error: the checkpoint delta log is damaged.");
+                return null;
+            }
+        }
+        Ecosystem ecosystem = new Ecosystem(temperature, humidity, waterAmount,
+                new ArrayList<>(animals.values()), new ArrayList<>(plants.values()));
+        if (animals.values().stream().anyMatch(animal -> animal.getQuantity() > 1)
+                || plants.values().stream().anyMatch(plant -> plant.getQuantity() > 1)) {
+            ecosystem.setCohortMode(true);
+        }
+        return ecosystem;
+    }
+
+    /**
+     * Writes the state of an ecosystem in the format of a base file, with the entities numbered in their order.
+     * Unlike a simulation file it keeps every field of every entity, including eaten ones and the exact names.
+     *
+     * @param ecosystem The ecosystem.
+     * @param out The stream to write to.
+     * @throws IOException If the state cannot be written.
+     */
+    public static void writeSnapshot(Ecosystem ecosystem, DataOutputStream out) throws IOException {
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> nameIndexes = new HashMap<>();
+        List<Animal> animals = ecosystem.getAnimals();
+        List<Plant> plants = ecosystem.getPlants();
+        for (Animal animal : animals) nameIndexes.computeIfAbsent(animal.getName(), name -> addName(names, name));
+        for (Plant plant : plants) nameIndexes.computeIfAbsent(plant.getName(), name -> addName(names, name));
+        int[] nextId = {0};
+        writeBase(out, 0, ecosystem, animals, plants, names, nameIndexes, animal -> nextId[0]++, plant -> nextId[0]++);
+    }
+
+    /**
+     * Reads the state written by {@link #writeSnapshot}, or a base file without its delta log. The entities keep
+     * their quantities and the ecosystem is in none of the modes; switching them on is up to the caller.
+     *
+     * @param in The stream to read from.
+     * @return The ecosystem.
+     * @throws IOException If the state cannot be read or has an unknown format.
+     */
+    public static Ecosystem readSnapshot(DataInputStream in) throws IOException {
+        Map<Integer, Animal> animals = new LinkedHashMap<>();
+        Map<Integer, Plant> plants = new LinkedHashMap<>();
+        int[] header;
+        try {
+            header = readBase(in, animals, plants, new ArrayList<>());
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("The snapshot refers to an unknown name.", e);
+        }
+        if (header == null) throw new IOException("The snapshot has an unknown format.");
+        return new Ecosystem(header[1], header[2], header[3], new ArrayList<>(animals.values()), new ArrayList<>(plants.values()));
+    }
+
+    private static int addName(List<String> names, String name) {
+        names.add(name);
+        return names.size() - 1;
+    }
+
+    /**
+     * Writes a base: the header with the climate of the ecosystem, the table of names, and one record per animal
+     * and plant of the given lists, which are those of the ecosystem. Every name must already be in the table.
+     */
+    private static void writeBase(DataOutputStream out, long sequence, Ecosystem ecosystem, List<Animal> animals,
+                                  List<Plant> plants, List<String> names, Map<String, Integer> nameIndexes,
+                                  ToIntFunction<Animal> animalIds, ToIntFunction<Plant> plantIds) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(sequence);
+        out.writeInt(ecosystem.getTemperature());
+        out.writeInt(ecosystem.getHumidity());
+        out.writeInt(ecosystem.getWaterAmount());
+        out.writeInt(names.size());
+        for (String name : names) out.writeUTF(name);
+
+        out.writeInt(animals.size());
+        for (Animal animal : animals) {
+            out.writeInt(animalIds.applyAsInt(animal));
+            out.writeByte(kindOf(animal));
+            out.writeInt(nameIndexes.get(animal.getName()));
+            out.writeByte(animal.getFoodChainLevel());
+            out.writeInt(animal.getLifeTime());
+            out.writeInt(animal.getEnergy());
+            out.writeInt(animal.getCurrentLifeTime());
+            out.writeBoolean(animal.isEaten());
+            out.writeInt(animal.getQuantity());
+        }
+
+        out.writeInt(plants.size());
+        for (Plant plant : plants) {
+            out.writeInt(plantIds.applyAsInt(plant));
+            out.writeInt(nameIndexes.get(plant.getName()));
+            out.writeInt(plant.getWaterNeeds());
+            out.writeInt(plant.getOptimalTemperature());
+            out.writeInt(plant.getGrowthLevel());
+            out.writeBoolean(plant.isEaten());
+            out.writeInt(plant.getQuantity());
+        }
+    }
+
+    /**
+     * Reads a base into the given maps of the entities by id and the table of names.
+     *
+     * @return The version, temperature, humidity and water amount, or null if the format is unknown.
+     */
+    private static int[] readBase(DataInputStream in, Map<Integer, Animal> animals, Map<Integer, Plant> plants,
+                                  List<String> names) throws IOException {
+        if (in.readInt() != MAGIC) return null;
+        int version = in.readInt();
+        if (version != VERSION && version != VERSION_WITHOUT_QUANTITY) return null;
+        in.readLong(); // sequence
+        int temperature = in.readInt();
+        int humidity = in.readInt();
+        int waterAmount = in.readInt();
+        int nameCount = in.readInt();
+        for (int i = 0; i < nameCount; i++) names.add(in.readUTF());
+
+        int animalCount = in.readInt();
+        for (int i = 0; i < animalCount; i++) {
+            int id = in.readInt();
+            int kind = in.readByte();
+            String name = names.get(in.readInt());
+            int level = in.readByte();
+            int lifeTime = in.readInt();
+            int energy = in.readInt();
+            int age = in.readInt();
+            boolean eaten = in.readBoolean();
+            Animal animal = createAnimal(kind, name, energy, level, lifeTime, age, eaten);
+            if (version != VERSION_WITHOUT_QUANTITY) animal.setQuantity(in.readInt());
+            animals.put(id, animal);
+        }
+
+        int plantCount = in.readInt();
+        for (int i = 0; i < plantCount; i++) {
+            int id = in.readInt();
+            String name = names.get(in.readInt());
+            int waterNeeds = in.readInt();
+            int optimalTemperature = in.readInt();
+            int growthLevel = in.readInt();
+            boolean eaten = in.readBoolean();
+            Plant plant = new Plant(name, growthLevel, waterNeeds, optimalTemperature);
+            plant.setEaten(eaten);
+            if (version != VERSION_WITHOUT_QUANTITY) plant.setQuantity(in.readInt());
+            plants.put(id, plant);
+        }
+        return new int[]{version, temperature, humidity, waterAmount};
+    }
+
+    /**
+     * Applies one change record onto the restored entities.
+     *
+     * @return The climate stored in the record: temperature, humidity and water amount.
+     */
+    private static int[] replayRecord(InputStream in, Map<Integer, Animal> animals, Map<Integer, Plant> plants,
+                                      List<String> names, int version) throws IOException {
+        readVarLong(in); // sequence
+        int temperature = readZigZag(in);
+        int humidity = readVarInt(in);
+        int waterAmount = readVarInt(in);
+        int ageStep = readZigZag(in);
+
+        int newNames = readVarInt(in);
+        for (int i = 0; i < newNames; i++) {
+            int length = readVarInt(in);
+            if (length < 0 || length > in.available()) throw new IOException("Invalid name length " + length);
+            byte[] bytes = new byte[length];
+            if (in.read(bytes) != bytes.length) throw new EOFException();
+            names.add(new String(bytes, java.nio.charset.StandardCharsets.UTF_8));
+        }
+
+        // Changes describe the previous state of the survivors, so they are applied before the births
+        List<Animal> bornAnimals = new ArrayList<>();
+        List<Integer> bornAnimalIds = new ArrayList<>();
+        List<Plant> bornPlants = new ArrayList<>();
+        List<Integer> bornPlantIds = new ArrayList<>();
+        int births = readVarInt(in);
+        for (int i = 0; i < births; i++) {
+            if (readByte(in) == 0) {
+                int id = readVarInt(in);
+                int kind = readByte(in);
+                String name = names.get(readVarInt(in));
+                int level = readByte(in);
+                int lifeTime = readVarInt(in);
+                int energy = readZigZag(in);
+                int age = readVarInt(in);
+                boolean eaten = readByte(in) == 1;
+                Animal animal = createAnimal(kind, name, energy, level, lifeTime, age, eaten);
+                if (version != VERSION_WITHOUT_QUANTITY) animal.setQuantity(readVarInt(in));
+                bornAnimalIds.add(id);
+                bornAnimals.add(animal);
+            } else {
+                int id = readVarInt(in);
+                String name = names.get(readVarInt(in));
+                int waterNeeds = readVarInt(in);
+                int optimalTemperature = readZigZag(in);
+                int growthLevel = readZigZag(in);
+                boolean eaten = readByte(in) == 1;
+                Plant plant = new Plant(name, growthLevel, waterNeeds, optimalTemperature);
+                plant.setEaten(eaten);
+                if (version != VERSION_WITHOUT_QUANTITY) plant.setQuantity(readVarInt(in));
+                bornPlantIds.add(id);
+                bornPlants.add(plant);
+            }
+        }
+
+        int deaths = readVarInt(in);
+        for (int i = 0; i < deaths; i++) {
+            int id = readVarInt(in);
+            if (animals.remove(id) == null) plants.remove(id);
+        }
+
+        // Apply field changes; ages of the remaining animals advance by the common step
+        Map<Integer, Integer> ageOffsets = new HashMap<>();
+        int changes = readVarInt(in);
+        for (int i = 0; i < changes; i++) {
+            int id = readVarInt(in);
+            int mask = readByte(in);
+            if (mask == 0xFF) {
+                // Entity object was reused, the old entity is gone
+                if (animals.remove(id) == null) plants.remove(id);
+                continue;
+            }
+            Animal animal = animals.get(id);
+            if (animal != null) {
+                if ((mask & ENERGY_CHANGED) != 0) animal.setEnergy(animal.getEnergy() + readZigZag(in));
+                if ((mask & AGE_CHANGED) != 0) ageOffsets.put(id, readZigZag(in));
+                if ((mask & EATEN_CHANGED) != 0) animal.setEaten(!animal.isEaten());
+                if ((mask & QUANTITY_CHANGED) != 0) animal.setQuantity(animal.getQuantity() + readZigZag(in));
+                continue;
+            }
+            Plant plant = plants.get(id);
+            if (plant != null) {
+                if ((mask & GROWTH_CHANGED) != 0) plant.setGrowthLevel(plant.getGrowthLevel() + readZigZag(in));
+                if ((mask & EATEN_CHANGED) != 0) plant.setEaten(!plant.isEaten());
+                if ((mask & QUANTITY_CHANGED) != 0) plant.setQuantity(plant.getQuantity() + readZigZag(in));
+            }
+        }
+        for (Map.Entry<Integer, Animal> entry : animals.entrySet()) {
+            Animal animal = entry.getValue();
+            int offset = ageOffsets.getOrDefault(entry.getKey(), 0);
+            animal.setCurrentLifeTime(animal.getCurrentLifeTime() + ageStep + offset);
+        }
+
+        for (int i = 0; i < bornAnimals.size(); i++) animals.put(bornAnimalIds.get(i), bornAnimals.get(i));
+        for (int i = 0; i < bornPlants.size(); i++) plants.put(bornPlantIds.get(i), bornPlants.get(i));
+        return new int[]{temperature, humidity, waterAmount};
+    }
+
+    /**
+     * Finds the age step shared by most surviving animals since the last checkpoint.
+     * Every action cycle ages an animal by 24 hours, so this is normally a multiple of 24.
+     */
+    private int commonAgeStep(List<Animal> animals) {
+        Map<Integer, Integer> steps = new HashMap<>();
+        int best = 0, bestCount = 0;
+        for (Animal animal : animals) {
+            TrackedAnimal tracked = trackedAnimals.get(animal);
+            if (tracked == null || !tracked.sameIdentity(animal)) continue;
+            int step = animal.getCurrentLifeTime() - tracked.age;
+            int count = steps.merge(step, 1, Integer::sum);
+            if (count > bestCount) {
+                best = step;
+                bestCount = count;
+            }
+            // A strict majority cannot be overtaken any more
+            if (bestCount > animals.size() / 2) break;
+        }
+        return best;
+    }
+
+    private int nameIndex(String name) {
+        Integer index = nameIndexes.get(name);
+        if (index == null) {
+            index = names.size();
+            names.add(name);
+            nameIndexes.put(name, index);
+        }
+        return index;
+    }
+
+    private static int kindOf(Animal animal) {
+        if (animal instanceof Carnivore) return CARNIVORE;
+        if (animal instanceof Omnivore) return OMNIVORE;
+        return HERBIVORE;
+    }
+
+    private static Animal createAnimal(int kind, String name, int energy, int level, int lifeTime, int age, boolean eaten) {
+        Animal animal = switch (kind) {
+            case CARNIVORE -> new Carnivore(name, energy, level, lifeTime, age);
+            case OMNIVORE -> new Omnivore(name, energy, level, lifeTime, age);
+            default -> new Herbivore(name, energy, level, lifeTime, age);
+        };
+        animal.setEaten(eaten);
+        return animal;
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeZigZag(OutputStream out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) throw new EOFException();
+        return b;
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = readByte(in);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+    }
+
+    private static int readZigZag(InputStream in) throws IOException {
+        int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Last checkpointed state of an animal.
+     */
+    private final class TrackedAnimal {
+        final int id;
+        final int kind;
+        final int nameIndex;
+        final int foodChainLevel;
+        final int lifeTime;
+        int energy;
+        int age;
+        boolean eaten;
+        int quantity;
+        int seenEpoch;
+        int position;
+
+        TrackedAnimal(int id, Animal animal) {
+            this.id = id;
+            this.kind = kindOf(animal);
+            this.nameIndex = nameIndex(animal.getName());
+            this.foodChainLevel = animal.getFoodChainLevel();
+            this.lifeTime = animal.getLifeTime();
+        }
+
+        boolean sameIdentity(Animal animal) {
+            return kind == kindOf(animal) && foodChainLevel == animal.getFoodChainLevel()
+                    && lifeTime == animal.getLifeTime() && names.get(nameIndex).equals(animal.getName());
+        }
+
+        void update(Animal animal) {
+            energy = animal.getEnergy();
+            age = animal.getCurrentLifeTime();
+            eaten = animal.isEaten();
+            quantity = animal.getQuantity();
+        }
+    }
+
+    /**
+     * Last checkpointed state of a plant.
+     */
+    private final class TrackedPlant {
+        final int id;
+        final int nameIndex;
+        final int waterNeeds;
+        final int optimalTemperature;
+        int growthLevel;
+        boolean eaten;
+        int quantity;
+        int seenEpoch;
+        int position;
+
+        TrackedPlant(int id, Plant plant) {
+            this.id = id;
+            this.nameIndex = nameIndex(plant.getName());
+            this.waterNeeds = plant.getWaterNeeds();
+            this.optimalTemperature = plant.getOptimalTemperature();
+        }
+
+        boolean sameIdentity(Plant plant) {
+            return waterNeeds == plant.getWaterNeeds() && optimalTemperature == plant.getOptimalTemperature()
+                    && names.get(nameIndex).equals(plant.getName());
+        }
+
+        void update(Plant plant) {
+            growthLevel = plant.getGrowthLevel();
+            eaten = plant.isEaten();
+            quantity = plant.getQuantity();
+        }
+    }
+}
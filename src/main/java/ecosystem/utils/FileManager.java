@@ -21,6 +21,29 @@ public class FileManager {
      */
     public static void saveEcosystem(Ecosystem ecosystem, String filePath) {
 
+        // Check if ecosystem exists
+        if(ecosystem == null){
+            System.out.println("The ecosystem does not exist.");
+            return;
+        }
+        try (Writer writer = new FileWriter(filePath)) {
+            saveEcosystem(ecosystem, writer);
+            System.out.println("Ecosystem saved successfully.");
+        } catch (IOException e) {
+            System.out.println("Error while saving data.");
+        }
+    }
+
+    /**
+     * Writes the state of the ecosystem in the format of {@link #saveEcosystem(Ecosystem, String)}.
+     * The writer is flushed but not closed.
+     *
+     * @param ecosystem The ecosystem to be saved.
+     * @param out       The destination of the text.
+     * @throws IOException if the text cannot be written.
+     */
+    public static void saveEcosystem(Ecosystem ecosystem, Writer out) throws IOException {
+
         // Maps to translate food chain levels
         Map<Integer, String> foodChainLevels = Map.of(
                 1, "Primary",
@@ -28,12 +51,8 @@ public class FileManager {
                 3, "Tertiary"
         );
 
-        // Check if ecosystem exists
-        if(ecosystem == null){
-            System.out.println("The ecosystem does not exist.");
-            return;
-        }
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
+        BufferedWriter writer = new BufferedWriter(out);
+        try {
             // Saving general ecosystem parameters
             writer.write("Temperature: " + ecosystem.getTemperature());
             writer.newLine();
@@ -48,12 +67,14 @@ public class FileManager {
             int number = 0;
             if(ecosystem.getAnimals() != null){
                 for (Animal animal : ecosystem.getAnimals()) {
+                    // Eaten animals and plants wait for their removal and no longer take part in the simulation
+                    if (animal.isEaten()) continue;
                     number++;
                     String animalClass = animal.getClass().getSimpleName();
                     writer.write(number + ". Name: " + animal.getName() + ", Species: " + animalClass +
                             ", Food Chain Level: " + foodChainLevels.get(animal.getFoodChainLevel()) +
                             ", Energy: " + animal.getEnergy() + ", Average Lifespan: " + animal.getLifeTime() +
-                            " hours, Age: " + animal.getCurrentLifeTime() + " hours, Count: 1");
+                            " hours, Age: " + animal.getCurrentLifeTime() + " hours, Count: " + animal.getQuantity());
                     writer.newLine();
                 }
             }else System.out.println("No animals in the ecosystem.");
@@ -65,19 +86,18 @@ public class FileManager {
             number = 0;
             if (ecosystem.getPlants() != null){
                 for (Plant plant : ecosystem.getPlants()) {
+                    if (plant.isEaten()) continue;
                     number++;
                     writer.write(number + ". Name: " + plant.getName() +
                             ", Growth Level: " + plant.getGrowthLevel() +
                             ", Water Needs: " + plant.getWaterNeeds() +
                             " per day, Optimal Temperature: " + plant.getOptimalTemperature() +
-                            " degrees, Count: 1");
+                            " degrees, Count: " + plant.getQuantity());
                     writer.newLine();
                 }
             }else System.out.println("No plants in the ecosystem.");
-
-            System.out.println("Ecosystem saved successfully.");
-        } catch (IOException e) {
-            System.out.println("Error while saving data.");
+        } finally {
+            writer.flush();
         }
     }
 
@@ -89,7 +109,23 @@ public class FileManager {
      * @return An Ecosystem object if loaded successfully; otherwise, null.
      */
     public static Ecosystem loadEcosystem(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        try (Reader reader = new FileReader(filePath)) {
+            return loadEcosystem(reader);
+        } catch (IOException e) {
+            System.out.println("Error: File format is incorrect.");
+            return null;
+        }
+    }
+
+    /**
+     * Reads an ecosystem in the format of {@link #loadEcosystem(String)}. The reader is not closed.
+     *
+     * @param in The source of the text.
+     * @return An Ecosystem object if loaded successfully; otherwise, null.
+     */
+    public static Ecosystem loadEcosystem(Reader in) {
+        try {
+            BufferedReader reader = new BufferedReader(in);
             List<Animal> animals = new ArrayList<>();
             List<Plant> plants = new ArrayList<>();
             int temperature, humidity, waterAmount;
@@ -98,7 +134,7 @@ public class FileManager {
             int plantOrAnimalNumber;
 
             // Read and validate temperature
-            line = reader.readLine();
+            line = readLine(reader);
             temperature = extractTemperature(line);
             if(temperature < -30 || temperature > 38){
                 System.out.println("Error in temperature format");
@@ -106,7 +142,7 @@ public class FileManager {
             }
 
             // Read and validate humidity
-            line = reader.readLine();
+            line = readLine(reader);
             humidity = extractHumidity(line);
             if(humidity < 0 || humidity > 100){
                 System.out.println("Error in humidity format");
@@ -114,7 +150,7 @@ public class FileManager {
             }
 
             // Read and validate water amount
-            line = reader.readLine();
+            line = readLine(reader);
             waterAmount = extractWaterAmount(line);
             if(waterAmount < 0 || waterAmount > 1000000){
                 System.out.println("Error in water amount format");
@@ -122,7 +158,7 @@ public class FileManager {
             }
 
             // Proceed to reading animals and plants section
-            line = reader.readLine();
+            line = readLine(reader);
             switch (line.toLowerCase()){
                 case "animals:": // Parse animals first, followed by plants
                     plantOrAnimalNumber = 0;
@@ -137,7 +173,7 @@ public class FileManager {
                     }
 
                     // Proceed to reading animals and plants section
-                    if(line == null && errorsCount == 0) return new Ecosystem(temperature, humidity, waterAmount, animals, plants);
+                    if(line == null && errorsCount == 0) return createEcosystem(temperature, humidity, waterAmount, animals, plants);
                     plantOrAnimalNumber = 0;
                     while ((line = reader.readLine()) != null){
                         plantOrAnimalNumber++;
@@ -149,7 +185,7 @@ public class FileManager {
                         }
                     }
                     if(errorsCount == 0){
-                        return new Ecosystem(temperature, humidity, waterAmount, animals, plants);
+                        return createEcosystem(temperature, humidity, waterAmount, animals, plants);
                     }else{
                         System.out.println("Please correct the errors above and reload the file.");
                         return null;
@@ -169,7 +205,7 @@ public class FileManager {
                     }
 
                     // Parse animals if plants section was successful
-                    if(line == null && errorsCount == 0) return new Ecosystem(temperature, humidity, waterAmount, animals, plants);
+                    if(line == null && errorsCount == 0) return createEcosystem(temperature, humidity, waterAmount, animals, plants);
                     while ((line = reader.readLine()) != null){
                         plantOrAnimalNumber++;
                         List<Animal> animal = extractAnimal(line.toLowerCase(), plantOrAnimalNumber);
@@ -180,7 +216,7 @@ public class FileManager {
                         }
                     }
                     if(errorsCount == 0){
-                        return new Ecosystem(temperature, humidity, waterAmount, animals, plants);
+                        return createEcosystem(temperature, humidity, waterAmount, animals, plants);
                     }else{
                         System.out.println("Please correct the errors above and reload the file.");
                         return null;
@@ -194,6 +230,25 @@ public class FileManager {
         }
     }
 
+    /**
+     * Creates a loaded ecosystem. Cohorts of more than one individual come from a file saved in cohort mode,
+     * so the ecosystem is put back into cohort mode.
+     */
+    private static Ecosystem createEcosystem(int temperature, int humidity, int waterAmount, List<Animal> animals, List<Plant> plants) {
+        Ecosystem ecosystem = new Ecosystem(temperature, humidity, waterAmount, animals, plants);
+        if (animals.stream().anyMatch(animal -> animal.getQuantity() > 1)
+                || plants.stream().anyMatch(plant -> plant.getQuantity() > 1)) {
+            ecosystem.setCohortMode(true);
+        }
+        return ecosystem;
+    }
+
+    private static String readLine(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) throw new EOFException("The ecosystem ends before the list of animals or plants.");
+        return line;
+    }
+
     /**
      * Extracts the temperature value from a given line of text based on a predefined pattern.
      *
@@ -232,7 +287,8 @@ public class FileManager {
 
     /**
      * Extracts and validates animal parameters from a line of text.
-     * If parameters are valid, it creates a list of animal instances based on the specified quantity.
+     * If parameters are valid, it creates a list of animal instances based on the specified quantity,
+     * or a single cohort of the size given by the count of a saved ecosystem.
      *
      * @param line The input line containing animal data.
      * @param n The animal number for error reporting.
@@ -257,6 +313,7 @@ public class FileManager {
         String lifespanPattern = "average\\s*lifespan:\\s*(\\d+)\\s*(hour|hours)\\s*";
         String agePattern = "age:\\s*(\\d+)\\s*(hour|hours)\\s*";
         String quantityPattern = "quantity:\\s*([^,]+)";
+        String countPattern = "count:\\s*([^,]+)";
 
         // Extract individual data fields from the line
         String name = extractData(line, namePattern);
@@ -266,6 +323,7 @@ public class FileManager {
         int lifetime = extractIntData(line, lifespanPattern);
         int age = extractIntData(line, agePattern);
         int quantity = extractIntData(line, quantityPattern);
+        int count = extractIntData(line, countPattern);
 
         if(name == null){
             System.out.println("Invalid name for animal number: " + n);
@@ -291,7 +349,7 @@ public class FileManager {
             System.out.println("Invalid age for animal number: " + n);
             return null;
         }
-        if(quantity < 0){
+        if(quantity < 0 && count < 0){
             System.out.println("Invalid quantity for animal number: " + n);
             return null;
         }
@@ -299,20 +357,22 @@ public class FileManager {
         // Convert food chain level to integer
         int foodChainLevel = foodChainLevels.get(level);
 
-        // Create the specified number of Animal instances
-        for(int i = 0; i < quantity; i++){
+        // Create the specified number of Animal instances, or one cohort for the count of a saved ecosystem
+        for(int i = 0; i < (quantity >= 0 ? quantity : Math.min(count, 1)); i++){
             switch(species.toLowerCase()){
                 case "herbivore" -> animals.add(new Herbivore(name, energy, foodChainLevel, lifetime, age));
                 case "carnivore" -> animals.add(new Carnivore(name, energy, foodChainLevel, lifetime, age));
                 case "omnivore" -> animals.add(new Omnivore(name, energy, foodChainLevel, lifetime, age));
             }
         }
+        if(quantity < 0 && count > 1) animals.get(0).setQuantity(count);
         return animals;
     }
 
     /**
      * Extracts and validates plant parameters from a line of text.
-     * If parameters are valid, it creates a list of plant instances based on the specified quantity.
+     * If parameters are valid, it creates a list of plant instances based on the specified quantity,
+     * or a single cohort of the size given by the count of a saved ecosystem.
      *
      * @param line The input line containing plant data.
      * @param n The plant number for error reporting.
@@ -327,6 +387,7 @@ public class FileManager {
         String waterNeedsPattern = "water\\s*needs:\\s*(\\d+)\\s*per\\s*day";
         String temperaturePattern = "optimal\\s*temperature:\\s*([^,]+)\\s*degrees";
         String quantityPattern = "quantity:\\s*([^,]+)";
+        String countPattern = "count:\\s*([^,]+)";
 
         // Extract individual data fields from the line
         String name = extractData(line, namePattern);
@@ -334,12 +395,13 @@ public class FileManager {
         int waterNeeds = extractIntData(line, waterNeedsPattern);
         int optimalTemperature = extractIntData(line, temperaturePattern);
         int quantity = extractIntData(line, quantityPattern);
+        int count = extractIntData(line, countPattern);
 
         if(name == null){
             System.out.println("Invalid name for plant number: " + n);
             return null;
         }
-        if(0 > growthLevel || growthLevel > 18){
+        if(growthLevel < 0){
             System.out.println("Invalid growth level for plant number: " + n);
             return null;
         }
@@ -347,19 +409,20 @@ public class FileManager {
             System.out.println("Invalid water needs for plant number: " + n);
             return null;
         }
-        if(-30 > optimalTemperature || optimalTemperature > 38){
+        if(Plant.MIN_OPTIMAL_TEMPERATURE > optimalTemperature || optimalTemperature > Plant.MAX_OPTIMAL_TEMPERATURE){
             System.out.println("Invalid temperature for plant number: " + n);
             return null;
         }
-        if(quantity < 0){
+        if(quantity < 0 && count < 0){
             System.out.println("Invalid quantity for plant number: " + n);
             return null;
         }
 
-        // Create the specified number of Plant instances
-        for(int i = 0; i < quantity; i++){
+        // Create the specified number of Plant instances, or one cohort for the count of a saved ecosystem
+        for(int i = 0; i < (quantity >= 0 ? quantity : Math.min(count, 1)); i++){
             plants.add(new Plant(name, growthLevel, waterNeeds, optimalTemperature));
         }
+        if(quantity < 0 && count > 1) plants.get(0).setQuantity(count);
         return plants;
     }
 
@@ -0,0 +1,88 @@
+package ecosystem;
+
+import ecosystem.entities.Animal;
+import ecosystem.entities.Carnivore;
+import ecosystem.entities.Herbivore;
+import ecosystem.entities.Omnivore;
+import ecosystem.entities.Plant;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FastForwardTest {
+    // The weather of the simulation is drawn at random, so these tests replay a fixed one
+    private static final int[] TEMPERATURES = {12, 15, 9, 20, 3, 14, 25};
+    private static final int[] WATER_CHANGES = {20000, -35000, 0, 5000, -10000, 40000, -20000};
+
+    /**
+     * Creates an ecosystem in which nothing happens for a while: the animals are satiated and young, and the
+     * plants are far from coming to seed.
+     */
+    private static Ecosystem quiescent(int waterAmount) {
+        List<Animal> animals = new ArrayList<>();
+        for (int i = 0; i < 5; i++) animals.add(new Herbivore("deer", 150 + 5 * i, 1, 4000, 24 * i));
+        animals.add(new Omnivore("bear", 170, 2, 6000, 0));
+        animals.add(new Carnivore("wolf", 180, 3, 5000, 100));
+        animals.add(new Carnivore("wolf", 160, 3, 5000, 0));
+        List<Plant> plants = new ArrayList<>();
+        for (int i = 0; i < 6; i++) plants.add(new Plant("fern", i % 3, 3, 10 + 4 * i));
+        plants.add(new Plant("cactus", 1, 1, 35));
+        return new Ecosystem(12, 40, waterAmount, animals, plants);
+    }
+
+    private static Runnable weather(Ecosystem ecosystem) {
+        int[] day = {0};
+        return () -> {
+            ecosystem.setTemperature(TEMPERATURES[day[0] % TEMPERATURES.length]);
+            ecosystem.setWaterAmount(Math.max(0, ecosystem.getWaterAmount() + WATER_CHANGES[day[0] % WATER_CHANGES.length]));
+            day[0]++;
+        };
+    }
+
+    /**
+     * Simulates days one by one like {@link Simulation#simulateDay}, with the given weather.
+     */
+    private static void step(Ecosystem ecosystem, Runnable weather, int days) {
+        Simulation simulation = new Simulation();
+        for (int day = 0; day < days; day++) {
+            ecosystem.growAllPlants(ecosystem);
+            simulation.removeMinusGrowthPlants(ecosystem);
+            ecosystem.actAllAnimals(ecosystem);
+            simulation.removeDeadAnimals(ecosystem);
+            simulation.removeOldAnimals(ecosystem);
+            weather.run();
+        }
+    }
+
+    private static void assertSameAsStepping(int waterAmount) {
+        Ecosystem fast = quiescent(waterAmount);
+        Runnable fastWeather = weather(fast);
+        int days = fast.fastForward(100, fastWeather);
+        assertTrue(days > 1, "advanced " + days + " days");
+
+        Ecosystem stepped = quiescent(waterAmount);
+        step(stepped, weather(stepped), days);
+        assertEquals(TestEcosystems.state(stepped), TestEcosystems.state(fast));
+        assertEquals(stepped.getStatistics().getAnimalCount(), fast.getStatistics().getAnimalCount());
+        assertEquals(stepped.getStatistics().getPlantCount(), fast.getStatistics().getPlantCount());
+
+        // The stretch ends where the next day is no longer quiescent
+        assertEquals(0, fast.fastForward(100, fastWeather));
+    }
+
+    @Test
+    void advancesLikeSteppingUntilAPlantComesToSeed() {
+        assertSameAsStepping(500000);
+    }
+
+    @Test
+    void advancesLikeSteppingUntilTheWaterRunsShort() {
+        // The demand is 61 a day: the water lasts for the first day, the rain after it for the second, and the
+        // drought after the second day ends the stretch
+        assertSameAsStepping(100);
+    }
+}
@@ -0,0 +1,55 @@
+package ecosystem;
+
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+import ecosystem.utils.FileManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Ecosystems and state descriptions shared by the tests.
+ */
+public final class TestEcosystems {
+    private TestEcosystems() {
+    }
+
+    /**
+     * Loads the example ecosystem of the project, Primer.txt.
+     */
+    public static Ecosystem primer() throws IOException {
+        try (Reader reader = Files.newBufferedReader(Paths.get("Primer.txt"))) {
+            return FileManager.loadEcosystem(reader);
+        }
+    }
+
+    /**
+     * Describes every field of the climate, the animals and the plants of an ecosystem in order, one entity per
+     * line, so two ecosystems are in the same state exactly when their descriptions are equal.
+     */
+    public static String state(Ecosystem ecosystem) {
+        StringBuilder text = new StringBuilder();
+        text.append("climate ").append(ecosystem.getTemperature()).append(' ').append(ecosystem.getHumidity())
+                .append(' ').append(ecosystem.getWaterAmount()).append('\n');
+        for (Animal animal : ecosystem.getAnimals()) {
+            text.append(animal.getClass().getSimpleName()).append(' ').append(animal.getName())
+                    .append(" level ").append(animal.getFoodChainLevel())
+                    .append(" life ").append(animal.getLifeTime())
+                    .append(" energy ").append(animal.getEnergy())
+                    .append(" age ").append(animal.getCurrentLifeTime())
+                    .append(" eaten ").append(animal.isEaten())
+                    .append(" quantity ").append(animal.getQuantity()).append('\n');
+        }
+        for (Plant plant : ecosystem.getPlants()) {
+            text.append("Plant ").append(plant.getName())
+                    .append(" growth ").append(plant.getGrowthLevel())
+                    .append(" water ").append(plant.getWaterNeeds())
+                    .append(" optimal ").append(plant.getOptimalTemperature())
+                    .append(" eaten ").append(plant.isEaten())
+                    .append(" quantity ").append(plant.getQuantity()).append('\n');
+        }
+        return text.toString();
+    }
+}
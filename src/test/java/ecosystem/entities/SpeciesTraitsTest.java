@@ -0,0 +1,53 @@
+package ecosystem.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpeciesTraitsTest {
+    // The species of these tests do not occur in Primer.txt, so the other tests keep the built-in traits
+
+    @Test
+    void givesASpeciesTraitsOfItsOwn() throws IOException {
+        SpeciesTraits.load(new StringReader(String.join("\n",
+                "# A cautious hunter",
+                "carnivore.lynx.huntSuccess = 0.5",
+                "carnivore.lynx.waterNeeds = 1, 2, 3")));
+        int kindRow = SpeciesTraits.index(AnimalKind.CARNIVORE, 2);
+        Animal lynx = new Carnivore("lynx", 100, 2, 2000, 0);
+
+        assertNotEquals(kindRow, lynx.getTraits());
+        assertEquals(0.5, SpeciesTraits.huntSuccess(lynx.getTraits()));
+        assertEquals(2, lynx.getWaterNeeds());
+        assertEquals(SpeciesTraits.thirstPenalty(kindRow), SpeciesTraits.thirstPenalty(lynx.getTraits()));
+        assertEquals(kindRow, new Carnivore("wolf", 100, 2, 2000, 0).getTraits());
+    }
+
+    @Test
+    void rejectsInvalidLinesWithTheirNumberAndChangesNothing() {
+        int row = SpeciesTraits.index(AnimalKind.HERBIVORE, 1);
+        int waterNeeds = SpeciesTraits.waterNeeds(row);
+        int rows = SpeciesTraits.size();
+
+        assertInvalid("herbivore.hare.waterNeeds = 1\nherbivore.waterNeeds = 4.5", "line 2");
+        assertInvalid("herbivore.reproduceChance = 1.5", "line 1");
+        assertInvalid("\nomnivore.thirstPenalty = 1, -2, 3", "line 2");
+        assertInvalid("reptile.waterNeeds = 1", "line 1");
+        assertInvalid("herbivore.hare.speed = 1", "line 1");
+        assertInvalid("herbivore.waterNeeds = 1, 2", "line 1");
+
+        assertEquals(waterNeeds, SpeciesTraits.waterNeeds(row));
+        assertEquals(rows, SpeciesTraits.size());
+    }
+
+    private static void assertInvalid(String traits, String line) {
+        IOException e = assertThrows(IOException.class, () -> SpeciesTraits.load(new StringReader(traits)));
+        assertTrue(e.getMessage().contains(line), e.getMessage());
+    }
+}
@@ -0,0 +1,61 @@
+package ecosystem.metrics;
+
+import ecosystem.Ecosystem;
+import ecosystem.entities.Animal;
+import ecosystem.entities.Herbivore;
+import ecosystem.entities.Plant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PopulationRecorderTest {
+    @TempDir
+    Path directory;
+
+    private static Ecosystem ecosystem() {
+        List<Animal> animals = new ArrayList<>();
+        animals.add(new Herbivore("red, \"big\" deer", 80, 2, 175200, 2400));
+        animals.add(new Herbivore("red, \"big\" deer", 60, 2, 175200, 4800));
+        List<Plant> plants = new ArrayList<>();
+        plants.add(new Plant("fern", 4, 1, 15));
+        plants.add(new Plant("fern", 7, 1, 15));
+        return new Ecosystem(20, 30, 1000, animals, plants);
+    }
+
+    @Test
+    void writesEveryDayWithoutClosing() throws IOException {
+        PopulationRecorder recorder = new PopulationRecorder(directory.resolve("run").toString());
+        Ecosystem ecosystem = ecosystem();
+        recorder.record(ecosystem);
+        recorder.record(ecosystem);
+
+        List<String> species = Files.readAllLines(recorder.getSpeciesPath());
+        assertEquals(List.of(
+                "day,kind,species,count,mean_energy,mean_age,mean_growth",
+                "0,Herbivore,\"red, \"\"big\"\" deer\",2,70.00,3600.00,",
+                "0,Plant,fern,2,,,5.50",
+                "1,Herbivore,\"red, \"\"big\"\" deer\",2,70.00,3600.00,",
+                "1,Plant,fern,2,,,5.50"), species);
+        assertEquals(List.of("day,temperature,humidity,water", "0,20,30,1000", "1,20,30,1000"),
+                Files.readAllLines(recorder.getClimatePath()));
+        recorder.close();
+    }
+
+    @Test
+    void keepsRecordingAfterClose() throws IOException {
+        PopulationRecorder recorder = new PopulationRecorder(directory.resolve("run").toString());
+        Ecosystem ecosystem = ecosystem();
+        recorder.record(ecosystem);
+        recorder.close();
+        recorder.record(ecosystem);
+        recorder.close();
+        assertEquals(3, Files.readAllLines(recorder.getClimatePath()).size());
+    }
+}
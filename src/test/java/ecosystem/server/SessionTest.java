@@ -0,0 +1,119 @@
+package ecosystem.server;
+
+import ecosystem.Ecosystem;
+import ecosystem.TestEcosystems;
+import ecosystem.entities.Animal;
+import ecosystem.entities.Herbivore;
+import ecosystem.entities.Plant;
+import ecosystem.store.EntityStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Spills a session and reads it back, and checks that the file is gone afterwards.
+     */
+    private Ecosystem roundTrip(Session session) throws IOException {
+        Path file = directory.resolve(session.getId() + ".bin.gz");
+        session.spill(file);
+        assertNull(session.getEcosystem());
+        assertEquals(0, session.getSize());
+        assertTrue(session.rehydrate());
+        assertFalse(Files.exists(file));
+        return session.getEcosystem();
+    }
+
+    private static String positions(Ecosystem ecosystem) {
+        StringBuilder text = new StringBuilder();
+        for (Animal animal : ecosystem.getAnimals()) text.append(animal.getX()).append(',').append(animal.getY()).append(' ');
+        for (Plant plant : ecosystem.getPlants()) text.append(plant.getX()).append(',').append(plant.getY()).append(' ');
+        return text.toString();
+    }
+
+    @Test
+    void keepsTheCohortsOfACohortEcosystem() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        ecosystem.setCohortMode(true);
+        Session session = new Session("cohorts", ecosystem);
+        session.step(3);
+        String state = TestEcosystems.state(ecosystem);
+        long size = session.estimateSize();
+
+        Ecosystem rehydrated = roundTrip(session);
+        assertTrue(rehydrated.isCohortMode());
+        assertEquals(state, TestEcosystems.state(rehydrated));
+        assertEquals(size, session.getSize());
+    }
+
+    @Test
+    void keepsTheGridAndThePositionsOfASpatialEcosystem() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        ecosystem.enableSpatialMode(6, 4);
+        ecosystem.enableParallelTicks(2, 2);
+        Session session = new Session("spatial", ecosystem);
+        session.step(2);
+        String state = TestEcosystems.state(ecosystem);
+        String positions = positions(ecosystem);
+        int[] water = ecosystem.getGrid().getCellWater();
+        int waterCursor = ecosystem.getGrid().getWaterCursor();
+
+        Ecosystem rehydrated = roundTrip(session);
+        try {
+            assertTrue(rehydrated.isSpatialMode());
+            assertEquals(2, rehydrated.getParallelism());
+            assertEquals(2, rehydrated.getParallelTileSize());
+            assertEquals(state, TestEcosystems.state(rehydrated));
+            assertEquals(positions, positions(rehydrated));
+            assertArrayEquals(water, rehydrated.getGrid().getCellWater());
+            assertEquals(waterCursor, rehydrated.getGrid().getWaterCursor());
+        } finally {
+            rehydrated.disableParallelTicks();
+        }
+    }
+
+    @Test
+    void keepsTheRecordsOfAnOffHeapEcosystem() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        ecosystem.enableOffHeapMode(EntityStore.allocateDirect(16, 16));
+        Session session = new Session("off-heap", ecosystem);
+        session.step(2);
+        String state = TestEcosystems.state(ecosystem);
+        long size = session.estimateSize();
+
+        Ecosystem rehydrated = roundTrip(session);
+        try {
+            assertTrue(rehydrated.isOffHeapMode());
+            assertEquals(state, TestEcosystems.state(rehydrated));
+            assertEquals(size, session.getSize());
+        } finally {
+            rehydrated.getEntityStore().close();
+        }
+    }
+
+    @Test
+    void keepsNamesWithCommas() throws IOException {
+        List<Animal> animals = new ArrayList<>(Arrays.asList(new Herbivore("deer, white-tailed", 150, 1, 4000, 24)));
+        List<Plant> plants = new ArrayList<>(Arrays.asList(new Plant("pear, prickly", 2, 3, 30)));
+        Ecosystem ecosystem = new Ecosystem(12, 40, 5000, animals, plants);
+        Session session = new Session("names", ecosystem);
+        String state = TestEcosystems.state(ecosystem);
+
+        assertEquals(state, TestEcosystems.state(roundTrip(session)));
+    }
+}
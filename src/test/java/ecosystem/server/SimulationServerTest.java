@@ -0,0 +1,135 @@
+package ecosystem.server;
+
+import ecosystem.Ecosystem;
+import ecosystem.utils.FileManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimulationServerTest {
+    @TempDir
+    Path directory;
+    private SimulationServer server;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @BeforeEach
+    void start() throws IOException {
+        Files.copy(Paths.get("Primer.txt"), directory.resolve("Primer.txt"));
+        server = new SimulationServer(0, directory, 64L * 1024 * 1024, Files.createDirectory(directory.resolve("sessions")));
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .timeout(Duration.ofSeconds(30))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private String createSession() throws IOException, InterruptedException {
+        HttpResponse<String> created = send("POST", "/sessions", Files.readString(Paths.get("Primer.txt")));
+        assertEquals(201, created.statusCode());
+        String id = created.body().trim();
+        assertEquals("/sessions/" + id, created.headers().firstValue("Location").orElse(null));
+        return id;
+    }
+
+    @Test
+    void createsStepsSavesAndDeletesASession() throws Exception {
+        String id = createSession();
+        assertEquals(id + "\n", send("GET", "/sessions", null).body());
+
+        HttpResponse<String> stepped = send("POST", "/sessions/" + id + "/step?days=3", null);
+        assertEquals(200, stepped.statusCode());
+        assertTrue(stepped.body().contains("Day: 3\n"), stepped.body());
+
+        HttpResponse<String> snapshot = send("GET", "/sessions/" + id + "/snapshot", null);
+        assertEquals(200, snapshot.statusCode());
+        Ecosystem saved = FileManager.loadEcosystem(new StringReader(snapshot.body()));
+        assertNotNull(saved);
+
+        assertEquals(200, send("GET", "/sessions/" + id + "/prediction", null).statusCode());
+        assertEquals(204, send("DELETE", "/sessions/" + id, null).statusCode());
+        assertEquals(404, send("GET", "/sessions/" + id, null).statusCode());
+        assertEquals(0, server.getSessionCount());
+    }
+
+    @Test
+    void createsASessionFromAFileOfTheDirectoryOnly() throws Exception {
+        assertEquals(201, send("POST", "/sessions?file=Primer.txt", null).statusCode());
+        assertEquals(404, send("POST", "/sessions?file=../Primer.txt", null).statusCode());
+        assertEquals(404, send("POST", "/sessions?file=Missing.txt", null).statusCode());
+    }
+
+    @Test
+    void answersInvalidRequestsWithTheirStatus() throws Exception {
+        assertEquals(400, send("POST", "/sessions", "Temperature: warm\n").statusCode());
+        assertEquals(404, send("GET", "/sessions/unknown", null).statusCode());
+        assertEquals(405, send("PUT", "/sessions", "").statusCode());
+        String id = createSession();
+        assertEquals(400, send("POST", "/sessions/" + id + "/step?days=0", null).statusCode());
+        assertEquals(400, send("POST", "/sessions/" + id + "/step?days=many", null).statusCode());
+        assertEquals(404, send("GET", "/sessions/" + id + "/unknown", null).statusCode());
+        // Answered by the HTTP server itself, which closes the connection afterwards
+        assertEquals(404, send("GET", "/other", null).statusCode());
+    }
+
+    @Test
+    void streamsTheDaysOfASessionUntilItEnds() throws Exception {
+        String id = createSession();
+        assertEquals(200, send("POST", "/sessions/" + id + "/step?days=3", null).statusCode());
+
+        // The days simulated so far are still in the ring, so a client resuming before the first one receives them
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/sessions/" + id + "/feed"))
+                .header("Last-Event-ID", "-1").build();
+        HttpResponse<InputStream> feed = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, feed.statusCode());
+        assertEquals("text/event-stream; charset=utf-8", feed.headers().firstValue("Content-Type").orElse(null));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(feed.body(), StandardCharsets.UTF_8))) {
+            List<String> ids = new ArrayList<>();
+            int days = 0;
+            String line;
+            while (days < 3 && (line = reader.readLine()) != null) {
+                if (line.startsWith("id: ")) ids.add(line.substring(4));
+                if (line.startsWith("data: ")) assertTrue(line.startsWith("data: {\"day\":" + ++days + ","), line);
+            }
+            assertEquals(List.of("0", "1", "2"), ids);
+
+            // The feed ends with the session
+            assertEquals(204, send("DELETE", "/sessions/" + id, null).statusCode());
+            while ((line = reader.readLine()) != null) {
+                assertTrue(line.isEmpty() || line.startsWith(":"), line);
+            }
+            assertNull(reader.readLine());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ecosystem.shard;
+
+import ecosystem.Ecosystem;
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+import ecosystem.spatial.SpatialGrid;
+import ecosystem.utils.FileManager;
+import org.apache.logging.log4j.LogManager;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardSimulationTest {
+    private static final Path SCENARIO = Paths.get("Primer.txt");
+
+    @Test
+    void everyEntityOfTheScenarioBelongsToExactlyOneBand() throws IOException {
+        int width = 12, height = 9, bands = 3;
+        List<Animal> animals = new ArrayList<>();
+        List<Plant> plants = new ArrayList<>();
+        for (int band = 0; band < bands; band++) {
+            SpatialGrid grid = SpatialGrid.region(width, height, band * height / bands, (band + 1) * height / bands, 0);
+            List<Animal> bandAnimals = new ArrayList<>();
+            List<Plant> bandPlants = new ArrayList<>();
+            try (ScenarioReader scenario = new ScenarioReader(SCENARIO)) {
+                ShardWorker.readBand(scenario, grid, height, 42, bandAnimals, bandPlants);
+            }
+            for (Animal animal : bandAnimals) {
+                assertTrue(animal.getY() >= grid.getOwnTop() && animal.getY() < grid.getOwnBottom());
+            }
+            for (Plant plant : bandPlants) {
+                assertTrue(plant.getY() >= grid.getOwnTop() && plant.getY() < grid.getOwnBottom());
+            }
+            animals.addAll(bandAnimals);
+            plants.addAll(bandPlants);
+        }
+
+        Ecosystem whole = FileManager.loadEcosystem(SCENARIO.toString());
+        assertEquals(whole.getAnimals().size(), animals.size());
+        assertEquals(whole.getPlants().size(), plants.size());
+    }
+
+    @Test
+    void runsTwoWorkerProcessesThroughTheCoordinator() throws Exception {
+        ShardCoordinator coordinator = new ShardCoordinator(12, 8, 42);
+        List<Process> workers = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0)) {
+            for (int i = 0; i < 2; i++) {
+                workers.add(new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp", classPath(), ShardWorker.class.getName(),
+                        "localhost", Integer.toString(server.getLocalPort()), SCENARIO.toString())
+                        .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start());
+            }
+            coordinator.accept(server, 2);
+        }
+        try {
+            coordinator.run(5);
+        } finally {
+            coordinator.close();
+        }
+        for (Process worker : workers) {
+            assertTrue(worker.waitFor(30, TimeUnit.SECONDS));
+            assertEquals(0, worker.exitValue());
+        }
+        assertTrue(coordinator.getAnimalCount() > 0);
+        assertTrue(coordinator.getPlantCount() > 0);
+    }
+
+    /**
+     * Returns the class path of the worker processes: the classes of the project, log4j and the test resources,
+     * which switch logging off.
+     */
+    private static String classPath() throws URISyntaxException {
+        Set<String> entries = new LinkedHashSet<>();
+        for (Class<?> type : new Class<?>[]{ShardWorker.class, LogManager.class, ShardSimulationTest.class}) {
+            entries.add(Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+}
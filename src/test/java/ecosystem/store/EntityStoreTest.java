@@ -0,0 +1,84 @@
+package ecosystem.store;
+
+import ecosystem.Ecosystem;
+import ecosystem.Simulation;
+import ecosystem.TestEcosystems;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntityStoreTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Moves the primer ecosystem into a mapped store in the temporary directory and saves its first snapshot.
+     */
+    private Ecosystem mappedPrimer() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        ecosystem.enableOffHeapMode(EntityStore.create(directory, 16, 16));
+        ecosystem.snapshot();
+        return ecosystem;
+    }
+
+    private String reopen() throws IOException {
+        try (EntityStore store = EntityStore.open(directory)) {
+            return TestEcosystems.state(Ecosystem.restore(store));
+        }
+    }
+
+    @Test
+    void reopensTheSnapshotOfTheLastSimulatedDay() throws IOException {
+        Ecosystem ecosystem = mappedPrimer();
+        Simulation simulation = new Simulation();
+        simulation.setQuiet(true);
+        simulation.simulate(ecosystem, 4 * 24);
+        String state = TestEcosystems.state(ecosystem);
+        // The first snapshot and one after each of the 5 days
+        assertEquals(6, ecosystem.getEntityStore().getGeneration());
+
+        // Changes after the last day are not part of the snapshot
+        ecosystem.getEntityStore().setAnimalEnergy(0, 1);
+        ecosystem.getEntityStore().close();
+        assertEquals(state, reopen());
+    }
+
+    @Test
+    void keepsTheLastSnapshotWhenTheNextOneIsNotCommitted() throws IOException {
+        Ecosystem ecosystem = mappedPrimer();
+        String state = TestEcosystems.state(ecosystem);
+        Path committed = directory.resolve("committed.dat");
+        Files.copy(directory.resolve(EntityStore.SNAPSHOT_FILE_NAME), committed);
+
+        // A crash after the records of the next snapshot are written but before its snapshot file replaces the last
+        EntityStore store = ecosystem.getEntityStore();
+        store.setAnimalEnergy(0, 1);
+        store.setPlantGrowthLevel(0, 1);
+        ecosystem.snapshot();
+        store.close();
+        Files.move(committed, directory.resolve(EntityStore.SNAPSHOT_FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(state, reopen());
+    }
+
+    @Test
+    void rejectsRecordsOfAnUnknownType() throws IOException {
+        Ecosystem ecosystem = mappedPrimer();
+        ecosystem.getEntityStore().close();
+        // The type of the first animal record of the first snapshot, right after the header
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("animals.1.rec").toFile(), "rw")) {
+            file.seek(16);
+            file.writeInt(1000);
+        }
+
+        assertThrows(IOException.class, () -> EntityStore.open(directory));
+    }
+}
@@ -0,0 +1,136 @@
+package ecosystem.utils;
+
+import ecosystem.Ecosystem;
+import ecosystem.Simulation;
+import ecosystem.TestEcosystems;
+import ecosystem.store.EntityStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeltaCheckpointLogTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Simulates the given number of days with a checkpoint after each and returns the last checkpointed state.
+     */
+    private String simulate(Ecosystem ecosystem, DeltaCheckpointLog log, int days) {
+        Simulation simulation = new Simulation();
+        simulation.setQuiet(true);
+        simulation.addListener(log);
+        simulation.simulate(ecosystem, (days - 1) * 24);
+        return TestEcosystems.state(ecosystem);
+    }
+
+    @Test
+    void restoresTheStateOfTheLastCheckpoint() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        DeltaCheckpointLog log = new DeltaCheckpointLog(directory.toString(), 5);
+        String state = simulate(ecosystem, log, 12);
+
+        // New bases are written at the checkpoints of days 1, 6 and 11, so the log holds the record of day 12
+        assertEquals(1, countRecords(log.getDeltaPath()));
+        Ecosystem restored = DeltaCheckpointLog.restore(directory.toString());
+        assertNotNull(restored);
+        assertEquals(state, TestEcosystems.state(restored));
+    }
+
+    @Test
+    void restoresCohorts() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        ecosystem.setCohortMode(true);
+        DeltaCheckpointLog log = new DeltaCheckpointLog(directory.toString(), 100);
+        String state = simulate(ecosystem, log, 6);
+
+        Ecosystem restored = DeltaCheckpointLog.restore(directory.toString());
+        assertNotNull(restored);
+        assertEquals(state, TestEcosystems.state(restored));
+    }
+
+    @Test
+    void skipsTheCheckpointsOfAnOffHeapEcosystem() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        ecosystem.enableOffHeapMode(EntityStore.allocateDirect(1000, 1000));
+        DeltaCheckpointLog log = new DeltaCheckpointLog(directory.toString(), 100);
+        try {
+            // The records are read as new copies every day, which the log could only record as a new population
+            String state = simulate(ecosystem, log, 3);
+            assertFalse(Files.exists(log.getBasePath()));
+            assertThrows(IllegalStateException.class, () -> log.checkpoint(ecosystem));
+
+            // A base holds the whole population and does not depend on tracking
+            log.compact(ecosystem);
+            Ecosystem restored = DeltaCheckpointLog.restore(directory.toString());
+            assertNotNull(restored);
+            assertEquals(state, TestEcosystems.state(restored));
+        } finally {
+            ecosystem.getEntityStore().close();
+        }
+    }
+
+    @Test
+    void restoresAReorderedPopulation() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        DeltaCheckpointLog log = new DeltaCheckpointLog(directory.toString(), 100);
+        simulate(ecosystem, log, 3);
+
+        ecosystem.sortAnimalsByAge(ecosystem.getAnimals());
+        ecosystem.sortPlantsByGrowthLevel(ecosystem.getPlants());
+        log.checkpoint(ecosystem);
+        Ecosystem restored = DeltaCheckpointLog.restore(directory.toString());
+        assertNotNull(restored);
+        assertEquals(TestEcosystems.state(ecosystem), TestEcosystems.state(restored));
+    }
+
+    @Test
+    void ignoresATornRecordAtTheEnd() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        DeltaCheckpointLog log = new DeltaCheckpointLog(directory.toString(), 100);
+        String state = simulate(ecosystem, log, 4);
+
+        // A record whose length promises more bytes than were written
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(log.getDeltaPath(), StandardOpenOption.APPEND))) {
+            out.writeInt(1000);
+            out.write(new byte[10]);
+        }
+        Ecosystem restored = DeltaCheckpointLog.restore(directory.toString());
+        assertNotNull(restored);
+        assertEquals(state, TestEcosystems.state(restored));
+    }
+
+    @Test
+    void reportsANegativeRecordLengthAsDamaged() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        DeltaCheckpointLog log = new DeltaCheckpointLog(directory.toString(), 100);
+        simulate(ecosystem, log, 3);
+
+        try (RandomAccessFile file = new RandomAccessFile(log.getDeltaPath().toFile(), "rw")) {
+            file.writeInt(-7);
+        }
+        assertNull(DeltaCheckpointLog.restore(directory.toString()));
+    }
+
+    private static int countRecords(Path delta) throws IOException {
+        int count = 0;
+        try (RandomAccessFile file = new RandomAccessFile(delta.toFile(), "r")) {
+            while (file.getFilePointer() < file.length()) {
+                file.seek(file.getFilePointer() + Integer.BYTES + file.readInt());
+                count++;
+            }
+        }
+        return count;
+    }
+}
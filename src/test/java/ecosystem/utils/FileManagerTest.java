@@ -0,0 +1,77 @@
+package ecosystem.utils;
+
+import ecosystem.Ecosystem;
+import ecosystem.Simulation;
+import ecosystem.TestEcosystems;
+import ecosystem.entities.Animal;
+import ecosystem.entities.Plant;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileManagerTest {
+    private static Ecosystem saveAndLoad(Ecosystem ecosystem) throws IOException {
+        StringWriter text = new StringWriter();
+        FileManager.saveEcosystem(ecosystem, text);
+        Ecosystem loaded = FileManager.loadEcosystem(new StringReader(text.toString()));
+        assertNotNull(loaded);
+        return loaded;
+    }
+
+    /**
+     * Describes the animals and plants that take part in the simulation, leaving out the eaten ones that wait
+     * for their removal.
+     */
+    private static String liveState(Ecosystem ecosystem) {
+        return TestEcosystems.state(ecosystem).lines().filter(line -> !line.contains(" eaten true"))
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Test
+    void loadsTheQuantityOfAScenarioAsSingleAnimals() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+
+        assertFalse(ecosystem.isCohortMode());
+        assertTrue(ecosystem.getAnimals().stream().allMatch(animal -> animal.getQuantity() == 1));
+        // The first line of Primer.txt has three tigers
+        assertEquals(3, ecosystem.getAnimals().stream().filter(animal -> animal.getName().equals("tiger")).count());
+    }
+
+    @Test
+    void keepsEveryCohortOfACohortSaveAsOneEntry() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        ecosystem.setCohortMode(true);
+        Simulation simulation = new Simulation();
+        simulation.setQuiet(true);
+        simulation.simulate(ecosystem, 4 * 24);
+
+        Ecosystem loaded = saveAndLoad(ecosystem);
+        assertTrue(loaded.isCohortMode());
+        assertEquals(liveState(ecosystem), liveState(loaded));
+        assertEquals(ecosystem.getAnimals().stream().filter(animal -> !animal.isEaten()).count(), loaded.getAnimals().size());
+        assertEquals(ecosystem.getAnimals().stream().filter(animal -> !animal.isEaten()).mapToInt(Animal::getQuantity).sum(),
+                loaded.getStatistics().getAnimalCount());
+        assertEquals(ecosystem.getPlants().stream().filter(plant -> !plant.isEaten()).mapToInt(Plant::getQuantity).sum(),
+                loaded.getStatistics().getPlantCount());
+    }
+
+    @Test
+    void loadsASaveOfSingleEntitiesOutsideCohortMode() throws IOException {
+        Ecosystem ecosystem = TestEcosystems.primer();
+        Simulation simulation = new Simulation();
+        simulation.setQuiet(true);
+        simulation.simulate(ecosystem, 4 * 24);
+
+        Ecosystem loaded = saveAndLoad(ecosystem);
+        assertFalse(loaded.isCohortMode());
+        assertEquals(liveState(ecosystem), liveState(loaded));
+    }
+}
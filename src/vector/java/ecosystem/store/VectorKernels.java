@@ -0,0 +1,229 @@
+package ecosystem.store;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The record kernels with the Java Vector API (JDK 16 to 18, which load vectors from byte buffers). It is
+ * compiled with the Maven profile "vector" and loaded by {@link RecordKernels#vector()}.
+ * <p>
+ * A vector covers consecutive ints of several records. The lanes holding the first int of a record are
+ * selected with a mask that depends on the position of the vector within a record; the vectors are taken
+ * three at a time, after which the position repeats for records of 1, 2, 3, 4 or 6 ints, so the three masks
+ * stay fixed. To work on a field, a second vector is loaded that many ints further on, so that its lanes line
+ * up with the types in the first one. Per-type passes compare the types once per vector with every type and
+ * are only used for a few types, where they beat the plain loop; the records behind the last full block are
+ * left to the scalar kernels, as are records of other sizes.
+ */
+final class VectorKernels implements RecordKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int BLOCK = 3 * LANES;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    // The most types for which the per-type passes compare vectors with every type
+    private static final int MAX_TYPES = 2;
+
+    private static final ScalarKernels SCALAR = ScalarKernels.INSTANCE;
+
+    VectorKernels() {
+        // Fails here instead of on first use if the module cannot be linked
+        IntVector.zero(SPECIES);
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + SPECIES.vectorBitSize() + " bits)";
+    }
+
+    private static boolean fits(int recordInts) {
+        return BLOCK % recordInts == 0;
+    }
+
+    /**
+     * Returns the mask of the lanes that hold the first int of a record, for a vector starting at the given int.
+     */
+    private static VectorMask<Integer> recordLanes(int recordInts, int firstInt) {
+        boolean[] bits = new boolean[LANES];
+        for (int lane = 0; lane < LANES; lane++) bits[lane] = (firstInt + lane) % recordInts == 0;
+        return VectorMask.fromArray(SPECIES, bits, 0);
+    }
+
+    private static IntVector load(ByteBuffer records, int offset) {
+        return IntVector.fromByteBuffer(SPECIES, records, offset, ORDER);
+    }
+
+    private static boolean isUniform(int[] values) {
+        for (int value : values) {
+            if (value != values[0]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the first record whose type is not covered by the blocks ending before the given int.
+     */
+    private static int firstRecordFrom(int ints, int recordInts) {
+        return (ints + recordInts - 1) / recordInts;
+    }
+
+    @Override
+    public void add(ByteBuffer records, int start, int recordInts, int count, int field, int value) {
+        int i = 0;
+        if (fits(recordInts)) {
+            VectorMask<Integer> m0 = recordLanes(recordInts, 0);
+            VectorMask<Integer> m1 = recordLanes(recordInts, LANES);
+            VectorMask<Integer> m2 = recordLanes(recordInts, 2 * LANES);
+            int total = count * recordInts;
+            for (; i + field + BLOCK <= total; i += BLOCK) {
+                int offset = start + (i + field) * 4;
+                add(records, offset, value, m0);
+                add(records, offset + LANES * 4, value, m1);
+                add(records, offset + 2 * LANES * 4, value, m2);
+            }
+        }
+        int first = firstRecordFrom(i, recordInts);
+        SCALAR.add(records, start + first * recordInts * 4, recordInts, count - first, field, value);
+    }
+
+    private static void add(ByteBuffer records, int offset, int value, VectorMask<Integer> lanes) {
+        load(records, offset).add(value, lanes).intoByteBuffer(records, offset, ORDER);
+    }
+
+    @Override
+    public void addByType(ByteBuffer records, int start, int recordInts, int count, int field, int[] atLeast, int[] delta) {
+        boolean uniform = isUniform(atLeast) && isUniform(delta);
+        int i = 0;
+        if (fits(recordInts) && atLeast.length > 0 && (uniform || atLeast.length <= MAX_TYPES)) {
+            VectorMask<Integer> m0 = recordLanes(recordInts, 0);
+            VectorMask<Integer> m1 = recordLanes(recordInts, LANES);
+            VectorMask<Integer> m2 = recordLanes(recordInts, 2 * LANES);
+            int total = count * recordInts;
+            for (; i + field + BLOCK <= total; i += BLOCK) {
+                int offset = start + i * 4;
+                addByType(records, offset, field, m0, uniform, atLeast, delta);
+                addByType(records, offset + LANES * 4, field, m1, uniform, atLeast, delta);
+                addByType(records, offset + 2 * LANES * 4, field, m2, uniform, atLeast, delta);
+            }
+        }
+        int first = firstRecordFrom(i, recordInts);
+        SCALAR.addByType(records, start + first * recordInts * 4, recordInts, count - first, field, atLeast, delta);
+    }
+
+    private static void addByType(ByteBuffer records, int offset, int field, VectorMask<Integer> lanes, boolean uniform,
+                                  int[] atLeast, int[] delta) {
+        IntVector types = load(records, offset);
+        VectorMask<Integer> uneaten = lanes.and(types.compare(VectorOperators.GE, 0));
+        int valueOffset = offset + field * 4;
+        IntVector values = load(records, valueOffset);
+        IntVector result;
+        if (uniform) {
+            result = values.add(delta[0], uneaten.and(values.compare(VectorOperators.GE, atLeast[0])));
+        } else {
+            result = values;
+            for (int type = 0; type < atLeast.length; type++) {
+                result = result.add(delta[type], uneaten.and(types.eq(type)).and(values.compare(VectorOperators.GE, atLeast[type])));
+            }
+        }
+        result.intoByteBuffer(records, valueOffset, ORDER);
+    }
+
+    @Override
+    public void countByType(ByteBuffer records, int start, int recordInts, int count, int[] counts) {
+        int i = 0;
+        if (fits(recordInts) && counts.length <= MAX_TYPES) {
+            VectorMask<Integer> m0 = recordLanes(recordInts, 0);
+            VectorMask<Integer> m1 = recordLanes(recordInts, LANES);
+            VectorMask<Integer> m2 = recordLanes(recordInts, 2 * LANES);
+            int total = count * recordInts;
+            for (; i + BLOCK <= total; i += BLOCK) {
+                int offset = start + i * 4;
+                count(load(records, offset), m0, counts);
+                count(load(records, offset + LANES * 4), m1, counts);
+                count(load(records, offset + 2 * LANES * 4), m2, counts);
+            }
+        }
+        int first = firstRecordFrom(i, recordInts);
+        SCALAR.countByType(records, start + first * recordInts * 4, recordInts, count - first, counts);
+    }
+
+    private static void count(IntVector types, VectorMask<Integer> lanes, int[] counts) {
+        for (int type = 0; type < counts.length; type++) counts[type] += lanes.and(types.eq(type)).trueCount();
+    }
+
+    @Override
+    public int nextOutside(ByteBuffer records, int start, int recordInts, int from, int count, int field, int[] lowest, int[] highest) {
+        boolean uniform = isUniform(lowest) && isUniform(highest);
+        int i = from * recordInts;
+        if (fits(recordInts) && lowest.length > 0 && (uniform || lowest.length <= MAX_TYPES)) {
+            // Blocks start at the first int of a record, so the masks are those of a block at 0
+            VectorMask<Integer> m0 = recordLanes(recordInts, 0);
+            VectorMask<Integer> m1 = recordLanes(recordInts, LANES);
+            VectorMask<Integer> m2 = recordLanes(recordInts, 2 * LANES);
+            int total = count * recordInts;
+            for (; i + field + BLOCK <= total; i += BLOCK) {
+                int offset = start + i * 4;
+                int lane = outside(records, offset, field, m0, uniform, lowest, highest);
+                if (lane < 0) {
+                    lane = outside(records, offset + LANES * 4, field, m1, uniform, lowest, highest);
+                    if (lane >= 0) lane += LANES;
+                }
+                if (lane < 0) {
+                    lane = outside(records, offset + 2 * LANES * 4, field, m2, uniform, lowest, highest);
+                    if (lane >= 0) lane += 2 * LANES;
+                }
+                if (lane >= 0) return (i + lane) / recordInts;
+            }
+        }
+        return SCALAR.nextOutside(records, start, recordInts, Math.max(from, firstRecordFrom(i, recordInts)), count, field, lowest, highest);
+    }
+
+    /**
+     * Returns the first lane of a vector holding the type of an uneaten record whose field is out of its bounds,
+     * or -1 if there is none.
+     */
+    private static int outside(ByteBuffer records, int offset, int field, VectorMask<Integer> lanes, boolean uniform,
+                               int[] lowest, int[] highest) {
+        IntVector types = load(records, offset);
+        IntVector values = load(records, offset + field * 4);
+        VectorMask<Integer> uneaten = lanes.and(types.compare(VectorOperators.GE, 0));
+        VectorMask<Integer> outside;
+        if (uniform) {
+            outside = uneaten.and(values.compare(VectorOperators.LT, lowest[0]).or(values.compare(VectorOperators.GT, highest[0])));
+        } else {
+            VectorMask<Integer> inside = SPECIES.maskAll(false);
+            for (int type = 0; type < lowest.length; type++) {
+                inside = inside.or(types.eq(type).and(values.compare(VectorOperators.GE, lowest[type]))
+                        .and(values.compare(VectorOperators.LE, highest[type])));
+            }
+            outside = uneaten.andNot(inside);
+        }
+        return outside.anyTrue() ? outside.firstTrue() : -1;
+    }
+
+    @Override
+    public int nextEaten(ByteBuffer records, int start, int recordInts, int from, int count) {
+        int i = from * recordInts;
+        if (fits(recordInts)) {
+            VectorMask<Integer> m0 = recordLanes(recordInts, 0);
+            VectorMask<Integer> m1 = recordLanes(recordInts, LANES);
+            VectorMask<Integer> m2 = recordLanes(recordInts, 2 * LANES);
+            int total = count * recordInts;
+            for (; i + BLOCK <= total; i += BLOCK) {
+                int offset = start + i * 4;
+                // A type with the eaten bit is negative, so one comparison of all three vectors finds the block
+                VectorMask<Integer> e0 = m0.and(load(records, offset).compare(VectorOperators.LT, 0));
+                VectorMask<Integer> e1 = m1.and(load(records, offset + LANES * 4).compare(VectorOperators.LT, 0));
+                VectorMask<Integer> e2 = m2.and(load(records, offset + 2 * LANES * 4).compare(VectorOperators.LT, 0));
+                if (!e0.or(e1).or(e2).anyTrue()) continue;
+                int lane = e0.anyTrue() ? e0.firstTrue() : e1.anyTrue() ? LANES + e1.firstTrue() : 2 * LANES + e2.firstTrue();
+                return (i + lane) / recordInts;
+            }
+        }
+        return SCALAR.nextEaten(records, start, recordInts, Math.max(from, firstRecordFrom(i, recordInts)), count);
+    }
+}